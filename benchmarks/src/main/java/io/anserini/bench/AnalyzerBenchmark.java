@@ -0,0 +1,123 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.bench;
+
+import io.anserini.analysis.EnglishStemmingAnalyzer;
+import io.anserini.analysis.TweetAnalyzer;
+import io.anserini.collection.ClueWeb09Collection;
+import io.anserini.collection.TweetCollection;
+import io.anserini.index.transform.JsoupStringTransform;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Tokenizes the text of the ClueWeb09 sample pages with {@link EnglishStemmingAnalyzer}, and the
+ * sample tweets with {@link TweetAnalyzer} (i.e., through the TweetLowerCaseEntityPreservingFilter).
+ * The primary result is documents per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class AnalyzerBenchmark {
+  @Param({"porter"})
+  public String stemmer;
+
+  private Analyzer english;
+  private Analyzer tweet;
+  private List<String> pages;
+  private List<String> tweets;
+  private int nextPage;
+  private int nextTweet;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    english = new EnglishStemmingAnalyzer(stemmer);
+    tweet = new TweetAnalyzer(!"none".equals(stemmer));
+
+    JsoupStringTransform transform = new JsoupStringTransform();
+    Path clueweb09 = Samples.replicate("clueweb09", 1);
+    Path sampleTweets = Samples.replicate("tweets", 1);
+    try {
+      pages = Samples.read(new ClueWeb09Collection(), clueweb09).stream()
+          .filter(ClueWeb09Collection.Document::indexable)
+          .map(document -> transform.apply(document.content()))
+          .collect(Collectors.toList());
+      tweets = Samples.read(new TweetCollection(), sampleTweets).stream()
+          .map(TweetCollection.Document::content)
+          .filter(content -> content != null && !content.isEmpty())
+          .collect(Collectors.toList());
+    } finally {
+      Files.delete(clueweb09);
+      Files.delete(sampleTweets);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    english.close();
+    tweet.close();
+  }
+
+  @Benchmark
+  public int english() throws IOException {
+    String page = pages.get(nextPage);
+    nextPage = (nextPage + 1) % pages.size();
+    return tokenize(english, page);
+  }
+
+  @Benchmark
+  public int tweet() throws IOException {
+    String text = tweets.get(nextTweet);
+    nextTweet = (nextTweet + 1) % tweets.size();
+    return tokenize(tweet, text);
+  }
+
+  private static int tokenize(Analyzer analyzer, String text) throws IOException {
+    int tokens = 0;
+    try (TokenStream stream = analyzer.tokenStream("contents", text)) {
+      stream.reset();
+      while (stream.incrementToken()) {
+        tokens++;
+      }
+      stream.end();
+    }
+    return tokens;
+  }
+}
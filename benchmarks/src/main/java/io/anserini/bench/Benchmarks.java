@@ -0,0 +1,41 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.bench;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected on the command line (same options as JMH's own main class), always
+ * with the GC profiler, so that the allocation rate per document is reported next to the throughput.
+ */
+public final class Benchmarks {
+  private Benchmarks() {}
+
+  public static void main(String[] argv) throws Exception {
+    CommandLineOptions options = new CommandLineOptions(argv);
+    if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams() ||
+        options.shouldListProfilers() || options.shouldListResultFormats()) {
+      Main.main(argv);
+      return;
+    }
+    new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+  }
+}
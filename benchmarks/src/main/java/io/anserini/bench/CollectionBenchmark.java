@@ -0,0 +1,107 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.bench;
+
+import io.anserini.collection.ClueWeb09Collection;
+import io.anserini.collection.DocumentCollection;
+import io.anserini.collection.FileSegment;
+import io.anserini.collection.SourceDocument;
+import io.anserini.collection.TrecCollection;
+import io.anserini.collection.TweetCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses whole files of TREC documents ({@link TrecCollection.Segment}), tweets (bound by Jackson in
+ * {@link TweetCollection.Segment}) and ClueWeb09 WARC records. The primary result is files per
+ * second; the "documents" counter is documents per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CollectionBenchmark {
+  @Param({"1000"})
+  public int copies;
+
+  private Path trec;
+  private Path tweets;
+  private Path clueweb09;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    trec = Samples.replicate("trec", copies);
+    tweets = Samples.replicate("tweets", copies);
+    clueweb09 = Samples.replicate("clueweb09", copies);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(trec);
+    Files.deleteIfExists(tweets);
+    Files.deleteIfExists(clueweb09);
+  }
+
+  @Benchmark
+  public void trec(DocumentCounters counters, Blackhole bh) throws IOException {
+    counters.documents += read(new TrecCollection(), trec, bh);
+  }
+
+  @Benchmark
+  public void tweets(DocumentCounters counters, Blackhole bh) throws IOException {
+    counters.documents += read(new TweetCollection(), tweets, bh);
+  }
+
+  @Benchmark
+  public void clueweb09(DocumentCounters counters, Blackhole bh) throws IOException {
+    counters.documents += read(new ClueWeb09Collection(), clueweb09, bh);
+  }
+
+  private static <T extends SourceDocument> long read(DocumentCollection<T> collection, Path path, Blackhole bh)
+      throws IOException {
+    long documents = 0;
+    FileSegment<T> segment = collection.createFileSegment(path);
+    try {
+      for (T document : segment) {
+        bh.consume(document);
+        documents++;
+      }
+    } finally {
+      segment.close();
+    }
+    return documents;
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.bench;
+
+import io.anserini.collection.TrecCollection;
+import io.anserini.index.IndexCollection;
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import io.anserini.index.transform.JsoupStringTransform;
+import org.apache.lucene.document.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns parsed TREC documents into Lucene documents with {@link LuceneDocumentGenerator#createDocument},
+ * with and without a transform, and with and without recycling each document into the next one (as the
+ * indexing pipeline does). The primary result is documents per second; see the GC profiler for allocation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneratorBenchmark {
+  @Param({"100"})
+  public int copies;
+
+  @Param({"none", "jsoup"})
+  public String transform;
+
+  @Param({"true"})
+  public boolean storePositions;
+
+  @Param({"false"})
+  public boolean storeDocvectors;
+
+  @Param({"false", "true"})
+  public boolean recycle;
+
+  private List<TrecCollection.Document> documents;
+  private LuceneDocumentGenerator<TrecCollection.Document> generator;
+  private int next;
+  private Document previous;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    Path trec = Samples.replicate("trec", copies);
+    try {
+      documents = Samples.read(new TrecCollection(), trec);
+    } finally {
+      Files.delete(trec);
+    }
+
+    IndexCollection.Args args = new IndexCollection.Args();
+    args.storePositions = storePositions;
+    args.storeDocvectors = storeDocvectors;
+    // Counters are only touched by empty documents and transform errors, which the samples do not have.
+    generator = new LuceneDocumentGenerator<>("jsoup".equals(transform) ? new JsoupStringTransform() : null,
+        args, null);
+  }
+
+  @Benchmark
+  public Document createDocument() {
+    TrecCollection.Document document = documents.get(next);
+    next = (next + 1) % documents.size();
+    if (recycle && previous != null) {
+      generator.recycle(previous);
+    }
+    previous = generator.createDocument(document);
+    return previous;
+  }
+}
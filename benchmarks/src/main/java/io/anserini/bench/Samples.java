@@ -0,0 +1,110 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.bench;
+
+import io.anserini.collection.DocumentCollection;
+import io.anserini.collection.FileSegment;
+import io.anserini.collection.SourceDocument;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Access to the sample documents under {@code src/test/resources/sample_docs}, which the benchmarks
+ * replicate into files large enough to measure.
+ */
+final class Samples {
+  /**
+   * System property with the directory of the sample documents, if the benchmarks are not run from
+   * the {@code benchmarks} directory.
+   */
+  static final String DIRECTORY_PROPERTY = "anserini.samples";
+
+  private Samples() {}
+
+  static Path directory() {
+    String property = System.getProperty(DIRECTORY_PROPERTY);
+    if (property != null) {
+      return Paths.get(property);
+    }
+    for (String candidate : new String[] {"../src/test/resources/sample_docs", "src/test/resources/sample_docs"}) {
+      Path path = Paths.get(candidate);
+      if (Files.isDirectory(path)) {
+        return path;
+      }
+    }
+    throw new IllegalStateException("Sample documents not found; set -D" + DIRECTORY_PROPERTY);
+  }
+
+  /**
+   * Concatenates the sample files of a collection a number of times into a temporary file.
+   *
+   * @param collection name of the directory of the samples, e.g. "trec"
+   * @param copies number of copies of the samples
+   * @return temporary file, to be deleted by the caller
+   * @throws IOException if the samples cannot be read or the file cannot be written
+   */
+  static Path replicate(String collection, int copies) throws IOException {
+    List<byte[]> samples = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory().resolve(collection))) {
+      for (Path file : files.sorted().collect(Collectors.toList())) {
+        samples.add(Files.readAllBytes(file));
+      }
+    }
+    Path replicated = Files.createTempFile("anserini-" + collection + "-", ".sample");
+    try (OutputStream out = Files.newOutputStream(replicated)) {
+      for (int i = 0; i < copies; i++) {
+        for (byte[] sample : samples) {
+          out.write(sample);
+          if (sample.length > 0 && sample[sample.length - 1] != '\n') {
+            out.write('\n');
+          }
+        }
+      }
+    }
+    return replicated;
+  }
+
+  /**
+   * Reads all documents of a file.
+   *
+   * @param collection collection of the file
+   * @param path file to read
+   * @param <T> type of the documents
+   * @return documents in the file
+   * @throws IOException if the file cannot be read
+   */
+  static <T extends SourceDocument> List<T> read(DocumentCollection<T> collection, Path path) throws IOException {
+    List<T> documents = new ArrayList<>();
+    FileSegment<T> segment = collection.createFileSegment(path);
+    try {
+      for (T document : segment) {
+        documents.add(document);
+      }
+    } finally {
+      segment.close();
+    }
+    return documents;
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.bench;
+
+import io.anserini.collection.ClueWeb09Collection;
+import io.anserini.index.transform.JsoupStringTransform;
+import io.anserini.index.transform.StreamingHtmlStringTransform;
+import io.anserini.index.transform.StringTransform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Extracts the text of the ClueWeb09 sample pages with {@link JsoupStringTransform} or
+ * {@link StreamingHtmlStringTransform}. The primary result is documents per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class TransformBenchmark {
+  @Param({"jsoup", "streaming"})
+  public String transform;
+
+  private StringTransform stringTransform;
+  private List<String> pages;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    stringTransform = "jsoup".equals(transform) ? new JsoupStringTransform() : new StreamingHtmlStringTransform();
+    Path clueweb09 = Samples.replicate("clueweb09", 1);
+    try {
+      pages = Samples.read(new ClueWeb09Collection(), clueweb09).stream()
+          .filter(ClueWeb09Collection.Document::indexable)
+          .map(ClueWeb09Collection.Document::content)
+          .collect(Collectors.toList());
+    } finally {
+      Files.delete(clueweb09);
+    }
+  }
+
+  @Benchmark
+  public String apply() {
+    String page = pages.get(next);
+    next = (next + 1) % pages.size();
+    return stringTransform.apply(page);
+  }
+}
@@ -61,10 +61,9 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -74,7 +73,6 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.zip.GZIPInputStream;
 
 /**
  * An instance of the <a href="https://www.lemurproject.org/clueweb09.php/">ClueWeb09 collection</a>.
@@ -84,12 +82,12 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
   private static final Logger LOG = LogManager.getLogger(ClueWeb09Collection.class);
 
   public ClueWeb09Collection(){
-    this.allowedFileSuffix = new HashSet<>(Arrays.asList(".warc.gz"));
+    this.allowedFileSuffix = new HashSet<>(Arrays.asList(".warc.gz", ".warc"));
   }
 
   @Override
   public FileSegment<ClueWeb09Collection.Document> createFileSegment(Path p) throws IOException {
-    return new Segment(p);
+    return new Segment(p, getReadAheadChunks());
   }
 
   public FileSegment<ClueWeb09Collection.Document> createFileSegment(String raw) {
@@ -107,28 +105,27 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
     private static final byte MASK_BOTTOM_FIVE_BITS = (byte) (0x3F);
     private static final byte MASK_BOTTOM_FOUR_BITS = (byte) (0x0F);
 
-    protected DataInputStream stream;
+    protected WarcRecordReader reader;
 
-    protected Segment(Path path) throws IOException {
+    protected Segment(Path path, int readAheadChunks) throws IOException {
       super(path);
-      this.stream = new DataInputStream(
-              new GZIPInputStream(Files.newInputStream(path, StandardOpenOption.READ)));
+      this.reader = WarcRecordReader.open(path, readAheadChunks);
     }
 
     protected Segment(String raw) {
       super(null);
-      this.stream = new DataInputStream(new StringInputStream(raw));
+      this.reader = new WarcRecordReader(new StringInputStream(raw));
     }
 
     @Override
     public void readNext() throws IOException, NoSuchElementException {
-      bufferedRecord = readNextWarcRecord(stream, Document.WARC_VERSION);
+      bufferedRecord = readNextWarcRecord(reader, Document.WARC_VERSION);
     }
 
     @Override
     public void close() throws IOException {
-      if (stream != null) {
-        stream.close();
+      if (reader != null) {
+        reader.close();
       }
       super.close();
     }
@@ -330,21 +327,7 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
           retRecord.addHeaderMetadata(pieces[0], "");
           continue;
         }
-        String thisKey = pieces[0].trim();
-        String thisValue = pieces[1].trim();
-
-        // check for known keys
-        if (thisKey.equals("WARC-Type")) {
-          retRecord.setWarcRecordType(thisValue);
-        } else if (thisKey.equals("WARC-Date")) {
-          retRecord.setWarcDate(thisValue);
-        } else if (thisKey.equals("WARC-Record-ID")) {
-          retRecord.setWarcUUID(thisValue);
-        } else if (thisKey.equals("Content-Type")) {
-          retRecord.setWarcContentType(thisValue);
-        } else {
-          retRecord.addHeaderMetadata(thisKey, thisValue);
-        }
+        addHeader(retRecord, pieces[0].trim(), pieces[1].trim());
       }
 
       // set the content
@@ -352,6 +335,35 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
 
       return retRecord;
     }
+
+    /**
+     * Reads in a WARC record with a {@link WarcRecordReader}.
+     *
+     * @param in the reader
+     * @param version WARC version
+     * @return a WARC record
+     * @throws IOException if error encountered reading from the input
+     */
+    public static Document readNextWarcRecord(WarcRecordReader in, String version) throws IOException {
+      Document retRecord = new Document();
+      retRecord.setContent(in.next(version, (key, value) -> addHeader(retRecord, key, value)));
+      return retRecord;
+    }
+
+    private static void addHeader(Document record, String key, String value) {
+      // check for known keys
+      if (key.equals("WARC-Type")) {
+        record.setWarcRecordType(value);
+      } else if (key.equals("WARC-Date")) {
+        record.setWarcDate(value);
+      } else if (key.equals("WARC-Record-ID")) {
+        record.setWarcUUID(value);
+      } else if (key.equals("Content-Type")) {
+        record.setWarcContentType(value);
+      } else {
+        record.addHeaderMetadata(key, value);
+      }
+    }
   }
 
   /**
@@ -361,9 +373,12 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
   public static class Document implements SourceDocument {
     public static final String WARC_VERSION = "WARC/0.18";
     protected final static String NEWLINE = "\n";
+    protected static final byte[] LINE_END = {'\n'};
+    private static final byte[] CONTENT_LENGTH = "Content-Length:".getBytes(StandardCharsets.US_ASCII);
 
     private Document.WarcHeader warcHeader = new Document.WarcHeader();
-    private byte[] warcContent = null;
+    // the bytes between the position and the limit, possibly a slice of a memory-mapped file
+    private ByteBuffer warcContent = null;
     private String warcFilePath = "";
 
     /**
@@ -405,7 +420,7 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
      */
     public int getTotalRecordLength() {
       int headerLength = warcHeader.toString().length();
-      return (headerLength + warcContent.length);
+      return (headerLength + warcContent.remaining());
     }
 
     /**
@@ -531,8 +546,18 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
      * @param content content
      */
     public void setContent(byte[] content) {
+      setContent(ByteBuffer.wrap(content));
+    }
+
+    /**
+     * Sets the byte content for this record to the bytes between the position and the limit of a buffer,
+     * which are not copied.
+     *
+     * @param content content
+     */
+    public void setContent(ByteBuffer content) {
       warcContent = content;
-      warcHeader.contentLength = content.length;
+      warcHeader.contentLength = content.remaining();
     }
 
     /**
@@ -541,7 +566,7 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
      * @return byte content of this record
      */
     public byte[] getByteContent() {
-      return warcContent;
+      return warcContent == null ? null : WarcRecordReader.toArray(warcContent);
     }
 
     /**
@@ -550,7 +575,7 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
      * @return byte content as a UTF-8 string
      */
     public String getContentUTF8() {
-      return new String(warcContent, StandardCharsets.UTF_8);
+      return decode(warcContent, 0);
     }
 
     /**
@@ -567,7 +592,7 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
       StringBuilder retBuffer = new StringBuilder();
       retBuffer.append(warcHeader.toString());
       retBuffer.append(NEWLINE);
-      retBuffer.append(warcContent);
+      retBuffer.append(getByteContent());
       return retBuffer.toString();
     }
 
@@ -588,7 +613,7 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
      */
     public void write(DataOutput out) throws IOException {
       warcHeader.write(out);
-      out.write(warcContent);
+      out.write(getByteContent());
     }
 
     /**
@@ -600,8 +625,9 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
     public void readFields(DataInput in) throws IOException {
       warcHeader.readFields(in);
       int contentLengthBytes = warcHeader.contentLength;
-      warcContent = new byte[contentLengthBytes];
-      in.readFully(warcContent);
+      byte[] content = new byte[contentLengthBytes];
+      in.readFully(content);
+      warcContent = ByteBuffer.wrap(content);
     }
 
     public String getDocid() {
@@ -613,11 +639,53 @@ public class ClueWeb09Collection extends DocumentCollection<ClueWeb09Collection.
     }
 
     public String getContent() {
-      String str = getContentUTF8();
-      int i = str.indexOf("Content-Length:");
-      int j = str.indexOf("\n", i);
+      // Only the bytes after the HTTP headers are decoded.
+      int i = indexOf(warcContent, CONTENT_LENGTH, 0);
+      int j = indexOf(warcContent, LINE_END, i);
+
+      return decode(warcContent, j + 1);
+    }
+
+    /**
+     * Returns the index, relative to the position of the content, of the first occurrence of a pattern at
+     * or after an index, or -1 if there is none.
+     *
+     * @param content content
+     * @param pattern bytes to look for
+     * @param from index to start looking at; a negative index is treated as zero
+     * @return index of the first occurrence, or -1
+     */
+    protected static int indexOf(ByteBuffer content, byte[] pattern, int from) {
+      int start = content.position();
+      int last = content.limit() - pattern.length;
+      for (int i = start + Math.max(from, 0); i <= last; i++) {
+        int k = 0;
+        while (k < pattern.length && content.get(i + k) == pattern[k]) {
+          k++;
+        }
+        if (k == pattern.length) {
+          return i - start;
+        }
+      }
+      return -1;
+    }
 
-      return str.substring(j + 1);
+    /**
+     * Decodes the bytes of the content from an index, relative to its position, to its limit, as UTF-8,
+     * without copying them first.
+     *
+     * @param content content
+     * @param from index of the first byte to decode
+     * @return decoded bytes
+     */
+    protected static String decode(ByteBuffer content, int from) {
+      if (content.hasArray()) {
+        return new String(content.array(), content.arrayOffset() + content.position() + from,
+            content.remaining() - from, StandardCharsets.UTF_8);
+      }
+      ByteBuffer bytes = content.duplicate();
+      bytes.position(content.position() + from);
+      return StandardCharsets.UTF_8.decode(bytes).toString();
     }
 
     /**
@@ -60,10 +60,9 @@ import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -71,7 +70,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.GZIPInputStream;
 import java.util.NoSuchElementException;
 
 /**
@@ -82,13 +80,13 @@ public class ClueWeb12Collection extends DocumentCollection<ClueWeb12Collection.
   private static final Logger LOG = LogManager.getLogger(ClueWeb12Collection.class);
 
   public ClueWeb12Collection(){
-    this.allowedFileSuffix = new HashSet<>(Arrays.asList(".warc.gz"));
+    this.allowedFileSuffix = new HashSet<>(Arrays.asList(".warc.gz", ".warc"));
     this.skippedDir = new HashSet<>(Arrays.asList("OtherData"));
   }
 
   @Override
   public FileSegment<ClueWeb12Collection.Document> createFileSegment(Path p) throws IOException {
-    return new Segment(p);
+    return new Segment(p, getReadAheadChunks());
   }
 
   public FileSegment<ClueWeb12Collection.Document> createFileSegment(String raw) {
@@ -99,28 +97,27 @@ public class ClueWeb12Collection extends DocumentCollection<ClueWeb12Collection.
    * An individual WARC in the <a href="https://www.lemurproject.org/clueweb12.php/">ClueWeb12 collection</a>.
    */
   public static class Segment extends FileSegment<ClueWeb12Collection.Document> {
-    protected DataInputStream stream;
+    protected WarcRecordReader reader;
 
-    protected Segment(Path path) throws IOException {
+    protected Segment(Path path, int readAheadChunks) throws IOException {
       super(path);
-      this.stream = new DataInputStream(
-              new GZIPInputStream(Files.newInputStream(path, StandardOpenOption.READ)));
+      this.reader = WarcRecordReader.open(path, readAheadChunks);
     }
 
     protected Segment(String raw) {
       super(null);
-      this.stream = new DataInputStream(new StringInputStream(raw));
+      this.reader = new WarcRecordReader(new StringInputStream(raw));
     }
 
     @Override
     public void readNext() throws IOException, NoSuchElementException {
-      bufferedRecord = readNextWarcRecord(stream, Document.WARC_VERSION);
+      bufferedRecord = readNextWarcRecord(reader, Document.WARC_VERSION);
     }
 
     @Override
     public void close() throws IOException {
-      if (stream != null) {
-        stream.close();
+      if (reader != null) {
+        reader.close();
       }
       super.close();
     }
@@ -163,6 +160,20 @@ public class ClueWeb12Collection extends DocumentCollection<ClueWeb12Collection.
 
       return retRecord;
     }
+
+    /**
+     * Reads in a WARC record with a {@link WarcRecordReader}.
+     *
+     * @param in the reader
+     * @param version WARC version
+     * @return a WARC record
+     * @throws IOException if error encountered reading from the input
+     */
+    public static Document readNextWarcRecord(WarcRecordReader in, String version) throws IOException {
+      Document retRecord = new Document();
+      retRecord.setContent(in.next(version, retRecord::addHeaderMetadata));
+      return retRecord;
+    }
   }
 
   /**
@@ -300,8 +311,12 @@ public class ClueWeb12Collection extends DocumentCollection<ClueWeb12Collection.
       }
     }
 
+    private static final byte[] CONTENT_LENGTH = "Content-Length:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TAG_START = {'<'};
+
     private Document.WarcHeader warcHeader = new Document.WarcHeader();
-    private byte[] warcContent = null;
+    // the bytes between the position and the limit, possibly a slice of a memory-mapped file
+    private ByteBuffer warcContent = null;
     private String warcFilePath = "";
 
     /**
@@ -327,7 +342,7 @@ public class ClueWeb12Collection extends DocumentCollection<ClueWeb12Collection.
      */
     public int getTotalRecordLength() {
       int headerLength = warcHeader.toString().length();
-      return (headerLength + warcContent.length);
+      return (headerLength + warcContent.remaining());
     }
 
     /**
@@ -456,8 +471,18 @@ public class ClueWeb12Collection extends DocumentCollection<ClueWeb12Collection.
      * @param content content
      */
     public void setContent(byte[] content) {
+      setContent(ByteBuffer.wrap(content));
+    }
+
+    /**
+     * Sets the byte content for this record to the bytes between the position and the limit of a buffer,
+     * which are not copied.
+     *
+     * @param content content
+     */
+    public void setContent(ByteBuffer content) {
       warcContent = content;
-      warcHeader.contentLength = content.length;
+      warcHeader.contentLength = content.remaining();
     }
 
     /**
@@ -475,7 +500,7 @@ public class ClueWeb12Collection extends DocumentCollection<ClueWeb12Collection.
      * @return byte content of this record
      */
     public byte[] getByteContent() {
-      return warcContent;
+      return warcContent == null ? null : WarcRecordReader.toArray(warcContent);
     }
 
     /**
@@ -484,7 +509,7 @@ public class ClueWeb12Collection extends DocumentCollection<ClueWeb12Collection.
      * @return byte content as a UTF-8 string
      */
     public String getContentUTF8() {
-      return new String(warcContent, StandardCharsets.UTF_8);
+      return decode(warcContent, 0);
     }
 
     /**
@@ -501,7 +526,7 @@ public class ClueWeb12Collection extends DocumentCollection<ClueWeb12Collection.
       StringBuilder retBuffer = new StringBuilder();
       retBuffer.append(warcHeader.toString());
       retBuffer.append(NEWLINE);
-      retBuffer.append(warcContent);
+      retBuffer.append(getByteContent());
       return retBuffer.toString();
     }
 
@@ -522,7 +547,7 @@ public class ClueWeb12Collection extends DocumentCollection<ClueWeb12Collection.
      */
     public void write(DataOutput out) throws IOException {
       warcHeader.write(out);
-      out.write(warcContent);
+      out.write(getByteContent());
     }
 
     /**
@@ -534,8 +559,9 @@ public class ClueWeb12Collection extends DocumentCollection<ClueWeb12Collection.
     public void readFields(DataInput in) throws IOException {
       warcHeader.readFields(in);
       int contentLengthBytes = warcHeader.contentLength;
-      warcContent = new byte[contentLengthBytes];
-      in.readFully(warcContent);
+      byte[] content = new byte[contentLengthBytes];
+      in.readFully(content);
+      warcContent = ByteBuffer.wrap(content);
     }
 
     public String getDocid() {
@@ -551,14 +577,13 @@ public class ClueWeb12Collection extends DocumentCollection<ClueWeb12Collection.
     }
 
     public String getContent() {
-      String str = getContentUTF8();
-      int i = str.indexOf("Content-Length:");
-      int j = str.indexOf("\n", i);
+      int i = indexOf(warcContent, CONTENT_LENGTH, 0);
+      int j = indexOf(warcContent, LINE_END, i);
 
-      // Get rid of HTTP headers. Look for the first '<'.
-      int k = str.indexOf("<", j);
+      // Get rid of HTTP headers. Look for the first '<'. Only the bytes from there on are decoded.
+      int k = indexOf(warcContent, TAG_START, j);
 
-      return k != -1 ? str.substring(k) : str.substring(j + 1);
+      return decode(warcContent, k != -1 ? k : j + 1);
     }
   }
 }
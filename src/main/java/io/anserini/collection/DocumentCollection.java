@@ -19,19 +19,26 @@ package io.anserini.collection;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 /**
  * <p>A static collection of documents, comprised of one or more {@link FileSegment}s.
@@ -74,6 +81,7 @@ public abstract class DocumentCollection<T extends SourceDocument> implements It
   protected Set<String> skippedFileSuffix = new HashSet<>();
   protected Set<String> allowedFileSuffix = new HashSet<>();
   protected Set<String> skippedDir = new HashSet<>();
+  private int readAheadChunks = ReadAheadInputStream.DEFAULT_CHUNKS;
 
   /**
    * Sets the path of the collection.
@@ -93,6 +101,28 @@ public abstract class DocumentCollection<T extends SourceDocument> implements It
     return path;
   }
 
+  /**
+   * Sets the number of chunks of {@link ReadAheadInputStream#CHUNK_SIZE} bytes that segments of this
+   * collection decompress ahead of their parsers; zero disables reading ahead.
+   *
+   * @param chunks number of chunks to read ahead
+   */
+  public final void setReadAheadChunks(int chunks) {
+    if (chunks < 0) {
+      throw new IllegalArgumentException("Number of chunks to read ahead must be non-negative");
+    }
+    this.readAheadChunks = chunks;
+  }
+
+  /**
+   * Returns the number of chunks that segments of this collection decompress ahead of their parsers.
+   *
+   * @return number of chunks to read ahead
+   */
+  public final int getReadAheadChunks() {
+    return readAheadChunks;
+  }
+
   /**
    * Creates a {@code FileSegment} from a path.
    *
@@ -102,6 +132,156 @@ public abstract class DocumentCollection<T extends SourceDocument> implements It
    */
   public abstract FileSegment<T> createFileSegment(Path p) throws IOException;
 
+  /**
+   * Returns whether files of this collection can be cut into byte ranges read by separate segments. Only
+   * then does {@link #split(Path, long)} consult {@link #getRecordDelimiter(Path)} and
+   * {@link #getSplitPoints(Path)}; collections that return {@code true} must override
+   * {@link #createFileSegment(Path, long, long)}. The default implementation returns {@code false}.
+   *
+   * @return whether files of this collection can be split
+   */
+  public boolean supportsSplits() {
+    return false;
+  }
+
+  /**
+   * Creates a {@code FileSegment} that reads bytes {@code [start, end)} of a file. The default
+   * implementation only reads whole files, through {@link #createFileSegment(Path)}; collections that
+   * support splits (see {@link #supportsSplits()}) override it to read any range returned by
+   * {@link #split(Path, long)}.
+   *
+   * @param p path
+   * @param start offset of the first byte, which begins a record
+   * @param end offset one past the last byte to read
+   * @return {@code FileSegment} over the specified byte range
+   * @throws IOException if file access error encountered
+   * @throws IllegalArgumentException if the range is not the whole file and the collection does not
+   * support splits
+   */
+  public FileSegment<T> createFileSegment(Path p, long start, long end) throws IOException {
+    if (start != 0 || end != Files.size(p)) {
+      throw new IllegalArgumentException(getClass().getSimpleName() + " cannot read part of a file: " + p +
+          " [" + start + ", " + end + ")");
+    }
+    return createFileSegment(p);
+  }
+
+  /**
+   * Creates a {@code FileSegment} from a split returned by {@link #split(Path, long)}.
+   *
+   * @param split split
+   * @return {@code FileSegment} over the specified split
+   * @throws IOException if file access error encountered
+   */
+  public final FileSegment<T> createFileSegment(FileSplit split) throws IOException {
+    if (split.isWholeFile()) {
+      return createFileSegment(split.getPath());
+    }
+    return createFileSegment(split.getPath(), split.getStart(), split.getEnd());
+  }
+
+  /**
+   * Returns the bytes that begin every record of a file, at the start of a line (e.g.,
+   * {@code <DOC>} for TREC collections), or {@code null} if the file cannot be split into
+   * independently readable byte ranges. Compressed files generally cannot be split. Only called if
+   * {@link #supportsSplits()} returns {@code true}. The default implementation returns {@code null}.
+   *
+   * @param p path
+   * @return record delimiter, or {@code null} if the file cannot be split
+   * @throws IOException if file access error encountered
+   */
+  public byte[] getRecordDelimiter(Path p) throws IOException {
+    return null;
+  }
+
+  /**
+   * Returns the offsets at which a file in a binary format can be cut into independently readable
+   * byte ranges (e.g., the offsets of its compressed blocks), in increasing order, or {@code null} if
+   * the file cannot be cut this way. Only called if {@link #supportsSplits()} returns {@code true} and
+   * {@link #getRecordDelimiter(Path)} returns {@code null}. The default implementation returns
+   * {@code null}; {@link #createFileSegment(Path, long, long)} is then called with ranges that start at
+   * zero or at one of the offsets, and end at one of the offsets or at the end of the file.
+   *
+   * @param p path
+   * @return offsets at which the file can be cut, or {@code null} if the file cannot be split
+   * @throws IOException if file access error encountered
+   */
+  public long[] getSplitPoints(Path p) throws IOException {
+    return null;
+  }
+
+  /**
+   * Cuts a file into splits of roughly {@code splitSize} bytes, each beginning on a record boundary,
+   * so that a single large file can be read by several threads. Files that cannot be split (see
+   * {@link #supportsSplits()}, {@link #getRecordDelimiter(Path)} and {@link #getSplitPoints(Path)}) or
+   * are no larger than
+   * {@code splitSize} yield a single split covering the whole file.
+   *
+   * @param p path
+   * @param splitSize target number of bytes per split; non-positive values disable splitting
+   * @return splits covering the whole file, in file order
+   * @throws IOException if file access error encountered
+   */
+  public final List<FileSplit> split(Path p, long splitSize) throws IOException {
+    byte[] delimiter = splitSize > 0 && supportsSplits() ? getRecordDelimiter(p) : null;
+    long[] points = splitSize > 0 && supportsSplits() && delimiter == null ? getSplitPoints(p) : null;
+    long size = Files.size(p);
+    if ((delimiter == null && points == null) || size <= splitSize) {
+      return Collections.singletonList(FileSplit.of(p, size));
+    }
+
+    List<FileSplit> splits = new ArrayList<>();
+    if (points != null) {
+      long start = 0;
+      for (long point : points) {
+        if (point - start >= splitSize && point < size) {
+          splits.add(new FileSplit(p, start, point));
+          start = point;
+        }
+      }
+      splits.add(new FileSplit(p, start, size));
+      return splits;
+    }
+
+    try (FileChannel channel = FileChannel.open(p, StandardOpenOption.READ)) {
+      long start = 0;
+      while (start < size) {
+        long end = start + splitSize >= size ? size : findRecordStart(channel, start + splitSize, delimiter, size);
+        splits.add(new FileSplit(p, start, end));
+        start = end;
+      }
+    }
+    return splits;
+  }
+
+  // Returns the offset of the first line at or after from that begins with the delimiter, or size if there is none.
+  private static long findRecordStart(FileChannel channel, long from, byte[] delimiter, long size)
+      throws IOException {
+    // Start one byte early so that we can tell whether from itself is at the start of a line.
+    channel.position(from - 1);
+    InputStream in = new BufferedInputStream(Channels.newInputStream(channel), 1 << 16);
+
+    long lineStart = -1;
+    int matched = -1;
+    for (long pos = from - 1; pos < size; pos++) {
+      int b = in.read();
+      if (b < 0) {
+        break;
+      }
+      if (b == '\n') {
+        lineStart = pos + 1;
+        matched = 0;
+      } else if (matched >= 0 && b == (delimiter[matched] & 0xff)) {
+        if (++matched == delimiter.length) {
+          return lineStart;
+        }
+      } else {
+        matched = -1;
+      }
+    }
+    return size;
+  }
+
   /**
    * An iterator over {@code FileSegment} for the {@code DocumentCollection} iterable.
    * A collection is comprised of one or more file segments.
@@ -160,7 +340,18 @@ public abstract class DocumentCollection<T extends SourceDocument> implements It
    */
   public final List<Path> discover(Path p) {
     final List<Path> paths = new ArrayList<>();
+    discover(p, paths::add);
+    return paths;
+  }
 
+  /**
+   * Walks a path and passes each file segment to a consumer as soon as it is found, so that reading
+   * can start before a large (or slow, e.g. network-mounted) tree has been walked completely.
+   *
+   * @param p                 path to walk
+   * @param consumer          consumer of the file segments found, in walk order
+   */
+  public final void discover(Path p, Consumer<Path> consumer) {
     FileVisitor<Path> fv = new SimpleFileVisitor<Path>() {
       @Override
       public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
@@ -169,7 +360,7 @@ public abstract class DocumentCollection<T extends SourceDocument> implements It
         if (Files.isSymbolicLink(file)) {
           name = Files.readSymbolicLink(file);
           if (Files.isDirectory(name)) {
-            paths.addAll(discover(name));
+            discover(name, consumer);
             shouldAdd = false;
           }
         }
@@ -209,7 +400,7 @@ public abstract class DocumentCollection<T extends SourceDocument> implements It
           }
         }
         if (shouldAdd) {
-          paths.add(file);
+          consumer.accept(file);
         }
         return FileVisitResult.CONTINUE;
       }
@@ -235,7 +426,5 @@ public abstract class DocumentCollection<T extends SourceDocument> implements It
     } catch (IOException e) {
       LOG.error("IOException during file visiting", e);
     }
-
-    return paths;
   }
 }
@@ -16,12 +16,28 @@
 
 package io.anserini.collection;
 
+import com.github.luben.zstd.ZstdInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.z.ZCompressorInputStream;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
 import java.util.NoSuchElementException;
 import java.util.Iterator;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Base implementation for a {@link FileSegment}.
@@ -29,7 +45,10 @@ import java.util.Iterator;
  * existence outside a collection, and in principle multiple collections might share the same
  * {@code FileSegment} implementation.
  */
-public abstract class FileSegment<T extends SourceDocument> implements Iterable<T> {
+public abstract class FileSegment<T extends SourceDocument> implements Iterable<T>, Closeable {
+
+  // Files compressed with Unix compress: .z, .Z, and the numbered .0z, .1z, .2z, ... of TREC disks.
+  private static final Pattern Z_SUFFIX = Pattern.compile("(?i:.*?\\.\\d*z$)");
 
   protected Path path;
   protected final int BUFFER_SIZE = 1 << 16; // 64K
@@ -55,6 +74,67 @@ public abstract class FileSegment<T extends SourceDocument> implements Iterable<
     this.path = segmentPath;
   }
 
+  /**
+   * Opens a UTF-8 reader over bytes {@code [start, end)} of an uncompressed file, for segments that
+   * read a {@link FileSplit} rather than a whole file.
+   *
+   * @param path path of the file
+   * @param start offset of the first byte to read
+   * @param end offset one past the last byte to read
+   * @return reader over the specified byte range
+   * @throws IOException if file access error encountered
+   */
+  protected static BufferedReader newReader(Path path, long start, long end) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    channel.position(start);
+    return new BufferedReader(new InputStreamReader(
+        new BoundedInputStream(Channels.newInputStream(channel), end - start), StandardCharsets.UTF_8), 1 << 16);
+  }
+
+  /**
+   * Opens a file, decompressing it on the fly (and on a separate thread, see {@link ReadAheadInputStream})
+   * if its name ends with ".gz", ".bz2", ".zst" or ".z" (see {@link #isCompressed(Path)}).
+   *
+   * @param path path of the file
+   * @param readAheadChunks number of chunks to decompress ahead (see
+   * {@link DocumentCollection#getReadAheadChunks()})
+   * @return stream of the (decompressed) bytes of the file
+   * @throws IOException if file access error encountered
+   */
+  protected static InputStream newInputStream(Path path, int readAheadChunks) throws IOException {
+    String name = path.getFileName().toString();
+    InputStream in = Files.newInputStream(path, StandardOpenOption.READ);
+    try {
+      if (name.endsWith(".gz")) {
+        return ReadAheadInputStream.wrap(new GZIPInputStream(in, 1 << 16), readAheadChunks);
+      } else if (name.endsWith(".bz2")) {
+        return ReadAheadInputStream.wrap(new BZip2CompressorInputStream(new BufferedInputStream(in, 1 << 16)),
+            readAheadChunks);
+      } else if (name.endsWith(".zst")) {
+        return ReadAheadInputStream.wrap(new ZstdInputStream(new BufferedInputStream(in, 1 << 16)), readAheadChunks);
+      } else if (Z_SUFFIX.matcher(name).matches()) {
+        return ReadAheadInputStream.wrap(new ZCompressorInputStream(new BufferedInputStream(in, 1 << 16)),
+            readAheadChunks);
+      }
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+    return in;
+  }
+
+  /**
+   * Returns whether a file is compressed, as far as {@link #newInputStream(Path, int)} is concerned.
+   * Compressed files cannot be split.
+   *
+   * @param path path of the file
+   * @return whether the file is compressed
+   */
+  protected static boolean isCompressed(Path path) {
+    String name = path.getFileName().toString();
+    return name.endsWith(".gz") || name.endsWith(".bz2") || name.endsWith(".zst") || Z_SUFFIX.matcher(name).matches();
+  }
+
   public final int getSkippedCount() {
     return skipped;
   }
@@ -0,0 +1,107 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.collection;
+
+import java.nio.file.Path;
+
+/**
+ * A unit of work for reading a collection: either a whole file, or a byte range of an uncompressed
+ * file that starts on a record boundary and ends right before the next split (or at the end of the file).
+ * See {@link DocumentCollection#split(Path, long)}.
+ */
+public final class FileSplit {
+  private final Path path;
+  private final long start;
+  private final long end;
+  private final long length;
+
+  /**
+   * Returns a split covering the whole file.
+   *
+   * @param path path of the file
+   * @return split covering the whole file
+   */
+  public static FileSplit of(Path path) {
+    return new FileSplit(path, 0, -1);
+  }
+
+  /**
+   * Returns a split covering the whole file, of known size.
+   *
+   * @param path path of the file
+   * @param size size of the file in bytes
+   * @return split covering the whole file
+   */
+  public static FileSplit of(Path path, long size) {
+    return new FileSplit(path, 0, -1, size);
+  }
+
+  /**
+   * Creates a split covering bytes {@code [start, end)} of a file.
+   *
+   * @param path path of the file
+   * @param start offset of the first byte, which must begin a record
+   * @param end offset one past the last byte, or -1 for the end of the file
+   */
+  public FileSplit(Path path, long start, long end) {
+    this(path, start, end, end < 0 ? -1 : end - start);
+  }
+
+  private FileSplit(Path path, long start, long end, long length) {
+    this.path = path;
+    this.start = start;
+    this.end = end;
+    this.length = length;
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  public long getEnd() {
+    return end;
+  }
+
+  /**
+   * Returns the number of bytes of the file covered by this split (compressed bytes, for a compressed
+   * file), or -1 if unknown.
+   *
+   * @return number of bytes covered by this split
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * Returns whether this split covers the whole file, in which case it is read through
+   * {@link DocumentCollection#createFileSegment(Path)}.
+   *
+   * @return whether this split covers the whole file
+   */
+  public boolean isWholeFile() {
+    return start == 0 && end < 0;
+  }
+
+  @Override
+  public String toString() {
+    return isWholeFile() ? path.toString() : path.toString() + " [" + start + ", " + end + ")";
+  }
+}
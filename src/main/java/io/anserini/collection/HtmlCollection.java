@@ -55,7 +55,9 @@ public class HtmlCollection extends DocumentCollection<HtmlCollection.Document>
       super(path);
       this.bufferedReader = null;
       if (path.toString().endsWith(".tgz") || path.toString().endsWith(".tar.gz")) {
-        inputStream = new TarArchiveInputStream(new GzipCompressorInputStream(new FileInputStream(path.toFile())));
+        inputStream = new TarArchiveInputStream(
+            ReadAheadInputStream.wrap(new GzipCompressorInputStream(new FileInputStream(path.toFile())),
+                getReadAheadChunks()));
       }
     }
 
@@ -79,6 +81,14 @@ public class HtmlCollection extends DocumentCollection<HtmlCollection.Document>
       }
     }
 
+    @Override
+    public void close() throws IOException {
+      if (inputStream != null) {
+        inputStream.close();
+      }
+      super.close();
+    }
+
     private void getNextEntry() throws IOException {
       nextEntry = inputStream.getNextEntry();
       if (nextEntry == null) {
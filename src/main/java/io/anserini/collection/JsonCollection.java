@@ -16,20 +16,24 @@
 
 package io.anserini.collection;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.text.ParseException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.List;
 import java.util.Map;
@@ -37,7 +41,9 @@ import java.util.Set;
 
 /**
  * A JSON document collection.
- * This class reads all <code>.json</code> files in the input directory.
+ * This class reads all <code>.json</code> and <code>.jsonl</code> files in the input directory, which may
+ * be compressed with gzip, bzip2 or Zstandard (e.g., <code>.jsonl.gz</code>, <code>.json.bz2</code>,
+ * <code>.jsonl.zst</code>).
  * Inside each file is either a JSON Object (one document) or a JSON Array (multiple documents) or
  * a JSON Document on each line (not actually valid Json String)
  * Example of JSON Object:
@@ -66,12 +72,18 @@ import java.util.Set;
  * {"id": "doc2", "contents": "this is the contents 2."}
  * </pre>
  *
+ * Files are parsed a token at a time, one document after another (including the documents of an array),
+ * without building a tree for any of them. Fields other than <code>id</code> and <code>contents</code>
+ * are kept as text; nested objects and arrays are kept as empty strings.
  */
 public class JsonCollection extends DocumentCollection<JsonCollection.Document> {
   private static final Logger LOG = LogManager.getLogger(JsonCollection.class);
+  private static final byte[] JSON_LINE_DELIMITER = "{".getBytes(StandardCharsets.UTF_8);
+  private static final JsonFactory FACTORY = new JsonFactory();
 
   public JsonCollection(){
-    this.allowedFileSuffix = new HashSet<>(Arrays.asList(".json"));
+    this.allowedFileSuffix = new HashSet<>(Arrays.asList(".json", ".jsonl",
+        ".json.gz", ".jsonl.gz", ".json.bz2", ".jsonl.bz2", ".json.zst", ".jsonl.zst"));
   }
 
   @Override
@@ -79,46 +91,119 @@ public class JsonCollection extends DocumentCollection<JsonCollection.Document>
     return new Segment(p);
   }
 
+  @Override
+  public FileSegment<JsonCollection.Document> createFileSegment(Path p, long start, long end) throws IOException {
+    return new Segment(p, start, end);
+  }
+
+  @Override
+  public boolean supportsSplits() {
+    return true;
+  }
+
+  /**
+   * Only files with one JSON object per line can be split, on the <code>{</code> that starts each line.
+   * A file is taken to be in that format if its first line holds a complete JSON object. Compressed files
+   * cannot be split.
+   */
+  @Override
+  public byte[] getRecordDelimiter(Path p) throws IOException {
+    if (FileSegment.isCompressed(p)) {
+      return null;
+    }
+    String firstLine;
+    try (BufferedReader reader = Files.newBufferedReader(p, StandardCharsets.UTF_8)) {
+      firstLine = reader.readLine();
+    }
+    if (firstLine == null || !firstLine.startsWith("{")) {
+      return null;
+    }
+    try {
+      return new ObjectMapper().readTree(firstLine).isObject() ? JSON_LINE_DELIMITER : null;
+    } catch (JsonProcessingException e) {
+      return null;
+    }
+  }
+
   public class Segment extends FileSegment<JsonCollection.Document> {
-    private JsonNode node = null;
-    private Iterator<JsonNode> iter = null; // iterator for JSON document array
-    private MappingIterator<JsonNode> iterator; // iterator for JSON line objects
+    private final JsonParser parser;
+    // Whether the documents are the elements of a top-level array.
+    private boolean inArray = false;
+    // Token read ahead by the constructor, to be handled by the first call to readNext.
+    private JsonToken pending;
 
     protected Segment(Path path) throws IOException {
       super(path);
-      bufferedReader = new BufferedReader(new FileReader(path.toString()));
-      ObjectMapper mapper = new ObjectMapper();
-      iterator = mapper.readerFor(JsonNode.class).readValues(bufferedReader);
-      if (iterator.hasNext()) {
-        node = iterator.next();
-        if (node.isArray()) {
-          iter = node.elements();
+      // Parsing bytes rather than characters spares decoding strings that are skipped.
+      this.parser = FACTORY.createParser(newInputStream(path, getReadAheadChunks()));
+      start();
+    }
+
+    protected Segment(Path path, long start, long end) throws IOException {
+      super(path);
+      bufferedReader = newReader(path, start, end);
+      this.parser = FACTORY.createParser(bufferedReader);
+      start();
+    }
+
+    private void start() throws IOException {
+      try {
+        pending = parser.nextToken();
+        if (pending == JsonToken.START_ARRAY) {
+          inArray = true;
+          pending = parser.nextToken();
         }
+      } catch (IOException e) {
+        parser.close();
+        throw e;
       }
     }
 
     @Override
-    public void readNext() throws NoSuchElementException {
-      if (node == null) {
-        throw new NoSuchElementException("JsonNode is empty");
-      } else if (node.isObject()) {
-        bufferedRecord = new JsonCollection.Document(node);
-        if (iterator.hasNext()) { // if bufferedReader contains JSON line objects, we parse the next JSON into node
-          node = iterator.next();
+    public void readNext() throws IOException, ParseException, NoSuchElementException {
+      JsonToken token = pending != null ? pending : parser.nextToken();
+      pending = null;
+      if (token == null || (inArray && token == JsonToken.END_ARRAY)) {
+        atEOF = true;
+        // Releases the file as soon as it has been read, whether or not the segment is closed.
+        parser.close();
+        throw new NoSuchElementException("Reached end of JSON input");
+      }
+      if (token != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        LOG.error("Error: expected a JSON object, found " + token + " in " + path);
+        throw new ParseException("Expected a JSON object, found " + token, 0);
+      }
+
+      String id = null;
+      String contents = null;
+      Map<String, String> fields = new HashMap<>();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        String value;
+        JsonToken valueToken = parser.nextToken();
+        if (valueToken == JsonToken.START_OBJECT || valueToken == JsonToken.START_ARRAY) {
+          parser.skipChildren();
+          value = "";
         } else {
-          atEOF = true; // there is no more JSON object in the bufferedReader
+          value = parser.getText();
         }
-      } else if (node.isArray()) {
-        if (iter != null && iter.hasNext()) {
-          JsonNode json = iter.next();
-          bufferedRecord = new JsonCollection.Document(node);
+
+        if ("id".equals(name)) {
+          id = value;
+        } else if ("contents".equals(name)) {
+          contents = value;
         } else {
-          throw new NoSuchElementException("Reached end of JsonNode iterator");
+          fields.put(name, value);
         }
-      } else {
-        LOG.error("Error: invalid JsonNode type");
-        throw new NoSuchElementException("Invalid JsonNode type");
       }
+      bufferedRecord = new JsonCollection.Document(id, contents, fields);
+    }
+
+    @Override
+    public void close() throws IOException {
+      super.close();
+      parser.close();
     }
   }
 
@@ -130,6 +215,12 @@ public class JsonCollection extends DocumentCollection<JsonCollection.Document>
     private String contents;
     private Map<String, String> fields;
 
+    public Document(String id, String contents, Map<String, String> fields) {
+      this.id = id;
+      this.contents = contents;
+      this.fields = fields;
+    }
+
     public Document(JsonNode json) {
       this.fields = new HashMap<>();
 
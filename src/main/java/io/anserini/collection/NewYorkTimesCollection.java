@@ -87,7 +87,9 @@ public class NewYorkTimesCollection extends DocumentCollection<NewYorkTimesColle
     protected Segment(Path path) throws IOException {
       super(path);
       if (this.path.toString().endsWith(".tgz")) {
-        tarInput = new TarArchiveInputStream(new GzipCompressorInputStream(new FileInputStream(path.toFile())));
+        tarInput = new TarArchiveInputStream(
+            ReadAheadInputStream.wrap(new GzipCompressorInputStream(new FileInputStream(path.toFile())),
+                getReadAheadChunks()));
       }
     }
 
@@ -112,6 +114,14 @@ public class NewYorkTimesCollection extends DocumentCollection<NewYorkTimesColle
       }
     }
 
+    @Override
+    public void close() throws IOException {
+      if (tarInput != null) {
+        tarInput.close();
+      }
+      super.close();
+    }
+
     private void getNextEntry() throws IOException {
       nextEntry = tarInput.getNextEntry();
       if (nextEntry == null) {
@@ -0,0 +1,280 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.collection;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A collection of documents that have already been parsed and transformed, as written by
+ * {@link ParsedCorpusWriter} (e.g., by {@code IndexCollection -parsed.output}). Reindexing such a
+ * collection with different analysis settings skips decompressing, parsing and cleaning the original
+ * collection, so it is bound by analysis rather than by parsing. Documents should be indexed with
+ * {@code LuceneDocumentGenerator}, without a transform, since their contents are already transformed.
+ *
+ * <p>A file is a sequence of blocks of documents compressed with deflate, followed by an index of the
+ * blocks, so that a file can be split on block boundaries and read by several threads:</p>
+ * <pre>
+ * file     := MAGIC block* index blockCount:int indexOffset:long MAGIC
+ * block    := documentCount:int length:int compressedLength:int compressed:byte[compressedLength]
+ * index    := (offset:long documentCount:int)*
+ * document := id:string contents:string fieldCount:vint (name:string value:string)*
+ * </pre>
+ * <p>Integers are big-endian; strings, inside the (inflated) blocks, are a vint length followed by
+ * UTF-8 bytes, as written by Lucene's {@code DataOutput.writeString}.</p>
+ */
+public class ParsedCollection extends DocumentCollection<ParsedCollection.Document> {
+  /**
+   * Suffix of parsed corpus files.
+   */
+  public static final String SUFFIX = ".parsed";
+
+  static final byte[] MAGIC = "APC1".getBytes(StandardCharsets.US_ASCII);
+  static final int BLOCK_HEADER_LENGTH = 12;
+  static final int INDEX_ENTRY_LENGTH = 12;
+  static final int FOOTER_LENGTH = 4 + 8 + MAGIC.length;
+
+  public ParsedCollection() {
+    this.allowedFileSuffix = new HashSet<>(Arrays.asList(SUFFIX));
+  }
+
+  @Override
+  public FileSegment<ParsedCollection.Document> createFileSegment(Path p) throws IOException {
+    return new Segment(p, 0, Long.MAX_VALUE);
+  }
+
+  @Override
+  public FileSegment<ParsedCollection.Document> createFileSegment(Path p, long start, long end) throws IOException {
+    return new Segment(p, start, end);
+  }
+
+  @Override
+  public boolean supportsSplits() {
+    return true;
+  }
+
+  /**
+   * Files are split on the boundaries of their blocks, read from the index at the end of the file.
+   */
+  @Override
+  public long[] getSplitPoints(Path p) throws IOException {
+    try (FileChannel channel = FileChannel.open(p, StandardOpenOption.READ)) {
+      Footer footer = Footer.read(channel, p);
+      ByteBuffer index = ByteBuffer.allocate(footer.blockCount * INDEX_ENTRY_LENGTH);
+      readFully(channel, index, footer.indexOffset, p);
+      long[] points = new long[footer.blockCount];
+      for (int i = 0; i < points.length; i++) {
+        points[i] = index.getLong(i * INDEX_ENTRY_LENGTH);
+      }
+      return points;
+    }
+  }
+
+  static void readFully(FileChannel channel, ByteBuffer buffer, long position, Path path) throws IOException {
+    while (buffer.hasRemaining()) {
+      int n = channel.read(buffer, position);
+      if (n < 0) {
+        throw new EOFException("Unexpected end of " + path);
+      }
+      position += n;
+    }
+    buffer.flip();
+  }
+
+  // The end of a file: number of blocks and offset of the index, which is also the end of the blocks.
+  static final class Footer {
+    final int blockCount;
+    final long indexOffset;
+
+    private Footer(int blockCount, long indexOffset) {
+      this.blockCount = blockCount;
+      this.indexOffset = indexOffset;
+    }
+
+    static Footer read(FileChannel channel, Path path) throws IOException {
+      long size = channel.size();
+      if (size < MAGIC.length + FOOTER_LENGTH) {
+        throw new IOException(path + " is not a parsed corpus file");
+      }
+      ByteBuffer header = ByteBuffer.allocate(MAGIC.length);
+      readFully(channel, header, 0, path);
+      ByteBuffer footer = ByteBuffer.allocate(FOOTER_LENGTH);
+      readFully(channel, footer, size - FOOTER_LENGTH, path);
+      byte[] magic = new byte[MAGIC.length];
+      footer.position(12);
+      footer.get(magic);
+      if (!header.equals(ByteBuffer.wrap(MAGIC)) || !Arrays.equals(magic, MAGIC)) {
+        throw new IOException(path + " is not a complete parsed corpus file");
+      }
+      int blockCount = footer.getInt(0);
+      long indexOffset = footer.getLong(4);
+      if (blockCount < 0 || indexOffset < MAGIC.length ||
+          indexOffset + (long) blockCount * INDEX_ENTRY_LENGTH != size - FOOTER_LENGTH) {
+        throw new IOException(path + " has a corrupt index");
+      }
+      return new Footer(blockCount, indexOffset);
+    }
+  }
+
+  /**
+   * A parsed corpus file, or the blocks of one that start in a range of bytes.
+   */
+  public static class Segment extends FileSegment<ParsedCollection.Document> {
+    private final FileChannel channel;
+    private final Inflater inflater = new Inflater();
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_LENGTH);
+    private final ByteArrayDataInput in = new ByteArrayDataInput();
+    private final long end;
+    private long position;
+    private ByteBuffer compressed = ByteBuffer.allocate(0);
+    private byte[] block = new byte[0];
+    private int remaining = 0;
+
+    protected Segment(Path path, long start, long end) throws IOException {
+      super(path);
+      this.channel = FileChannel.open(path, StandardOpenOption.READ);
+      try {
+        // Blocks end where the index begins.
+        this.end = Math.min(end, Footer.read(channel, path).indexOffset);
+      } catch (IOException e) {
+        channel.close();
+        throw e;
+      }
+      this.position = Math.max(start, MAGIC.length);
+    }
+
+    @Override
+    public void readNext() throws IOException, NoSuchElementException {
+      if (remaining == 0) {
+        readBlock();
+      }
+      String id = in.readString();
+      String contents = in.readString();
+      int fieldCount = in.readVInt();
+      Map<String, String> fields;
+      if (fieldCount == 0) {
+        fields = Collections.emptyMap();
+      } else {
+        fields = new HashMap<>();
+        for (int i = 0; i < fieldCount; i++) {
+          String name = in.readString();
+          fields.put(name, in.readString());
+        }
+      }
+      remaining--;
+      bufferedRecord = new Document(id, contents, fields);
+    }
+
+    // Reads and inflates the next non-empty block, or throws NoSuchElementException if there is none.
+    private void readBlock() throws IOException {
+      while (remaining == 0) {
+        if (position >= end) {
+          atEOF = true;
+          throw new NoSuchElementException();
+        }
+        header.clear();
+        readFully(channel, header, position, path);
+        int documentCount = header.getInt();
+        int length = header.getInt();
+        int compressedLength = header.getInt();
+        if (documentCount < 0 || length < 0 || compressedLength < 0) {
+          throw new IOException("Corrupt block at offset " + position + " of " + path);
+        }
+
+        if (compressed.capacity() < compressedLength) {
+          compressed = ByteBuffer.allocate(compressedLength);
+        }
+        compressed.clear();
+        compressed.limit(compressedLength);
+        readFully(channel, compressed, position + BLOCK_HEADER_LENGTH, path);
+        if (block.length < length) {
+          block = new byte[length];
+        }
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, compressedLength);
+        try {
+          if (inflater.inflate(block, 0, length) != length || !inflater.finished()) {
+            throw new IOException("Corrupt block at offset " + position + " of " + path);
+          }
+        } catch (DataFormatException e) {
+          throw new IOException("Corrupt block at offset " + position + " of " + path, e);
+        }
+
+        in.reset(block, 0, length);
+        remaining = documentCount;
+        position += BLOCK_HEADER_LENGTH + compressedLength;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      super.close();
+      inflater.end();
+      channel.close();
+    }
+  }
+
+  /**
+   * A document of a parsed corpus: its id, its transformed contents, and its other fields.
+   */
+  public static class Document implements MultifieldSourceDocument {
+    private final String id;
+    private final String contents;
+    private final Map<String, String> fields;
+
+    public Document(String id, String contents, Map<String, String> fields) {
+      this.id = id;
+      this.contents = contents;
+      this.fields = fields;
+    }
+
+    @Override
+    public String id() {
+      return id;
+    }
+
+    @Override
+    public String content() {
+      return contents;
+    }
+
+    @Override
+    public boolean indexable() {
+      return true;
+    }
+
+    @Override
+    public Map<String, String> fields() {
+      return fields;
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.collection;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.lucene.store.GrowableByteArrayDataOutput;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes documents, after parsing and transforms, to a file read by {@link ParsedCollection} (see
+ * there for the format). Documents are buffered into blocks of about {@link #DEFAULT_BLOCK_SIZE} bytes,
+ * each compressed separately. The file is written under a temporary name, and only takes its final
+ * name once closed, so that an interrupted run never leaves a truncated file behind.
+ */
+public class ParsedCorpusWriter implements Closeable {
+  /**
+   * Default number of (uncompressed) bytes per block.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+  private final Path path;
+  private final Path tmp;
+  private final DataOutputStream out;
+  private final int blockSize;
+  private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+  private final GrowableByteArrayDataOutput block;
+  // Offset and number of documents of each block written.
+  private final LongArrayList blockOffsets = new LongArrayList();
+  private final IntArrayList blockDocuments = new IntArrayList();
+  private byte[] compressed = new byte[1 << 16];
+  private long position;
+  private int documentCount = 0;
+  private boolean closed = false;
+
+  /**
+   * Creates a parsed corpus file, replacing any file with the same name once closed.
+   *
+   * @param path file to write
+   * @param blockSize number of uncompressed bytes per block
+   * @throws IOException if the file cannot be created
+   */
+  public ParsedCorpusWriter(Path path, int blockSize) throws IOException {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("Block size must be positive");
+    }
+    this.path = path;
+    this.tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16));
+    this.blockSize = blockSize;
+    this.block = new GrowableByteArrayDataOutput(blockSize + (blockSize >> 3));
+    out.write(ParsedCollection.MAGIC);
+    position = ParsedCollection.MAGIC.length;
+  }
+
+  /**
+   * Creates a parsed corpus file, with blocks of the default size.
+   *
+   * @param path file to write
+   * @throws IOException if the file cannot be created
+   */
+  public ParsedCorpusWriter(Path path) throws IOException {
+    this(path, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Adds a document.
+   *
+   * @param id id of the document
+   * @param contents contents of the document, after transforms
+   * @param fields other fields of the document
+   * @throws IOException if a full block cannot be written
+   */
+  public void add(String id, String contents, Map<String, String> fields) throws IOException {
+    block.writeString(id);
+    block.writeString(contents);
+    block.writeVInt(fields.size());
+    for (Map.Entry<String, String> field : fields.entrySet()) {
+      block.writeString(field.getKey());
+      block.writeString(field.getValue());
+    }
+    documentCount++;
+    if (block.getPosition() >= blockSize) {
+      flushBlock();
+    }
+  }
+
+  private void flushBlock() throws IOException {
+    if (documentCount == 0) {
+      return;
+    }
+    int length = block.getPosition();
+    deflater.reset();
+    deflater.setInput(block.getBytes(), 0, length);
+    deflater.finish();
+    int compressedLength = 0;
+    while (!deflater.finished()) {
+      if (compressedLength == compressed.length) {
+        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+      }
+      compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+    }
+
+    out.writeInt(documentCount);
+    out.writeInt(length);
+    out.writeInt(compressedLength);
+    out.write(compressed, 0, compressedLength);
+    blockOffsets.add(position);
+    blockDocuments.add(documentCount);
+
+    position += ParsedCollection.BLOCK_HEADER_LENGTH + compressedLength;
+    documentCount = 0;
+    block.reset();
+  }
+
+  /**
+   * Writes the last block and the index, and gives the file its final name.
+   *
+   * @throws IOException if the file cannot be written or renamed
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      flushBlock();
+      for (int i = 0; i < blockOffsets.size(); i++) {
+        out.writeLong(blockOffsets.getLong(i));
+        out.writeInt(blockDocuments.getInt(i));
+      }
+      out.writeInt(blockOffsets.size());
+      out.writeLong(position);
+      out.write(ParsedCollection.MAGIC);
+    } finally {
+      deflater.end();
+      out.close();
+    }
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Discards the file, e.g. when the documents written so far are not all the documents meant to be.
+   *
+   * @throws IOException if the temporary file cannot be deleted
+   */
+  public void abort() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      deflater.end();
+      out.close();
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.collection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An input stream that reads another stream, typically a decompressing one, ahead of its caller on a
+ * separate thread. The stream is read in chunks of {@link #CHUNK_SIZE} bytes, and up to a fixed number
+ * of chunks are kept ready, so that a parser reading a compressed file never waits for the file to be
+ * inflated unless it is parsing faster than the file can be inflated.
+ */
+public class ReadAheadInputStream extends InputStream {
+  /**
+   * Size of the chunks read ahead, in bytes.
+   */
+  public static final int CHUNK_SIZE = 1 << 20;
+
+  /**
+   * Number of chunks read ahead by default.
+   */
+  public static final int DEFAULT_CHUNKS = 4;
+
+  private static final AtomicInteger THREADS = new AtomicInteger();
+
+  private final InputStream in;
+  // Empty chunks, to be filled by the reading thread.
+  private final BlockingQueue<Chunk> free;
+  // Filled chunks, in order, followed by a chunk marking the end of the stream or an error.
+  private final BlockingQueue<Chunk> filled;
+  private final Thread thread;
+
+  private Chunk current;
+  private int pos;
+  private boolean eof = false;
+
+  private static final class Chunk {
+    final byte[] bytes;
+    int length;
+    Throwable error;
+
+    Chunk(byte[] bytes) {
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * Wraps a stream to be read ahead by {@link #DEFAULT_CHUNKS} chunks.
+   *
+   * @param in stream to read ahead
+   * @return stream reading ahead of its caller
+   */
+  public static InputStream wrap(InputStream in) {
+    return wrap(in, DEFAULT_CHUNKS);
+  }
+
+  /**
+   * Wraps a stream to be read ahead by a number of chunks, or returns it as is if the number is zero.
+   *
+   * @param in stream to read ahead
+   * @param chunks number of chunks to read ahead; zero disables reading ahead
+   * @return stream reading ahead of its caller
+   */
+  public static InputStream wrap(InputStream in, int chunks) {
+    if (chunks < 0) {
+      throw new IllegalArgumentException("Number of chunks to read ahead must be non-negative");
+    }
+    return chunks == 0 ? in : new ReadAheadInputStream(in, chunks);
+  }
+
+  /**
+   * Starts reading a stream ahead.
+   *
+   * @param in stream to read ahead, closed by this stream
+   * @param chunks number of chunks to read ahead
+   */
+  public ReadAheadInputStream(InputStream in, int chunks) {
+    if (chunks < 1) {
+      throw new IllegalArgumentException("Number of chunks to read ahead must be positive");
+    }
+    this.in = in;
+    this.free = new ArrayBlockingQueue<>(chunks);
+    // Room for every chunk and the end marker, so that the reading thread never blocks adding to it.
+    this.filled = new ArrayBlockingQueue<>(chunks + 1);
+    for (int i = 0; i < chunks; i++) {
+      free.add(new Chunk(new byte[CHUNK_SIZE]));
+    }
+    this.thread = new Thread(this::readAhead, "read-ahead-" + THREADS.incrementAndGet());
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  private void readAhead() {
+    try {
+      while (true) {
+        Chunk chunk = free.take();
+        int length = 0;
+        int n = 0;
+        while (length < chunk.bytes.length && (n = in.read(chunk.bytes, length, chunk.bytes.length - length)) >= 0) {
+          length += n;
+        }
+        if (length > 0) {
+          chunk.length = length;
+          filled.put(chunk);
+        }
+        if (n < 0) {
+          Chunk end = new Chunk(null);
+          end.length = -1;
+          filled.put(end);
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      // closed before the end of the stream
+    } catch (Throwable e) {
+      Chunk error = new Chunk(null);
+      error.length = -1;
+      error.error = e;
+      filled.offer(error);
+    } finally {
+      try {
+        in.close();
+      } catch (IOException e) {
+        // nothing more to read from it anyway
+      }
+    }
+  }
+
+  // Makes sure the current chunk has unread bytes, returning false at the end of the stream.
+  private boolean next() throws IOException {
+    if (current != null && pos < current.length) {
+      return true;
+    }
+    if (eof) {
+      return false;
+    }
+    if (current != null) {
+      free.add(current);
+      current = null;
+    }
+    Chunk chunk;
+    try {
+      chunk = filled.take();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException();
+    }
+    if (chunk.length < 0) {
+      eof = true;
+      if (chunk.error != null) {
+        throw new IOException("Error reading ahead", chunk.error);
+      }
+      return false;
+    }
+    current = chunk;
+    pos = 0;
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!next()) {
+      return -1;
+    }
+    return current.bytes[pos++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!next()) {
+      return -1;
+    }
+    int n = Math.min(len, current.length - pos);
+    System.arraycopy(current.bytes, pos, b, off, n);
+    pos += n;
+    return n;
+  }
+
+  @Override
+  public int available() {
+    return current == null ? 0 : current.length - pos;
+  }
+
+  @Override
+  public void close() throws IOException {
+    eof = true;
+    current = null;
+    thread.interrupt();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+}
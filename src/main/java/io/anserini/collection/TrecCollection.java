@@ -16,26 +16,19 @@
 
 package io.anserini.collection;
 
-import org.apache.commons.compress.compressors.z.ZCompressorInputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.zip.GZIPInputStream;
 import java.text.ParseException;
 
 /**
@@ -52,7 +45,22 @@ public class TrecCollection extends DocumentCollection<TrecCollection.Document>
 
   @Override
   public FileSegment<Document> createFileSegment(Path p) throws IOException {
-    return new Segment<>(p);
+    return new Segment<>(p, getReadAheadChunks());
+  }
+
+  @Override
+  public FileSegment<Document> createFileSegment(Path p, long start, long end) throws IOException {
+    return new Segment<>(p, start, end);
+  }
+
+  @Override
+  public boolean supportsSplits() {
+    return true;
+  }
+
+  @Override
+  public byte[] getRecordDelimiter(Path p) {
+    return FileSegment.isCompressed(p) ? null : Document.DOC.getBytes(StandardCharsets.UTF_8);
   }
 
   /**
@@ -62,24 +70,22 @@ public class TrecCollection extends DocumentCollection<TrecCollection.Document>
    */
   public static class Segment<T extends Document> extends FileSegment<T>{
 
-    protected Segment(Path path) throws IOException {
+    protected Segment(Path path, int readAheadChunks) throws IOException {
       super(path);
       this.bufferedReader = null;
-      String fileName = path.toString();
-      if (fileName.matches("(?i:.*?\\.\\d*z$)")) { // .z .0z .1z .2z
-        FileInputStream fin = new FileInputStream(fileName);
-        BufferedInputStream in = new BufferedInputStream(fin);
-        ZCompressorInputStream zIn = new ZCompressorInputStream(in);
-        bufferedReader = new BufferedReader(new InputStreamReader(zIn, StandardCharsets.UTF_8));
-      } else if (fileName.endsWith(".gz")) { //.gz
-        InputStream stream = new GZIPInputStream(
-            Files.newInputStream(path, StandardOpenOption.READ), BUFFER_SIZE);
-        bufferedReader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
-      } else { // plain text file
-        bufferedReader = new BufferedReader(new FileReader(fileName));
+      if (isCompressed(path)) {
+        bufferedReader = new BufferedReader(new InputStreamReader(newInputStream(path, readAheadChunks),
+            StandardCharsets.UTF_8));
+      } else { // plain text file, decoded as UTF-8 like its splits
+        bufferedReader = newReader(path, 0, Files.size(path));
       }
     }
 
+    protected Segment(Path path, long start, long end) throws IOException {
+      super(path);
+      this.bufferedReader = newReader(path, start, end);
+    }
+
     @Override
     public void readNext() throws IOException, ParseException {
         readNextRecord(bufferedReader);
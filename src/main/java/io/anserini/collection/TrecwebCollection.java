@@ -21,6 +21,7 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.text.ParseException;
 import java.util.List;
@@ -34,7 +35,22 @@ public class TrecwebCollection extends DocumentCollection<TrecwebCollection.Docu
 
   @Override
   public FileSegment<Document> createFileSegment(Path p) throws IOException {
-    return new Segment<>(p);
+    return new Segment<>(p, getReadAheadChunks());
+  }
+
+  @Override
+  public FileSegment<Document> createFileSegment(Path p, long start, long end) throws IOException {
+    return new Segment<>(p, start, end);
+  }
+
+  @Override
+  public boolean supportsSplits() {
+    return true;
+  }
+
+  @Override
+  public byte[] getRecordDelimiter(Path p) {
+    return FileSegment.isCompressed(p) ? null : Document.DOC.getBytes(StandardCharsets.UTF_8);
   }
 
   /**
@@ -44,8 +60,12 @@ public class TrecwebCollection extends DocumentCollection<TrecwebCollection.Docu
    */
   public static class Segment<T extends Document> extends TrecCollection.Segment<T> {
 
-    protected Segment(Path path) throws IOException {
-      super(path);
+    protected Segment(Path path, int readAheadChunks) throws IOException {
+      super(path, readAheadChunks);
+    }
+
+    protected Segment(Path path, long start, long end) throws IOException {
+      super(path, start, end);
     }
 
     @Override
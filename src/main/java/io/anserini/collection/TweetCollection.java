@@ -16,36 +16,25 @@
 
 package io.anserini.collection;
 
-import com.fasterxml.jackson.annotation.JsonCreator;
-import com.fasterxml.jackson.annotation.JsonGetter;
-import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.annotation.JsonSetter;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
-import io.anserini.util.JsonParser;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.List;
 import java.util.Locale;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.OptionalDouble;
 import java.util.OptionalLong;
-import java.util.zip.GZIPInputStream;
 
 /**
  * Class representing an instance of a Twitter collection.
@@ -53,130 +42,278 @@ import java.util.zip.GZIPInputStream;
 public class TweetCollection extends DocumentCollection<TweetCollection.Document> {
 
   private static final Logger LOG = LogManager.getLogger(TweetCollection.class);
+  private static final JsonFactory FACTORY = new JsonFactory();
 
   @Override
   public FileSegment<TweetCollection.Document> createFileSegment(Path p) throws IOException {
     return new Segment(p);
   }
 
+  /**
+   * A file of tweets, one JSON status per line, optionally compressed. Only the fields of a status that
+   * make up a {@link Document} are extracted, straight from the tokens of the line; everything else
+   * (including most of the user and of the retweeted status) is skipped without being decoded.
+   */
   public class Segment extends FileSegment<TweetCollection.Document> {
 
     private static final String DATE_FORMAT = "E MMM dd HH:mm:ss ZZZZZ yyyy"; // "Fri Mar 29 11:03:41 +0000 2013"
 
+    // A segment is read by a single thread.
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.ENGLISH);
+
     protected Segment(Path path) throws IOException {
       super(path);
-      this.bufferedReader = null;
-      String fileName = path.toString();
-      if (fileName.endsWith(".gz")) { //.gz
-        InputStream stream = new GZIPInputStream(
-                Files.newInputStream(path, StandardOpenOption.READ), BUFFER_SIZE);
-        bufferedReader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
-      } else { // plain text file
-        bufferedReader = new BufferedReader(new FileReader(fileName));
-      }
+      this.bufferedReader = new BufferedReader(
+          new InputStreamReader(newInputStream(path, getReadAheadChunks()), StandardCharsets.UTF_8), BUFFER_SIZE);
     }
 
     @Override
     public void readNext() throws IOException, NoSuchElementException, ParseException {
       String nextRecord = bufferedReader.readLine();
       if (nextRecord == null) {
+        atEOF = true;
+        bufferedReader.close();
         throw new NoSuchElementException();
       }
       parseJson(nextRecord);
     }
 
     private void parseJson(String json) throws ParseException {
-      ObjectMapper mapper = new ObjectMapper();
-      Document.TweetObject tweetObj = null;
-      try {
-        tweetObj = mapper
-                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES) // Ignore unrecognized properties
-                .registerModule(new Jdk8Module()) // Deserialize Java 8 Optional: http://www.baeldung.com/jackson-optional
-                .readValue(json, Document.TweetObject.class);
-      } catch (IOException e) {
+      TweetCollection.Document tweet = new TweetCollection.Document();
+      tweet.inReplyToStatusId = OptionalLong.empty();
+      tweet.inReplyToUserId = OptionalLong.empty();
+      tweet.retweetStatusId = OptionalLong.empty();
+      tweet.retweetUserId = OptionalLong.empty();
+      tweet.retweetCount = OptionalLong.empty();
+      tweet.latitude = OptionalDouble.empty();
+      tweet.longitude = OptionalDouble.empty();
+      tweet.lang = Optional.empty();
+      tweet.name = Optional.empty();
+      tweet.profileImageUrl = Optional.empty();
+
+      // Required fields, as their absence makes the line unusable.
+      boolean hasCreatedAt = false;
+      boolean hasId = false;
+      boolean hasText = false;
+      boolean hasUser = false;
+      boolean deleted = false;
+      boolean retweet = false;
+      OptionalLong retweetCount = OptionalLong.empty();
+
+      try (JsonParser parser = FACTORY.createParser(json)) {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+          throw new ParseException("Not a JSON object", 0);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String name = parser.getCurrentName();
+          JsonToken token = parser.nextToken();
+          switch (name) {
+            case "delete":
+              deleted = token != JsonToken.VALUE_NULL;
+              parser.skipChildren();
+              break;
+            case "created_at":
+              hasCreatedAt = true;
+              tweet.createdAt = readString(parser, token);
+              break;
+            case "id_str":
+              hasId = true;
+              tweet.id = readString(parser, token);
+              break;
+            case "text":
+              hasText = true;
+              tweet.text = readString(parser, token);
+              break;
+            case "user":
+              hasUser = readUser(parser, token, tweet);
+              break;
+            case "retweet_count":
+              // retweet_count might say "100+"
+              if (token == JsonToken.VALUE_STRING) {
+                retweetCount = OptionalLong.of(Long.parseLong(parser.getText().replace("+", "")));
+              } else {
+                retweetCount = readLong(parser, token);
+              }
+              break;
+            case "in_reply_to_status_id":
+              tweet.inReplyToStatusId = readLong(parser, token);
+              break;
+            case "in_reply_to_user_id":
+              tweet.inReplyToUserId = readLong(parser, token);
+              break;
+            case "retweeted_status":
+              retweet = token == JsonToken.START_OBJECT;
+              readRetweetedStatus(parser, token, tweet);
+              break;
+            case "lang":
+              tweet.lang = Optional.ofNullable(readString(parser, token));
+              break;
+            case "coordinates":
+              readCoordinates(parser, token, tweet);
+              break;
+            default:
+              parser.skipChildren();
+          }
+        }
+      } catch (IOException | NumberFormatException e) {
         throw new ParseException("IOException in parseJson", 0);
       }
 
-      if (JsonParser.isFieldAvailable(tweetObj.getDelete())) {
+      if (!hasCreatedAt || !hasId || !hasText || !hasUser) {
+        throw new ParseException("Missing required fields", 0);
+      }
+      if (deleted) {
         throw new ParseException("Ignore deleted tweets", 0);
       }
-
-      bufferedRecord = new TweetCollection.Document();
-      bufferedRecord.id = tweetObj.getIdStr();
-      bufferedRecord.idLong = Long.parseLong(bufferedRecord.id);
-      bufferedRecord.text = tweetObj.getText();
-      bufferedRecord.createdAt = tweetObj.getCreatedAt();
+      if (retweet) {
+        tweet.retweetCount = retweetCount;
+      }
+      tweet.idLong = Long.parseLong(tweet.id);
 
       try {
-        bufferedRecord.timestampMs = OptionalLong.of((new SimpleDateFormat(DATE_FORMAT, Locale.ENGLISH)).parse(bufferedRecord.createdAt).getTime());
-        bufferedRecord.epoch = bufferedRecord.timestampMs.isPresent() ? OptionalLong.of(bufferedRecord.timestampMs.getAsLong() / 1000) : OptionalLong.empty();
+        if (tweet.createdAt == null) {
+          throw new ParseException("Missing created_at", 0);
+        }
+        tweet.timestampMs = OptionalLong.of(dateFormat.parse(tweet.createdAt).getTime());
+        tweet.epoch = OptionalLong.of(tweet.timestampMs.getAsLong() / 1000);
       } catch (ParseException e) {
-        bufferedRecord.timestampMs = OptionalLong.of(-1L);
-        bufferedRecord.epoch = OptionalLong.of(-1L);
+        tweet.timestampMs = OptionalLong.of(-1L);
+        tweet.epoch = OptionalLong.of(-1L);
         throw e;
       }
 
-      if (JsonParser.isFieldAvailable(tweetObj.getInReplyToStatusId())) {
-        bufferedRecord.inReplyToStatusId = tweetObj.getInReplyToStatusId();
-      } else {
-        bufferedRecord.inReplyToStatusId = OptionalLong.empty();
-      }
+      tweet.jsonString = json;
+      bufferedRecord = tweet;
+    }
 
-      if (JsonParser.isFieldAvailable(tweetObj.getInReplyToUserId())) {
-        bufferedRecord.inReplyToUserId = tweetObj.getInReplyToUserId();
-      } else {
-        bufferedRecord.inReplyToUserId = OptionalLong.empty();
+    // Reads the author of the status; returns whether it has all the required fields.
+    private boolean readUser(JsonParser parser, JsonToken token, TweetCollection.Document tweet) throws IOException {
+      if (token != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        return false;
+      }
+      boolean hasScreenName = false;
+      boolean hasFollowers = false;
+      boolean hasFriends = false;
+      boolean hasStatuses = false;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        switch (name) {
+          case "screen_name":
+            hasScreenName = true;
+            tweet.screenName = readString(parser, value);
+            break;
+          case "followers_count":
+            hasFollowers = true;
+            tweet.followersCount = readInt(parser, value);
+            break;
+          case "friends_count":
+            hasFriends = true;
+            tweet.friendsCount = readInt(parser, value);
+            break;
+          case "statuses_count":
+            hasStatuses = true;
+            tweet.statusesCount = readInt(parser, value);
+            break;
+          case "name":
+            tweet.name = Optional.ofNullable(readString(parser, value));
+            break;
+          case "profile_image_url":
+            tweet.profileImageUrl = Optional.ofNullable(readString(parser, value));
+            break;
+          default:
+            parser.skipChildren();
+        }
       }
+      return hasScreenName && hasFollowers && hasFriends && hasStatuses;
+    }
 
-      if (JsonParser.isFieldAvailable(tweetObj.getRetweetedStatus())) {
-        bufferedRecord.retweetStatusId = tweetObj.getRetweetedStatus().get().getId();
-        if (JsonParser.isFieldAvailable(tweetObj.getRetweetedStatus().get().getUser())) {
-          bufferedRecord.retweetUserId = tweetObj.getRetweetedStatus().get().getUser().get().getId();
+    // Reads the ids of the retweeted status and of its author, skipping the rest of it.
+    private void readRetweetedStatus(JsonParser parser, JsonToken token, TweetCollection.Document tweet)
+        throws IOException {
+      if (token != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        return;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("id".equals(name)) {
+          tweet.retweetStatusId = readLong(parser, value);
+        } else if ("user".equals(name) && value == JsonToken.START_OBJECT) {
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken fieldValue = parser.nextToken();
+            if ("id".equals(field)) {
+              tweet.retweetUserId = readLong(parser, fieldValue);
+            } else {
+              parser.skipChildren();
+            }
+          }
         } else {
-          bufferedRecord.retweetUserId = OptionalLong.empty();
+          parser.skipChildren();
         }
-        bufferedRecord.retweetCount = tweetObj.getRetweetCount();
-      } else {
-        bufferedRecord.retweetStatusId = OptionalLong.empty();
-        bufferedRecord.retweetUserId = OptionalLong.empty();
-        bufferedRecord.retweetCount = OptionalLong.empty();
       }
+    }
 
-      if (JsonParser.isFieldAvailable(tweetObj.getCoordinates()) &&
-              JsonParser.isFieldAvailable(tweetObj.getCoordinates().get().getCoordinates()) &&
-              tweetObj.getCoordinates().get().getCoordinates().get().size() >= 2) {
-        bufferedRecord.longitude = tweetObj.getCoordinates().get().getCoordinates().get().get(0);
-        bufferedRecord.latitude = tweetObj.getCoordinates().get().getCoordinates().get().get(1);
-      } else {
-        bufferedRecord.latitude = OptionalDouble.empty();
-        bufferedRecord.longitude = OptionalDouble.empty();
+    // Reads the [longitude, latitude] pair of a GeoJSON point.
+    private void readCoordinates(JsonParser parser, JsonToken token, TweetCollection.Document tweet)
+        throws IOException {
+      if (token != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        return;
       }
-
-      if (JsonParser.isFieldAvailable(tweetObj.getLang())) {
-        bufferedRecord.lang = tweetObj.getLang();
-      } else {
-        bufferedRecord.lang = Optional.empty();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("coordinates".equals(name) && value == JsonToken.START_ARRAY) {
+          OptionalDouble[] pair = new OptionalDouble[2];
+          int n = 0;
+          JsonToken element;
+          while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (n < 2) {
+              pair[n] = element.isNumeric() ? OptionalDouble.of(parser.getDoubleValue()) : OptionalDouble.empty();
+            }
+            parser.skipChildren();
+            n++;
+          }
+          if (n >= 2) {
+            tweet.longitude = pair[0];
+            tweet.latitude = pair[1];
+          }
+        } else {
+          parser.skipChildren();
+        }
       }
+    }
 
-      bufferedRecord.followersCount = tweetObj.getUser().getFollowersCount();
-      bufferedRecord.friendsCount = tweetObj.getUser().getFriendsCount();
-      bufferedRecord.statusesCount = tweetObj.getUser().getStatusesCount();
-      bufferedRecord.screenName = tweetObj.getUser().getScreenName();
-
-      if (JsonParser.isFieldAvailable(tweetObj.getUser().getName())) {
-        bufferedRecord.name = tweetObj.getUser().getName();
-      } else {
-        bufferedRecord.name = Optional.empty();
+    private String readString(JsonParser parser, JsonToken token) throws IOException {
+      if (token == JsonToken.VALUE_NULL) {
+        return null;
+      }
+      if (!token.isScalarValue()) {
+        throw new JsonParseException(parser, "Expected a string, found " + token);
       }
+      return parser.getText();
+    }
 
-      if (JsonParser.isFieldAvailable(tweetObj.getUser().getProfileImageUrl())) {
-        bufferedRecord.profileImageUrl = tweetObj.getUser().getProfileImageUrl();
-      } else {
-        bufferedRecord.profileImageUrl = Optional.empty();
+    private int readInt(JsonParser parser, JsonToken token) throws IOException {
+      if (!token.isScalarValue()) {
+        throw new JsonParseException(parser, "Expected a number, found " + token);
       }
+      return token == JsonToken.VALUE_STRING ? Integer.parseInt(parser.getText().trim()) : parser.getValueAsInt();
+    }
 
-      bufferedRecord.jsonString = json;
-      bufferedRecord.jsonObject = tweetObj;
+    private OptionalLong readLong(JsonParser parser, JsonToken token) throws IOException {
+      if (token == JsonToken.VALUE_NULL) {
+        return OptionalLong.empty();
+      }
+      if (!token.isScalarValue()) {
+        throw new JsonParseException(parser, "Expected a number, found " + token);
+      }
+      return OptionalLong.of(token == JsonToken.VALUE_STRING ?
+          Long.parseLong(parser.getText().trim()) : parser.getValueAsLong());
     }
   }
 
@@ -193,7 +330,6 @@ public class TweetCollection extends DocumentCollection<TweetCollection.Document
     protected String id;
     protected long idLong;
     protected String text;
-    protected TweetObject jsonObject;
     protected String jsonString;
 
     // Optional fields
@@ -269,10 +405,6 @@ public class TweetCollection extends DocumentCollection<TweetCollection.Document
       return text;
     }
 
-    public TweetObject getJsonObject() {
-      return jsonObject;
-    }
-
     public String getJsonString() {
       return jsonString;
     }
@@ -336,210 +468,5 @@ public class TweetCollection extends DocumentCollection<TweetCollection.Document
     public OptionalLong getRetweetCount() {
       return retweetCount;
     }
-
-    /**
-     * Used internally by Jackson for JSON parsing.
-     */
-    public static class TweetObject {
-
-      // Required fields
-      protected String createdAt;
-      protected String idStr;
-      protected String text;
-      protected TweetObject.User user;
-
-      // Optional fields
-      protected OptionalLong retweetCount;
-      protected OptionalLong inReplyToStatusId;
-      protected OptionalLong inReplyToUserId;
-      protected Optional<TweetObject.RetweetedStatus> retweetedStatus;
-      protected Optional<String> lang;
-      protected Optional<TweetObject.Delete> delete;
-      protected Optional<TweetObject.Coordinates> coordinates;
-
-      // Must make inner classes static for deserialization in Jackson
-      // http://www.cowtowncoder.com/blog/archives/2010/08/entry_411.html
-
-      /**
-       * Used internally by Jackson for JSON parsing.
-       */
-      public static class Delete {
-        protected Optional<String> timestampMs;
-
-        @JsonGetter("timestamp_ms")
-        public Optional<String> getTimestampMs() {
-          return timestampMs;
-        }
-      }
-
-      /**
-       * Used internally by Jackson for JSON parsing.
-       */
-      public static class Coordinates {
-        protected Optional<List<OptionalDouble>> coordinates;
-
-        @JsonGetter("coordinates")
-        public Optional<List<OptionalDouble>> getCoordinates() { return coordinates; }
-      }
-
-      /**
-       * Used internally by Jackson for JSON parsing.
-       */
-      public static class RetweetedStatus {
-        protected OptionalLong id;
-        protected Optional<TweetObject.User> user;
-
-        @JsonGetter("id")
-        public OptionalLong getId() {
-          return id;
-        }
-
-        @JsonGetter("user")
-        public Optional<TweetObject.User> getUser() {
-          return user;
-        }
-      }
-
-      /**
-       * Used internally by Jackson for JSON parsing.
-       */
-      public static class User {
-        // Required fields
-        protected String screenName;
-        protected int followersCount;
-        protected int friendsCount;
-        protected int statusesCount;
-
-        // Opional fields
-        protected Optional<String> name;
-        protected Optional<String> profileImageUrl;
-        protected OptionalLong id;
-
-        @JsonCreator
-        public User(
-                @JsonProperty(value = "followers_count", required = true) int followersCount,
-                @JsonProperty(value = "friends_count", required = true) int friendsCount,
-                @JsonProperty(value = "statuses_count", required = true) int statusesCount,
-                @JsonProperty(value = "screen_name", required = true) String screenName) {
-          this.followersCount = followersCount;
-          this.friendsCount = friendsCount;
-          this.statusesCount = statusesCount;
-          this.screenName = screenName;
-        }
-
-        @JsonGetter("screen_name")
-        public String getScreenName() {
-          return screenName;
-        }
-
-        @JsonGetter("followers_count")
-        public int getFollowersCount() {
-          return followersCount;
-        }
-
-        @JsonGetter("friends_count")
-        public int getFriendsCount() {
-          return friendsCount;
-        }
-
-        @JsonGetter("statuses_count")
-        public int getStatusesCount() {
-          return statusesCount;
-        }
-
-        @JsonGetter("name")
-        public Optional<String> getName() {
-          return name;
-        }
-
-        @JsonGetter("profile_image_url")
-        public Optional<String> getProfileImageUrl() {
-          return profileImageUrl;
-        }
-
-        @JsonGetter("id")
-        public OptionalLong getId() {
-          return id;
-        }
-      }
-
-      @JsonCreator
-      public TweetObject(
-              @JsonProperty(value = "created_at", required = true) String createdAt,
-              @JsonProperty(value = "id_str", required = true) String idStr,
-              @JsonProperty(value = "text", required = true) String text,
-              @JsonProperty(value = "user", required = true) TweetObject.User user) {
-        this.createdAt = createdAt;
-        this.idStr = idStr;
-        this.text = text;
-        this.user = user;
-      }
-
-      @JsonGetter("id_str")
-      public String getIdStr() {
-        return idStr;
-      }
-
-      @JsonGetter("text")
-      public String getText() {
-        return text;
-      }
-
-      @JsonGetter("user")
-      public TweetObject.User getUser() {
-        return user;
-      }
-
-      @JsonGetter("created_at")
-      public String getCreatedAt() {
-        return createdAt;
-      }
-
-      @JsonGetter("retweet_count")
-      public OptionalLong getRetweetCount() {
-        return retweetCount;
-      }
-
-      @JsonSetter("retweet_count")
-      public void setRetweetCountInternal(JsonNode retweetCountInternal) {
-        if (retweetCountInternal != null) {
-          if (retweetCountInternal.isTextual()) {
-            // retweet_count might say "100+"
-            // TODO: This is ugly, come back and fix later.
-            retweetCount = OptionalLong.of(Long.parseLong(retweetCountInternal.asText().replace("+", "")));
-          } else if (retweetCountInternal.isNumber()) {
-            retweetCount = OptionalLong.of(retweetCountInternal.asLong());
-          }
-        }
-      }
-
-      @JsonGetter("in_reply_to_status_id")
-      public OptionalLong getInReplyToStatusId() {
-        return inReplyToStatusId;
-      }
-
-      @JsonGetter("in_reply_to_user_id")
-      public OptionalLong getInReplyToUserId() {
-        return inReplyToUserId;
-      }
-
-      @JsonGetter("retweeted_status")
-      public Optional<TweetObject.RetweetedStatus> getRetweetedStatus() {
-        return retweetedStatus;
-      }
-
-      @JsonGetter("lang")
-      public Optional<String> getLang() {
-        return lang;
-      }
-
-      @JsonGetter("delete")
-      public Optional<TweetObject.Delete> getDelete() {
-        return delete;
-      }
-
-      @JsonGetter("coordinates")
-      public Optional<TweetObject.Coordinates> getCoordinates() { return coordinates; }
-    }
   }
 }
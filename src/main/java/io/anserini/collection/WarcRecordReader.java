@@ -0,0 +1,263 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.collection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the records of a WARC file, such as those of ClueWeb09 and ClueWeb12. Headers are scanned
+ * in a large buffer rather than a byte at a time, and the body of each record is read in bulk. An
+ * uncompressed file is memory-mapped, and the bodies of its records are returned as slices of the
+ * mapping, without being copied.
+ */
+public class WarcRecordReader implements Closeable {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  // null if the file is memory-mapped
+  private final InputStream in;
+  // Bytes of the input not read yet are those between the position and the limit.
+  private ByteBuffer buffer;
+
+  /**
+   * Reads the records of a stream.
+   *
+   * @param in input stream
+   */
+  public WarcRecordReader(InputStream in) {
+    this.in = in;
+    this.buffer = ByteBuffer.wrap(new byte[BUFFER_SIZE]);
+    this.buffer.limit(0);
+  }
+
+  private WarcRecordReader(ByteBuffer mapped) {
+    this.in = null;
+    this.buffer = mapped;
+  }
+
+  /**
+   * Opens a WARC file, which is decompressed if it ends with ".gz", and memory-mapped otherwise
+   * (unless it is too large to be mapped).
+   *
+   * @param path WARC file
+   * @param readAheadChunks number of chunks of a compressed file to decompress ahead of the reader
+   * @return reader of the records of the file
+   * @throws IOException if the file cannot be opened
+   */
+  public static WarcRecordReader open(Path path, int readAheadChunks) throws IOException {
+    if (path.getFileName().toString().endsWith(".gz")) {
+      return new WarcRecordReader(ReadAheadInputStream.wrap(
+          new GZIPInputStream(Files.newInputStream(path, StandardOpenOption.READ), BUFFER_SIZE), readAheadChunks));
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() <= Integer.MAX_VALUE) {
+        // The mapping stays valid after the channel is closed.
+        return new WarcRecordReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      }
+    }
+    return new WarcRecordReader(Files.newInputStream(path, StandardOpenOption.READ));
+  }
+
+  /**
+   * Reads the next record. Lines are skipped up to the one starting with {@code version}, and the
+   * header lines that follow, up to and including Content-Length, are passed to {@code headers} as
+   * trimmed key/value pairs (a line without a colon is passed as the key, with an empty value). The
+   * body is the Content-Length bytes that follow the Content-Length line.
+   *
+   * @param version WARC version, e.g. "WARC/1.0"
+   * @param headers consumer of the header lines
+   * @return body of the record, from its position to its limit
+   * @throws IOException if error encountered reading from the input
+   * @throws NoSuchElementException if there are no more records
+   */
+  public ByteBuffer next(String version, BiConsumer<String, String> headers) throws IOException {
+    byte[] mark = version.getBytes(StandardCharsets.UTF_8);
+    boolean foundMark = false;
+    while (!foundMark) {
+      int end = findLineEnd();
+      if (end < 0) {
+        throw new NoSuchElementException();
+      }
+      foundMark = startsWith(buffer.position(), end, mark);
+      buffer.position(end + 1);
+    }
+
+    int contentLength = -1;
+    boolean foundContentLength = false;
+    while (!foundContentLength) {
+      int end = findLineEnd();
+      if (end < 0) {
+        break;
+      }
+      int start = buffer.position();
+      int colon = indexOf(start, end, (byte) ':');
+      if (colon < 0) {
+        headers.accept(decode(start, end), "");
+      } else {
+        String key = decode(start, colon).trim();
+        String value = decode(colon + 1, end).trim();
+        if (key.toLowerCase(Locale.US).startsWith("content-length")) {
+          foundContentLength = true;
+          try {
+            contentLength = Integer.parseInt(value);
+          } catch (NumberFormatException e) {
+            contentLength = -1;
+          }
+        }
+        headers.accept(key, value);
+      }
+      buffer.position(end + 1);
+    }
+
+    if (contentLength < 0) {
+      throw new NoSuchElementException();
+    }
+    return readBody(contentLength);
+  }
+
+  /**
+   * Returns the bytes between the position and the limit of a body returned by {@link #next}, without
+   * copying them if they already fill an array.
+   *
+   * @param body body of a record
+   * @return bytes of the body
+   */
+  public static byte[] toArray(ByteBuffer body) {
+    if (body.hasArray() && body.arrayOffset() == 0 && body.position() == 0 &&
+        body.remaining() == body.array().length) {
+      return body.array();
+    }
+    byte[] bytes = new byte[body.remaining()];
+    body.duplicate().get(bytes);
+    return bytes;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (in != null) {
+      in.close();
+    }
+  }
+
+  private ByteBuffer readBody(int length) throws IOException {
+    if (in == null) {
+      if (buffer.remaining() < length) {
+        buffer.position(buffer.limit());
+        throw new NoSuchElementException();
+      }
+      ByteBuffer body = buffer.slice();
+      body.limit(length);
+      buffer.position(buffer.position() + length);
+      return body;
+    }
+
+    byte[] body = new byte[length];
+    int read = Math.min(buffer.remaining(), length);
+    buffer.get(body, 0, read);
+    // The rest of the body bypasses the buffer.
+    while (read < length) {
+      int n = in.read(body, read, length - read);
+      if (n < 0) {
+        throw new NoSuchElementException();
+      }
+      read += n;
+    }
+    return ByteBuffer.wrap(body);
+  }
+
+  // Returns the index of the newline ending the line at the position of the buffer, reading more of
+  // the input as needed, or -1 if the input ends first.
+  private int findLineEnd() throws IOException {
+    int from = buffer.position();
+    while (true) {
+      int limit = buffer.limit();
+      for (int i = from; i < limit; i++) {
+        if (buffer.get(i) == '\n') {
+          return i;
+        }
+      }
+      int scanned = limit - buffer.position();
+      if (!fill()) {
+        return -1;
+      }
+      from = buffer.position() + scanned;
+    }
+  }
+
+  // Moves the unread bytes to the start of the buffer (growing it if they fill it) and reads more of
+  // the input after them. Returns false if the input has ended.
+  private boolean fill() throws IOException {
+    if (in == null) {
+      return false;
+    }
+    byte[] bytes = buffer.array();
+    int unread = buffer.remaining();
+    if (unread == bytes.length) {
+      bytes = Arrays.copyOf(bytes, bytes.length * 2);
+    } else {
+      System.arraycopy(bytes, buffer.position(), bytes, 0, unread);
+    }
+    int n = in.read(bytes, unread, bytes.length - unread);
+    buffer = ByteBuffer.wrap(bytes);
+    buffer.limit(unread + Math.max(n, 0));
+    return n > 0;
+  }
+
+  private boolean startsWith(int start, int end, byte[] prefix) {
+    if (end - start < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (buffer.get(start + i) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int indexOf(int start, int end, byte b) {
+    for (int i = start; i < end; i++) {
+      if (buffer.get(i) == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private String decode(int start, int end) {
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+    }
+    byte[] bytes = new byte[end - start];
+    ByteBuffer line = buffer.duplicate();
+    line.position(start);
+    line.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
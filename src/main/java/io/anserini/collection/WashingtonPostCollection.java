@@ -17,11 +17,13 @@
 package io.anserini.collection;
 
 import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -34,15 +36,16 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.annotation.JsonGetter;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSetter;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 
 /**
  * An instance of the <a href="https://trec.nist.gov/data/wapost/">TREC Washington Post Corpus</a>.
@@ -51,6 +54,7 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
  */
 public class WashingtonPostCollection extends DocumentCollection<WashingtonPostCollection.Document> {
   private static final Logger LOG = LogManager.getLogger(WashingtonPostCollection.class);
+  private static final JsonFactory FACTORY = new JsonFactory();
 
   public WashingtonPostCollection(){
     this.allowedFileSuffix = new HashSet<>(Arrays.asList(".txt", ".jl"));
@@ -61,32 +65,78 @@ public class WashingtonPostCollection extends DocumentCollection<WashingtonPostC
     return new Segment(p);
   }
 
+  /**
+   * A file of articles, one JSON object per line. Only the fields of an article that make up a
+   * {@link Document} are extracted, straight from the tokens of the line; everything else is skipped
+   * without being decoded.
+   */
   public class Segment extends FileSegment<Document> {
     private String fileName;
 
     protected Segment(Path path) throws IOException {
       super(path);
       this.fileName = path.toString();
-      this.bufferedReader = new BufferedReader(new InputStreamReader(new FileInputStream(this.fileName), "utf-8"));
+      this.bufferedReader = new BufferedReader(
+          new InputStreamReader(newInputStream(path, getReadAheadChunks()), StandardCharsets.UTF_8), BUFFER_SIZE);
     }
 
     @Override
     public void readNext() throws IOException {
       String nextRecord = bufferedReader.readLine();
       if (nextRecord == null) {
+        atEOF = true;
+        bufferedReader.close();
         throw new NoSuchElementException();
       }
       parseRecord(nextRecord);
     }
 
     private void parseRecord(String record) {
-      ObjectMapper mapper = new ObjectMapper();
-      Document.WashingtonPostObject wapoObj = null;
-      try {
-        wapoObj = mapper
-                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES) // Ignore unrecognized properties
-                .registerModule(new Jdk8Module()) // Deserialize Java 8 Optional: http://www.baeldung.com/jackson-optional
-                .readValue(record, Document.WashingtonPostObject.class);
+      WashingtonPostCollection.Document article = new WashingtonPostCollection.Document();
+      article.articleUrl = Optional.empty();
+      article.author = Optional.empty();
+      article.title = Optional.empty();
+      article.contents = Collections.emptyList();
+      boolean hasId = false;
+      boolean hasPublishedDate = false;
+      boolean hasTitle = false;
+
+      try (JsonParser parser = FACTORY.createParser(record)) {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+          throw new JsonParseException(parser, "Expected a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String name = parser.getCurrentName();
+          JsonToken token = parser.nextToken();
+          switch (name) {
+            case "id":
+              hasId = true;
+              article.id = readText(parser, token);
+              break;
+            case "published_date":
+              hasPublishedDate = true;
+              article.publishDate = token == JsonToken.VALUE_NULL ? 0 : parser.getValueAsLong();
+              break;
+            case "title":
+              hasTitle = true;
+              article.title = Optional.ofNullable(readText(parser, token));
+              break;
+            case "article_url":
+              article.articleUrl = Optional.ofNullable(readText(parser, token));
+              break;
+            case "author":
+              article.author = Optional.ofNullable(readText(parser, token));
+              break;
+            case "contents":
+              article.contents = readContents(parser, token);
+              break;
+            default:
+              parser.skipChildren();
+          }
+        }
+        if (!hasId || !hasPublishedDate || !hasTitle) {
+          throw new JsonParseException(parser, "Missing required fields");
+        }
       } catch (IOException e) {
         // For current dataset, we can make sure all record has unique id and
         // published date. So we just simply throw an RuntimeException
@@ -94,14 +144,87 @@ public class WashingtonPostCollection extends DocumentCollection<WashingtonPostC
         throw new RuntimeException(e);
       }
 
-      bufferedRecord = new WashingtonPostCollection.Document();
-      bufferedRecord.id = wapoObj.getId();
-      bufferedRecord.publishDate = wapoObj.getPublishedDate();
-      bufferedRecord.title = wapoObj.getTitle();
-      bufferedRecord.articleUrl = wapoObj.getArticleUrl();
-      bufferedRecord.author = wapoObj.getAuthor();
-      bufferedRecord.obj = wapoObj;
-      bufferedRecord.content = record;
+      article.content = record;
+      bufferedRecord = article;
+    }
+
+    private List<Document.WashingtonPostObject.Content> readContents(JsonParser parser, JsonToken token)
+        throws IOException {
+      if (token != JsonToken.START_ARRAY) {
+        parser.skipChildren();
+        return Collections.emptyList();
+      }
+      List<Document.WashingtonPostObject.Content> contents = new ArrayList<>();
+      JsonToken element;
+      while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+        if (element != JsonToken.START_OBJECT) {
+          parser.skipChildren();
+          continue;
+        }
+        Document.WashingtonPostObject.Content content = new Document.WashingtonPostObject.Content();
+        content.setType(Optional.empty());
+        content.setContent(Optional.empty());
+        content.setFullCaption(Optional.empty());
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String name = parser.getCurrentName();
+          JsonToken value = parser.nextToken();
+          if ("type".equals(name)) {
+            content.setType(Optional.ofNullable(readText(parser, value)));
+          } else if ("content".equals(name)) {
+            content.setContent(Optional.ofNullable(readContent(parser, value)));
+          } else if ("fullcaption".equals(name)) {
+            content.setFullCaption(Optional.ofNullable(readText(parser, value)));
+          } else {
+            parser.skipChildren();
+          }
+        }
+        contents.add(content);
+      }
+      return contents;
+    }
+
+    // The content of an element is a string, a list of strings (joined, each followed by a space), or an
+    // object whose "text" is taken (followed by a space).
+    private String readContent(JsonParser parser, JsonToken token) throws IOException {
+      if (token == JsonToken.VALUE_STRING) {
+        return parser.getText();
+      }
+      StringBuilder builder = new StringBuilder();
+      if (token == JsonToken.START_ARRAY) {
+        JsonToken element;
+        while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+          String text = readText(parser, element);
+          if (text != null) {
+            builder.append(text).append(" ");
+          }
+        }
+        return builder.toString();
+      } else if (token == JsonToken.START_OBJECT) {
+        String text = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String name = parser.getCurrentName();
+          JsonToken value = parser.nextToken();
+          if ("text".equals(name)) {
+            text = readText(parser, value);
+          } else {
+            parser.skipChildren();
+          }
+        }
+        return text == null ? null : builder.append(text).append(" ").toString();
+      }
+      return null;
+    }
+
+    // Returns the text of a scalar, or null for null and for objects and arrays (which are skipped).
+    private String readText(JsonParser parser, JsonToken token) throws IOException {
+      if (token == JsonToken.VALUE_NULL) {
+        return null;
+      }
+      if (!token.isScalarValue()) {
+        parser.skipChildren();
+        return null;
+      }
+      return parser.getText();
     }
   }
 
@@ -118,7 +241,7 @@ public class WashingtonPostCollection extends DocumentCollection<WashingtonPostC
     protected long publishDate;
     protected Optional<String> title;
     protected String content;
-    protected WashingtonPostObject obj;
+    protected List<WashingtonPostObject.Content> contents;
 
     @Override
     public String id() {
@@ -155,12 +278,18 @@ public class WashingtonPostCollection extends DocumentCollection<WashingtonPostC
       return content;
     }
   
-    public WashingtonPostObject getObj() {
-      return obj;
+    /**
+     * Returns the elements of the article (paragraphs, kicker, images, etc.), in order.
+     *
+     * @return elements of the article
+     */
+    public List<WashingtonPostObject.Content> getContents() {
+      return contents;
     }
   
     /**
-     * Used internally by Jackson for JSON parsing.
+     * Used internally by Jackson for JSON parsing (of background linking topics; articles are parsed
+     * without it).
      */
     public static class WashingtonPostObject {
       // Required fields
@@ -0,0 +1,424 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.rest.RestStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends documents to Solr or Elasticsearch in bulk requests, on threads of its own, so that the
+ * threads producing the documents do not wait for network round trips. Documents are batched up to
+ * a number of documents or of bytes, whichever is reached first, and up to a fixed number of batches
+ * are in flight at a time; {@link #add} blocks while that many are, so that memory stays bounded.
+ * Documents the server rejects because it is overloaded, and requests that fail as a whole, are
+ * sent again after an exponential backoff; documents that still fail are counted and logged.
+ *
+ * @param <T> type of the documents sent
+ */
+public final class BulkSender<T> implements Closeable {
+  private static final Logger LOG = LogManager.getLogger(BulkSender.class);
+
+  /**
+   * Sends a batch of documents in one request.
+   *
+   * @param <T> type of the documents sent
+   */
+  @FunctionalInterface
+  public interface Transport<T> {
+    /**
+     * Sends a batch of documents.
+     *
+     * @param batch documents to send
+     * @param retry documents of the batch that the server could not take for now, to be sent again
+     * @return number of documents of the batch that the server rejected for good
+     * @throws Exception if the request failed as a whole, in which case the batch is sent again
+     */
+    int send(List<T> batch, List<T> retry) throws Exception;
+  }
+
+  private final Transport<T> transport;
+  private final int maxDocuments;
+  private final long maxBytes;
+  private final int maxRetries;
+  private final long backoffMillis;
+  private final IndexingMetrics.Histogram latency;
+  // One permit per batch that may be in flight.
+  private final Semaphore permits;
+  private final ExecutorService executor;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong sentDocuments = new AtomicLong();
+  private final AtomicLong sentBytes = new AtomicLong();
+  private final AtomicLong retriedDocuments = new AtomicLong();
+  private final AtomicLong failedDocuments = new AtomicLong();
+
+  private List<T> batch = new ArrayList<>();
+  private long batchBytes = 0;
+  private boolean closed = false;
+
+  /**
+   * Creates a sender.
+   *
+   * @param transport sends a batch of documents
+   * @param maxDocuments maximum number of documents in a batch
+   * @param maxBytes maximum size of a batch, in bytes (a larger document is sent on its own)
+   * @param maxInFlight maximum number of batches being sent at a time
+   * @param maxRetries number of times a batch, or the documents of it that are rejected, are sent again
+   * @param backoffMillis time to wait before the first retry, doubled for each one after it
+   * @param latency histogram recording the time taken by each request, or null
+   */
+  public BulkSender(Transport<T> transport, int maxDocuments, long maxBytes, int maxInFlight, int maxRetries,
+                    long backoffMillis, IndexingMetrics.Histogram latency) {
+    if (maxDocuments < 1 || maxBytes < 1 || maxInFlight < 1) {
+      throw new IllegalArgumentException("Batch sizes and number of requests in flight must be positive");
+    }
+    if (maxRetries < 0 || backoffMillis < 0) {
+      throw new IllegalArgumentException("Number of retries and backoff must be non-negative");
+    }
+    this.transport = transport;
+    this.maxDocuments = maxDocuments;
+    this.maxBytes = maxBytes;
+    this.maxRetries = maxRetries;
+    this.backoffMillis = backoffMillis;
+    this.latency = latency;
+    this.permits = new Semaphore(maxInFlight);
+    AtomicInteger threads = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+      Thread thread = new Thread(runnable, "bulk-sender-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Adds a document to the current batch, which is sent once full. Blocks while the maximum number of
+   * batches are in flight. Safe to call from several threads.
+   *
+   * @param document document to send
+   * @param bytes size of the document, in bytes (e.g., of its JSON)
+   * @throws InterruptedException if interrupted while waiting for a batch to be sent
+   */
+  public void add(T document, long bytes) throws InterruptedException {
+    List<T> full = null;
+    long fullBytes = 0;
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException("Sender is closed");
+      }
+      if (!batch.isEmpty() && batchBytes + bytes > maxBytes) {
+        full = batch;
+        fullBytes = batchBytes;
+        batch = new ArrayList<>();
+        batchBytes = 0;
+      }
+      batch.add(document);
+      batchBytes += bytes;
+      if (full == null && (batch.size() >= maxDocuments || batchBytes >= maxBytes)) {
+        full = batch;
+        fullBytes = batchBytes;
+        batch = new ArrayList<>();
+        batchBytes = 0;
+      }
+    }
+    if (full != null) {
+      submit(full, fullBytes);
+    }
+  }
+
+  /**
+   * Sends the current batch, even if it is not full.
+   *
+   * @throws InterruptedException if interrupted while waiting for a batch to be sent
+   */
+  public void flush() throws InterruptedException {
+    List<T> full;
+    long fullBytes;
+    synchronized (this) {
+      if (batch.isEmpty()) {
+        return;
+      }
+      full = batch;
+      fullBytes = batchBytes;
+      batch = new ArrayList<>();
+      batchBytes = 0;
+    }
+    submit(full, fullBytes);
+  }
+
+  /**
+   * Sends the current batch, and waits for all batches to be sent. Documents can no longer be added.
+   *
+   * @throws IOException if interrupted while waiting
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+      synchronized (this) {
+        closed = true;
+      }
+      executor.shutdown();
+      while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        LOG.info(String.format("Waiting for %d bulk requests in flight", inFlight.get()));
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  /**
+   * Returns the number of batches being sent, or waiting to be sent again.
+   *
+   * @return number of batches in flight
+   */
+  public int inFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * Returns the number of requests sent so far, including retries.
+   *
+   * @return number of requests
+   */
+  public long requests() {
+    return requests.get();
+  }
+
+  /**
+   * Returns the number of documents the server has accepted so far.
+   *
+   * @return number of documents sent
+   */
+  public long sentDocuments() {
+    return sentDocuments.get();
+  }
+
+  /**
+   * Returns the size of the batches sent so far, in bytes, not counting retries.
+   *
+   * @return number of bytes sent
+   */
+  public long sentBytes() {
+    return sentBytes.get();
+  }
+
+  /**
+   * Returns the number of times a document was sent again so far.
+   *
+   * @return number of documents retried
+   */
+  public long retriedDocuments() {
+    return retriedDocuments.get();
+  }
+
+  /**
+   * Returns the number of documents that the server rejected for good, or that could not be sent
+   * within the number of retries.
+   *
+   * @return number of documents that failed
+   */
+  public long failedDocuments() {
+    return failedDocuments.get();
+  }
+
+  private void submit(List<T> documents, long bytes) throws InterruptedException {
+    permits.acquire();
+    inFlight.incrementAndGet();
+    try {
+      executor.execute(() -> {
+        try {
+          send(documents);
+          sentBytes.addAndGet(bytes);
+        } catch (InterruptedException e) {
+          failedDocuments.addAndGet(documents.size());
+          Thread.currentThread().interrupt();
+        } finally {
+          inFlight.decrementAndGet();
+          permits.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      inFlight.decrementAndGet();
+      permits.release();
+      throw e;
+    }
+  }
+
+  private void send(List<T> documents) throws InterruptedException {
+    List<T> pending = documents;
+    for (int attempt = 0; ; attempt++) {
+      List<T> retry = new ArrayList<>();
+      Exception error = null;
+      int failed = 0;
+      long mark = System.nanoTime();
+      try {
+        failed = transport.send(pending, retry);
+      } catch (Exception e) {
+        error = e;
+        retry = pending;
+      }
+      requests.incrementAndGet();
+      if (latency != null) {
+        latency.record(System.nanoTime() - mark);
+      }
+      failedDocuments.addAndGet(failed);
+      sentDocuments.addAndGet(pending.size() - failed - retry.size());
+
+      if (retry.isEmpty()) {
+        return;
+      }
+      if (attempt == maxRetries) {
+        failedDocuments.addAndGet(retry.size());
+        if (error != null) {
+          LOG.error(String.format("Giving up sending %d documents after %d retries", retry.size(), maxRetries), error);
+        } else {
+          LOG.error(String.format("Giving up sending %d rejected documents after %d retries", retry.size(), maxRetries));
+        }
+        return;
+      }
+      if (error != null) {
+        LOG.warn(String.format("Error sending %d documents, retrying: %s", retry.size(), error));
+      }
+      retriedDocuments.addAndGet(retry.size());
+      Thread.sleep(backoffMillis << Math.min(attempt, 20));
+      pending = retry;
+    }
+  }
+
+  /**
+   * Sends documents to Elasticsearch. Documents rejected because the cluster is overloaded (i.e., with
+   * status 429 or 503) are sent again; other rejected documents (e.g., that do not match the mapping of
+   * the index) are not.
+   */
+  public static final class ElasticsearchTransport implements Transport<IndexRequest> {
+    private final ObjectPool<RestHighLevelClient> pool;
+
+    /**
+     * Creates a transport sending requests with the clients of a pool.
+     *
+     * @param pool pool of clients
+     */
+    public ElasticsearchTransport(ObjectPool<RestHighLevelClient> pool) {
+      this.pool = pool;
+    }
+
+    @Override
+    public int send(List<IndexRequest> batch, List<IndexRequest> retry) throws Exception {
+      BulkRequest request = new BulkRequest();
+      for (IndexRequest document : batch) {
+        request.add(document);
+      }
+
+      BulkResponse response;
+      RestHighLevelClient client = pool.borrowObject();
+      try {
+        response = client.bulk(request, RequestOptions.DEFAULT);
+      } finally {
+        pool.returnObject(client);
+      }
+      if (!response.hasFailures()) {
+        return 0;
+      }
+
+      int failed = 0;
+      for (BulkItemResponse item : response.getItems()) {
+        if (!item.isFailed()) {
+          continue;
+        }
+        RestStatus status = item.status();
+        if (status == RestStatus.TOO_MANY_REQUESTS || status == RestStatus.SERVICE_UNAVAILABLE) {
+          retry.add(batch.get(item.getItemId()));
+        } else {
+          if (failed == 0) {
+            LOG.error("Elasticsearch rejected document " + item.getId() + ": " + item.getFailureMessage());
+          }
+          failed++;
+        }
+      }
+      if (failed > 1) {
+        LOG.error(String.format("Elasticsearch rejected %d documents of a batch of %d", failed, batch.size()));
+      }
+      return failed;
+    }
+  }
+
+  /**
+   * Sends documents to Solr. Solr accepts or rejects a batch as a whole; a batch rejected as invalid
+   * (i.e., with a 4xx status other than 429) is not sent again.
+   */
+  public static final class SolrTransport implements Transport<SolrInputDocument> {
+    private final ObjectPool<SolrClient> pool;
+    private final String collection;
+    private final int commitWithinMs;
+
+    /**
+     * Creates a transport sending requests with the clients of a pool.
+     *
+     * @param pool pool of clients
+     * @param collection name of the collection to add documents to
+     * @param commitWithinMs time within which added documents are committed, in milliseconds
+     */
+    public SolrTransport(ObjectPool<SolrClient> pool, String collection, int commitWithinMs) {
+      this.pool = pool;
+      this.collection = collection;
+      this.commitWithinMs = commitWithinMs;
+    }
+
+    @Override
+    public int send(List<SolrInputDocument> batch, List<SolrInputDocument> retry) throws Exception {
+      SolrClient client = pool.borrowObject();
+      try {
+        client.add(collection, batch, commitWithinMs);
+        return 0;
+      } catch (SolrException e) {
+        if (e.code() >= 400 && e.code() < 500 && e.code() != 429) {
+          LOG.error(String.format("Solr rejected a batch of %d documents", batch.size()), e);
+          return batch.size();
+        }
+        throw e;
+      } finally {
+        pool.returnObject(client);
+      }
+    }
+  }
+}
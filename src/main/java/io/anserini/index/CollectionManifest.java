@@ -0,0 +1,167 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The files of a collection that are in an index, with the size, modification time and content hash
+ * each file had when it was indexed. {@link IndexCollection} keeps it in the index directory when
+ * indexing incrementally, and compares it with the collection to find the files that were added,
+ * changed or removed since the last run.
+ */
+public final class CollectionManifest {
+  /**
+   * Name of the manifest file in the index directory.
+   */
+  public static final String FILE_NAME = "anserini.manifest";
+
+  /**
+   * A file of the collection, identified by its path relative to the collection root.
+   */
+  public static final class Entry {
+    private final String segment;
+    private final long size;
+    private final long lastModified;
+    private final String hash;
+
+    public Entry(String segment, long size, long lastModified, String hash) {
+      this.segment = segment;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.hash = hash;
+    }
+
+    public String getSegment() {
+      return segment;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public String getHash() {
+      return hash;
+    }
+
+    /**
+     * Returns whether the file has the same contents as when this entry was recorded.
+     *
+     * @param other entry describing the file now
+     * @return whether the file is unchanged
+     */
+    public boolean sameContents(Entry other) {
+      return other != null && size == other.size && hash.equals(other.hash);
+    }
+  }
+
+  private final Map<String, Entry> entries = new TreeMap<>();
+
+  /**
+   * Describes a file as it is now. The content hash is only computed if the size or modification time
+   * differ from the previous entry, since hashing means reading the whole file.
+   *
+   * @param segment path of the file relative to the collection root
+   * @param path path of the file
+   * @param previous entry for the file in the previous manifest, or {@code null} if it had none
+   * @return entry describing the file
+   * @throws IOException if file access error encountered
+   */
+  public static Entry describe(String segment, Path path, Entry previous) throws IOException {
+    long size = Files.size(path);
+    long lastModified = Files.getLastModifiedTime(path).toMillis();
+    if (previous != null && previous.size == size && previous.lastModified == lastModified) {
+      return previous;
+    }
+    String hash = com.google.common.io.Files.asByteSource(path.toFile()).hash(Hashing.sha1()).toString();
+    return new Entry(segment, size, lastModified, hash);
+  }
+
+  /**
+   * Reads a manifest, one tab-separated entry per line.
+   *
+   * @param file manifest file
+   * @return manifest
+   * @throws IOException if the file cannot be read
+   */
+  public static CollectionManifest read(Path file) throws IOException {
+    CollectionManifest manifest = new CollectionManifest();
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        String[] fields = line.split("\t");
+        if (fields.length != 4) {
+          throw new IOException("Malformed manifest line in " + file + ": " + line);
+        }
+        manifest.put(new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+      }
+    }
+    return manifest;
+  }
+
+  /**
+   * Writes the manifest, replacing the file atomically so that a crash never leaves it half written.
+   *
+   * @param file manifest file
+   * @throws IOException if the file cannot be written
+   */
+  public void write(Path file) throws IOException {
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+      for (Entry entry : entries.values()) {
+        writer.write(entry.segment + "\t" + entry.size + "\t" + entry.lastModified + "\t" + entry.hash);
+        writer.newLine();
+      }
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  public Entry get(String segment) {
+    return entries.get(segment);
+  }
+
+  public void put(Entry entry) {
+    entries.put(entry.segment, entry);
+  }
+
+  public Collection<Entry> entries() {
+    return Collections.unmodifiableCollection(entries.values());
+  }
+
+  public int size() {
+    return entries.size();
+  }
+}
@@ -23,8 +23,14 @@ import io.anserini.analysis.EnglishStemmingAnalyzer;
 import io.anserini.analysis.TweetAnalyzer;
 import io.anserini.collection.DocumentCollection;
 import io.anserini.collection.FileSegment;
+import io.anserini.collection.FileSplit;
+import io.anserini.collection.MultifieldSourceDocument;
+import io.anserini.collection.ParsedCollection;
+import io.anserini.collection.ParsedCorpusWriter;
+import io.anserini.collection.ReadAheadInputStream;
 import io.anserini.collection.SourceDocument;
 import io.anserini.index.generator.LuceneDocumentGenerator;
+import io.anserini.util.DocidSet;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.apache.commons.pool2.BasePooledObjectFactory;
@@ -37,11 +43,15 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.DocValuesType;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.MergePolicy;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.store.Directory;
@@ -62,26 +72,39 @@ import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder.HttpClientConfigCallback;
 import org.elasticsearch.client.RestClientBuilder.RequestConfigCallback;
-import org.elasticsearch.client.RequestOptions;
-import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.kohsuke.args4j.*;
+import org.kohsuke.args4j.spi.StringArrayOptionHandler;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public final class IndexCollection {
   private static final Logger LOG = LogManager.getLogger(IndexCollection.class);
@@ -138,6 +161,60 @@ public final class IndexCollection {
     @Option(name = "-memorybuffer", usage = "memory buffer size")
     public int memorybufferSize = 2048;
 
+    @Option(name = "-pipeline.generatorThreads", metaVar = "[Number]",
+        usage = "number of threads turning source documents into Lucene documents (default: same as -threads)")
+    public int generatorThreads = -1;
+
+    @Option(name = "-pipeline.writerThreads", metaVar = "[Number]",
+        usage = "number of threads adding Lucene documents to the index (default: same as -threads)")
+    public int writerThreads = -1;
+
+    @Option(name = "-pipeline.queueSize", metaVar = "[Number]",
+        usage = "capacity of the bounded queue between two pipeline stages")
+    public int queueSize = 1000;
+
+    @Option(name = "-split.size", metaVar = "[MB]",
+        usage = "cut uncompressed files of splittable collections into parts of about this size that are read " +
+            "in parallel; 0 to read every file whole")
+    public int splitSize = 256;
+
+    @Option(name = "-metrics.interval", metaVar = "[Seconds]",
+        usage = "report throughput, queue depths and per-stage latencies this often (over JMX, and to " +
+            "-metrics.file if set); 0 to only report at the end")
+    public int metricsInterval = 60;
+
+    @Option(name = "-metrics.file", metaVar = "[Path]",
+        usage = "file to append each metrics report to, as a line of JSON")
+    public String metricsFile = null;
+
+    @Option(name = "-schedule.walkOrder",
+        usage = "read files in the order they are discovered, rather than largest first")
+    public boolean scheduleWalkOrder = false;
+
+    @Option(name = "-decompress.readAhead", metaVar = "[MB]",
+        usage = "decompress each compressed file on a separate thread, up to this far ahead of its parser; " +
+            "0 to decompress on the parsing thread")
+    public int readAhead = 4;
+
+    @Option(name = "-checkpoint.interval", metaVar = "[Minutes]",
+        usage = "commit the index and record the fully indexed files this often, so that an interrupted run " +
+            "can be continued with -resume; 0 to commit only at the end")
+    public int checkpointInterval = 30;
+
+    @Option(name = "-resume", forbids = {"-solr", "-es"},
+        usage = "continue an interrupted run: append to the existing index and skip the files recorded in its last commit")
+    public boolean resume = false;
+
+    @Option(name = "-incremental", forbids = {"-resume", "-solr", "-es"},
+        usage = "only index files that were added or changed since the last incremental run, and remove the " +
+            "documents of changed or deleted files, using a manifest kept in the index directory")
+    public boolean incremental = false;
+
+    @Option(name = "-parsed.output", metaVar = "[Directory]", forbids = {"-resume", "-incremental", "-solr", "-es"},
+        usage = "also write every generated document (id, transformed contents and fields) to this directory, as " +
+            "a ParsedCollection that can be reindexed with other settings without parsing the collection again")
+    public String parsedOutput = null;
+
     @Option(name = "-whitelist", usage = "file containing docids, one per line; only specified docids will be indexed.")
     public String whitelist = null;
 
@@ -179,6 +256,19 @@ public final class IndexCollection {
     @Option(name = "-solr.poolSize", metaVar = "[NUMBER]", usage = "the number of clients to keep in the pool")
     public int solrPoolSize = 16;
 
+    @Option(name = "-solr.batchBytes", metaVar = "[NUMBER]", usage = "the maximum size (in bytes) of a batch submitted to Solr")
+    public long solrBatchBytes = 5L << 20;
+
+    @Option(name = "-solr.inFlight", metaVar = "[NUMBER]", usage = "the number of batches submitted to Solr concurrently")
+    public int solrInFlight = 4;
+
+    @Option(name = "-solr.retries", metaVar = "[NUMBER]", usage = "the number of times a failed batch is submitted to Solr again")
+    public int solrRetries = 3;
+
+    @Option(name = "-solr.backoff", metaVar = "[NUMBER]", usage = "the time (in ms) to wait before submitting a failed batch " +
+        "to Solr again, doubled for each retry")
+    public long solrBackoff = 100;
+
     @Option(name="-es", forbids = {"-index", "-solr"}, usage = "boolean switch to determine if we should index through Elasticsearch")
     public boolean es = false;
 
@@ -212,12 +302,33 @@ public final class IndexCollection {
     @Option(name = "-es.socketTimeout", metaVar = "[NUMBER]", usage = "the Elasticsearch (low level) REST client socket timeout (in ms)")
     public int esSocketTimeout = TIMEOUT;
 
-    @Option(name = "-shard.count", usage = "the number of shards for the index")
+    @Option(name = "-es.batchBytes", metaVar = "[NUMBER]", usage = "the maximum size (in bytes) of a bulk request sent to Elasticsearch")
+    public long esBatchBytes = 5L << 20;
+
+    @Option(name = "-es.inFlight", metaVar = "[NUMBER]", usage = "the number of bulk requests sent to Elasticsearch concurrently")
+    public int esInFlight = 4;
+
+    @Option(name = "-es.retries", metaVar = "[NUMBER]", usage = "the number of times a failed bulk request, or the documents " +
+        "of it rejected because Elasticsearch is overloaded, are sent again")
+    public int esRetries = 3;
+
+    @Option(name = "-es.backoff", metaVar = "[NUMBER]", usage = "the time (in ms) to wait before sending a failed bulk request " +
+        "to Elasticsearch again, doubled for each retry")
+    public long esBackoff = 100;
+
+    @Option(name = "-shard.count", usage = "the number of shards for the index; without -shard.current, " +
+        "all shards are built in one pass, in sub-directories shard0, shard1, ... of the index path")
     public int shardCount = -1;
 
     @Option(name = "-shard.current", usage = "the current shard number to produce (indexed from 0)")
     public int shardCurrent = -1;
 
+    @Option(name = "-variants", metaVar = "[Variant]", handler = StringArrayOptionHandler.class, forbids = {"-solr", "-es"},
+        usage = "build several indexes in one pass over the collection, each in the sub-directory of the index path " +
+            "named after it: a stemmer, optionally followed by options, e.g. porter.pos+docvectors+rawdocs krovetz none.pos " +
+            "(see IndexVariant); overrides -stemmer, -keepStopwords and the -store options")
+    public String[] variants = null;
+
     @Option(name = "-dryRun", usage = "performs all analysis steps except Lucene / Solr indexing")
     public boolean dryRun = false;
   }
@@ -257,73 +368,221 @@ public final class IndexCollection {
      * Counter for unexpected errors.
      */
     public AtomicLong errors = new AtomicLong();
+
+    /**
+     * Counter for documents that Solr or Elasticsearch rejected, or that could not be sent to them.
+     */
+    public AtomicLong failed = new AtomicLong();
+
+    /**
+     * Counter for bytes of the collection read, counting the bytes on disk (i.e., compressed bytes for
+     * compressed files) of every file segment read completely.
+     */
+    public AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Counters for the read stage (fetching, decompressing and parsing file segments) of the local
+     * indexing pipeline.
+     */
+    public StageCounter read = new StageCounter();
+
+    /**
+     * Counters for the generate stage (transforming source documents into Lucene documents) of the
+     * local indexing pipeline.
+     */
+    public StageCounter generate = new StageCounter();
+
+    /**
+     * Counters for the write stage (analyzing and adding documents to the index) of the local
+     * indexing pipeline.
+     */
+    public StageCounter write = new StageCounter();
   }
 
-  private final class LocalIndexerThread extends Thread {
-    final private Path inputFile;
-    final private IndexWriter writer;
-    final private DocumentCollection collection;
+  /**
+   * Throughput counters for one stage of the local indexing pipeline. Times are summed over all
+   * threads of the stage.
+   */
+  public static final class StageCounter {
+    /**
+     * Number of documents handed on (or, for the last stage, written) by this stage.
+     */
+    public final AtomicLong documents = new AtomicLong();
 
-    private LocalIndexerThread(IndexWriter writer, DocumentCollection collection, Path inputFile) throws IOException {
-      this.writer = writer;
-      this.collection = collection;
-      this.inputFile = inputFile;
-      setName(inputFile.getFileName().toString());
+    /**
+     * Time spent doing actual work.
+     */
+    public final AtomicLong busyNanos = new AtomicLong();
+
+    /**
+     * Time spent blocked on the queues feeding and draining this stage.
+     */
+    public final AtomicLong waitNanos = new AtomicLong();
+
+    private void add(long documents, long busyNanos, long waitNanos) {
+      this.documents.addAndGet(documents);
+      this.busyNanos.addAndGet(busyNanos);
+      this.waitNanos.addAndGet(waitNanos);
+    }
+  }
+
+  /**
+   * Key of the commit user data listing the splits whose documents are all in the commit, one per line.
+   */
+  public static final String INDEXED_SPLITS_KEY = "anserini.indexedSplits";
+
+  /**
+   * Field holding the path (relative to the collection root) of the file a document was read from,
+   * which is indexed (but not stored) when indexing incrementally, so that the documents of a file
+   * that has changed or disappeared can be deleted.
+   */
+  public static final String FIELD_SEGMENT = "segment";
+
+  /**
+   * Tracks one split through the local indexing pipeline: one count for the reader still working on
+   * it, plus one for every document of the split still queued downstream. When it drops to zero, every
+   * document of the split has been added to the {@link IndexWriter}, so the next checkpoint can record it.
+   */
+  private final class SplitProgress {
+    private final String segment;
+    private final String key;
+    private final AtomicInteger pending = new AtomicInteger(1);
+
+    private SplitProgress(FileSplit split) {
+      this.segment = segmentName(split.getPath());
+      this.key = splitKey(split);
+    }
+
+    private void done() {
+      if (pending.decrementAndGet() == 0) {
+        indexedSplits.add(key);
+      }
+    }
+  }
+
+  /**
+   * An item in a queue between two stages of the local indexing pipeline, with the split it came from.
+   */
+  private static final class Queued<T> {
+    private final T item;
+    private final SplitProgress progress;
+    // Generator of a Lucene document, to which it is recycled once indexed; null for source documents.
+    private final LuceneDocumentGenerator<?> generator;
+
+    private Queued(T item, SplitProgress progress) {
+      this(item, progress, null);
+    }
+
+    private Queued(T item, SplitProgress progress, LuceneDocumentGenerator<?> generator) {
+      this.item = item;
+      this.progress = progress;
+      this.generator = generator;
+    }
+  }
+
+  // Markers telling the generator and writer stages that their input is exhausted; compared by identity.
+  private static final Queued<SourceDocument> END_OF_SOURCE_DOCUMENTS = new Queued<>(null, null);
+  private static final Queued<Document> END_OF_DOCUMENTS = new Queued<>(null, null);
+
+  /**
+   * A split waiting in the queue of the reader pool, ordered by size (largest first) or, with
+   * {@code -schedule.walkOrder} and between splits of the same size, by the order of discovery.
+   */
+  static final class ScheduledSplit implements Runnable, Comparable<ScheduledSplit> {
+    private final Runnable reader;
+    private final FileSplit split;
+    private final int sequence;
+    private final boolean walkOrder;
+    private final AtomicLong bytesRead;
+
+    ScheduledSplit(Runnable reader, FileSplit split, int sequence, boolean walkOrder, AtomicLong bytesRead) {
+      this.reader = reader;
+      this.split = split;
+      this.sequence = sequence;
+      this.walkOrder = walkOrder;
+      this.bytesRead = bytesRead;
+    }
+
+    private long priority() {
+      return walkOrder ? 0 : split.getLength();
+    }
+
+    @Override
+    public int compareTo(ScheduledSplit other) {
+      int c = Long.compare(other.priority(), priority());
+      return c != 0 ? c : Integer.compare(sequence, other.sequence);
     }
 
     @Override
     public void run() {
       try {
-        @SuppressWarnings("unchecked")
-        LuceneDocumentGenerator generator =
-            (LuceneDocumentGenerator) generatorClass
-                  .getDeclaredConstructor(Args.class, Counters.class)
-                  .newInstance(args, counters);
+        reader.run();
+      } finally {
+        bytesRead.addAndGet(Math.max(split.getLength(), 0));
+      }
+    }
+  }
 
-        int cnt = 0;
+  /**
+   * First stage of the local indexing pipeline: reads and parses one file segment and feeds the
+   * {@link SourceDocument}s into the bounded queue of the generator stage, blocking when it is full.
+   */
+  private final class LocalReaderThread implements Runnable {
+    final private FileSplit split;
+    final private Path inputFile;
+    final private DocumentCollection collection;
+    final private BlockingQueue<Queued<SourceDocument>> output;
+    final private SplitProgress progress;
 
-        @SuppressWarnings("unchecked")
-        FileSegment<SourceDocument> segment =
-                (FileSegment) collection.createFileSegment(inputFile);
+    private LocalReaderThread(DocumentCollection collection, FileSplit split,
+                              BlockingQueue<Queued<SourceDocument>> output) {
+      this.collection = collection;
+      this.split = split;
+      this.inputFile = split.getPath();
+      this.output = output;
+      this.progress = new SplitProgress(split);
+    }
 
-        for (Object document : segment) {
-          SourceDocument d = (SourceDocument) document;
+    @Override
+    public void run() {
+      try (@SuppressWarnings("unchecked")
+           FileSegment<SourceDocument> segment = (FileSegment) collection.createFileSegment(split)) {
+        int cnt = 0;
+        long busy = 0;
+        long wait = 0;
+        long mark = System.nanoTime();
+        Iterator<SourceDocument> iterator = segment.iterator();
+        while (iterator.hasNext()) {
+          SourceDocument d = iterator.next();
 
           if (!d.indexable()) {
             counters.unindexable.incrementAndGet();
             continue;
           }
 
-          // Used for indexing distinct shardCount of a collection
-          if (args.shardCount > 1) {
-            int hash = Hashing.sha1().hashString(d.id(), Charsets.UTF_8).asInt() % args.shardCount;
-            if (hash != args.shardCurrent) {
-              counters.skipped.incrementAndGet();
-              continue;
-            }
-          }
-
-          // Yes, we know what we're doing here.
-          @SuppressWarnings("unchecked")
-          Document doc = generator.createDocument(d);
-          if (doc == null) {
-            counters.unindexed.incrementAndGet();
-            continue;
-          }
+          // Filter before generation, so that documents about to be discarded are never transformed.
           if (whitelistDocids != null && !whitelistDocids.contains(d.id())) {
             counters.skipped.incrementAndGet();
             continue;
           }
 
-          if (!args.dryRun) {
-            if (args.uniqueDocid) {
-              writer.updateDocument(new Term("id", d.id()), doc);
-            } else {
-              writer.addDocument(doc);
-            }
+          // Used for indexing distinct shardCount of a collection
+          if (args.shardCount > 1 && args.shardCurrent >= 0 && shardOf(d.id()) != args.shardCurrent) {
+            counters.skipped.incrementAndGet();
+            continue;
           }
+
+          long now = System.nanoTime();
+          busy += now - mark;
+          metrics.read.record(now - mark);
+          progress.pending.incrementAndGet();
+          put(output, new Queued<>(d, progress));
+          mark = System.nanoTime();
+          wait += mark - now;
           cnt++;
         }
+        busy += System.nanoTime() - mark;
+        counters.read.add(cnt, busy, wait);
 
         int skipped = segment.getSkippedCount();
         if (skipped > 0) {
@@ -337,74 +596,271 @@ public final class IndexCollection {
           counters.errors.incrementAndGet();
           LOG.error(inputFile.getParent().getFileName().toString() + File.separator +
                   inputFile.getFileName().toString() + ": error iterating through segment.");
+        } else {
+          // Documents dropped above are not coming back on a rerun, so only a read error keeps the split unfinished.
+          progress.done();
         }
 
-        segment.close();
         LOG.info(inputFile.getParent().getFileName().toString() + File.separator +
-              inputFile.getFileName().toString() + ": " + cnt + " docs added.");
-        counters.indexed.addAndGet(cnt);
+              inputFile.getFileName().toString() + (split.isWholeFile() ? "" : " [" + split.getStart() + ", " +
+              split.getEnd() + ")") + ": " + cnt + " docs read.");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (PipelineFailedException e) {
+        // Another stage failed; the run is aborted.
       } catch (Exception e) {
         LOG.error(Thread.currentThread().getName() + ": Unexpected Exception:", e);
+      } catch (Error e) {
+        // Recorded for run(), which aborts the run and rethrows it.
+        stageFailed(e);
+      }
+    }
+  }
+
+  /**
+   * Second stage of the local indexing pipeline: turns {@link SourceDocument}s into Lucene
+   * {@link Document}s (including transforms such as HTML cleaning) with a generator owned by this thread.
+   */
+  private final class LocalGeneratorThread implements Runnable {
+    final private LuceneDocumentGenerator<SourceDocument> generator;
+    final private BlockingQueue<Queued<SourceDocument>> input;
+    final private BlockingQueue<Queued<Document>> output;
+    // Writes the generated documents for -parsed.output, or null.
+    private ParsedCorpusWriter parsed;
+
+    private LocalGeneratorThread(LuceneDocumentGenerator<SourceDocument> generator, ParsedCorpusWriter parsed,
+                                 BlockingQueue<Queued<SourceDocument>> input, BlockingQueue<Queued<Document>> output) {
+      this.generator = generator;
+      this.parsed = parsed;
+      this.input = input;
+      this.output = output;
+    }
+
+    @Override
+    public void run() {
+      long cnt = 0;
+      long busy = 0;
+      long wait = 0;
+      boolean finished = false;
+      try {
+        while (true) {
+          long mark = System.nanoTime();
+          Queued<SourceDocument> queued = take(input);
+          long now = System.nanoTime();
+          wait += now - mark;
+          if (queued == END_OF_SOURCE_DOCUMENTS) {
+            finished = true;
+            break;
+          }
+          SourceDocument d = queued.item;
+
+          Document doc;
+          try {
+            doc = generator.createDocument(d);
+          } catch (RuntimeException e) {
+            LOG.error(Thread.currentThread().getName() + ": Error generating document " + d.id(), e);
+            counters.errors.incrementAndGet();
+            queued.progress.done();
+            continue;
+          } finally {
+            mark = System.nanoTime();
+            busy += mark - now;
+            metrics.transform.record(mark - now);
+          }
+
+          if (doc == null) {
+            counters.unindexed.incrementAndGet();
+            queued.progress.done();
+            continue;
+          }
+          if (parsed != null && doc.get(LuceneDocumentGenerator.FIELD_BODY) != null) {
+            writeParsed(d, doc);
+            long end = System.nanoTime();
+            busy += end - mark;
+            mark = end;
+          }
+          put(output, new Queued<>(doc, queued.progress, generator));
+          wait += System.nanoTime() - mark;
+          cnt++;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (PipelineFailedException e) {
+        // Another stage failed; the run is aborted.
+      } catch (RuntimeException | Error e) {
+        // Recorded for run(), which aborts the run and rethrows it.
+        stageFailed(e);
+      } finally {
+        counters.generate.add(cnt, busy, wait);
+        closeParsed(finished);
+      }
+    }
+
+    private void writeParsed(SourceDocument d, Document doc) {
+      Map<String, String> fields = d instanceof MultifieldSourceDocument ?
+          ((MultifieldSourceDocument) d).fields() : Collections.emptyMap();
+      try {
+        parsed.add(doc.get(LuceneDocumentGenerator.FIELD_ID), doc.get(LuceneDocumentGenerator.FIELD_BODY), fields);
+      } catch (IOException e) {
+        LOG.error(Thread.currentThread().getName() + ": Error writing parsed document " + d.id() +
+            ", no longer writing parsed documents", e);
+        counters.errors.incrementAndGet();
+        closeParsed(false);
+      }
+    }
+
+    // Keeps the parsed documents only if every document this thread generated was written.
+    private void closeParsed(boolean complete) {
+      if (parsed == null) {
+        return;
+      }
+      try {
+        if (complete) {
+          parsed.close();
+        } else {
+          parsed.abort();
+        }
+      } catch (IOException e) {
+        LOG.error(Thread.currentThread().getName() + ": Error closing parsed output", e);
+        counters.errors.incrementAndGet();
+      }
+      parsed = null;
+    }
+  }
+
+  /**
+   * Last stage of the local indexing pipeline: analyzes and adds documents to the {@link IndexWriter},
+   * or, when building all shards in one pass, to the writer of the document's shard.
+   */
+  private final class LocalWriterThread implements Runnable {
+    final private List<IndexWriter> writers;
+    final private BlockingQueue<Queued<Document>> input;
+
+    private LocalWriterThread(List<IndexWriter> writers, BlockingQueue<Queued<Document>> input) {
+      this.writers = writers;
+      this.input = input;
+    }
+
+    @Override
+    public void run() {
+      long cnt = 0;
+      long busy = 0;
+      long wait = 0;
+      try {
+        while (true) {
+          long mark = System.nanoTime();
+          Queued<Document> queued = take(input);
+          long now = System.nanoTime();
+          wait += now - mark;
+          if (queued == END_OF_DOCUMENTS) {
+            break;
+          }
+          Document doc = queued.item;
+          if (args.incremental) {
+            doc.add(new StringField(FIELD_SEGMENT, queued.progress.segment, Field.Store.NO));
+          }
+
+          if (!args.dryRun) {
+            try {
+              if (variants != null) {
+                // The document was parsed and generated once; each variant analyzes it its own way.
+                for (int i = 0; i < variants.size(); i++) {
+                  addDocument(writers.get(i), variants.get(i).apply(doc));
+                }
+              } else {
+                addDocument(writers.size() == 1 ? writers.get(0) :
+                    writers.get(shardOf(doc.get(LuceneDocumentGenerator.FIELD_ID))), doc);
+              }
+            } catch (IOException | RuntimeException e) {
+              // The split is never recorded as indexed, so a resumed run reads it again.
+              LOG.error(Thread.currentThread().getName() + ": Error adding document " +
+                  doc.get(LuceneDocumentGenerator.FIELD_ID), e);
+              counters.errors.incrementAndGet();
+              continue;
+            } finally {
+              // The writer is done with the document, whether it was added or not.
+              queued.generator.recycle(doc);
+              long elapsed = System.nanoTime() - now;
+              busy += elapsed;
+              metrics.index.record(elapsed);
+            }
+          } else {
+            queued.generator.recycle(doc);
+          }
+          queued.progress.done();
+          counters.indexed.incrementAndGet();
+          cnt++;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (PipelineFailedException e) {
+        // Another stage failed; the run is aborted.
+      } catch (RuntimeException | Error e) {
+        // Recorded for run(), which aborts the run and rethrows it.
+        stageFailed(e);
+      } finally {
+        counters.write.add(cnt, busy, wait);
       }
     }
   }
 
   private final class SolrIndexerThread implements Runnable {
 
+    private final FileSplit split;
     private final Path input;
     private final DocumentCollection collection;
-    private final List<SolrInputDocument> buffer = new ArrayList(args.solrBatch);
 
-    private SolrIndexerThread(DocumentCollection collection, Path input) {
-      this.input = input;
+    private SolrIndexerThread(DocumentCollection collection, FileSplit split) {
+      this.split = split;
+      this.input = split.getPath();
       this.collection = collection;
     }
 
     @Override
     public void run() {
-      try {
-        @SuppressWarnings("unchecked")
-        LuceneDocumentGenerator generator =
-                (LuceneDocumentGenerator) generatorClass
-                        .getDeclaredConstructor(Args.class, Counters.class)
-                        .newInstance(args, counters);
+      LuceneDocumentGenerator<SourceDocument> generator = null;
+      try (@SuppressWarnings("unchecked")
+           FileSegment<SourceDocument> segment = (FileSegment) collection.createFileSegment(split)) {
+        generator = borrowGenerator();
 
         int cnt = 0;
 
-        @SuppressWarnings("unchecked")
-        FileSegment<SourceDocument> segment =
-                (FileSegment) collection.createFileSegment(input);
-
-        for (Object d : segment) {
-          SourceDocument sourceDocument = (SourceDocument) d;
+        Iterator<SourceDocument> iterator = segment.iterator();
+        while (true) {
+          long mark = System.nanoTime();
+          if (!iterator.hasNext()) {
+            break;
+          }
+          SourceDocument sourceDocument = iterator.next();
+          metrics.read.record(System.nanoTime() - mark);
 
           if (!sourceDocument.indexable()) {
             counters.unindexable.incrementAndGet();
             continue;
           }
 
+          if (whitelistDocids != null && !whitelistDocids.contains(sourceDocument.id())) {
+            counters.skipped.incrementAndGet();
+            continue;
+          }
+
           // Used for indexing distinct shardCount of a collection
-          if (args.shardCount > 1) {
-            int hash = Hashing.sha1().hashString(sourceDocument.id(), Charsets.UTF_8).asInt() % args.shardCount;
-            if (hash != args.shardCurrent) {
-              counters.skipped.incrementAndGet();
-              continue;
-            }
+          if (args.shardCount > 1 && args.shardCurrent >= 0 && shardOf(sourceDocument.id()) != args.shardCurrent) {
+            counters.skipped.incrementAndGet();
+            continue;
           }
 
-          // Yes, we know what we're doing here.
-          @SuppressWarnings("unchecked")
+          long now = System.nanoTime();
           Document document = generator.createDocument(sourceDocument);
+          metrics.transform.record(System.nanoTime() - now);
           if (document == null) {
             counters.unindexed.incrementAndGet();
             continue;
           }
-          if (whitelistDocids != null && !whitelistDocids.contains(sourceDocument.id())) {
-            counters.skipped.incrementAndGet();
-            continue;
-          }
 
           SolrInputDocument solrDocument = new SolrInputDocument();
+          // Roughly the size of the request, which is dominated by the values.
+          long bytes = 0;
 
           // Copy all Lucene Document fields to Solr document
           for (IndexableField field : document.getFields()) {
@@ -414,24 +870,18 @@ public final class IndexCollection {
             }
             if (field.stringValue() != null) { // For some reason, id is multi-valued with null as one of the values
               solrDocument.addField(field.name(), field.stringValue());
+              bytes += field.name().length() + field.stringValue().length();
             } else if (field.numericValue() != null) {
               solrDocument.addField(field.name(), field.numericValue());
+              bytes += field.name().length() + Long.BYTES;
             }
           }
+          generator.recycle(document);
 
-          buffer.add(solrDocument);
-          if (buffer.size() == args.solrBatch) {
-            flush();
-          }
-
+          solrSender.add(solrDocument, bytes);
           cnt++;
         }
 
-        // If we have docs in the buffer, flush them.
-        if (!buffer.isEmpty()) {
-          flush();
-        }
-
         int skipped = segment.getSkippedCount();
         if (skipped > 0) {
           counters.skipped.addAndGet(skipped);
@@ -446,93 +896,72 @@ public final class IndexCollection {
                   input.getFileName().toString() + ": error iterating through segment.");
         }
 
-        segment.close();
         LOG.info(input.getParent().getFileName().toString() + File.separator + input.getFileName().toString() + ": " + cnt + " docs added.");
         counters.indexed.addAndGet(cnt);
       } catch (Exception e) {
         LOG.error(Thread.currentThread().getName() + ": Unexpected Exception:", e);
-      }
-
-    }
-
-    private void flush() {
-      if (!buffer.isEmpty()) {
-        SolrClient solrClient = null;
-        try {
-          solrClient = solrPool.borrowObject();
-          if (!args.dryRun) {
-            solrClient.add(args.solrIndex, buffer, args.solrCommitWithin * 1000);
-          }
-          buffer.clear();
-        } catch (Exception e) {
-          LOG.error("Error flushing documents to Solr", e);
-        } finally {
-          if (solrClient != null) {
-            try {
-              solrPool.returnObject(solrClient);
-            } catch (Exception e) {
-              LOG.error("Error returning SolrClient to pool", e);
-            }
-          }
+      } finally {
+        if (generator != null) {
+          idleGenerators.offer(generator);
         }
       }
+
     }
 
   }
 
   private final class ESIndexerThread implements Runnable {
+    private final FileSplit split;
     private final Path input;
     private final DocumentCollection collection;
-    private BulkRequest bulkRequest;
 
-    private ESIndexerThread(DocumentCollection collection, Path input) {
-      this.input = input;
+    private ESIndexerThread(DocumentCollection collection, FileSplit split) {
+      this.split = split;
+      this.input = split.getPath();
       this.collection = collection;
-      this.bulkRequest = new BulkRequest();
     }
 
     @Override
     public void run() {
-      try {
-
-        @SuppressWarnings("unchecked")
-        LuceneDocumentGenerator generator =
-                (LuceneDocumentGenerator) generatorClass
-                        .getDeclaredConstructor(Args.class, Counters.class)
-                        .newInstance(args, counters);
-
-        @SuppressWarnings("unchecked")
-        FileSegment<SourceDocument> segment =
-                (FileSegment) collection.createFileSegment(input);
+      LuceneDocumentGenerator<SourceDocument> generator = null;
+      try (@SuppressWarnings("unchecked")
+           FileSegment<SourceDocument> segment = (FileSegment) collection.createFileSegment(split)) {
+        generator = borrowGenerator();
 
         int cnt = 0;
 
-        for (Object d : segment) {
-          SourceDocument sourceDocument = (SourceDocument) d;
+        Iterator<SourceDocument> iterator = segment.iterator();
+        while (true) {
+          long mark = System.nanoTime();
+          if (!iterator.hasNext()) {
+            break;
+          }
+          SourceDocument sourceDocument = iterator.next();
+          metrics.read.record(System.nanoTime() - mark);
 
           if (!sourceDocument.indexable()) {
             counters.unindexable.incrementAndGet();
             continue;
           }
 
+          if (whitelistDocids != null && !whitelistDocids.contains(sourceDocument.id())) {
+            counters.skipped.incrementAndGet();
+            continue;
+          }
+
           // Used for indexing distinct shardCount of a collection
-          if (args.shardCount > 1) {
-            int hash = Hashing.sha1().hashString(sourceDocument.id(), Charsets.UTF_8).asInt() % args.shardCount;
-            if (hash != args.shardCurrent) {
-              counters.skipped.incrementAndGet();
-              continue;
-            }
+          if (args.shardCount > 1 && args.shardCurrent >= 0 && shardOf(sourceDocument.id()) != args.shardCurrent) {
+            counters.skipped.incrementAndGet();
+            continue;
           }
 
+          long now = System.nanoTime();
           Document document = generator.createDocument(sourceDocument);
+          metrics.transform.record(System.nanoTime() - now);
           if (document == null) {
             counters.unindexed.incrementAndGet();
             continue;
           }
-          if (whitelistDocids != null && !whitelistDocids.contains(sourceDocument.id())) {
-            counters.skipped.incrementAndGet();
-            continue;
-          }
 
           XContentBuilder builder = XContentFactory.jsonBuilder();
           builder.startObject();
@@ -547,20 +976,14 @@ public final class IndexCollection {
             }
           }
           builder.endObject();
+          generator.recycle(document);
           
           String indexName = (args.esIndex != null) ? args.esIndex : input.getFileName().toString();
-          bulkRequest.add(new IndexRequest(indexName, "doc").id(sourceDocument.id()).source(builder));
-          if (bulkRequest.numberOfActions() == args.esBatch) {
-            sendBulkRequest();
-          }
-
+          IndexRequest request = new IndexRequest(indexName, "doc").id(sourceDocument.id()).source(builder);
+          esSender.add(request, request.source().length());
           cnt++;
         }
 
-        if (bulkRequest.numberOfActions() != 0) {
-          sendBulkRequest();
-        }
-
         int skipped = segment.getSkippedCount();
         if (skipped > 0) {
           counters.skipped.addAndGet(skipped);
@@ -575,37 +998,13 @@ public final class IndexCollection {
                   input.getFileName().toString() + ": error iterating through segment.");
         }
 
-        segment.close();
         LOG.info(input.getParent().getFileName().toString() + File.separator + input.getFileName().toString() + ": " + cnt + " docs added.");
         counters.indexed.addAndGet(cnt);
       } catch (Exception e) {
         LOG.error(Thread.currentThread().getName() + ": Unexpected Exception:", e);
-      }
-    }
-
-    private void sendBulkRequest() {
-      if (bulkRequest.numberOfActions() == 0) {
-        return;
-      }
-
-      RestHighLevelClient esClient = null;
-      try {
-        esClient = esPool.borrowObject();
-        if (!args.dryRun) {
-          // synchronous
-          // TODO parse the response returned by this
-          esClient.bulk(bulkRequest, RequestOptions.DEFAULT);
-        }
-        bulkRequest = new BulkRequest();
-      } catch (Exception e) {
-        LOG.error("Error sending bulk requests to Elasticsearch", e);
       } finally {
-        if (esClient != null) {
-          try {
-            esPool.returnObject(esClient);
-          } catch (Exception e) {
-            LOG.error("Error returning ES client to pool", e);
-          }
+        if (generator != null) {
+          idleGenerators.offer(generator);
         }
       }
     }
@@ -614,14 +1013,25 @@ public final class IndexCollection {
 
   private final IndexCollection.Args args;
   private final Path collectionPath;
-  private final Set whitelistDocids;
+  private final DocidSet whitelistDocids;
   private final Class collectionClass;
-  private final Class generatorClass;
-  private final DocumentCollection collection;
+  private final Class<? extends LuceneDocumentGenerator<?>> generatorClass;
+  // Generators not in use by any Solr or Elasticsearch indexer thread.
+  private final Queue<LuceneDocumentGenerator<SourceDocument>> idleGenerators = new ConcurrentLinkedQueue<>();
+  private final DocumentCollection<?> collection;
   private final Counters counters;
+  private final IndexingMetrics metrics;
+  // Indexes built in one pass (-variants), one writer each, or null for a single index.
+  private final List<IndexVariant> variants;
+  private final Set<String> indexedSplits = ConcurrentHashMap.newKeySet();
+  // The first failure that killed a thread of the local indexing pipeline, after which the run is aborted.
+  private final AtomicReference<Throwable> pipelineFailure = new AtomicReference<>();
   private Path indexPath;
   private ObjectPool<SolrClient> solrPool;
   private ObjectPool<RestHighLevelClient> esPool;
+  // Bulk requests in flight to Solr or Elasticsearch, shared by all indexer threads.
+  private BulkSender<SolrInputDocument> solrSender;
+  private BulkSender<IndexRequest> esSender;
 
   public IndexCollection(IndexCollection.Args args) throws Exception {
     this.args = args;
@@ -631,6 +1041,10 @@ public final class IndexCollection {
     LOG.info("CollectionClass: " + args.collectionClass);
     LOG.info("Generator: " + args.generatorClass);
     LOG.info("Threads: " + args.threads);
+    LOG.info("Split size (MB): " + args.splitSize);
+    LOG.info("Decompression read-ahead (MB): " + args.readAhead);
+    LOG.info("Metrics interval (seconds): " + args.metricsInterval);
+    LOG.info("Metrics file: " + args.metricsFile);
     LOG.info("Stemmer: " + args.stemmer);
     LOG.info("Keep stopwords? " + args.keepStopwords);
     LOG.info("Store positions? " + args.storePositions);
@@ -639,6 +1053,8 @@ public final class IndexCollection {
     LOG.info("Store raw docs? " + args.storeRawDocs);
     LOG.info("Optimize (merge segments)? " + args.optimize);
     LOG.info("Whitelist: " + args.whitelist);
+    LOG.info("Parsed output: " + args.parsedOutput);
+    LOG.info("Variants: " + (args.variants == null ? null : String.join(" ", args.variants)));
     LOG.info("Solr? " + args.solr);
     if (args.solr) {
       LOG.info("Solr batch size: " + args.solrBatch);
@@ -646,6 +1062,10 @@ public final class IndexCollection {
       LOG.info("Solr index: " + args.solrIndex);
       LOG.info("Solr ZooKeeper URL: " + args.zkUrl);
       LOG.info("SolrClient pool size: " + args.solrPoolSize);
+      LOG.info("Solr batch size (bytes): " + args.solrBatchBytes);
+      LOG.info("Solr batches in flight: " + args.solrInFlight);
+      LOG.info("Solr retries: " + args.solrRetries);
+      LOG.info("Solr backoff (in ms): " + args.solrBackoff);
     }
     LOG.info("Elasticsearch? " + args.es);
     if (args.es) {
@@ -657,6 +1077,10 @@ public final class IndexCollection {
       LOG.info("Elasticsearch client connect timeout (in ms): " + args.esConnectTimeout);
       LOG.info("Elasticsearch client socket timeout (in ms): " + args.esSocketTimeout);
       LOG.info("Elasticsearch pool size: " + args.esPoolSize);
+      LOG.info("Elasticsearch batch size (bytes): " + args.esBatchBytes);
+      LOG.info("Elasticsearch bulk requests in flight: " + args.esInFlight);
+      LOG.info("Elasticsearch retries: " + args.esRetries);
+      LOG.info("Elasticsearch backoff (in ms): " + args.esBackoff);
     }
     LOG.info("Dry run (no index created)? " + args.dryRun);
 
@@ -671,20 +1095,51 @@ public final class IndexCollection {
       }
     }
 
+    if (args.variants != null) {
+      if (args.shardCount > 1 && args.shardCurrent < 0) {
+        throw new IllegalArgumentException("-variants cannot be combined with building all shards in one pass");
+      }
+      if (args.collectionClass.equals("TweetCollection")) {
+        // Tweets are always analyzed by the TweetAnalyzer, which would ignore the analysis of each variant.
+        throw new IllegalArgumentException("-variants is not supported for TweetCollection");
+      }
+      List<IndexVariant> variants = new ArrayList<>();
+      Set<String> names = new HashSet<>();
+      for (String spec : args.variants) {
+        IndexVariant variant = IndexVariant.parse(spec);
+        if (!names.add(variant.name())) {
+          throw new IllegalArgumentException("Duplicate index variant " + variant.name());
+        }
+        variants.add(variant);
+        // Generators only add the raw document if asked to; variants that do not store it drop it.
+        if (variant.storeRawDocs()) {
+          args.storeRawDocs = true;
+        }
+      }
+      this.variants = variants;
+    } else {
+      this.variants = null;
+    }
+
     collectionPath = Paths.get(args.input);
     if (!Files.exists(collectionPath) || !Files.isReadable(collectionPath) || !Files.isDirectory(collectionPath)) {
       throw new RuntimeException("Document directory " + collectionPath.toString() + " does not exist or is not readable, please check the path");
     }
 
-    this.generatorClass = Class.forName("io.anserini.index.generator." + args.generatorClass);
+    @SuppressWarnings("unchecked")
+    Class<? extends LuceneDocumentGenerator<?>> generatorClass = (Class<? extends LuceneDocumentGenerator<?>>)
+        Class.forName("io.anserini.index.generator." + args.generatorClass).asSubclass(LuceneDocumentGenerator.class);
+    this.generatorClass = generatorClass;
     this.collectionClass = Class.forName("io.anserini.collection." + args.collectionClass);
 
-    collection = (DocumentCollection) this.collectionClass.newInstance();
+    collection = (DocumentCollection<?>) this.collectionClass.newInstance();
     collection.setCollectionPath(collectionPath);
+    collection.setReadAheadChunks(args.readAhead * (1 << 20) / ReadAheadInputStream.CHUNK_SIZE);
 
     if (args.whitelist != null) {
-      List<String> lines = FileUtils.readLines(new File(args.whitelist), "utf-8");
-      this.whitelistDocids = new HashSet<>(lines);
+      this.whitelistDocids = DocidSet.load(Paths.get(args.whitelist));
+      LOG.info(String.format("Whitelist: %,d docids in %,d bytes", whitelistDocids.size(),
+          whitelistDocids.ramBytesUsed()));
     } else {
       this.whitelistDocids = null;
     }
@@ -702,6 +1157,20 @@ public final class IndexCollection {
     }
 
     this.counters = new Counters();
+    this.metrics = new IndexingMetrics(counters.indexed::get, counters.bytes::get,
+        args.metricsFile == null ? null : Paths.get(args.metricsFile));
+
+    if (args.solr) {
+      BulkSender.Transport<SolrInputDocument> transport = args.dryRun ? (batch, retry) -> 0 :
+          new BulkSender.SolrTransport(solrPool, args.solrIndex, args.solrCommitWithin * 1000);
+      this.solrSender = new BulkSender<>(transport, args.solrBatch, args.solrBatchBytes, args.solrInFlight,
+          args.solrRetries, args.solrBackoff, metrics.send);
+    } else if (args.es) {
+      BulkSender.Transport<IndexRequest> transport = args.dryRun ? (batch, retry) -> 0 :
+          new BulkSender.ElasticsearchTransport(esPool);
+      this.esSender = new BulkSender<>(transport, args.esBatch, args.esBatchBytes, args.esInFlight,
+          args.esRetries, args.esBackoff, metrics.send);
+    }
   }
 
   private class SolrClientFactory extends BasePooledObjectFactory<SolrClient> {
@@ -763,53 +1232,313 @@ public final class IndexCollection {
 
     int numThreads = args.threads;
 
-    IndexWriter writer = null;
+    // One writer, or one per shard when building all shards in one pass; none when not indexing locally.
+    final List<IndexWriter> writers = new ArrayList<>();
+    CollectionManifest previousManifest = null;
 
     // Used for LocalIndexThread
     if (indexPath != null && !args.dryRun) {
-
-      final Directory dir = FSDirectory.open(indexPath);
       final EnglishStemmingAnalyzer analyzer = args.keepStopwords ?
           new EnglishStemmingAnalyzer(args.stemmer, CharArraySet.EMPTY_SET) : new EnglishStemmingAnalyzer(args.stemmer);
       final TweetAnalyzer tweetAnalyzer = new TweetAnalyzer(args.tweetStemming);
-      final IndexWriterConfig config = args.collectionClass.equals("TweetCollection") ? new IndexWriterConfig(tweetAnalyzer) : new IndexWriterConfig(analyzer);
-      config.setSimilarity(new BM25Similarity());
-      config.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
-      config.setRAMBufferSizeMB(args.memorybufferSize);
-      config.setUseCompoundFile(false);
-      config.setMergeScheduler(new ConcurrentMergeScheduler());
-
-      writer = new IndexWriter(dir, config);
-    }
-
-    final ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(numThreads);
-    final List segmentPaths = collection.discover(collection.getCollectionPath());
-
-    final int segmentCnt = segmentPaths.size();
-    LOG.info(segmentCnt + " files found in " + collectionPath.toString());
-    for (int i = 0; i < segmentCnt; i++) {
-      if (args.solr) {
-        executor.execute(new SolrIndexerThread(collection, (Path) segmentPaths.get(i)));
-      } else if (args.es) {
-        executor.execute(new ESIndexerThread(collection, (Path) segmentPaths.get(i)));
+
+      final List<Directory> dirs = new ArrayList<>();
+      if (variants != null) {
+        for (IndexVariant variant : variants) {
+          dirs.add(FSDirectory.open(indexPath.resolve(variant.name())));
+        }
+        LOG.info(String.format("Building %d index variants in one pass", variants.size()));
+      } else if (args.shardCount > 1 && args.shardCurrent < 0) {
+        for (int i = 0; i < args.shardCount; i++) {
+          dirs.add(FSDirectory.open(indexPath.resolve("shard" + i)));
+        }
+        LOG.info(String.format("Building %d shards in one pass", args.shardCount));
       } else {
-        executor.execute(new LocalIndexerThread(writer, collection, (Path) segmentPaths.get(i)));
+        dirs.add(FSDirectory.open(indexPath));
       }
+
+      if (args.incremental) {
+        Path manifestFile = indexPath.resolve(CollectionManifest.FILE_NAME);
+        if (Files.exists(manifestFile)) {
+          previousManifest = CollectionManifest.read(manifestFile);
+        } else {
+          for (Directory dir : dirs) {
+            if (DirectoryReader.indexExists(dir)) {
+              throw new IllegalArgumentException("Index " + indexPath + " has no " + CollectionManifest.FILE_NAME +
+                  "; it must have been built with -incremental to be updated incrementally");
+            }
+          }
+          previousManifest = new CollectionManifest();
+        }
+      }
+
+      for (int i = 0; i < dirs.size(); i++) {
+        final Directory dir = dirs.get(i);
+        final IndexWriterConfig config = args.collectionClass.equals("TweetCollection") ? new IndexWriterConfig(tweetAnalyzer) :
+            new IndexWriterConfig(variants == null ? analyzer : variants.get(i).analyzer());
+        config.setSimilarity(new BM25Similarity());
+        config.setOpenMode(args.resume || args.incremental ?
+            IndexWriterConfig.OpenMode.CREATE_OR_APPEND : IndexWriterConfig.OpenMode.CREATE);
+        // Shards and variants share the memory budget.
+        config.setRAMBufferSizeMB((double) args.memorybufferSize / dirs.size());
+        config.setUseCompoundFile(false);
+        config.setMergeScheduler(new ConcurrentMergeScheduler() {
+          @Override
+          protected void doMerge(IndexWriter writer, MergePolicy.OneMerge merge) throws IOException {
+            long mark = System.nanoTime();
+            try {
+              super.doMerge(writer, merge);
+            } finally {
+              metrics.merge.record(System.nanoTime() - mark);
+            }
+          }
+        });
+        config.setInfoStream(metrics.flushInfoStream());
+        writers.add(new IndexWriter(dir, config));
+      }
+
+      if (args.resume) {
+        // A split only counts as indexed if every shard committed it.
+        for (int i = 0; i < writers.size(); i++) {
+          Set<String> committed = new HashSet<>();
+          for (Map.Entry<String, String> entry : writers.get(i).getLiveCommitData()) {
+            if (entry.getKey().equals(INDEXED_SPLITS_KEY) && !entry.getValue().isEmpty()) {
+              committed.addAll(Arrays.asList(entry.getValue().split("\n")));
+            }
+          }
+          if (i == 0) {
+            indexedSplits.addAll(committed);
+          } else {
+            indexedSplits.retainAll(committed);
+          }
+        }
+        LOG.info(String.format("Resuming index with %,d documents and %,d indexed splits",
+            numDocs(variants == null ? writers : writers.subList(0, 1)), indexedSplits.size()));
+      }
+    }
+
+    // For local indexing, the reader threads below only read and parse file segments; the generator and
+    // writer stages run in their own pools, connected by bounded queues that provide backpressure.
+    final boolean local = !args.solr && !args.es;
+    final int generatorThreads = args.generatorThreads > 0 ? args.generatorThreads : numThreads;
+    final int writerThreads = args.writerThreads > 0 ? args.writerThreads : numThreads;
+    final BlockingQueue<Queued<SourceDocument>> sourceQueue = new ArrayBlockingQueue<>(args.queueSize);
+    final BlockingQueue<Queued<Document>> documentQueue = new ArrayBlockingQueue<>(args.queueSize);
+    final ThreadPoolExecutor generatorExecutor;
+    final ThreadPoolExecutor writerExecutor;
+    if (local) {
+      LOG.info(String.format("Pipeline threads: %d readers, %d generators, %d writers",
+          numThreads, generatorThreads, writerThreads));
+      // With -parsed.output, each generator thread writes the documents it generates to its own file.
+      Path parsedOutput = args.parsedOutput == null ? null : Paths.get(args.parsedOutput);
+      if (parsedOutput != null) {
+        Files.createDirectories(parsedOutput);
+      }
+      generatorExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(generatorThreads);
+      for (int i = 0; i < generatorThreads; i++) {
+        ParsedCorpusWriter parsed = parsedOutput == null ? null :
+            new ParsedCorpusWriter(parsedOutput.resolve(String.format("part-%05d%s", i, ParsedCollection.SUFFIX)));
+        generatorExecutor.execute(new LocalGeneratorThread(newGenerator(), parsed, sourceQueue, documentQueue));
+      }
+      generatorExecutor.shutdown();
+      writerExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(writerThreads);
+      for (int i = 0; i < writerThreads; i++) {
+        writerExecutor.execute(new LocalWriterThread(writers, documentQueue));
+      }
+      writerExecutor.shutdown();
+    } else {
+      generatorExecutor = null;
+      writerExecutor = null;
+    }
+
+    // Periodic commits bound the work lost when a long run dies: -resume picks up from the last one.
+    final ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor();
+    if (!writers.isEmpty() && args.checkpointInterval > 0) {
+      checkpointer.scheduleWithFixedDelay(() -> {
+        try {
+          checkpoint(writers);
+        } catch (IOException | RuntimeException e) {
+          LOG.error("Checkpoint failed:", e);
+        }
+      }, args.checkpointInterval, args.checkpointInterval, TimeUnit.MINUTES);
     }
 
+    // Splits are read as soon as they are discovered. Queued splits are read largest first, so that
+    // the run does not end with a few threads reading the largest files while the others are idle.
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(numThreads, numThreads,
+        0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>());
+
+    // Throughput, queue depths and stage latencies, published over JMX and optionally as JSON lines.
+    metrics.gauge("queuedSplits", () -> executor.getQueue().size());
+    if (local) {
+      metrics.gauge("queuedSourceDocuments", sourceQueue::size);
+      metrics.gauge("queuedDocuments", documentQueue::size);
+    }
+    final BulkSender<?> sender = args.solr ? solrSender : esSender;
+    if (sender != null) {
+      metrics.gauge("bulkRequestsInFlight", sender::inFlight);
+      metrics.total("sentDocuments", sender::sentDocuments);
+      metrics.total("sentBytes", sender::sentBytes);
+      metrics.total("retriedDocuments", sender::retriedDocuments);
+      metrics.total("failedDocuments", sender::failedDocuments);
+    }
+    metrics.register();
+    final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+    if (args.metricsInterval > 0) {
+      reporter.scheduleAtFixedRate(metrics::report, args.metricsInterval, args.metricsInterval, TimeUnit.SECONDS);
+    }
+
+    // Large uncompressed files in splittable collections are cut into byte ranges that separate threads read.
+    final long splitSize = args.splitSize * 1024L * 1024L;
+    // When indexing incrementally, only new and changed files are read; their old documents, and those of
+    // deleted files, are deleted first. The manifest is only updated for files that were indexed completely.
+    final boolean incremental = args.incremental && !writers.isEmpty();
+    final CollectionManifest previous = previousManifest;
+    final CollectionManifest manifest = new CollectionManifest();
+    final Map<CollectionManifest.Entry, List<String>> updatedSegments = new HashMap<>();
+    final Set<String> discoveredSegments = new HashSet<>();
+    final AtomicInteger fileCnt = new AtomicInteger();
+    final AtomicInteger splitCnt = new AtomicInteger();
+    final AtomicLong bytesTotal = new AtomicLong();
+    final AtomicLong lastReport = new AtomicLong(System.nanoTime());
+    try {
+      collection.discover(collectionPath, segmentPath -> {
+        try {
+          fileCnt.incrementAndGet();
+          List<FileSplit> segmentSplits = collection.split(segmentPath, splitSize);
+          if (incremental) {
+            String segment = segmentName(segmentPath);
+            discoveredSegments.add(segment);
+            CollectionManifest.Entry current = CollectionManifest.describe(segment, segmentPath, previous.get(segment));
+            if (current.sameContents(previous.get(segment))) {
+              manifest.put(current);
+              return;
+            }
+            for (IndexWriter writer : writers) {
+              writer.deleteDocuments(new Term(FIELD_SEGMENT, segment));
+            }
+            List<String> keys = new ArrayList<>();
+            for (FileSplit split : segmentSplits) {
+              keys.add(splitKey(split));
+            }
+            updatedSegments.put(current, keys);
+          }
+          for (FileSplit split : segmentSplits) {
+            if (indexedSplits.contains(splitKey(split))) {
+              continue;
+            }
+            Runnable reader;
+            if (args.solr) {
+              reader = new SolrIndexerThread(collection, split);
+            } else if (args.es) {
+              reader = new ESIndexerThread(collection, split);
+            } else {
+              reader = new LocalReaderThread(collection, split, sourceQueue);
+            }
+            executor.execute(new ScheduledSplit(reader, split, splitCnt.getAndIncrement(),
+                args.scheduleWalkOrder, counters.bytes));
+            bytesTotal.addAndGet(Math.max(split.getLength(), 0));
+          }
+          long now = System.nanoTime();
+          if (now - lastReport.get() > TimeUnit.MINUTES.toNanos(1)) {
+            lastReport.set(now);
+            LOG.info(String.format("Discovery in progress: %,d files found, %s read of %s found so far",
+                fileCnt.get(), FileUtils.byteCountToDisplaySize(counters.bytes.get()),
+                FileUtils.byteCountToDisplaySize(bytesTotal.get())));
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      executor.shutdownNow();
+      checkpointer.shutdownNow();
+      reporter.shutdownNow();
+      metrics.unregister();
+      if (local) {
+        generatorExecutor.shutdownNow();
+        writerExecutor.shutdownNow();
+      }
+      throw e.getCause();
+    }
+    if (incremental) {
+      int deleted = 0;
+      for (CollectionManifest.Entry entry : previous.entries()) {
+        if (!discoveredSegments.contains(entry.getSegment())) {
+          for (IndexWriter writer : writers) {
+            writer.deleteDocuments(new Term(FIELD_SEGMENT, entry.getSegment()));
+          }
+          deleted++;
+        }
+      }
+      LOG.info(String.format("Incremental: %,d files unchanged, %,d new or changed, %,d deleted",
+          manifest.size(), updatedSegments.size(), deleted));
+    }
+
+    final int segmentCnt = splitCnt.get();
+    LOG.info(fileCnt.get() + " files found in " + collectionPath.toString() + ", read as " +
+        segmentCnt + " splits" + (args.resume ? " not yet indexed" : "") +
+        " (" + FileUtils.byteCountToDisplaySize(bytesTotal.get()) + ")");
+
     executor.shutdown();
 
     try {
       // Wait for existing tasks to terminate
       while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
-        LOG.info(String.format("%.2f percent completed",
-            (double) executor.getCompletedTaskCount() / segmentCnt * 100.0d));
+        checkPipeline();
+        long bytesRead = counters.bytes.get();
+        LOG.info(String.format("%.2f percent completed (%s of %s read, %,d of %,d splits)",
+            bytesTotal.get() == 0 ? 0.0d : (double) bytesRead / bytesTotal.get() * 100.0d,
+            FileUtils.byteCountToDisplaySize(bytesRead), FileUtils.byteCountToDisplaySize(bytesTotal.get()),
+            executor.getCompletedTaskCount(), segmentCnt));
       }
+
+      // Once all segments are read, let the downstream stages drain their queues, in order.
+      if (local) {
+        finishStage(generatorExecutor, sourceQueue, END_OF_SOURCE_DOCUMENTS, generatorThreads);
+        finishStage(writerExecutor, documentQueue, END_OF_DOCUMENTS, writerThreads);
+        checkPipeline();
+      }
+      if (sender != null) {
+        sender.close();
+        counters.failed.addAndGet(sender.failedDocuments());
+      }
+
+      // Cancel further checkpoints, but let one in progress finish before the final commit.
+      checkpointer.shutdown();
+      checkpointer.awaitTermination(1, TimeUnit.HOURS);
     } catch (InterruptedException ie) {
       // (Re-)Cancel if current thread also interrupted
+      checkpointer.shutdownNow();
       executor.shutdownNow();
+      if (local) {
+        generatorExecutor.shutdownNow();
+        writerExecutor.shutdownNow();
+      }
       // Preserve interrupt status
       Thread.currentThread().interrupt();
+    } catch (PipelineFailedException e) {
+      // Nothing indexed since the last checkpoint is kept; a resumed run reads it again.
+      executor.shutdownNow();
+      checkpointer.shutdownNow();
+      reporter.shutdownNow();
+      metrics.unregister();
+      if (local) {
+        generatorExecutor.shutdownNow();
+        writerExecutor.shutdownNow();
+      }
+      for (IndexWriter writer : writers) {
+        try {
+          writer.rollback();
+        } catch (IOException | RuntimeException re) {
+          LOG.error(re);
+        }
+      }
+      Throwable failure = e.getCause();
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      throw new IOException("Indexing pipeline failed", failure);
     }
 
     if (segmentCnt != executor.getCompletedTaskCount()) {
@@ -820,9 +1549,10 @@ public final class IndexCollection {
     long numIndexed;
 
     if (args.solr || args.es) {
-      numIndexed = counters.indexed.get();
+      numIndexed = counters.indexed.get() - counters.failed.get();
     } else {
-      numIndexed = args.dryRun ? counters.indexed.get() : writer.getDocStats().maxDoc;
+      // Every variant holds every document.
+      numIndexed = args.dryRun ? counters.indexed.get() : maxDoc(variants == null ? writers : writers.subList(0, 1));
     }
 
     // Do a final commit
@@ -845,28 +1575,47 @@ public final class IndexCollection {
     }
 
     try {
-      if (writer != null) {
-        writer.commit();
+      if (!writers.isEmpty()) {
+        checkpoint(writers);
+        if (incremental) {
+          for (Map.Entry<CollectionManifest.Entry, List<String>> updated : updatedSegments.entrySet()) {
+            if (indexedSplits.containsAll(updated.getValue())) {
+              manifest.put(updated.getKey());
+            }
+          }
+          manifest.write(indexPath.resolve(CollectionManifest.FILE_NAME));
+        }
         if (args.optimize) {
-          writer.forceMerge(1);
+          for (IndexWriter writer : writers) {
+            writer.forceMerge(1);
+          }
         }
       }
     } finally {
-      try {
-        if (writer != null) {
+      for (IndexWriter writer : writers) {
+        try {
           writer.close();
+        } catch (IOException e) {
+          // It is possible that this happens... but nothing much we can do at this point,
+          // so just log the error and move on.
+          LOG.error(e);
         }
-      } catch (IOException e) {
-        // It is possible that this happens... but nothing much we can do at this point,
-        // so just log the error and move on.
-        LOG.error(e);
       }
     }
 
-    if (numIndexed != counters.indexed.get()) {
+    if (!args.resume && !incremental && numIndexed != counters.indexed.get() - counters.failed.get()) {
       LOG.warn("Unexpected difference between number of indexed documents and index maxDoc.");
     }
 
+    reporter.shutdown();
+    try {
+      reporter.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    metrics.report();
+    metrics.unregister();
+
     LOG.info("# Final Counter Values");
     LOG.info(String.format("indexed:     %,12d", counters.indexed.get()));
     LOG.info(String.format("empty:       %,12d", counters.empty.get()));
@@ -874,12 +1623,155 @@ public final class IndexCollection {
     LOG.info(String.format("unindexable: %,12d", counters.unindexable.get()));
     LOG.info(String.format("skipped:     %,12d", counters.skipped.get()));
     LOG.info(String.format("errors:      %,12d", counters.errors.get()));
+    if (args.solr || args.es) {
+      LOG.info(String.format("failed:      %,12d", counters.failed.get()));
+    }
+    if (!args.solr && !args.es) {
+      logStage("read", counters.read);
+      logStage("generate", counters.generate);
+      logStage("write", counters.write);
+    }
 
     final long durationMillis = TimeUnit.MILLISECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     LOG.info(String.format("Total %,d documents indexed in %s", numIndexed,
         DurationFormatUtils.formatDuration(durationMillis, "HH:mm:ss")));
   }
 
+  // Generators are costly to create, so the Solr and Elasticsearch indexer threads share them across splits.
+  private LuceneDocumentGenerator<SourceDocument> borrowGenerator() throws IOException {
+    LuceneDocumentGenerator<SourceDocument> generator = idleGenerators.poll();
+    return generator != null ? generator : newGenerator();
+  }
+
+  // Generators are only checked to take the documents of the collection when they are given one.
+  @SuppressWarnings("unchecked")
+  private LuceneDocumentGenerator<SourceDocument> newGenerator() throws IOException {
+    try {
+      return (LuceneDocumentGenerator<SourceDocument>) generatorClass
+          .getDeclaredConstructor(Args.class, Counters.class)
+          .newInstance(args, counters);
+    } catch (ReflectiveOperationException e) {
+      throw new IOException("Unable to instantiate generator " + args.generatorClass, e);
+    }
+  }
+
+  // Identifies a file across runs, independently of where the collection is mounted.
+  private String segmentName(Path path) {
+    return collectionPath.relativize(path).toString();
+  }
+
+  private String splitKey(FileSplit split) {
+    String path = segmentName(split.getPath());
+    return split.isWholeFile() ? path : path + " [" + split.getStart() + ", " + split.getEnd() + ")";
+  }
+
+  /**
+   * Commits the index (every shard of it), recording in the commit user data the splits whose documents
+   * are all in it.
+   */
+  private void checkpoint(List<IndexWriter> writers) throws IOException {
+    // Snapshot before committing: every document of these splits has already been added.
+    List<String> indexed = new ArrayList<>(indexedSplits);
+    Collections.sort(indexed);
+    for (IndexWriter writer : writers) {
+      writer.setLiveCommitData(Collections.singletonMap(INDEXED_SPLITS_KEY, String.join("\n", indexed)).entrySet());
+      writer.commit();
+    }
+    LOG.info(String.format("Checkpoint: %,d splits fully indexed", indexed.size()));
+  }
+
+  private void addDocument(IndexWriter writer, Document doc) throws IOException {
+    // When resuming, documents of a partially indexed split may already be in the index.
+    if (args.uniqueDocid || args.resume) {
+      writer.updateDocument(new Term("id", doc.get(LuceneDocumentGenerator.FIELD_ID)), doc);
+    } else {
+      writer.addDocument(doc);
+    }
+  }
+
+  private int shardOf(String docid) {
+    return Math.floorMod(Hashing.sha1().hashString(docid, Charsets.UTF_8).asInt(), args.shardCount);
+  }
+
+  private static long numDocs(List<IndexWriter> writers) {
+    long numDocs = 0;
+    for (IndexWriter writer : writers) {
+      numDocs += writer.getDocStats().numDocs;
+    }
+    return numDocs;
+  }
+
+  private static long maxDoc(List<IndexWriter> writers) {
+    long maxDoc = 0;
+    for (IndexWriter writer : writers) {
+      maxDoc += writer.getDocStats().maxDoc;
+    }
+    return maxDoc;
+  }
+
+  private <E> void finishStage(ThreadPoolExecutor stage, BlockingQueue<E> input, E endMarker, int threads)
+      throws InterruptedException {
+    // One end marker per thread: each thread of the stage consumes exactly one before exiting.
+    for (int i = 0; i < threads; i++) {
+      put(input, endMarker);
+    }
+    int waited = 0;
+    while (!stage.awaitTermination(1, TimeUnit.SECONDS)) {
+      checkPipeline();
+      if (++waited % 60 == 0) {
+        LOG.info(String.format("Waiting for pipeline stage to finish, %d documents queued", input.size()));
+      }
+    }
+  }
+
+  /**
+   * Thrown to the threads of the local indexing pipeline once a thread of it has died, since the queue
+   * it was reading from or writing to may never move again.
+   */
+  private static final class PipelineFailedException extends RuntimeException {
+    private PipelineFailedException(Throwable cause) {
+      super(cause);
+    }
+  }
+
+  private void stageFailed(Throwable e) {
+    if (pipelineFailure.compareAndSet(null, e)) {
+      LOG.error(Thread.currentThread().getName() + ": Pipeline stage failed, aborting the run", e);
+    }
+  }
+
+  private void checkPipeline() {
+    Throwable failure = pipelineFailure.get();
+    if (failure != null) {
+      throw new PipelineFailedException(failure);
+    }
+  }
+
+  // Like BlockingQueue.put, but gives up once the pipeline has failed.
+  private <E> void put(BlockingQueue<E> queue, E item) throws InterruptedException {
+    while (!queue.offer(item, 1, TimeUnit.SECONDS)) {
+      checkPipeline();
+    }
+  }
+
+  // Like BlockingQueue.take, but gives up once the pipeline has failed.
+  private <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+    E item;
+    while ((item = queue.poll(1, TimeUnit.SECONDS)) == null) {
+      checkPipeline();
+    }
+    return item;
+  }
+
+  private static void logStage(String name, StageCounter stage) {
+    double busySeconds = stage.busyNanos.get() / 1e9;
+    double waitSeconds = stage.waitNanos.get() / 1e9;
+    LOG.info(String.format("%-12s %,12d docs, %,10.1f docs/s per busy thread, busy %.1f%% of %.1fs thread time",
+        name + ":", stage.documents.get(), busySeconds > 0 ? stage.documents.get() / busySeconds : 0.0d,
+        busySeconds + waitSeconds > 0 ? 100.0d * busySeconds / (busySeconds + waitSeconds) : 0.0d,
+        busySeconds + waitSeconds));
+  }
+
   public static void main(String[] args) throws Exception {
     IndexCollection.Args indexCollectionArgs = new IndexCollection.Args();
     CmdLineParser parser = new CmdLineParser(indexCollectionArgs, ParserProperties.defaults().withUsageWidth(90));
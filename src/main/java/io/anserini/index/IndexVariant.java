@@ -0,0 +1,167 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import io.anserini.analysis.EnglishStemmingAnalyzer;
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexableField;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One of several indexes that {@link IndexCollection} builds from a single pass over a collection
+ * ({@code -variants}). A variant is written as a stemmer, optionally followed by a dot and options
+ * joined by {@code +}, as in the names of the regression indexes, e.g. {@code porter.pos+docvectors+rawdocs},
+ * {@code krovetz} or {@code none.pos+keepstopwords}. Options are {@code pos} (store positions),
+ * {@code docvectors}, {@code rawdocs}, {@code transformeddocs} and {@code keepstopwords}. The variant
+ * is built in the sub-directory of the index path with the same name.
+ */
+public final class IndexVariant {
+  private static final List<String> STEMMERS = Arrays.asList("porter", "krovetz", "none");
+
+  private final String name;
+  private final String stemmer;
+  private final boolean storeRawDocs;
+  private final boolean keepStopwords;
+  private final FieldType fieldType;
+
+  private IndexVariant(String name, String stemmer, boolean storePositions, boolean storeDocvectors,
+                       boolean storeRawDocs, boolean storeTransformedDocs, boolean keepStopwords) {
+    this.name = name;
+    this.stemmer = stemmer;
+    this.storeRawDocs = storeRawDocs;
+    this.keepStopwords = keepStopwords;
+
+    // Same options as LuceneDocumentGenerator gives its text fields.
+    FieldType type = new FieldType();
+    type.setStored(storeTransformedDocs);
+    if (storeDocvectors) {
+      type.setStoreTermVectors(true);
+      type.setStoreTermVectorPositions(true);
+    }
+    type.setIndexOptions(storePositions ? IndexOptions.DOCS_AND_FREQS_AND_POSITIONS : IndexOptions.DOCS_AND_FREQS);
+    type.freeze();
+    this.fieldType = type;
+  }
+
+  /**
+   * Parses a variant.
+   *
+   * @param spec variant, e.g. {@code porter.pos+docvectors}
+   * @return variant
+   * @throws IllegalArgumentException if the stemmer or an option is unknown
+   */
+  public static IndexVariant parse(String spec) {
+    int dot = spec.indexOf('.');
+    String stemmer = (dot < 0 ? spec : spec.substring(0, dot)).toLowerCase(Locale.ROOT);
+    if (!STEMMERS.contains(stemmer)) {
+      throw new IllegalArgumentException("Unknown stemmer in index variant " + spec + "; expected one of " + STEMMERS);
+    }
+    boolean positions = false;
+    boolean docvectors = false;
+    boolean rawdocs = false;
+    boolean transformeddocs = false;
+    boolean keepstopwords = false;
+    if (dot >= 0) {
+      for (String option : spec.substring(dot + 1).split("\\+")) {
+        switch (option.toLowerCase(Locale.ROOT)) {
+          case "pos":
+            positions = true;
+            break;
+          case "docvectors":
+            docvectors = true;
+            break;
+          case "rawdocs":
+            rawdocs = true;
+            break;
+          case "transformeddocs":
+            transformeddocs = true;
+            break;
+          case "keepstopwords":
+            keepstopwords = true;
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option " + option + " in index variant " + spec);
+        }
+      }
+    }
+    return new IndexVariant(spec, stemmer, positions, docvectors, rawdocs, transformeddocs, keepstopwords);
+  }
+
+  /**
+   * Returns the name of the variant, which is also the name of its sub-directory.
+   *
+   * @return name of the variant
+   */
+  public String name() {
+    return name;
+  }
+
+  public boolean storeRawDocs() {
+    return storeRawDocs;
+  }
+
+  /**
+   * Returns the analyzer of the variant, for collections analyzed with {@link EnglishStemmingAnalyzer}.
+   *
+   * @return analyzer of the variant
+   */
+  public Analyzer analyzer() {
+    return keepStopwords ? new EnglishStemmingAnalyzer(stemmer, CharArraySet.EMPTY_SET) :
+        new EnglishStemmingAnalyzer(stemmer);
+  }
+
+  /**
+   * Returns the document to add to the index of this variant, given a document generated for all
+   * variants. Text fields are given the options of this variant, and the raw document is dropped unless
+   * this variant stores it; other fields are shared with the given document. Documents returned for
+   * different variants can be added to their indexes by the same thread, one after the other, but not
+   * concurrently.
+   *
+   * @param doc document generated for all variants
+   * @return document for this variant
+   */
+  public Document apply(Document doc) {
+    Document variant = new Document();
+    for (IndexableField field : doc) {
+      if (field.name().equals(LuceneDocumentGenerator.FIELD_RAW)) {
+        if (storeRawDocs) {
+          variant.add(field);
+        }
+      } else if (field.fieldType().tokenized() && field.fieldType().indexOptions() != IndexOptions.NONE &&
+          field.stringValue() != null) {
+        variant.add(new Field(field.name(), field.stringValue(), fieldType));
+      } else {
+        variant.add(field);
+      }
+    }
+    return variant;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -0,0 +1,439 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.InfoStream;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Live metrics of an indexing run: documents and bytes per second, the depth of the queues between
+ * pipeline stages, and a latency histogram for each stage. {@link #report()} takes a snapshot of the
+ * interval since the previous one, which is appended as a JSON line to the metrics file (if any), and
+ * published as the attributes of an MBean named {@value #OBJECT_NAME}, with dotted names such as
+ * {@code stages.read.p99Micros}.
+ */
+public final class IndexingMetrics implements DynamicMBean {
+  private static final Logger LOG = LogManager.getLogger(IndexingMetrics.class);
+
+  public static final String OBJECT_NAME = "io.anserini:type=IndexCollection";
+
+  /**
+   * Reading and parsing the next document of a file segment (including the time waiting for it to be
+   * decompressed).
+   */
+  public final Histogram read = new Histogram();
+
+  /**
+   * Turning a source document into a Lucene document with a generator (e.g., cleaning HTML).
+   */
+  public final Histogram transform = new Histogram();
+
+  /**
+   * Adding a document to the {@code IndexWriter}, which includes analyzing it, and (on the thread
+   * that happens to trigger one) flushing a segment.
+   */
+  public final Histogram index = new Histogram();
+
+  /**
+   * Flushing a segment to disk.
+   */
+  public final Histogram flush = new Histogram();
+
+  /**
+   * Merging segments.
+   */
+  public final Histogram merge = new Histogram();
+
+  /**
+   * Sending a batch of documents to Solr or Elasticsearch.
+   */
+  public final Histogram send = new Histogram();
+
+  private final LongSupplier documents;
+  private final LongSupplier bytes;
+  private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+  private final Map<String, LongSupplier> totals = new LinkedHashMap<>();
+  private final Map<String, Long> lastTotals = new HashMap<>();
+  private final Path file;
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private final long start = System.nanoTime();
+  private long lastTime = start;
+  private long lastDocuments = 0;
+  private long lastBytes = 0;
+  private volatile Map<String, Object> latest = Collections.emptyMap();
+  private ObjectName registered;
+
+  /**
+   * A histogram of latencies, with four buckets per power of two (i.e., percentiles are accurate to
+   * within about 12%). Recording is lock-free, so all threads of a stage share one histogram.
+   */
+  public static final class Histogram {
+    private static final int BUCKETS = 256;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+    private final long[] previous = new long[BUCKETS];
+    private long previousSum = 0;
+
+    private Histogram() {
+      for (int i = 0; i < BUCKETS; i++) {
+        counts[i] = new LongAdder();
+      }
+    }
+
+    public void record(long nanos) {
+      if (nanos < 0) {
+        nanos = 0;
+      }
+      counts[bucket(nanos)].increment();
+      sum.add(nanos);
+      long m;
+      while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+        // retry
+      }
+    }
+
+    public long count() {
+      long count = 0;
+      for (LongAdder c : counts) {
+        count += c.sum();
+      }
+      return count;
+    }
+
+    static int bucket(long nanos) {
+      if (nanos < 4) {
+        return (int) nanos;
+      }
+      int exp = 63 - Long.numberOfLeadingZeros(nanos);
+      return 4 * (exp - 1) + (int) ((nanos >>> (exp - 2)) & 3);
+    }
+
+    static long lowerBound(int bucket) {
+      if (bucket < 4) {
+        return bucket;
+      }
+      int exp = bucket / 4 + 1;
+      return (4L + bucket % 4) << (exp - 2);
+    }
+
+    // Summarizes the values recorded since the previous call, or returns null if there are none.
+    private synchronized Map<String, Object> interval() {
+      long[] delta = new long[BUCKETS];
+      long count = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        long c = counts[i].sum();
+        delta[i] = c - previous[i];
+        previous[i] = c;
+        count += delta[i];
+      }
+      long total = sum.sum();
+      long intervalSum = total - previousSum;
+      previousSum = total;
+      long intervalMax = max.getAndSet(0);
+      if (count == 0) {
+        return null;
+      }
+
+      Map<String, Object> summary = new LinkedHashMap<>();
+      summary.put("count", count);
+      summary.put("meanMicros", micros(intervalSum / count));
+      summary.put("p50Micros", micros(percentile(delta, count, 0.50)));
+      summary.put("p90Micros", micros(percentile(delta, count, 0.90)));
+      summary.put("p99Micros", micros(percentile(delta, count, 0.99)));
+      summary.put("maxMicros", micros(intervalMax));
+      summary.put("totalSeconds", round(intervalSum / 1e9));
+      return summary;
+    }
+
+    // Returns the middle of the bucket holding the value of the given rank.
+    private static long percentile(long[] counts, long count, double p) {
+      long rank = (long) Math.ceil(p * count);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += counts[i];
+        if (seen >= rank && counts[i] > 0) {
+          return i + 1 < BUCKETS ? (lowerBound(i) + lowerBound(i + 1)) / 2 : lowerBound(i);
+        }
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * Creates the metrics of a run.
+   *
+   * @param documents number of documents indexed so far
+   * @param bytes number of bytes of the collection read so far
+   * @param file file to append a JSON line to at every report, or null
+   */
+  public IndexingMetrics(LongSupplier documents, LongSupplier bytes, Path file) {
+    this.documents = documents;
+    this.bytes = bytes;
+    this.file = file;
+  }
+
+  /**
+   * Adds a value, such as the depth of a queue, to be sampled at every report.
+   *
+   * @param name name of the value
+   * @param value supplier of the value
+   */
+  public synchronized void gauge(String name, LongSupplier value) {
+    gauges.put(name, value);
+  }
+
+  /**
+   * Adds a running total, such as the number of documents sent to a server, to be reported at every
+   * report along with its rate per second over the interval, as {@code <name>PerSecond}.
+   *
+   * @param name name of the total
+   * @param total supplier of the total
+   */
+  public synchronized void total(String name, LongSupplier total) {
+    totals.put(name, total);
+    lastTotals.put(name, total.getAsLong());
+  }
+
+  /**
+   * Returns an {@link InfoStream} to be set on an {@code IndexWriterConfig}, which records how long
+   * each segment flush takes.
+   *
+   * @return info stream recording flush times
+   */
+  public InfoStream flushInfoStream() {
+    return new InfoStream() {
+      @Override
+      public void message(String component, String message) {
+        // Logged by DocumentsWriterPerThread as "flush time 123.4 msec".
+        if (message.startsWith("flush time ") && message.endsWith(" msec")) {
+          try {
+            double msec = Double.parseDouble(message.substring(11, message.length() - 5));
+            flush.record((long) (msec * 1e6));
+          } catch (NumberFormatException e) {
+            // not the message we are after
+          }
+        }
+      }
+
+      @Override
+      public boolean isEnabled(String component) {
+        return "DWPT".equals(component);
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+  /**
+   * Takes a snapshot of the metrics since the previous report, publishes it over JMX, and appends it
+   * to the metrics file, if any.
+   *
+   * @return the snapshot
+   */
+  public synchronized Map<String, Object> report() {
+    long now = System.nanoTime();
+    double seconds = Math.max(now - lastTime, 1) / 1e9;
+    long docs = documents.getAsLong();
+    long bytesRead = bytes.getAsLong();
+
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("timestamp", System.currentTimeMillis());
+    snapshot.put("elapsedSeconds", round((now - start) / 1e9));
+    snapshot.put("documents", docs);
+    snapshot.put("bytes", bytesRead);
+    snapshot.put("documentsPerSecond", round((docs - lastDocuments) / seconds));
+    snapshot.put("bytesPerSecond", round((bytesRead - lastBytes) / seconds));
+    for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+      snapshot.put(gauge.getKey(), gauge.getValue().getAsLong());
+    }
+    for (Map.Entry<String, LongSupplier> total : totals.entrySet()) {
+      long value = total.getValue().getAsLong();
+      snapshot.put(total.getKey(), value);
+      snapshot.put(total.getKey() + "PerSecond", round((value - lastTotals.get(total.getKey())) / seconds));
+      lastTotals.put(total.getKey(), value);
+    }
+    Map<String, Object> stages = new LinkedHashMap<>();
+    addStage(stages, "read", read);
+    addStage(stages, "transform", transform);
+    addStage(stages, "index", index);
+    addStage(stages, "flush", flush);
+    addStage(stages, "merge", merge);
+    addStage(stages, "send", send);
+    snapshot.put("stages", stages);
+
+    lastTime = now;
+    lastDocuments = docs;
+    lastBytes = bytesRead;
+    latest = snapshot;
+
+    if (file != null) {
+      try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+        writer.write(mapper.writeValueAsString(snapshot));
+        writer.newLine();
+      } catch (IOException e) {
+        LOG.error("Unable to write metrics to " + file, e);
+      }
+    }
+    return snapshot;
+  }
+
+  private static void addStage(Map<String, Object> stages, String name, Histogram histogram) {
+    Map<String, Object> summary = histogram.interval();
+    if (summary != null) {
+      stages.put(name, summary);
+    }
+  }
+
+  /**
+   * Registers these metrics with the platform MBean server, replacing those of an earlier run.
+   */
+  public void register() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+      registered = name;
+    } catch (JMException e) {
+      LOG.warn("Unable to register indexing metrics with JMX", e);
+    }
+  }
+
+  public void unregister() {
+    if (registered == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+    } catch (JMException e) {
+      LOG.warn("Unable to unregister indexing metrics from JMX", e);
+    }
+    registered = null;
+  }
+
+  // Flattens a snapshot into dotted attribute names.
+  private static void flatten(String prefix, Map<String, Object> snapshot, Map<String, Object> attributes) {
+    for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+      if (entry.getValue() instanceof Map) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> nested = (Map<String, Object>) entry.getValue();
+        flatten(prefix + entry.getKey() + ".", nested, attributes);
+      } else {
+        attributes.put(prefix + entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    flatten("", latest, attributes);
+    return attributes;
+  }
+
+  @Override
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    Map<String, Object> attributes = attributes();
+    if (!attributes.containsKey(attribute)) {
+      throw new AttributeNotFoundException(attribute);
+    }
+    return attributes.get(attribute);
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] names) {
+    Map<String, Object> attributes = attributes();
+    AttributeList list = new AttributeList();
+    for (String name : names) {
+      if (attributes.containsKey(name)) {
+        list.add(new Attribute(name, attributes.get(name)));
+      }
+    }
+    return list;
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo() {
+    List<MBeanAttributeInfo> infos = new ArrayList<>();
+    for (Map.Entry<String, Object> attribute : attributes().entrySet()) {
+      infos.add(new MBeanAttributeInfo(attribute.getKey(), attribute.getValue().getClass().getName(),
+          attribute.getKey(), true, false, false));
+    }
+    return new MBeanInfo(getClass().getName(), "Metrics of the running IndexCollection, as of its last report",
+        infos.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], new MBeanNotificationInfo[0]);
+  }
+
+  @Override
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature) {
+    throw new UnsupportedOperationException(actionName);
+  }
+
+  private static double micros(long nanos) {
+    return round(nanos / 1e3);
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 100) / 100.0;
+  }
+}
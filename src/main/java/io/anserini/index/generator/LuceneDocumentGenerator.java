@@ -25,17 +25,22 @@ import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
-import org.apache.lucene.document.SortedDocValuesField;
-import org.apache.lucene.document.StoredField;
-import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexOptions;
-import org.apache.lucene.util.BytesRef;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Converts a {@link SourceDocument} into a Lucene {@link Document}, ready to be indexed.
  * Prior to the creation of the Lucene document, this class will apply an optional
  * {@link StringTransform} to, for example, clean HTML document.
  *
+ * <p>A generator is used by one thread at a time. Documents passed back to {@link #recycle(Document)}
+ * once indexed are reused, fields and all, by later calls to {@link #createDocument}, so that generating
+ * a document allocates little more than the values of its fields.</p>
+ *
  * @param <T> type of the source document
  */
 public class LuceneDocumentGenerator<T extends SourceDocument> {
@@ -45,10 +50,19 @@ public class LuceneDocumentGenerator<T extends SourceDocument> {
   public static final String FIELD_BODY = "contents";
   public static final String FIELD_ID = "id";
 
+  // Maximum number of documents kept to be reused.
+  private static final int MAX_REUSABLE = 1024;
+
   private final StringTransform transform;
+  // Documents created to be reused, by their Lucene documents; only used by the generating thread.
+  private final Map<Document, ReusableDocument> reusable = new IdentityHashMap<>();
+  // Documents passed to recycle, in any thread; null until the first one is, as documents are not reused before.
+  private volatile Queue<Document> recycled;
 
   protected IndexCollection.Counters counters;
   protected IndexCollection.Args args;
+  // Type of the tokenized fields, frozen and shared by all documents.
+  protected FieldType contentsType;
 
   /**
    * Default constructor.
@@ -94,6 +108,25 @@ public class LuceneDocumentGenerator<T extends SourceDocument> {
 
   public void config(IndexCollection.Args args) {
     this.args = args;
+
+    FieldType fieldType = new FieldType();
+    fieldType.setStored(args.storeTransformedDocs);
+
+    // Are we storing document vectors?
+    if (args.storeDocvectors) {
+      fieldType.setStoreTermVectors(true);
+      fieldType.setStoreTermVectorPositions(true);
+    }
+
+    // Are we building a "positional" or "count" index?
+    if (args.storePositions) {
+      fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
+    } else {
+      fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
+    }
+
+    fieldType.freeze();
+    this.contentsType = fieldType;
   }
 
   public void setCounters(IndexCollection.Counters counters) {
@@ -118,59 +151,76 @@ public class LuceneDocumentGenerator<T extends SourceDocument> {
       return null;
     }
 
-    // Make a new, empty document.
-    final Document document = new Document();
+    final ReusableDocument document = newDocument();
 
     // Store the collection docid.
-    document.add(new StringField(FIELD_ID, id, Field.Store.YES));
+    document.addString(FIELD_ID, id, Field.Store.YES);
     // This is needed to break score ties by docid.
-    document.add(new SortedDocValuesField(FIELD_ID, new BytesRef(id)));
+    document.addSortedDocValues(FIELD_ID, id);
 
     if (args.storeRawDocs) {
-      document.add(new StoredField(FIELD_RAW, src.content()));
+      document.addStored(FIELD_RAW, src.content());
     }
 
-    FieldType fieldType = new FieldType();
-    fieldType.setStored(args.storeTransformedDocs);
-
-    // Are we storing document vectors?
-    if (args.storeDocvectors) {
-      fieldType.setStoreTermVectors(true);
-      fieldType.setStoreTermVectorPositions(true);
-    }
-
-    // Are we building a "positional" or "count" index?
-    if (args.storePositions) {
-      fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
-    } else {
-      fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
-    }
-
-    document.add(new Field(FIELD_BODY, contents, fieldType));
+    document.addText(FIELD_BODY, contents, contentsType);
 
     // If this document has other fields, then we want to index it also.
     // Currently we just use all the settings of the main "content" field.
     if (src instanceof MultifieldSourceDocument) {
-      ((MultifieldSourceDocument) src).fields().forEach((k, v) -> {
-        FieldType type = new FieldType();
-
-        type.setStored(args.storeTransformedDocs);
+      for (Map.Entry<String, String> field : ((MultifieldSourceDocument) src).fields().entrySet()) {
+        document.addText(field.getKey(), field.getValue(), contentsType);
+      }
+    }
 
-        if (args.storeDocvectors) {
-          type.setStoreTermVectors(true);
-          type.setStoreTermVectorPositions(true);
-        }
+    return document.document();
+  }
 
-        if (args.storePositions) {
-          type.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
-        } else {
-          type.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
+  /**
+   * Passes back a document returned by {@link #createDocument} once it has been indexed, so that its
+   * fields can be reused for a later document. The document must not be used by the caller afterwards.
+   * May be called from any thread.
+   *
+   * @param document document created by this generator
+   */
+  public void recycle(Document document) {
+    Queue<Document> queue = recycled;
+    if (queue == null) {
+      synchronized (this) {
+        if (recycled == null) {
+          recycled = new ConcurrentLinkedQueue<>();
         }
-
-        document.add(new Field(k, v, fieldType));
-      });
+        queue = recycled;
+      }
     }
+    queue.offer(document);
+  }
 
-    return document;
+  /**
+   * Returns an empty document to be filled by {@link #createDocument}, reusing a recycled document if
+   * there is one. Only to be called once the source document is known to be turned into a document.
+   *
+   * @return empty document
+   */
+  protected ReusableDocument newDocument() {
+    Queue<Document> queue = recycled;
+    if (queue == null) {
+      // Documents are not recycled (yet), so they are not kept.
+      return new ReusableDocument(false);
+    }
+    Document document;
+    while ((document = queue.poll()) != null) {
+      ReusableDocument reused = reusable.get(document);
+      // Documents created before the first one was recycled, or beyond the maximum, are not reused.
+      if (reused != null) {
+        reused.clear();
+        return reused;
+      }
+    }
+    if (reusable.size() >= MAX_REUSABLE) {
+      return new ReusableDocument(false);
+    }
+    ReusableDocument created = new ReusableDocument(true);
+    reusable.put(created.document(), created);
+    return created;
   }
 }
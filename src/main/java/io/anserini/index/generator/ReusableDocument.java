@@ -0,0 +1,245 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index.generator;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.util.BytesRefBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Lucene {@link Document} whose fields are kept when the document is cleared, and given new values
+ * (through {@code setStringValue}, {@code setLongValue}, etc.) when fields with the same names and kinds
+ * are added again, so that a generator producing many documents does not allocate fields for each. A
+ * name may be added several times per document (e.g., multi-valued fields), each time with its own field.
+ *
+ * <p>Created through {@link LuceneDocumentGenerator#newDocument()}. A document that is not reused
+ * (see {@link LuceneDocumentGenerator#recycle(Document)}) simply creates its fields, as if built by hand.</p>
+ */
+public final class ReusableDocument {
+  private enum Kind {
+    STRING, STORED_STRING, SORTED_DOC_VALUES, TEXT, STORED, LONG_POINT, INT_POINT, NUMERIC_DOC_VALUES
+  }
+
+  // The fields of one name and kind, the first used of which have been added to the current document.
+  private static final class Slot {
+    final List<Field> fields = new ArrayList<>(1);
+    final List<BytesRefBuilder> bytes = new ArrayList<>(1);
+    int used;
+  }
+
+  private final Document document = new Document();
+  // Fields by name, then kind; null if fields are not kept.
+  private final Map<String, Slot[]> slots;
+  private final List<Slot> used;
+
+  ReusableDocument(boolean reuse) {
+    this.slots = reuse ? new HashMap<>() : null;
+    this.used = reuse ? new ArrayList<>() : null;
+  }
+
+  /**
+   * Returns the document, with the fields added since it was last cleared.
+   *
+   * @return document
+   */
+  public Document document() {
+    return document;
+  }
+
+  /**
+   * Removes all fields from the document, keeping them to be reused.
+   */
+  public void clear() {
+    document.clear();
+    if (used != null) {
+      for (int i = 0; i < used.size(); i++) {
+        used.get(i).used = 0;
+      }
+      used.clear();
+    }
+  }
+
+  /**
+   * Adds an indexed, untokenized {@link StringField}.
+   *
+   * @param name field name
+   * @param value field value
+   * @param store whether to store the value
+   */
+  public void addString(String name, String value, Field.Store store) {
+    Kind kind = store == Field.Store.YES ? Kind.STORED_STRING : Kind.STRING;
+    Slot slot = slot(name, kind);
+    if (slot == null || slot.used == slot.fields.size()) {
+      add(slot, new StringField(name, value, store));
+    } else {
+      reuse(slot).setStringValue(value);
+    }
+  }
+
+  /**
+   * Adds a {@link SortedDocValuesField} holding the UTF-8 bytes of a string.
+   *
+   * @param name field name
+   * @param value field value
+   */
+  public void addSortedDocValues(String name, String value) {
+    Slot slot = slot(name, Kind.SORTED_DOC_VALUES);
+    if (slot == null || slot.used == slot.fields.size()) {
+      BytesRefBuilder bytes = new BytesRefBuilder();
+      bytes.copyChars(value);
+      if (slot != null) {
+        slot.bytes.add(bytes);
+      }
+      add(slot, new SortedDocValuesField(name, bytes.get()));
+    } else {
+      BytesRefBuilder bytes = slot.bytes.get(slot.used);
+      bytes.copyChars(value);
+      reuse(slot).setBytesValue(bytes.get());
+    }
+  }
+
+  /**
+   * Adds a tokenized text field.
+   *
+   * @param name field name
+   * @param value field value
+   * @param type type of the field, which should be frozen and shared by all documents
+   */
+  public void addText(String name, String value, FieldType type) {
+    Slot slot = slot(name, Kind.TEXT);
+    if (slot != null && slot.used < slot.fields.size() && slot.fields.get(slot.used).fieldType() != type) {
+      slot.fields.set(slot.used, new Field(name, value, type));
+    }
+    if (slot == null || slot.used == slot.fields.size()) {
+      add(slot, new Field(name, value, type));
+    } else {
+      reuse(slot).setStringValue(value);
+    }
+  }
+
+  /**
+   * Adds a {@link StoredField} holding a string.
+   *
+   * @param name field name
+   * @param value field value
+   */
+  public void addStored(String name, String value) {
+    Slot slot = slot(name, Kind.STORED);
+    if (slot == null || slot.used == slot.fields.size()) {
+      add(slot, new StoredField(name, value));
+    } else {
+      reuse(slot).setStringValue(value);
+    }
+  }
+
+  /**
+   * Adds a {@link LongPoint} with a single value.
+   *
+   * @param name field name
+   * @param value field value
+   */
+  public void addLongPoint(String name, long value) {
+    Slot slot = slot(name, Kind.LONG_POINT);
+    if (slot == null || slot.used == slot.fields.size()) {
+      add(slot, new LongPoint(name, value));
+    } else {
+      ((LongPoint) reuse(slot)).setLongValue(value);
+    }
+  }
+
+  /**
+   * Adds an {@link IntPoint} with a single value.
+   *
+   * @param name field name
+   * @param value field value
+   */
+  public void addIntPoint(String name, int value) {
+    Slot slot = slot(name, Kind.INT_POINT);
+    if (slot == null || slot.used == slot.fields.size()) {
+      add(slot, new IntPoint(name, value));
+    } else {
+      ((IntPoint) reuse(slot)).setIntValue(value);
+    }
+  }
+
+  /**
+   * Adds a {@link NumericDocValuesField}.
+   *
+   * @param name field name
+   * @param value field value
+   */
+  public void addNumericDocValues(String name, long value) {
+    Slot slot = slot(name, Kind.NUMERIC_DOC_VALUES);
+    if (slot == null || slot.used == slot.fields.size()) {
+      add(slot, new NumericDocValuesField(name, value));
+    } else {
+      reuse(slot).setLongValue(value);
+    }
+  }
+
+  private Slot slot(String name, Kind kind) {
+    if (slots == null) {
+      return null;
+    }
+    Slot[] byKind = slots.get(name);
+    if (byKind == null) {
+      byKind = new Slot[Kind.values().length];
+      slots.put(name, byKind);
+    }
+    Slot slot = byKind[kind.ordinal()];
+    if (slot == null) {
+      slot = new Slot();
+      byKind[kind.ordinal()] = slot;
+    }
+    return slot;
+  }
+
+  // Adds a new field, keeping it in its slot (if any) to be reused.
+  private void add(Slot slot, Field field) {
+    if (slot != null) {
+      slot.fields.add(field);
+      use(slot);
+    }
+    document.add(field);
+  }
+
+  // Returns the next unused field of a slot, added to the document.
+  private Field reuse(Slot slot) {
+    Field field = slot.fields.get(slot.used);
+    use(slot);
+    document.add(field);
+    return field;
+  }
+
+  private void use(Slot slot) {
+    if (slot.used++ == 0) {
+      used.add(slot);
+    }
+  }
+}
@@ -0,0 +1,29 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index.generator;
+
+import io.anserini.index.IndexCollection;
+import io.anserini.index.transform.StreamingHtmlStringTransform;
+
+public class StreamingHtmlGenerator extends LuceneDocumentGenerator {
+  public StreamingHtmlGenerator() {
+    super(new StreamingHtmlStringTransform());
+  }
+  public StreamingHtmlGenerator(IndexCollection.Args args, IndexCollection.Counters counters) {
+    super(new StreamingHtmlStringTransform(), args, counters);
+  }
+}
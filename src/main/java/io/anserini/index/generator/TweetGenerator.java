@@ -21,25 +21,14 @@ import com.twitter.twittertext.TwitterTextParseResults;
 import com.twitter.twittertext.TwitterTextParser;
 import io.anserini.collection.TweetCollection;
 import io.anserini.index.IndexCollection;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import io.anserini.util.SortedLongSet;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
-import org.apache.lucene.document.FieldType;
-import org.apache.lucene.document.IntPoint;
-import org.apache.lucene.document.LongPoint;
-import org.apache.lucene.document.NumericDocValuesField;
-import org.apache.lucene.document.StoredField;
-import org.apache.lucene.document.StringField;
-import org.apache.lucene.index.IndexOptions;
-import org.apache.tools.bzip2.CBZip2InputStream;
-
-import java.io.BufferedReader;
+
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.List;
 
 /**
@@ -51,7 +40,8 @@ public class TweetGenerator extends LuceneDocumentGenerator<TweetCollection.Docu
   public static final String FIELD_RAW = "raw";
   public static final String FIELD_BODY = "contents";
   public static final String FIELD_ID = "id";
-  private LongOpenHashSet deletes = null;
+  private SortedLongSet deletes = null;
+  private final Extractor extractor = new Extractor();
 
   public enum StatusField {
     ID_LONG("id_long"),
@@ -79,29 +69,14 @@ public class TweetGenerator extends LuceneDocumentGenerator<TweetCollection.Docu
     super(args, counters);
 
     if (!args.tweetDeletedIdsFile.isEmpty()) {
-      deletes = new LongOpenHashSet();
       File deletesFile = new File(args.tweetDeletedIdsFile);
       if (!deletesFile.exists()) {
         System.err.println("Error: " + deletesFile + " does not exist!");
         System.exit(-1);
       }
-      LOG.info("Reading deletes from " + deletesFile);
-
-      FileInputStream fin = new FileInputStream(deletesFile);
-      byte[] ignoreBytes = new byte[2];
-      fin.read(ignoreBytes); // "B", "Z" bytes from commandline tools
-      BufferedReader br = new BufferedReader(new InputStreamReader(new CBZip2InputStream(fin)));
-
-      String s;
-      while ((s = br.readLine()) != null) {
-        if (s.contains("\t")) {
-          deletes.add(Long.parseLong(s.split("\t")[0]));
-        } else {
-          deletes.add(Long.parseLong(s));
-        }
-      }
-      br.close();
-      fin.close();
+
+      // Sorted and mapped once per run, and shared by the generators of all threads.
+      deletes = SortedLongSet.open(deletesFile.toPath());
       LOG.info("Read " + deletes.size() + " tweetids from deletes file.");
     }
   }
@@ -110,19 +85,19 @@ public class TweetGenerator extends LuceneDocumentGenerator<TweetCollection.Docu
   public Document createDocument(TweetCollection.Document tweetDoc) {
     String id = tweetDoc.id();
 
-    if (tweetDoc.content().trim().isEmpty()) {
+    String content = tweetDoc.content().trim();
+    if (content.isEmpty()) {
       counters.empty.incrementAndGet();
       return null;
     }
-    final TwitterTextParseResults result = TwitterTextParser.parseTweet(tweetDoc.content().trim());
+    final TwitterTextParseResults result = TwitterTextParser.parseTweet(content);
     if (!result.isValid) {
       counters.errors.incrementAndGet();
       return null;
     }
-    String text = tweetDoc.content().trim().substring(result.validTextRange.start, result.validTextRange.end);
+    String text = content.substring(result.validTextRange.start, result.validTextRange.end);
 
     if (!args.tweetKeepUrls) {
-      final Extractor extractor = new Extractor();
       final List<String> urls = extractor.extractURLs(text);
       for (String url : urls) {
         text = text.replaceAll(url, "");
@@ -135,7 +110,7 @@ public class TweetGenerator extends LuceneDocumentGenerator<TweetCollection.Docu
     }
 
     // Skip deletes tweetids.
-    if (deletes != null && deletes.contains(id)) {
+    if (deletes != null && deletes.contains(tweetDoc.getIdLong())) {
       counters.skipped.incrementAndGet();
       return null;
     }
@@ -150,61 +125,48 @@ public class TweetGenerator extends LuceneDocumentGenerator<TweetCollection.Docu
       return null;
     }
 
-    Document doc = new Document();
-    doc.add(new StringField(FIELD_ID, id, Field.Store.YES));
+    final ReusableDocument doc = newDocument();
+    doc.addString(FIELD_ID, id, Field.Store.YES);
 
     // We need this to break scoring ties.
-    doc.add(new LongPoint(StatusField.ID_LONG.name, tweetDoc.getIdLong()));
-    doc.add(new NumericDocValuesField(StatusField.ID_LONG.name, tweetDoc.getIdLong()));
-
-    tweetDoc.getEpoch().ifPresent( epoch ->
-      doc.add(new LongPoint(StatusField.EPOCH.name, epoch)) );
-    doc.add(new StringField(StatusField.SCREEN_NAME.name, tweetDoc.getScreenName(), Field.Store.NO));
-    doc.add(new IntPoint(StatusField.FRIENDS_COUNT.name, tweetDoc.getFollowersCount()));
-    doc.add(new IntPoint(StatusField.FOLLOWERS_COUNT.name, tweetDoc.getFriendsCount()));
-    doc.add(new IntPoint(StatusField.STATUSES_COUNT.name, tweetDoc.getStatusesCount()));
-
-    tweetDoc.getInReplyToStatusId().ifPresent( rid -> {
-      doc.add(new LongPoint(StatusField.IN_REPLY_TO_STATUS_ID.name, rid));
-      tweetDoc.getInReplyToUserId().ifPresent( ruid ->
-        doc.add(new LongPoint(StatusField.IN_REPLY_TO_USER_ID.name, ruid)) );
-    });
-
-    tweetDoc.getRetweetedStatusId().ifPresent( rid -> {
-      doc.add(new LongPoint(StatusField.RETWEETED_STATUS_ID.name, rid));
-      tweetDoc.getRetweetedUserId().ifPresent( ruid ->
-        doc.add(new LongPoint(StatusField.RETWEETED_USER_ID.name, ruid)) );
-      tweetDoc.getRetweetCount().ifPresent( rc ->
-        doc.add(new LongPoint(StatusField.RETWEET_COUNT.name, rc)) );
-    });
-
-    tweetDoc.getLang().ifPresent( lang ->
-      doc.add(new StringField(StatusField.LANG.name, lang, Field.Store.NO))
-    );
+    doc.addLongPoint(StatusField.ID_LONG.name, tweetDoc.getIdLong());
+    doc.addNumericDocValues(StatusField.ID_LONG.name, tweetDoc.getIdLong());
 
-    if (args.storeRawDocs) { // store the raw json string as one single field
-      doc.add(new StoredField(FIELD_RAW, tweetDoc.getJsonString()));
+    if (tweetDoc.getEpoch().isPresent()) {
+      doc.addLongPoint(StatusField.EPOCH.name, tweetDoc.getEpoch().getAsLong());
+    }
+    doc.addString(StatusField.SCREEN_NAME.name, tweetDoc.getScreenName(), Field.Store.NO);
+    doc.addIntPoint(StatusField.FRIENDS_COUNT.name, tweetDoc.getFollowersCount());
+    doc.addIntPoint(StatusField.FOLLOWERS_COUNT.name, tweetDoc.getFriendsCount());
+    doc.addIntPoint(StatusField.STATUSES_COUNT.name, tweetDoc.getStatusesCount());
+
+    if (tweetDoc.getInReplyToStatusId().isPresent()) {
+      doc.addLongPoint(StatusField.IN_REPLY_TO_STATUS_ID.name, tweetDoc.getInReplyToStatusId().getAsLong());
+      if (tweetDoc.getInReplyToUserId().isPresent()) {
+        doc.addLongPoint(StatusField.IN_REPLY_TO_USER_ID.name, tweetDoc.getInReplyToUserId().getAsLong());
+      }
     }
 
-    FieldType fieldType = new FieldType();
-
-    fieldType.setStored(args.storeTransformedDocs);
+    if (tweetDoc.getRetweetedStatusId().isPresent()) {
+      doc.addLongPoint(StatusField.RETWEETED_STATUS_ID.name, tweetDoc.getRetweetedStatusId().getAsLong());
+      if (tweetDoc.getRetweetedUserId().isPresent()) {
+        doc.addLongPoint(StatusField.RETWEETED_USER_ID.name, tweetDoc.getRetweetedUserId().getAsLong());
+      }
+      if (tweetDoc.getRetweetCount().isPresent()) {
+        doc.addLongPoint(StatusField.RETWEET_COUNT.name, tweetDoc.getRetweetCount().getAsLong());
+      }
+    }
 
-    // Are we storing document vectors?
-    if (args.storeDocvectors) {
-      fieldType.setStoreTermVectors(true);
-      fieldType.setStoreTermVectorPositions(true);
+    if (tweetDoc.getLang().isPresent()) {
+      doc.addString(StatusField.LANG.name, tweetDoc.getLang().get(), Field.Store.NO);
     }
 
-    // Are we building a "positional" or "count" index?
-    if (args.storePositions) {
-      fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
-    } else {
-      fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
+    if (args.storeRawDocs) { // store the raw json string as one single field
+      doc.addStored(FIELD_RAW, tweetDoc.getJsonString());
     }
 
-    doc.add(new Field(FIELD_BODY, text, fieldType));
+    doc.addText(FIELD_BODY, text, contentsType);
 
-    return doc;
+    return doc.document();
   }
 }
@@ -23,13 +23,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
-import org.apache.lucene.document.FieldType;
-import org.apache.lucene.document.LongPoint;
-import org.apache.lucene.document.SortedDocValuesField;
-import org.apache.lucene.document.StoredField;
-import org.apache.lucene.document.StringField;
-import org.apache.lucene.index.IndexOptions;
-import org.apache.lucene.util.BytesRef;
 import org.jsoup.Jsoup;
 
 import java.io.IOException;
@@ -81,72 +74,49 @@ public class WapoGenerator extends LuceneDocumentGenerator<WashingtonPostCollect
       return null;
     }
 
-    Document doc = new Document();
-    doc.add(new StringField(FIELD_ID, id, Field.Store.YES));
+    final ReusableDocument doc = newDocument();
+    doc.addString(FIELD_ID, id, Field.Store.YES);
     // This is needed to break score ties by docid.
-    doc.add(new SortedDocValuesField(FIELD_ID, new BytesRef(id)));
-    doc.add(new LongPoint(WapoField.PUBLISHED_DATE.name, wapoDoc.getPublishDate()));
-    wapoDoc.getAuthor().ifPresent(author -> {
-      doc.add(new StringField(WapoField.AUTHOR.name, author, Field.Store.NO));
-    });
-    wapoDoc.getArticleUrl().ifPresent(url -> {
-      doc.add(new StringField(WapoField.ARTICLE_URL.name, url, Field.Store.NO));
-    });
-    wapoDoc.getTitle().ifPresent(title -> {
-      doc.add(new StringField(WapoField.TITLE.name, title, Field.Store.NO));
-    });
+    doc.addSortedDocValues(FIELD_ID, id);
+    doc.addLongPoint(WapoField.PUBLISHED_DATE.name, wapoDoc.getPublishDate());
+    if (wapoDoc.getAuthor().isPresent()) {
+      doc.addString(WapoField.AUTHOR.name, wapoDoc.getAuthor().get(), Field.Store.NO);
+    }
+    if (wapoDoc.getArticleUrl().isPresent()) {
+      doc.addString(WapoField.ARTICLE_URL.name, wapoDoc.getArticleUrl().get(), Field.Store.NO);
+    }
 
     StringBuilder contentBuilder = new StringBuilder();
-    wapoDoc.getTitle().ifPresent(title -> {
+    if (wapoDoc.getTitle().isPresent()) {
+      String title = wapoDoc.getTitle().get();
+      doc.addString(WapoField.TITLE.name, title, Field.Store.NO);
       contentBuilder.append(title).append("\n");
-    });
+    }
 
-    wapoDoc.getObj().getContents().ifPresent(contents -> {
-      for (WashingtonPostObject.Content contentObj : contents) {
-        if (contentObj == null) continue;
-        if (contentObj.getType().isPresent() && contentObj.getContent().isPresent()) {
-          contentObj.getType().ifPresent(type -> {
-            contentObj.getContent().ifPresent(content -> {
-              if (CONTENT_TYPE_TAG.contains(type)) {
-                contentBuilder.append(removeTags(content)).append("\n");
-              } else if (type.compareToIgnoreCase("kicker") == 0) {
-                doc.add(new StringField(WapoField.KICKER.name, content, Field.Store.NO));
-                contentBuilder.append(content).append("\n");
-              }
-            });
-          });
+    for (WashingtonPostObject.Content contentObj : wapoDoc.getContents()) {
+      if (contentObj.getType().isPresent() && contentObj.getContent().isPresent()) {
+        String type = contentObj.getType().get();
+        String content = contentObj.getContent().get();
+        if (CONTENT_TYPE_TAG.contains(type)) {
+          contentBuilder.append(removeTags(content)).append("\n");
+        } else if (type.compareToIgnoreCase("kicker") == 0) {
+          doc.addString(WapoField.KICKER.name, content, Field.Store.NO);
+          contentBuilder.append(content).append("\n");
         }
-        contentObj.getFullCaption().ifPresent(caption -> {
-          String fullCaption = contentObj.getFullCaption().get();
-          doc.add(new StringField(WapoField.FULL_CAPTION.name, fullCaption, Field.Store.NO));
-          contentBuilder.append(removeTags(fullCaption)).append("\n");
-        });
       }
-    });
-
-    if (args.storeRawDocs) { // store the raw json string as one single field
-      doc.add(new StoredField(FIELD_RAW, wapoDoc.getContent()));
-    }
-
-    FieldType fieldType = new FieldType();
-
-    fieldType.setStored(args.storeTransformedDocs);
-
-    // Are we storing document vectors?
-    if (args.storeDocvectors) {
-      fieldType.setStoreTermVectors(true);
-      fieldType.setStoreTermVectorPositions(true);
+      if (contentObj.getFullCaption().isPresent()) {
+        String fullCaption = contentObj.getFullCaption().get();
+        doc.addString(WapoField.FULL_CAPTION.name, fullCaption, Field.Store.NO);
+        contentBuilder.append(removeTags(fullCaption)).append("\n");
+      }
     }
 
-    // Are we building a "positional" or "count" index?
-    if (args.storePositions) {
-      fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
-    } else {
-      fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
+    if (args.storeRawDocs) { // store the raw json string as one single field
+      doc.addStored(FIELD_RAW, wapoDoc.getContent());
     }
 
-    doc.add(new Field(FIELD_BODY, contentBuilder.toString(), fieldType));
+    doc.addText(FIELD_BODY, contentBuilder.toString(), contentsType);
 
-    return doc;
+    return doc.document();
   }
 }
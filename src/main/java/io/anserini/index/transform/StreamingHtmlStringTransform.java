@@ -0,0 +1,425 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index.transform;
+
+import org.jsoup.nodes.Entities;
+
+/**
+ * String transform that extracts plain text out of HTML documents in a single pass over the markup,
+ * without building a DOM. The text is the same as Jsoup's ({@link JsoupStringTransform}) up to the
+ * placement of whitespace: the contents of <code>script</code> and <code>style</code> elements,
+ * comments and tags are dropped, entities are decoded, runs of whitespace are collapsed into single
+ * spaces, and block elements (e.g., <code>p</code>, <code>div</code>, <code>td</code>) and
+ * <code>br</code> start a new word. Unlike Jsoup, elements are not moved around (e.g., text misplaced
+ * inside a table is left in place rather than moved before it), and the output is cut at a maximum
+ * length.
+ *
+ * <p>An instance reuses its buffer across documents, and must not be used by more than one thread at
+ * a time.</p>
+ */
+public class StreamingHtmlStringTransform extends StringTransform {
+  /**
+   * Default maximum length of the extracted text, in characters.
+   */
+  public static final int DEFAULT_MAX_LENGTH = 1 << 22;
+
+  // Kinds of elements, as flags.
+  private static final int BLOCK = 1;
+  // Content is raw text and dropped (script, style).
+  private static final int SKIP = 2;
+  // Content is raw text and kept as is (e.g., iframe).
+  private static final int RAW = 4;
+  // Content is text, with entities decoded, but without tags (title, textarea).
+  private static final int RCDATA = 8;
+  // Everything that follows is raw text.
+  private static final int PLAINTEXT = 16;
+  // Whitespace is kept.
+  private static final int PRESERVE = 32;
+
+  // Names of the elements other than inline ones, by length, with their kinds.
+  private static final String[][] NAMES = new String[11][];
+  private static final int[][] KINDS = new int[11][];
+
+  static {
+    String[] block = {"html", "head", "body", "frameset", "noscript", "meta", "link", "frame", "section",
+        "nav", "aside", "hgroup", "header", "footer", "p", "h1", "h2", "h3", "h4", "h5", "h6", "ul", "ol", "div",
+        "blockquote", "hr", "address", "figure", "figcaption", "form", "fieldset", "ins", "del", "s", "dl", "dt",
+        "dd", "li", "table", "caption", "thead", "tfoot", "tbody", "colgroup", "col", "tr", "th", "td", "video",
+        "audio", "canvas", "details", "menu", "template", "article", "main", "svg", "math", "br"};
+    Object[][] special = {
+        {"script", BLOCK | SKIP}, {"style", BLOCK | SKIP},
+        {"xmp", RAW}, {"iframe", RAW}, {"noembed", RAW}, {"noframes", BLOCK | RAW},
+        {"title", BLOCK | RCDATA | PRESERVE}, {"textarea", RCDATA | PRESERVE},
+        {"plaintext", BLOCK | PLAINTEXT | PRESERVE}, {"pre", BLOCK | PRESERVE}};
+
+    int[] counts = new int[NAMES.length];
+    for (String name : block) {
+      counts[name.length()]++;
+    }
+    for (Object[] element : special) {
+      counts[((String) element[0]).length()]++;
+    }
+    for (int i = 0; i < NAMES.length; i++) {
+      NAMES[i] = new String[counts[i]];
+      KINDS[i] = new int[counts[i]];
+      counts[i] = 0;
+    }
+    for (String name : block) {
+      int length = name.length();
+      NAMES[length][counts[length]] = name;
+      KINDS[length][counts[length]++] = BLOCK;
+    }
+    for (Object[] element : special) {
+      int length = ((String) element[0]).length();
+      NAMES[length][counts[length]] = (String) element[0];
+      KINDS[length][counts[length]++] = (Integer) element[1];
+    }
+  }
+
+  // Capacity beyond which the buffer is not kept for the next document.
+  private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+  private final int maxLength;
+  private StringBuilder out = new StringBuilder(1 << 12);
+  // Lowercased name of the current tag.
+  private final char[] name = new char[NAMES.length];
+  private int nameLength;
+  // Number of open pre elements.
+  private int pre;
+
+  public StreamingHtmlStringTransform() {
+    this(DEFAULT_MAX_LENGTH);
+  }
+
+  /**
+   * Constructor to specify the maximum length of the extracted text.
+   *
+   * @param maxLength maximum length of the extracted text, in characters
+   */
+  public StreamingHtmlStringTransform(int maxLength) {
+    if (maxLength <= 0) {
+      throw new IllegalArgumentException("Maximum length must be positive");
+    }
+    this.maxLength = maxLength;
+  }
+
+  @Override
+  public String apply(String s) {
+    out.setLength(0);
+    pre = 0;
+    int n = s.length();
+    int i = 0;
+    while (i < n && out.length() < maxLength) {
+      char c = s.charAt(i);
+      if (c == '<') {
+        i = markup(s, i);
+      } else if (c == '&') {
+        i = entity(s, i, pre > 0);
+      } else {
+        append(c, pre > 0);
+        i++;
+      }
+    }
+
+    if (out.length() > maxLength) {
+      out.setLength(Character.isHighSurrogate(out.charAt(maxLength - 1)) ? maxLength - 1 : maxLength);
+    }
+    int start = 0;
+    int end = out.length();
+    while (start < end && out.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && out.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    String text = out.substring(start, end);
+    if (out.capacity() > MAX_RETAINED_CAPACITY) {
+      out = new StringBuilder(1 << 12);
+    }
+    return text;
+  }
+
+  // Handles the markup starting with the '<' at i; returns the index following it.
+  private int markup(String s, int i) {
+    int n = s.length();
+    if (i + 1 >= n) {
+      append('<', false);
+      return n;
+    }
+    char next = s.charAt(i + 1);
+    if (isLetter(next)) {
+      int end = tag(s, i + 1);
+      if (end < 0) {
+        // An unterminated tag is dropped with the rest of the document.
+        return n;
+      }
+      return startTag(s, end, kind());
+    } else if (next == '/') {
+      if (i + 2 >= n) {
+        append('<', false);
+        append('/', false);
+        return n;
+      }
+      char first = s.charAt(i + 2);
+      if (isLetter(first)) {
+        int end = tag(s, i + 2);
+        if (end < 0) {
+          return n;
+        }
+        int kind = kind();
+        if ((kind & PRESERVE) != 0 && pre > 0) {
+          pre--;
+        } else if (nameLength == 2 && name[0] == 'b' && name[1] == 'r') {
+          // </br> is taken for <br>
+          space();
+        }
+        return end;
+      }
+      // "</>" is dropped, anything else is a bogus comment.
+      return first == '>' ? i + 3 : skipPast(s, i + 2, ">");
+    } else if (next == '!') {
+      if (s.startsWith("--", i + 2)) {
+        // "<!-->" and "<!--->" are empty comments.
+        if (s.startsWith(">", i + 4)) {
+          return i + 5;
+        } else if (s.startsWith("->", i + 4)) {
+          return i + 6;
+        }
+        return skipPast(s, i + 4, "-->");
+      } else if (s.startsWith("[CDATA[", i + 2)) {
+        int end = s.indexOf("]]>", i + 9);
+        end = end < 0 ? n : end;
+        for (int j = i + 9; j < end; j++) {
+          append(s.charAt(j), pre > 0);
+        }
+        return Math.min(end + 3, n);
+      }
+      return skipPast(s, i + 2, ">");
+    } else if (next == '?') {
+      return skipPast(s, i + 2, ">");
+    }
+    append('<', pre > 0);
+    return i + 1;
+  }
+
+  // Handles the content following a start tag, ending at end, depending on the kind of the element.
+  private int startTag(String s, int end, int kind) {
+    if ((kind & BLOCK) != 0) {
+      space();
+    }
+    if ((kind & (SKIP | RAW | RCDATA | PLAINTEXT)) == 0) {
+      if ((kind & PRESERVE) != 0) {
+        pre++;
+      }
+      return end;
+    }
+
+    int n = s.length();
+    int close = (kind & PLAINTEXT) != 0 ? n : findEndTag(s, end);
+    boolean preserve = (kind & PRESERVE) != 0;
+    if ((kind & RCDATA) != 0) {
+      int j = end;
+      while (j < close && out.length() < maxLength) {
+        char c = s.charAt(j);
+        if (c == '&') {
+          j = entity(s, j, preserve);
+          // An entity is not decoded across the end tag.
+          j = Math.min(j, close);
+        } else {
+          append(c, preserve);
+          j++;
+        }
+      }
+    } else if ((kind & SKIP) == 0) {
+      for (int j = end; j < close && out.length() < maxLength; j++) {
+        append(s.charAt(j), preserve);
+      }
+    }
+    if (close >= n) {
+      return n;
+    }
+    int tagEnd = tag(s, close + 2);
+    return tagEnd < 0 ? n : tagEnd;
+  }
+
+  // Reads the name of a tag starting at i, and skips its attributes. Returns the index following the
+  // tag, or -1 if the document ends first.
+  private int tag(String s, int i) {
+    int n = s.length();
+    nameLength = 0;
+    int j = i;
+    while (j < n) {
+      char c = s.charAt(j);
+      if (isWhitespace(c) || c == '/' || c == '>') {
+        break;
+      }
+      if (nameLength < name.length) {
+        name[nameLength] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+      }
+      nameLength++;
+      j++;
+    }
+
+    // Quotes only start a value right after an equals sign (and whitespace).
+    boolean afterEquals = false;
+    while (j < n) {
+      char c = s.charAt(j);
+      if (c == '>') {
+        return j + 1;
+      } else if (c == '=') {
+        afterEquals = true;
+      } else if ((c == '"' || c == '\'') && afterEquals) {
+        int quote = s.indexOf(c, j + 1);
+        if (quote < 0) {
+          return -1;
+        }
+        j = quote;
+        afterEquals = false;
+      } else if (!isWhitespace(c)) {
+        afterEquals = false;
+      }
+      j++;
+    }
+    return -1;
+  }
+
+  // Returns the kind of the element named by the current tag.
+  private int kind() {
+    if (nameLength >= NAMES.length) {
+      return 0;
+    }
+    String[] names = NAMES[nameLength];
+    for (int k = 0; k < names.length; k++) {
+      String candidate = names[k];
+      int c = 0;
+      while (c < nameLength && candidate.charAt(c) == name[c]) {
+        c++;
+      }
+      if (c == nameLength) {
+        return KINDS[nameLength][k];
+      }
+    }
+    return 0;
+  }
+
+  // Returns the index of the "</" of the end tag matching the current tag name, from i, or the length of
+  // the document if there is none.
+  private int findEndTag(String s, int i) {
+    int n = s.length();
+    int j = i;
+    while ((j = s.indexOf("</", j)) >= 0) {
+      int k = j + 2;
+      int c = 0;
+      while (c < nameLength && k < n && Character.toLowerCase(s.charAt(k)) == name[c]) {
+        c++;
+        k++;
+      }
+      if (c == nameLength && (k == n || isWhitespace(s.charAt(k)) || s.charAt(k) == '/' || s.charAt(k) == '>')) {
+        return j;
+      }
+      j += 2;
+    }
+    return n;
+  }
+
+  // Decodes the character reference starting with the '&' at i; returns the index following it.
+  private int entity(String s, int i, boolean preserve) {
+    int n = s.length();
+    int j = i + 1;
+    if (j < n && s.charAt(j) == '#') {
+      j++;
+      boolean hex = j < n && (s.charAt(j) == 'x' || s.charAt(j) == 'X');
+      if (hex) {
+        j++;
+      }
+      int start = j;
+      long value = 0;
+      while (j < n) {
+        int digit = Character.digit(s.charAt(j), hex ? 16 : 10);
+        if (digit < 0 || s.charAt(j) > 'f') {
+          break;
+        }
+        value = Math.min(value * (hex ? 16 : 10) + digit, Integer.MAX_VALUE);
+        j++;
+      }
+      if (j == start) {
+        append('&', preserve);
+        return i + 1;
+      }
+      if (j < n && s.charAt(j) == ';') {
+        j++;
+      }
+      if ((value >= 0xD800 && value <= 0xDFFF) || value > Character.MAX_CODE_POINT) {
+        append('�', preserve);
+      } else if (value >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+        out.append(Character.highSurrogate((int) value)).append(Character.lowSurrogate((int) value));
+      } else {
+        append((char) value, preserve);
+      }
+      return j;
+    }
+
+    while (j < n && isLetter(s.charAt(j))) {
+      j++;
+    }
+    while (j < n && s.charAt(j) >= '0' && s.charAt(j) <= '9') {
+      j++;
+    }
+    if (j == i + 1) {
+      append('&', preserve);
+      return i + 1;
+    }
+    String entity = s.substring(i + 1, j);
+    boolean terminated = j < n && s.charAt(j) == ';';
+    // Like browsers, only the most common entities are recognized without a semicolon.
+    if (!Entities.isBaseNamedEntity(entity) && !(terminated && Entities.isNamedEntity(entity))) {
+      append('&', preserve);
+      return i + 1;
+    }
+    append(Entities.getCharacterByName(entity), preserve);
+    return terminated ? j + 1 : j;
+  }
+
+  private void append(char c, boolean preserve) {
+    if (!preserve && isWhitespace(c)) {
+      space();
+    } else {
+      out.append(c);
+    }
+  }
+
+  // Ends the current word, if any.
+  private void space() {
+    int length = out.length();
+    if (length > 0 && out.charAt(length - 1) != ' ') {
+      out.append(' ');
+    }
+  }
+
+  private int skipPast(String s, int i, String end) {
+    int j = s.indexOf(end, i);
+    return j < 0 ? s.length() : j + end.length();
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+  }
+}
@@ -16,6 +16,7 @@
 
 package io.anserini.kg;
 
+import io.anserini.collection.ReadAheadInputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -49,8 +50,8 @@ public class Freebase implements Iterable<FreebaseNode>, Closeable {
   public Freebase(Path path) throws IOException {
     String fileName = path.toString();
     if (fileName.endsWith(".gz")) { //.gz
-      InputStream stream = new GZIPInputStream(
-          Files.newInputStream(path, StandardOpenOption.READ), BUFFER_SIZE);
+      InputStream stream = ReadAheadInputStream.wrap(new GZIPInputStream(
+          Files.newInputStream(path, StandardOpenOption.READ), BUFFER_SIZE));
       bufferedReader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
     } else { // in case user had already uncompressed the folder
       bufferedReader = new BufferedReader(new FileReader(fileName));
@@ -39,12 +39,19 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Uses a "node as a document" index of Freebase to look up a Freebase object either by {@code mid} or by a free text
  * search over the textual labels of the nodes.
  */
 public class LookupFreebaseNodes implements Closeable {
+  // Stored fields of the nodes found by a search that are returned; others (e.g., the triples) are not loaded.
+  private static final Set<String> RESULT_FIELDS = new HashSet<>(Arrays.asList(
+      IndexFreebase.FIELD_ID, IndexFreebase.FIELD_NAME, IndexFreebase.FIELD_ALIAS, IndexFreebase.FIELD_LABEL));
+
   private final IndexReader reader;
 
   static final class Args {
@@ -134,13 +141,14 @@ public class LookupFreebaseNodes implements Closeable {
     TopDocs rs = searcher.search(query, numHits);
     ScoredDocuments docs = ScoredDocuments.fromTopDocs(rs, searcher);
 
-    Result[] results = new Result[docs.documents.length];
-    for (int i = 0; i < docs.documents.length; i++) {
+    Result[] results = new Result[docs.size()];
+    for (int i = 0; i < docs.size(); i++) {
       float score = docs.scores[i];
-      String mid = docs.documents[i].getField(IndexFreebase.FIELD_ID).stringValue();
-      String name = docs.documents[i].getField(IndexFreebase.FIELD_NAME).stringValue();
-      String wikiTitle = docs.documents[i].getField(IndexFreebase.FIELD_ALIAS).stringValue();
-      String w3Label = docs.documents[i].getField(IndexFreebase.FIELD_LABEL).stringValue();
+      Document doc = docs.document(i, RESULT_FIELDS);
+      String mid = doc.getField(IndexFreebase.FIELD_ID).stringValue();
+      String name = doc.getField(IndexFreebase.FIELD_NAME).stringValue();
+      String wikiTitle = doc.getField(IndexFreebase.FIELD_ALIAS).stringValue();
+      String w3Label = doc.getField(IndexFreebase.FIELD_LABEL).stringValue();
       results[i] = new Result(mid, name, wikiTitle, w3Label, score);
     }
     return results;
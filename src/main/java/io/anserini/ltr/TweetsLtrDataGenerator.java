@@ -46,7 +46,7 @@ public class TweetsLtrDataGenerator implements Reranker {
   public ScoredDocuments rerank(ScoredDocuments docs, RerankerContext context) {
     IndexReader reader = context.getIndexSearcher().getIndexReader();
 
-    for (int i = 0; i < docs.documents.length; i++) {
+    for (int i = 0; i < docs.size(); i++) {
       Terms terms = null;
       try {
         terms = reader.getTermVector(docs.ids[i], TweetGenerator.FIELD_BODY);
@@ -55,13 +55,13 @@ public class TweetsLtrDataGenerator implements Reranker {
       }
 
       String qid = ((String)context.getQueryId()).replaceFirst("^MB0*", "");
-      String docid = docs.documents[i].getField(TweetGenerator.FIELD_ID).stringValue();
+      String docid = docs.docid(i);
 
       out.print(qrels.getRelevanceGrade(qid, docid));
       out.print(" qid:" + qid);
       out.print(" 1:" + docs.scores[i]);
 
-      float[] intFeatures = this.extractorChain.extractAll(docs.documents[i], terms, context);
+      float[] intFeatures = this.extractorChain.extractAll(docs.document(i), terms, context);
 
       for (int j=0; j<intFeatures.length; j++ ) {
         out.print(" " + (j+2) + ":" + intFeatures[j]);
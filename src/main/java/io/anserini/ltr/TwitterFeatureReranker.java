@@ -47,7 +47,7 @@ public class TwitterFeatureReranker implements Reranker<Integer> {
   public ScoredDocuments rerank(ScoredDocuments docs, RerankerContext<Integer> context) {
     IndexReader reader = context.getIndexSearcher().getIndexReader();
 
-    for (int i = 0; i < docs.documents.length; i++) {
+    for (int i = 0; i < docs.size(); i++) {
       Terms terms = null;
       try {
         terms = reader.getTermVector(docs.ids[i], TweetGenerator.FIELD_BODY);
@@ -56,12 +56,12 @@ public class TwitterFeatureReranker implements Reranker<Integer> {
       }
 
       int qid = context.getQueryId();
-      String docid = docs.documents[i].getField( TweetGenerator.FIELD_ID).stringValue();
+      String docid = docs.docid(i);
 
       out.print(qrels.getRelevanceGrade(qid, docid));
       out.print(" qid:" + qid);
 
-      float[] intFeatures = this.extractors.extractAll(docs.documents[i], terms, context);
+      float[] intFeatures = this.extractors.extractAll(docs.document(i), terms, context);
 
       // TODO use model to rerank
     }
@@ -17,11 +17,14 @@
 package io.anserini.rerank;
 
 import io.anserini.search.SearchArgs;
+import io.anserini.util.FeatureVector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class RerankerContext<K> {
   private final IndexSearcher searcher;
@@ -32,9 +35,22 @@ public class RerankerContext<K> {
   private final List<String> queryTokens;
   private final Query filter;
   private final SearchArgs searchArgs;
+  private final Map<String, FeatureVector> documentVectors;
 
   public RerankerContext(IndexSearcher searcher, K queryId, Query query, String queryDocId, String queryText,
       List<String> queryTokens, Query filter, SearchArgs searchArgs) throws IOException {
+    this(searcher, queryId, query, queryDocId, queryText, queryTokens, filter, searchArgs, new HashMap<>());
+  }
+
+  /**
+   * Creates the context of a topic whose rerankers may reuse the document vectors computed by the
+   * rerankers of other configurations (e.g., RM3 with other parameters) of the same topic.
+   *
+   * @param documentVectors vectors computed from documents by rerankers, by keys of their choosing
+   */
+  public RerankerContext(IndexSearcher searcher, K queryId, Query query, String queryDocId, String queryText,
+      List<String> queryTokens, Query filter, SearchArgs searchArgs, Map<String, FeatureVector> documentVectors)
+      throws IOException {
     this.searcher = searcher;
     this.query = query;
     this.queryId = queryId;
@@ -43,6 +59,7 @@ public class RerankerContext<K> {
     this.queryTokens = queryTokens;
     this.filter = filter;
     this.searchArgs = searchArgs;
+    this.documentVectors = documentVectors;
   }
 
   public IndexSearcher getIndexSearcher() {
@@ -76,4 +93,8 @@ public class RerankerContext<K> {
   public SearchArgs getSearchArgs() {
     return searchArgs;
   }
+
+  public Map<String, FeatureVector> getDocumentVectors() {
+    return documentVectors;
+  }
 }
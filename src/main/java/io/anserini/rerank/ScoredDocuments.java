@@ -17,39 +17,225 @@
 package io.anserini.rerank;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.TopDocs;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_ID;
 
 /**
- * ScoredDocuments object that converts TopDocs from the searcher into an Anserini format
+ * ScoredDocuments object that converts TopDocs from the searcher into an Anserini format. Only the
+ * ids and scores of the hits are kept; their external docids are resolved through the doc values of
+ * {@link io.anserini.index.generator.LuceneDocumentGenerator#FIELD_ID} (or its stored value for indexes
+ * without them) the first time one is asked for, and stored documents are only loaded for the hits,
+ * and the fields, that a caller asks for.
  */
 public class ScoredDocuments {
-  // Array of document objects
-  public Document[] documents;
+  private static final Set<String> ID_FIELDS = Collections.singleton(FIELD_ID);
+
   // The docIds as used by the index reader
   public int[] ids;
   // Scores returned from the searcher's similarity
   public float[] scores;
-  
+  // Searcher the ids refer to
+  private final IndexSearcher searcher;
+  // External docids, resolved for all hits at once
+  private String[] docids;
+  // Stored documents, loaded one at a time
+  private Document[] documents;
+
+  /**
+   * Creates hits of a searcher, whose documents are loaded from it when asked for.
+   *
+   * @param searcher searcher the ids refer to
+   * @param ids ids of the hits
+   * @param scores scores of the hits
+   */
+  public ScoredDocuments(IndexSearcher searcher, int[] ids, float[] scores) {
+    if (ids.length != scores.length) {
+      throw new IllegalArgumentException("Expected as many scores as ids");
+    }
+    this.searcher = searcher;
+    this.ids = ids;
+    this.scores = scores;
+  }
+
   public static ScoredDocuments fromTopDocs(TopDocs rs, IndexSearcher searcher) {
-    ScoredDocuments scoredDocs = new ScoredDocuments();
-    scoredDocs.documents = new Document[rs.scoreDocs.length];
-    scoredDocs.ids = new int[rs.scoreDocs.length];
-    scoredDocs.scores = new float[rs.scoreDocs.length];
+    int[] ids = new int[rs.scoreDocs.length];
+    float[] scores = new float[rs.scoreDocs.length];
+    for (int i = 0; i < rs.scoreDocs.length; i++) {
+      scores[i] = rs.scoreDocs[i].score;
+      ids[i] = rs.scoreDocs[i].doc;
+    }
+    return new ScoredDocuments(searcher, ids, scores);
+  }
+
+  /**
+   * Returns the number of hits.
+   *
+   * @return number of hits
+   */
+  public int size() {
+    return ids.length;
+  }
 
-    for (int i=0; i<rs.scoreDocs.length; i++) {
+  /**
+   * Returns the searcher the ids of the hits refer to.
+   *
+   * @return searcher of the hits
+   */
+  public IndexSearcher getSearcher() {
+    return searcher;
+  }
+
+  /**
+   * Returns the external docid of a hit.
+   *
+   * @param i rank of the hit, from 0
+   * @return docid of the hit, or null if it has none
+   */
+  public String docid(int i) {
+    if (docids == null) {
+      docids = resolveDocids();
+    }
+    return docids[i];
+  }
+
+  /**
+   * Returns all the stored fields of a hit, loading them the first time.
+   *
+   * @param i rank of the hit, from 0
+   * @return stored document of the hit
+   */
+  public Document document(int i) {
+    if (documents == null) {
+      documents = new Document[ids.length];
+    }
+    if (documents[i] == null) {
       try {
-        scoredDocs.documents[i] = searcher.doc(rs.scoreDocs[i].doc);
+        documents[i] = searcher.doc(ids[i]);
       } catch (IOException e) {
-        e.printStackTrace();
-        scoredDocs.documents[i] = null;
+        throw new UncheckedIOException(e);
       }
-      scoredDocs.scores[i] = rs.scoreDocs[i].score;
-      scoredDocs.ids[i] = rs.scoreDocs[i].doc;
     }
+    return documents[i];
+  }
 
-    return scoredDocs;
+  /**
+   * Returns some of the stored fields of a hit, which are loaded anew unless the whole document has
+   * already been loaded.
+   *
+   * @param i rank of the hit, from 0
+   * @param fields names of the fields to load
+   * @return stored document of the hit, with (at least) the given fields
+   */
+  public Document document(int i, Set<String> fields) {
+    if (documents != null && documents[i] != null) {
+      return documents[i];
+    }
+    try {
+      return searcher.doc(ids[i], fields);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns some of the hits, in a given order and with new scores, keeping what has been loaded of
+   * them.
+   *
+   * @param ranks ranks of the hits to keep, from 0, in their new order
+   * @param scores new scores of the hits, in the new order
+   * @return the given hits
+   */
+  public ScoredDocuments select(int[] ranks, float[] scores) {
+    int[] selected = new int[ranks.length];
+    for (int i = 0; i < ranks.length; i++) {
+      selected[i] = ids[ranks[i]];
+    }
+    ScoredDocuments docs = new ScoredDocuments(searcher, selected, scores);
+    if (docids != null) {
+      docs.docids = new String[ranks.length];
+      for (int i = 0; i < ranks.length; i++) {
+        docs.docids[i] = docids[ranks[i]];
+      }
+    }
+    if (documents != null) {
+      docs.documents = new Document[ranks.length];
+      for (int i = 0; i < ranks.length; i++) {
+        docs.documents[i] = documents[ranks[i]];
+      }
+    }
+    return docs;
+  }
+
+  /**
+   * Returns a copy of the hits, whose ids and scores can be changed without changing these, keeping what
+   * has been loaded of them.
+   *
+   * @return copy of the hits
+   */
+  public ScoredDocuments copy() {
+    int[] ranks = new int[ids.length];
+    for (int i = 0; i < ranks.length; i++) {
+      ranks[i] = i;
+    }
+    return select(ranks, scores.clone());
+  }
+
+  // Looks up the docids of all hits in a single pass over the doc values of each segment, in order of
+  // id, falling back on the stored field for segments that have no doc values.
+  private String[] resolveDocids() {
+    String[] resolved = new String[ids.length];
+    long[] order = new long[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      order[i] = ((long) ids[i] << 32) | i;
+    }
+    Arrays.sort(order);
+
+    try {
+      IndexReader reader = searcher.getIndexReader();
+      if (reader != null) {
+        List<LeafReaderContext> leaves = reader.leaves();
+        int leaf = -1;
+        LeafReaderContext context = null;
+        SortedDocValues values = null;
+        int previous = -1;
+        for (int k = 0; k < order.length; k++) {
+          int id = (int) (order[k] >>> 32);
+          int i = (int) order[k];
+          if (k > 0 && id == previous) {
+            resolved[i] = resolved[(int) order[k - 1]];
+            continue;
+          }
+          previous = id;
+          while (context == null || id >= context.docBase + context.reader().maxDoc()) {
+            context = leaves.get(++leaf);
+            values = context.reader().getSortedDocValues(FIELD_ID);
+          }
+          if (values != null && values.advanceExact(id - context.docBase)) {
+            resolved[i] = values.binaryValue().utf8ToString();
+          }
+        }
+      }
+
+      for (int i = 0; i < ids.length; i++) {
+        if (resolved[i] == null) {
+          resolved[i] = document(i, ID_FIELDS).get(FIELD_ID);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return resolved;
   }
 }
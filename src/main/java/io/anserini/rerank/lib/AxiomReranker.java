@@ -22,6 +22,7 @@ import io.anserini.rerank.Reranker;
 import io.anserini.rerank.RerankerContext;
 import io.anserini.rerank.ScoredDocuments;
 import io.anserini.search.SearchArgs;
+import io.anserini.search.TopScoreDocidCollector;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.io.IOUtils;
@@ -141,8 +142,6 @@ public class AxiomReranker<T> implements Reranker<T> {
 
   @Override
   public ScoredDocuments rerank(ScoredDocuments docs, RerankerContext<T> context) {
-    assert(docs.documents.length == docs.scores.length);
-
     try {
       // First to search against external index if it is not null
       docs = processExternalContext(docs, context);
@@ -209,7 +208,7 @@ public class AxiomReranker<T> implements Reranker<T> {
     } else if (context.getSearchArgs().searchtweets) {
       rs = searcher.search(finalQuery, context.getSearchArgs().hits, BREAK_SCORE_TIES_BY_TWEETID, true);
     } else {
-      rs = searcher.search(finalQuery, context.getSearchArgs().hits, BREAK_SCORE_TIES_BY_DOCID, true);
+      rs = TopScoreDocidCollector.search(searcher, finalQuery, context.getSearchArgs().hits);
     }
 
     return ScoredDocuments.fromTopDocs(rs, searcher);
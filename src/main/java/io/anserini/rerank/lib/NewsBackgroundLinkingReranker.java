@@ -20,7 +20,6 @@ import io.anserini.rerank.Reranker;
 import io.anserini.rerank.RerankerContext;
 import io.anserini.rerank.ScoredDocuments;
 import io.anserini.search.topicreader.NewsBackgroundLinkingTopicReader;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
@@ -33,7 +32,6 @@ import java.util.Map;
 import java.util.Set;
 
 import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_BODY;
-import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_ID;
 
 /*
 * TREC News Track Background Linking task postprocessing.
@@ -48,43 +46,39 @@ public class NewsBackgroundLinkingReranker implements Reranker {
     final Map<String, Long> queryTermsMap = convertDocVectorToMap(reader, queryDocId);
     
     List<Map<String, Long>> docsVectorsMap = new ArrayList<>();
-    for (int i = 0; i < docs.documents.length; i++) {
-      String docid = docs.documents[i].getField(FIELD_ID).stringValue();
+    for (int i = 0; i < docs.size(); i++) {
+      String docid = docs.docid(i);
       docsVectorsMap.add(convertDocVectorToMap(reader, docid));
     }
     
     // remove the duplicates: 1. the same doc with the query doc 2. duplicated docs in the results
     Set<Integer> duplicates = new HashSet<>();
-    for (int i = 0; i < docs.documents.length; i++) {
+    for (int i = 0; i < docs.size(); i++) {
       if (duplicates.contains(i)) continue;
-      String docid = docs.documents[i].getField(FIELD_ID).stringValue();
       if (computeCosineSimilarity(queryTermsMap, docsVectorsMap.get(i)) >= 0.9) {
         duplicates.add(i);
         continue;
       }
-      for (int j = i+1; j < docs.documents.length; j++) {
+      for (int j = i+1; j < docs.size(); j++) {
         if (computeCosineSimilarity(docsVectorsMap.get(i), docsVectorsMap.get(j)) >= 0.9) {
           duplicates.add(j);
         }
       }
     }
   
-    ScoredDocuments scoredDocs = new ScoredDocuments();
-    int resSize = docs.documents.length - duplicates.size();
-    scoredDocs.documents = new Document[resSize];
-    scoredDocs.ids = new int[resSize];
-    scoredDocs.scores = new float[resSize];
+    int resSize = docs.size() - duplicates.size();
+    int[] ranks = new int[resSize];
+    float[] scores = new float[resSize];
     int idx = 0;
-    for (int i = 0; i < docs.documents.length; i++) {
+    for (int i = 0; i < docs.size(); i++) {
       if (!duplicates.contains(i)) {
-        scoredDocs.documents[idx] = docs.documents[i];
-        scoredDocs.scores[idx] = docs.scores[i];
-        scoredDocs.ids[idx] = docs.ids[i];
+        ranks[idx] = i;
+        scores[idx] = docs.scores[i];
         idx++;
       }
     }
   
-    return scoredDocs;
+    return docs.select(ranks, scores);
   }
   
   private Map<String, Long> convertDocVectorToMap(IndexReader reader, String docid) {
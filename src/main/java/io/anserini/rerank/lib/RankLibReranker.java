@@ -23,7 +23,6 @@ import io.anserini.rerank.Reranker;
 import io.anserini.rerank.RerankerContext;
 import io.anserini.rerank.Result;
 import io.anserini.rerank.ScoredDocuments;
-import org.apache.lucene.document.Document;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -43,30 +42,26 @@ public class RankLibReranker<T> implements Reranker<T> {
 
   @Override
   public ScoredDocuments rerank(ScoredDocuments docs, RerankerContext<T> context) {
-    // Used to hold our rescored docs
-    ScoredDocuments rerankedDocs = new ScoredDocuments();
-    int numResults = docs.documents.length;
-    rerankedDocs.documents = new Document[numResults];
-    rerankedDocs.ids = new int[numResults];
-    rerankedDocs.scores = new float[numResults];
-
+    int numResults = docs.size();
     SortedSet<Result> results = new TreeSet<>();
 
     for (int i = 0; i < numResults; i++) {
-      DataPoint dp = rankLibFeatureExtractor.convertToDataPoint(docs.documents[i], docs.ids[i], context);
+      DataPoint dp = rankLibFeatureExtractor.convertToDataPoint(docs.document(i), docs.ids[i], context);
       float score = (float) this.ranker.eval(dp);
-      results.add(new Result(docs.documents[i], i, score, docs.ids[i]));
+      results.add(new Result(docs.document(i), i, score, docs.ids[i]));
     }
 
+    // Used to hold our rescored docs
+    int[] ranks = new int[numResults];
+    float[] scores = new float[numResults];
     int index = 0;
     for (Result result : results) {
-      rerankedDocs.documents[index] = result.document;
-      rerankedDocs.ids[index] = result.id;
-      rerankedDocs.scores[index] = result.score;
+      ranks[index] = result.id;
+      scores[index] = result.score;
       index++;
     }
 
-    return rerankedDocs;
+    return docs.select(ranks, scores);
   }
   
   @Override
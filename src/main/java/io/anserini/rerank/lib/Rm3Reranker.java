@@ -19,6 +19,7 @@ package io.anserini.rerank.lib;
 import io.anserini.rerank.Reranker;
 import io.anserini.rerank.RerankerContext;
 import io.anserini.rerank.ScoredDocuments;
+import io.anserini.search.TopScoreDocidCollector;
 import io.anserini.util.AnalyzerUtils;
 import io.anserini.util.FeatureVector;
 import org.apache.logging.log4j.LogManager;
@@ -40,10 +41,10 @@ import org.apache.lucene.util.BytesRef;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_BODY;
-import static io.anserini.search.SearchCollection.BREAK_SCORE_TIES_BY_DOCID;
 import static io.anserini.search.SearchCollection.BREAK_SCORE_TIES_BY_TWEETID;
 
 public class Rm3Reranker implements Reranker {
@@ -68,14 +69,14 @@ public class Rm3Reranker implements Reranker {
 
   @Override
   public ScoredDocuments rerank(ScoredDocuments docs, RerankerContext context) {
-    assert(docs.documents.length == docs.scores.length);
-
     IndexSearcher searcher = context.getIndexSearcher();
     IndexReader reader = searcher.getIndexReader();
 
     FeatureVector qfv = FeatureVector.fromTerms(AnalyzerUtils.tokenize(analyzer, context.getQueryText())).scaleToUnitL1Norm();
 
-    FeatureVector rm = estimateRelevanceModel(docs, reader, context.getSearchArgs().searchtweets);
+    // Typed with a wildcard, so that the document vectors are not an unchecked conversion.
+    Map<String, FeatureVector> documentVectors = ((RerankerContext<?>) context).getDocumentVectors();
+    FeatureVector rm = estimateRelevanceModel(docs, reader, context.getSearchArgs().searchtweets, documentVectors);
 
     rm = FeatureVector.interpolate(qfv, rm, originalQueryWeight);
 
@@ -114,7 +115,7 @@ public class Rm3Reranker implements Reranker {
       } else if (context.getSearchArgs().searchtweets) {
         rs = searcher.search(finalQuery, context.getSearchArgs().hits, BREAK_SCORE_TIES_BY_TWEETID, true);
       } else {
-        rs = searcher.search(finalQuery, context.getSearchArgs().hits, BREAK_SCORE_TIES_BY_DOCID, true);
+        rs = TopScoreDocidCollector.search(searcher, finalQuery, context.getSearchArgs().hits);
       }
     } catch (IOException e) {
       e.printStackTrace();
@@ -124,18 +125,25 @@ public class Rm3Reranker implements Reranker {
     return ScoredDocuments.fromTopDocs(rs, searcher);
   }
 
-  private FeatureVector estimateRelevanceModel(ScoredDocuments docs, IndexReader reader, boolean tweetsearch) {
+  private FeatureVector estimateRelevanceModel(ScoredDocuments docs, IndexReader reader, boolean tweetsearch,
+      Map<String, FeatureVector> documentVectors) {
     FeatureVector f = new FeatureVector();
 
     Set<String> vocab = new HashSet<>();
-    int numdocs = docs.documents.length < fbDocs ? docs.documents.length : fbDocs;
+    int numdocs = docs.size() < fbDocs ? docs.size() : fbDocs;
     FeatureVector[] docvectors = new FeatureVector[numdocs];
 
     for (int i = 0; i < numdocs; i++) {
       try {
-        FeatureVector docVector = createdFeatureVector(
-            reader.getTermVector(docs.ids[i], field), reader, tweetsearch);
-        docVector.pruneToSize(fbTerms);
+        // The vector of a document does not depend on the parameters, and is shared by the variants
+        // reranking the same topic; each keeps its own top terms.
+        String key = "rm3:" + field + ":" + docs.ids[i];
+        FeatureVector fullVector = documentVectors.get(key);
+        if (fullVector == null) {
+          fullVector = createdFeatureVector(reader.getTermVector(docs.ids[i], field), reader, tweetsearch);
+          documentVectors.put(key, fullVector);
+        }
+        FeatureVector docVector = fullVector.topFeatures(fbTerms);
 
         vocab.addAll(docVector.getFeatures());
         docvectors[i] = docVector;
@@ -28,7 +28,7 @@ public class ScoreTiesAdjusterReranker implements Reranker {
   @Override
   public ScoredDocuments rerank(ScoredDocuments docs, RerankerContext context) {
     int dup = 0;
-    for (int i=0; i<docs.documents.length; i++) {
+    for (int i=0; i<docs.size(); i++) {
       docs.scores[i] = Math.round(docs.scores[i] * 1e4f) / 1e4f;
 
       // If we encounter ties, we want to perturb the final score a tiny bit.
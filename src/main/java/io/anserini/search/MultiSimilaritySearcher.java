@@ -0,0 +1,400 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.anserini.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.TermStates;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.Bits;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Searches a query with several similarities at once (e.g., a sweep of BM25 parameters), reading its
+ * postings a single time. The postings of the query terms are traversed together, and the frequencies and
+ * norms of each matching document are scored by every similarity, each of which has its own top k.
+ *
+ * <p>The results are those {@link IndexSearcher} returns with each similarity, including their scores
+ * and the order of ties. Only bag-of-words queries are supported, once rewritten: a term query, or a
+ * disjunction of (possibly boosted) term queries, optionally required by a boolean query whose other
+ * clauses are filters or prohibited; {@link #search} returns null for other queries (e.g., SDM), which
+ * are to be searched with each similarity in turn.</p>
+ */
+public class MultiSimilaritySearcher {
+  private final IndexSearcher searcher;
+  private final List<Similarity> similarities;
+
+  // Score of the current document under one of the similarities, as seen by its collector.
+  private static final class SimilarityScore extends Scorable {
+    int doc = -1;
+    float score;
+
+    @Override
+    public float score() {
+      return score;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+  }
+
+  // The terms of a supported query, with their boosts, and the non-scoring clauses that restrict it.
+  private static final class BagOfWords {
+    final List<Term> terms = new ArrayList<>();
+    final List<Float> boosts = new ArrayList<>();
+    final BooleanQuery.Builder filter = new BooleanQuery.Builder();
+    final BooleanQuery.Builder exclude = new BooleanQuery.Builder();
+    boolean hasFilter = false;
+    boolean hasExclude = false;
+  }
+
+  public MultiSimilaritySearcher(IndexReader reader, List<Similarity> similarities) {
+    this.searcher = new IndexSearcher(reader);
+    this.similarities = similarities;
+  }
+
+  public List<Similarity> getSimilarities() {
+    return similarities;
+  }
+
+  /**
+   * Searches a query with every similarity.
+   *
+   * @param query query to search
+   * @param n number of hits to return per similarity
+   * @param sort sort of the hits, which must be by score first, or null to sort by score then Lucene docid
+   * @return top hits of the query under each similarity, in the order of the similarities, or null if the
+   * query is not supported
+   * @throws IOException if error encountered reading the index
+   */
+  public TopDocs[] search(Query query, int n, Sort sort) throws IOException {
+    if (sort != null && sort.getSort()[0].getType() != SortField.Type.SCORE) {
+      throw new IllegalArgumentException("Hits must be sorted by score first: " + sort);
+    }
+    BagOfWords bag = parse(searcher.rewrite(query));
+    if (bag == null) {
+      return null;
+    }
+
+    int numHits = Math.min(n, Math.max(1, searcher.getIndexReader().maxDoc()));
+    boolean byDocid = sort == SearchCollection.BREAK_SCORE_TIES_BY_DOCID;
+    Sort rewrittenSort = sort == null || byDocid ? null : sort.rewrite(searcher);
+    List<TopDocsCollector<? extends ScoreDoc>> collectors = new ArrayList<>();
+    for (int s = 0; s < similarities.size(); s++) {
+      if (byDocid) {
+        collectors.add(new TopScoreDocidCollector(searcher.getIndexReader(), numHits));
+      } else {
+        collectors.add(rewrittenSort == null ? TopScoreDocCollector.create(numHits, Integer.MAX_VALUE) :
+            TopFieldCollector.create(rewrittenSort, numHits, null, Integer.MAX_VALUE));
+      }
+    }
+
+    // The statistics of a term do not depend on the similarity, only its scorer does; terms that do not
+    // occur in the index match nothing, as with TermQuery.
+    List<Term> terms = new ArrayList<>();
+    List<TermStates> states = new ArrayList<>();
+    List<Similarity.SimScorer[]> scorers = new ArrayList<>();
+    Map<String, Integer> fields = new LinkedHashMap<>();
+    for (int t = 0; t < bag.terms.size(); t++) {
+      Term term = bag.terms.get(t);
+      TermStates termStates = TermStates.build(searcher.getTopReaderContext(), term, true);
+      if (termStates.docFreq() == 0) {
+        continue;
+      }
+      CollectionStatistics collectionStats = searcher.collectionStatistics(term.field());
+      TermStatistics termStats = searcher.termStatistics(term, termStates);
+      Similarity.SimScorer[] termScorers = new Similarity.SimScorer[similarities.size()];
+      for (int s = 0; s < similarities.size(); s++) {
+        termScorers[s] = similarities.get(s).scorer(bag.boosts.get(t), collectionStats, termStats);
+      }
+      terms.add(term);
+      states.add(termStates);
+      scorers.add(termScorers);
+      fields.putIfAbsent(term.field(), fields.size());
+    }
+
+    Weight filter = bag.hasFilter ?
+        searcher.createWeight(searcher.rewrite(bag.filter.build()), ScoreMode.COMPLETE_NO_SCORES, 1f) : null;
+    Weight exclude = bag.hasExclude ?
+        searcher.createWeight(searcher.rewrite(bag.exclude.build()), ScoreMode.COMPLETE_NO_SCORES, 1f) : null;
+    if (!terms.isEmpty()) {
+      for (LeafReaderContext context : searcher.getIndexReader().leaves()) {
+        searchLeaf(context, terms, states, scorers, fields, filter, exclude, collectors);
+      }
+    }
+
+    TopDocs[] results = new TopDocs[similarities.size()];
+    for (int s = 0; s < similarities.size(); s++) {
+      results[s] = collectors.get(s).topDocs();
+      if (rewrittenSort != null) {
+        // As IndexSearcher does for sorts by score, the score of each hit is its first sort value.
+        for (ScoreDoc hit : results[s].scoreDocs) {
+          hit.score = (Float) ((FieldDoc) hit).fields[0];
+        }
+      }
+    }
+    return results;
+  }
+
+  private void searchLeaf(LeafReaderContext context, List<Term> terms, List<TermStates> states,
+      List<Similarity.SimScorer[]> scorers, Map<String, Integer> fields, Weight filter, Weight exclude,
+      List<TopDocsCollector<? extends ScoreDoc>> collectors) throws IOException {
+    int numTerms = terms.size();
+    PostingsEnum[] postings = new PostingsEnum[numTerms];
+    int[] termFields = new int[numTerms];
+    boolean any = false;
+    for (int t = 0; t < numTerms; t++) {
+      TermState state = states.get(t).get(context);
+      termFields[t] = fields.get(terms.get(t).field());
+      if (state != null) {
+        TermsEnum termsEnum = context.reader().terms(terms.get(t).field()).iterator();
+        termsEnum.seekExact(terms.get(t).bytes(), state);
+        postings[t] = termsEnum.postings(null, PostingsEnum.FREQS);
+        postings[t].nextDoc();
+        any = true;
+      }
+    }
+    if (!any) {
+      return;
+    }
+
+    DocIdSetIterator filterIterator = null;
+    if (filter != null) {
+      Scorer scorer = filter.scorer(context);
+      if (scorer == null) {
+        return;
+      }
+      filterIterator = scorer.iterator();
+    }
+    DocIdSetIterator excludeIterator = null;
+    if (exclude != null) {
+      Scorer scorer = exclude.scorer(context);
+      excludeIterator = scorer == null ? null : scorer.iterator();
+    }
+
+    // Norms are read as LeafSimScorer does: 1 if the field has none, 0 for a document without one.
+    NumericDocValues[] norms = new NumericDocValues[fields.size()];
+    for (Map.Entry<String, Integer> field : fields.entrySet()) {
+      norms[field.getValue()] = context.reader().getNormValues(field.getKey());
+    }
+    long[] docNorms = new long[fields.size()];
+    int[] docNormsOf = new int[fields.size()];
+    Arrays.fill(docNormsOf, -1);
+
+    int numSimilarities = similarities.size();
+    SimilarityScore[] scores = new SimilarityScore[numSimilarities];
+    LeafCollector[] leafCollectors = new LeafCollector[numSimilarities];
+    for (int s = 0; s < numSimilarities; s++) {
+      scores[s] = new SimilarityScore();
+      leafCollectors[s] = collectors.get(s).getLeafCollector(context);
+      leafCollectors[s].setScorer(scores[s]);
+    }
+
+    Bits liveDocs = context.reader().getLiveDocs();
+    float[] freqs = new float[numTerms];
+    long[] termNorms = new long[numTerms];
+    int[] matching = new int[numTerms];
+    double[] sums = new double[numSimilarities];
+
+    int doc = minDoc(postings);
+    while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+      if (filterIterator != null) {
+        int next = filterIterator.docID() < doc ? filterIterator.advance(doc) : filterIterator.docID();
+        if (next != doc) {
+          // Skip the postings to the next document passing the filter.
+          for (PostingsEnum p : postings) {
+            if (p != null && p.docID() < next) {
+              p.advance(next);
+            }
+          }
+          doc = minDoc(postings);
+          continue;
+        }
+      }
+      boolean accepted = liveDocs == null || liveDocs.get(doc);
+      if (accepted && excludeIterator != null) {
+        int next = excludeIterator.docID() < doc ? excludeIterator.advance(doc) : excludeIterator.docID();
+        accepted = next != doc;
+      }
+
+      int numMatching = 0;
+      for (int t = 0; t < numTerms; t++) {
+        if (postings[t] != null && postings[t].docID() == doc) {
+          if (accepted) {
+            int field = termFields[t];
+            if (docNormsOf[field] != doc) {
+              docNormsOf[field] = doc;
+              if (norms[field] == null) {
+                docNorms[field] = 1L;
+              } else {
+                docNorms[field] = norms[field].advanceExact(doc) ? norms[field].longValue() : 0L;
+              }
+            }
+            freqs[t] = postings[t].freq();
+            termNorms[t] = docNorms[field];
+            matching[numMatching++] = t;
+          }
+          postings[t].nextDoc();
+        }
+      }
+
+      if (accepted) {
+        // Scores are summed in clause order as doubles, and rounded once, as BooleanQuery does.
+        Arrays.fill(sums, 0d);
+        for (int i = 0; i < numMatching; i++) {
+          int t = matching[i];
+          Similarity.SimScorer[] termScorers = scorers.get(t);
+          for (int s = 0; s < numSimilarities; s++) {
+            sums[s] += termScorers[s].score(freqs[t], termNorms[t]);
+          }
+        }
+        for (int s = 0; s < numSimilarities; s++) {
+          scores[s].doc = doc;
+          scores[s].score = (float) sums[s];
+          leafCollectors[s].collect(doc);
+        }
+      }
+      doc = minDoc(postings);
+    }
+  }
+
+  private static int minDoc(PostingsEnum[] postings) {
+    int min = DocIdSetIterator.NO_MORE_DOCS;
+    for (PostingsEnum p : postings) {
+      if (p != null && p.docID() < min) {
+        min = p.docID();
+      }
+    }
+    return min;
+  }
+
+  // Returns the terms and restrictions of a rewritten query, or null if it is not a supported bag of words.
+  private static BagOfWords parse(Query query) {
+    BagOfWords bag = new BagOfWords();
+    float boost = 1f;
+    while (query instanceof BoostQuery) {
+      boost *= ((BoostQuery) query).getBoost();
+      query = ((BoostQuery) query).getQuery();
+    }
+    if (query instanceof BooleanQuery && !isDisjunction((BooleanQuery) query)) {
+      // A single scoring clause, restricted by the others.
+      Query required = null;
+      for (BooleanClause clause : ((BooleanQuery) query).clauses()) {
+        switch (clause.getOccur()) {
+          case MUST:
+            if (required != null) {
+              return null;
+            }
+            required = clause.getQuery();
+            break;
+          case FILTER:
+            bag.filter.add(clause.getQuery(), BooleanClause.Occur.FILTER);
+            bag.hasFilter = true;
+            break;
+          case MUST_NOT:
+            bag.exclude.add(clause.getQuery(), BooleanClause.Occur.SHOULD);
+            bag.hasExclude = true;
+            break;
+          default:
+            return null;
+        }
+      }
+      if (required == null) {
+        return null;
+      }
+      query = required;
+      while (query instanceof BoostQuery) {
+        boost *= ((BoostQuery) query).getBoost();
+        query = ((BoostQuery) query).getQuery();
+      }
+    }
+
+    if (query instanceof BooleanQuery) {
+      if (!isDisjunction((BooleanQuery) query)) {
+        return null;
+      }
+      for (BooleanClause clause : ((BooleanQuery) query).clauses()) {
+        if (!addTerm(bag, clause.getQuery(), boost)) {
+          return null;
+        }
+      }
+      return bag;
+    }
+    return addTerm(bag, query, boost) ? bag : null;
+  }
+
+  private static boolean isDisjunction(BooleanQuery query) {
+    if (query.getMinimumNumberShouldMatch() != 0 || query.clauses().isEmpty()) {
+      return false;
+    }
+    for (BooleanClause clause : query.clauses()) {
+      if (clause.getOccur() != BooleanClause.Occur.SHOULD) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean addTerm(BagOfWords bag, Query query, float boost) {
+    while (query instanceof BoostQuery) {
+      boost *= ((BoostQuery) query).getBoost();
+      query = ((BoostQuery) query).getQuery();
+    }
+    if (!(query instanceof TermQuery)) {
+      return false;
+    }
+    bag.terms.add(((TermQuery) query).getTerm());
+    bag.boosts.add(boost);
+    return true;
+  }
+}
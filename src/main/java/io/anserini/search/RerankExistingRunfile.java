@@ -83,6 +83,13 @@ public class RerankExistingRunfile {
           Field.Store.YES));
       return doc;
     });
+    // Hits only load the stored fields they need.
+    Mockito.when(mocked.doc(Matchers.anyInt(), Matchers.anySetOf(String.class))).then(i -> {
+      Document doc = new Document();
+      doc.add(new StringField(LuceneDocumentGenerator.FIELD_ID, docid_lookup.get(i.getArgumentAt(0, Integer.class)),
+          Field.Store.YES));
+      return doc;
+    });
 
     List<TaggedSimilarity> similarities = s.constructSimiliries();
     Map<String, RerankerCascade> cascades = s.constructRerankerCascades();
@@ -97,6 +97,14 @@ public class SearchArgs {
   @Option(name = "-hits", metaVar = "[number]", required = false, usage = "max number of hits to return")
   public int hits = 1000;
 
+  @Option(name = "-fast", usage = "Boolean switch to retrieve the initial ranking with dynamic pruning (block-max " +
+    "WAND): total hit counts are not exact, and ties for the last hits may not be broken by docid")
+  public boolean fast = false;
+
+  @Option(name = "-fast.totalHitsThreshold", metaVar = "[number]", usage = "number of hits counted exactly " +
+    "before documents may be skipped in fast mode")
+  public int fastTotalHitsThreshold = 0;
+
   @Option(name = "-rerankCutoff", metaVar = "[number]", required = false, usage = "max number of hits " +
     "for the initial round ranking. this is efficient since lots of reranking model only looks at " +
     "the top documents from the initial round ranking.")
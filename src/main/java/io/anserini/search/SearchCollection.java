@@ -36,6 +36,7 @@ import io.anserini.search.similarity.TaggedSimilarity;
 import io.anserini.search.topicreader.NewsBackgroundLinkingTopicReader;
 import io.anserini.search.topicreader.TopicReader;
 import io.anserini.util.AnalyzerUtils;
+import io.anserini.util.FeatureVector;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DurationFormatUtils;
@@ -43,7 +44,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.CharArraySet;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
@@ -58,6 +58,8 @@ import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermInSetQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.TotalHits;
 import org.apache.lucene.search.similarities.AfterEffectL;
 import org.apache.lucene.search.similarities.AxiomaticF2EXP;
@@ -71,6 +73,7 @@ import org.apache.lucene.search.similarities.LMDirichletSimilarity;
 import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
 import org.apache.lucene.search.similarities.LambdaDF;
 import org.apache.lucene.search.similarities.NormalizationH2;
+import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.BytesRef;
@@ -84,6 +87,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -96,9 +100,12 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_BODY;
 import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_ID;
@@ -113,6 +120,8 @@ import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_ID;
 * To run reranking with multiple params onc can do:
 * <pre>SearchCollection -index /path/to/index/ -topicreader Trec -topics src/main/resources/topics-and-qrels/topics.51-100.txt -inmem -threads 4 -bm25 -b 0.2 0.75 -rm3 -rm3.fbDocs 5 10 -rm3.originalQueryWeight 0.5 0.3</pre>
 * this will generate 8 runs with parallelism as 4.
+* When several ranking models or parameters are given, the postings of each bag-of-words query are
+* read once for all of them, rather than once per run.
  */
 public final class SearchCollection implements Closeable {
   public static final Sort BREAK_SCORE_TIES_BY_DOCID = new Sort(SortField.FIELD_SCORE,
@@ -122,6 +131,9 @@ public final class SearchCollection implements Closeable {
 
   private static final Logger LOG = LogManager.getLogger(SearchCollection.class);
 
+  // Topics, per thread, that may be searched but not yet written, waiting for those before them.
+  private static final int TOPICS_IN_FLIGHT_PER_THREAD = 16;
+
   private final SearchArgs args;
   private final IndexReader reader;
   private final Analyzer analyzer;
@@ -143,12 +155,6 @@ public final class SearchCollection implements Closeable {
     final private String outputPath;
     final private String runTag;
 
-    private SearcherThread(IndexReader reader, SortedMap<K, Map<String, String>> topics,
-        TaggedSimilarity taggedSimilarity, String cascadeTag, RerankerCascade cascade, String outputPath, String runTag)
-        throws IOException {
-      this(new IndexSearcher(reader), topics, taggedSimilarity, cascadeTag, cascade, outputPath, runTag);
-    }
-
     public SearcherThread(IndexSearcher searcher, SortedMap<K, Map<String, String>> topics,
         TaggedSimilarity taggedSimilarity, String cascadeTag, RerankerCascade cascade, String outputPath, String runTag)
         throws IOException {
@@ -173,28 +179,8 @@ public final class SearchCollection implements Closeable {
           LOG.info("ReRanking with: " + cascadeTag);
         PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(outputPath), StandardCharsets.US_ASCII));
         for (Map.Entry<K, Map<String, String>> entry : topics.entrySet()) {
-          K qid = entry.getKey();
-          String queryString = entry.getValue().get(args.topicfield);
-          ScoredDocuments docs;
-          if (args.searchtweets) {
-            docs = searchTweets(this.searcher, qid, queryString, Long.parseLong(entry.getValue().get("time")), cascade);
-          } else if (args.searchnewsbackground) {
-            docs = searchBackgroundLinking(this.searcher, qid, queryString, cascade);
-          } else {
-            docs = search(this.searcher, qid, queryString, cascade);
-          }
-
-//        the first column is the topic number.
-//        the second column is currently unused and should always be "Q0".
-//        the third column is the official document identifier of the retrieved document.
-//        the fourth column is the rank the document is retrieved.
-//        the fifth column shows the score (integer or floating point) that generated the ranking.
-//        the sixth column is called the "run tag" and should be a unique identifier for your
-
-          for (int i = 0; i < docs.documents.length; i++) {
-            out.println(String.format(Locale.US, "%s Q0 %s %d %f %s", qid,
-                docs.documents[i].getField(FIELD_ID).stringValue(), (i + 1), docs.scores[i], runTag));
-          }
+          out.print(searchTopic(searcher, entry.getKey(), entry.getValue(), cascade,
+              new TopicSearch(null), runTag));
         }
         out.flush();
         out.close();
@@ -208,6 +194,105 @@ public final class SearchCollection implements Closeable {
     }
   }
 
+  /**
+   * The output of one configuration (similarity and reranker cascade) of a run, whose topics are
+   * searched by concurrent tasks. Results may come in any order, and are held until those of all
+   * topics before them have been written, so that the output is in topic order.
+   */
+  private final class RunOutput {
+    private final String outputPath;
+    private final IndexSearcher searcher;
+    private final String cascadeTag;
+    private final TaggedSimilarity taggedSimilarity;
+    private final PrintWriter out;
+    // Results of topics searched but not written yet, by position of the topic.
+    private final String[] pending;
+    // Released once the results of a topic are written.
+    private final Semaphore window;
+    private final long start = System.nanoTime();
+    private int next = 0;
+
+    private RunOutput(String outputPath, TaggedSimilarity taggedSimilarity, String cascadeTag, int topics,
+        Semaphore window) throws IOException {
+      this.outputPath = outputPath;
+      this.taggedSimilarity = taggedSimilarity;
+      this.cascadeTag = cascadeTag;
+      this.pending = new String[topics];
+      this.window = window;
+      this.searcher = new IndexSearcher(reader);
+      this.searcher.setSimilarity(taggedSimilarity.similarity);
+      this.out = new PrintWriter(Files.newBufferedWriter(Paths.get(outputPath), StandardCharsets.US_ASCII));
+      LOG.info("[Start] Ranking with similarity: " + taggedSimilarity.similarity.toString() +
+          (cascadeTag.isEmpty() ? "" : ", reranking with: " + cascadeTag));
+    }
+
+    // Writes the results of the topic at a position, along with those of the topics after it that were
+    // waiting for it.
+    private synchronized void complete(int topic, String results) {
+      pending[topic] = results;
+      while (next < pending.length && pending[next] != null) {
+        out.print(pending[next]);
+        pending[next] = null;
+        next++;
+        window.release();
+      }
+      if (next == pending.length) {
+        finish();
+      }
+    }
+
+    private void finish() {
+      out.close();
+      if (out.checkError()) {
+        LOG.error("Error writing " + outputPath);
+      }
+      final long durationMillis = TimeUnit.MILLISECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      LOG.info("[Finished] Ranking with similarity: " + taggedSimilarity.similarity.toString() +
+          (cascadeTag.isEmpty() ? "" : ", reranking with: " + cascadeTag));
+      LOG.info("Run " + pending.length + " topics searched in "
+          + DurationFormatUtils.formatDuration(durationMillis, "HH:mm:ss"));
+    }
+  }
+
+  /**
+   * What the configurations (similarity and reranker cascade) of a topic share: the first-stage hits of
+   * each query, searched once per similarity, or once for all similarities in a single pass over the
+   * postings by {@link MultiSimilaritySearcher}, and copied for each cascade to rerank; and the document
+   * vectors computed by rerankers, such as those of RM3 feedback documents. It is dropped once the topic
+   * is searched, so that at most -rerankCutoff hits per query and similarity are held per topic.
+   */
+  private final class TopicSearch {
+    // null to search each similarity in turn
+    private final MultiSimilaritySearcher multiSearcher;
+    private final Map<Query, Map<Similarity, ScoredDocuments>> results = new HashMap<>();
+    private final Map<String, FeatureVector> documentVectors = new HashMap<>();
+
+    private TopicSearch(MultiSimilaritySearcher multiSearcher) {
+      this.multiSearcher = multiSearcher;
+    }
+
+    // Returns the first-stage hits of a query with the similarity of a searcher, to be reranked.
+    private ScoredDocuments firstStage(IndexSearcher searcher, Query query, Sort sort) throws IOException {
+      Map<Similarity, ScoredDocuments> hits = results.get(query);
+      if (hits == null) {
+        hits = new HashMap<>();
+        results.put(query, hits);
+        TopDocs[] all = multiSearcher == null || (isRerank && args.rerankcutoff <= 0) ? null :
+            multiSearcher.search(query, isRerank ? args.rerankcutoff : args.hits,
+                args.arbitraryScoreTieBreak ? null : sort);
+        for (int i = 0; all != null && i < all.length; i++) {
+          hits.put(multiSearcher.getSimilarities().get(i), ScoredDocuments.fromTopDocs(all[i], searcher));
+        }
+      }
+      ScoredDocuments docs = hits.get(searcher.getSimilarity());
+      if (docs == null) {
+        docs = ScoredDocuments.fromTopDocs(searchFirstStage(searcher, query, sort), searcher);
+        hits.put(searcher.getSimilarity(), docs);
+      }
+      return docs.copy();
+    }
+  }
+
   public SearchCollection(SearchArgs args) throws IOException {
     this.args = args;
     Path indexPath = Paths.get(args.index);
@@ -377,9 +462,30 @@ public final class SearchCollection implements Closeable {
     }
 
     final String runTag = args.runtag == null ? "Anserini" : args.runtag;
-    final ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(args.threads);
+    // Learning to rank feature extractors share state between instances (some keep it in static fields),
+    // as may the rerankers of an experimental factory, so their topics are searched one at a time.
+    final boolean sequential = StringUtils.isNotEmpty(args.model) || args.experimentalRerankerFactoryClass != null;
+    final int threads = sequential ? 1 : args.threads;
+    final ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads);
+    // Bounds the results held back until the topics before them are written; permits are added once the
+    // configurations are known.
+    final Semaphore window = new Semaphore(0);
+    final List<Map.Entry<K, Map<String, String>>> entries = new ArrayList<>(topics.entrySet());
     this.similarities = constructSimiliries();
     Map<String, RerankerCascade> cascades = constructRerankerCascades();
+    // Rerankers keep the state of the query they rerank, so each thread reranks with cascades of its own;
+    // the first thread takes those constructed here.
+    final ConcurrentLinkedQueue<Map<String, RerankerCascade>> unusedCascades = new ConcurrentLinkedQueue<>();
+    unusedCascades.add(cascades);
+    final ThreadLocal<Map<String, RerankerCascade>> threadCascades = ThreadLocal.withInitial(() -> {
+      Map<String, RerankerCascade> own = unusedCascades.poll();
+      try {
+        return own != null ? own : constructRerankerCascades();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    List<RunOutput> runs = new ArrayList<>();
     for (TaggedSimilarity taggedSimilarity : this.similarities) {
       for (Map.Entry<String, RerankerCascade> cascade : cascades.entrySet()) {
         final String outputPath = (this.similarities.size() + cascades.size()) > 2
@@ -389,12 +495,36 @@ public final class SearchCollection implements Closeable {
           LOG.info("Skipping True: " + outputPath);
           continue;
         }
-        executor.execute(new SearcherThread<K>(reader, topics, taggedSimilarity, cascade.getKey(), cascade.getValue(),
-            outputPath, runTag));
+        runs.add(new RunOutput(outputPath, taggedSimilarity, cascade.getKey(), entries.size(), window));
       }
     }
-    executor.shutdown();
+    if (entries.isEmpty()) {
+      runs.forEach(RunOutput::finish);
+    }
+    // With several similarities, the first stage of each query is searched once for all of them, unless it is
+    // to be searched with dynamic pruning, which a single pass for all similarities cannot do.
+    final MultiSimilaritySearcher multiSearcher = this.similarities.size() > 1 && !args.fast
+        ? new MultiSimilaritySearcher(reader, this.similarities.stream().map(t -> t.similarity)
+            .collect(Collectors.toList()))
+        : null;
+    window.release(threads * TOPICS_IN_FLIGHT_PER_THREAD * Math.max(1, runs.size()));
+
     try {
+      // Each topic is a task, which searches all configurations of the topic, sharing their first stages,
+      // and results are written in topic order as they complete.
+      for (int i = 0; i < entries.size() && !runs.isEmpty(); i++) {
+        final int topic = i;
+        final K qid = entries.get(i).getKey();
+        final Map<String, String> fields = entries.get(i).getValue();
+        window.acquire(runs.size());
+        executor.execute(() -> {
+          TopicSearch topicSearch = new TopicSearch(multiSearcher);
+          for (RunOutput run : runs) {
+            searchTopic(run, threadCascades, topic, qid, fields, topicSearch, runTag);
+          }
+        });
+      }
+      executor.shutdown();
       // Wait for existing tasks to terminate
       while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
       }
@@ -406,8 +536,56 @@ public final class SearchCollection implements Closeable {
     }
   }
 
+  // Searches the topic at a position for one configuration, and hands its results to the output of the
+  // configuration.
+  private <K> void searchTopic(RunOutput run, ThreadLocal<Map<String, RerankerCascade>> cascades, int topic, K qid,
+      Map<String, String> fields, TopicSearch topicSearch, String runTag) {
+    String results = "";
+    try {
+      results = searchTopic(run.searcher, qid, fields, cascades.get().get(run.cascadeTag), topicSearch, runTag);
+    } catch (Exception e) {
+      LOG.error(run.outputPath + ": Unexpected Exception searching topic " + qid + ":", e);
+    } finally {
+      run.complete(topic, results);
+    }
+  }
+
+  // Searches a topic, and returns its results as lines of a run file.
+  private <K> String searchTopic(IndexSearcher searcher, K qid, Map<String, String> topic, RerankerCascade cascade,
+      TopicSearch topicSearch, String runTag) throws IOException, QueryNodeException {
+    String queryString = topic.get(args.topicfield);
+    ScoredDocuments docs;
+    if (args.searchtweets) {
+      docs = searchTweets(searcher, qid, queryString, Long.parseLong(topic.get("time")), cascade, topicSearch);
+    } else if (args.searchnewsbackground) {
+      docs = searchBackgroundLinking(searcher, qid, queryString, cascade, topicSearch);
+    } else {
+      docs = search(searcher, qid, queryString, cascade, topicSearch);
+    }
+
+//  the first column is the topic number.
+//  the second column is currently unused and should always be "Q0".
+//  the third column is the official document identifier of the retrieved document.
+//  the fourth column is the rank the document is retrieved.
+//  the fifth column shows the score (integer or floating point) that generated the ranking.
+//  the sixth column is called the "run tag" and should be a unique identifier for your
+
+    StringBuilder results = new StringBuilder();
+    for (int i = 0; i < docs.size(); i++) {
+      results.append(String.format(Locale.US, "%s Q0 %s %d %f %s", qid,
+          docs.docid(i), (i + 1), docs.scores[i], runTag))
+          .append(System.lineSeparator());
+    }
+    return results.toString();
+  }
+
   public <K> ScoredDocuments search(IndexSearcher searcher, K qid, String queryString, RerankerCascade cascade)
       throws IOException {
+    return search(searcher, qid, queryString, cascade, new TopicSearch(null));
+  }
+
+  private <K> ScoredDocuments search(IndexSearcher searcher, K qid, String queryString, RerankerCascade cascade,
+      TopicSearch topicSearch) throws IOException {
     Query query = null;
     if (qc == QueryConstructor.SequentialDependenceModel) {
       query = new SdmQueryGenerator(args.sdm_tw, args.sdm_ow, args.sdm_uw).buildQuery(FIELD_BODY, analyzer,
@@ -416,23 +594,22 @@ public final class SearchCollection implements Closeable {
       query = new BagOfWordsQueryGenerator().buildQuery(FIELD_BODY, analyzer, queryString);
     }
 
-    TopDocs rs = new TopDocs(new TotalHits(0, TotalHits.Relation.EQUAL_TO), new ScoreDoc[] {});
-    if (!(isRerank && args.rerankcutoff <= 0)) {
-      if (args.arbitraryScoreTieBreak) {// Figure out how to break the scoring ties.
-        rs = searcher.search(query, isRerank ? args.rerankcutoff : args.hits);
-      } else {
-        rs = searcher.search(query, isRerank ? args.rerankcutoff : args.hits, BREAK_SCORE_TIES_BY_DOCID, true);
-      }
-    }
+    ScoredDocuments hits = topicSearch.firstStage(searcher, query, BREAK_SCORE_TIES_BY_DOCID);
 
     List<String> queryTokens = AnalyzerUtils.tokenize(analyzer, queryString);
-    RerankerContext context = new RerankerContext<>(searcher, qid, query, null, queryString, queryTokens, null, args);
+    RerankerContext context = new RerankerContext<>(searcher, qid, query, null, queryString, queryTokens, null, args,
+        topicSearch.documentVectors);
 
-    return cascade.run(ScoredDocuments.fromTopDocs(rs, searcher), context);
+    return cascade.run(hits, context);
   }
 
   public <K> ScoredDocuments searchBackgroundLinking(IndexSearcher searcher, K qid, String queryString,
       RerankerCascade cascade) throws IOException, QueryNodeException {
+    return searchBackgroundLinking(searcher, qid, queryString, cascade, new TopicSearch(null));
+  }
+
+  private <K> ScoredDocuments searchBackgroundLinking(IndexSearcher searcher, K qid, String queryString,
+      RerankerCascade cascade, TopicSearch topicSearch) throws IOException, QueryNodeException {
     Query query = null;
     String queryDocID = null;
     if (qc == QueryConstructor.SequentialDependenceModel) {
@@ -462,42 +639,31 @@ public final class SearchCollection implements Closeable {
       builder.add(q, BooleanClause.Occur.MUST);
       query = builder.build();
 
-      TopDocs rs = new TopDocs(new TotalHits(0, TotalHits.Relation.EQUAL_TO), new ScoreDoc[] {});
-      if (!(isRerank && args.rerankcutoff <= 0)) {
-        if (args.arbitraryScoreTieBreak) {// Figure out how to break the scoring ties.
-          rs = searcher.search(query, isRerank ? args.rerankcutoff : args.hits);
-        } else {
-          rs = searcher.search(query, isRerank ? args.rerankcutoff : args.hits, BREAK_SCORE_TIES_BY_DOCID, true);
-        }
-      }
+      ScoredDocuments hits = topicSearch.firstStage(searcher, query, BREAK_SCORE_TIES_BY_DOCID);
 
       List<String> queryTokens = Arrays.asList(queryStr.split(" "));
       RerankerContext context = new RerankerContext<>(searcher, qid, query, queryDocID, queryStr, queryTokens, null,
-          args);
+          args, topicSearch.documentVectors);
 
-      allRes.add(cascade.run(ScoredDocuments.fromTopDocs(rs, searcher), context));
+      allRes.add(cascade.run(hits, context));
     }
 
     // Finally do a round-robin picking
     int totalSize = 0;
     float[] scoresOfFirst = new float[allRes.size()];
     for (int i = 0; i < allRes.size(); i++) {
-      totalSize += allRes.get(i).documents.length;
+      totalSize += allRes.get(i).size();
       scoresOfFirst[i] = allRes.get(i).scores.length > 0 ? allRes.get(i).scores[0] : Float.NEGATIVE_INFINITY;
     }
     totalSize = Math.min(args.hits, totalSize);
 
-    ScoredDocuments scoredDocs = new ScoredDocuments();
-    scoredDocs.documents = new Document[totalSize];
-    scoredDocs.ids = new int[totalSize];
-    scoredDocs.scores = new float[totalSize];
+    ScoredDocuments scoredDocs = new ScoredDocuments(searcher, new int[totalSize], new float[totalSize]);
 
     int rowIdx = 0;
     int idx = 0;
     while (idx < totalSize) {
       for (int i = 0; i < allRes.size(); i++) {
-        if (rowIdx < allRes.get(i).documents.length) {
-          scoredDocs.documents[idx] = allRes.get(i).documents[rowIdx];
+        if (rowIdx < allRes.get(i).size()) {
           scoredDocs.ids[idx] = allRes.get(i).ids[rowIdx];
           scoredDocs.scores[idx] = args.hits - idx;
           idx++;
@@ -514,6 +680,11 @@ public final class SearchCollection implements Closeable {
 
   public <K> ScoredDocuments searchTweets(IndexSearcher searcher, K qid, String queryString, long t,
       RerankerCascade cascade) throws IOException {
+    return searchTweets(searcher, qid, queryString, t, cascade, new TopicSearch(null));
+  }
+
+  private <K> ScoredDocuments searchTweets(IndexSearcher searcher, K qid, String queryString, long t,
+      RerankerCascade cascade, TopicSearch topicSearch) throws IOException {
     Query keywordQuery;
     if (qc == QueryConstructor.SequentialDependenceModel) {
       keywordQuery = new SdmQueryGenerator(args.sdm_tw, args.sdm_ow, args.sdm_uw).buildQuery(FIELD_BODY, analyzer,
@@ -532,20 +703,51 @@ public final class SearchCollection implements Closeable {
     builder.add(keywordQuery, BooleanClause.Occur.MUST);
     Query compositeQuery = builder.build();
 
+    ScoredDocuments hits = topicSearch.firstStage(searcher, compositeQuery, BREAK_SCORE_TIES_BY_TWEETID);
+
+    RerankerContext context = new RerankerContext<>(searcher, qid, keywordQuery, null, queryString, queryTokens, filter,
+        args, topicSearch.documentVectors);
+
+    return cascade.run(hits, context);
+  }
+
+  // Searches the hits to return, or to rerank, sorted by score with ties broken by a sort, unless ties are
+  // to be broken arbitrarily.
+  private TopDocs searchFirstStage(IndexSearcher searcher, Query query, Sort sort) throws IOException {
     TopDocs rs = new TopDocs(new TotalHits(0, TotalHits.Relation.EQUAL_TO), new ScoreDoc[] {});
     if (!(isRerank && args.rerankcutoff <= 0)) {
-      if (args.arbitraryScoreTieBreak) {// Figure out how to break the scoring ties.
-        rs = searcher.search(compositeQuery, isRerank ? args.rerankcutoff : args.hits);
+      if (args.fast) {
+        rs = searchFast(searcher, query, isRerank ? args.rerankcutoff : args.hits, sort);
+      } else if (args.arbitraryScoreTieBreak) {// Figure out how to break the scoring ties.
+        rs = searcher.search(query, isRerank ? args.rerankcutoff : args.hits);
+      } else if (sort == BREAK_SCORE_TIES_BY_DOCID) {
+        rs = TopScoreDocidCollector.search(searcher, query, isRerank ? args.rerankcutoff : args.hits);
       } else {
-        rs = searcher.search(compositeQuery, isRerank ? args.rerankcutoff : args.hits, BREAK_SCORE_TIES_BY_TWEETID,
-            true);
+        rs = searcher.search(query, isRerank ? args.rerankcutoff : args.hits, sort, true);
       }
     }
+    return rs;
+  }
 
-    RerankerContext context = new RerankerContext<>(searcher, qid, keywordQuery, null, queryString, queryTokens, filter,
-        args);
-
-    return cascade.run(ScoredDocuments.fromTopDocs(rs, searcher), context);
+  // Searches the top hits with dynamic pruning once -fast.totalHitsThreshold hits are counted: the scores at
+  // each rank are those of an exhaustive search, but the total hit count is a lower bound, and documents tied
+  // for the last hits may be skipped regardless of their docids.
+  private TopDocs searchFast(IndexSearcher searcher, Query query, int n, Sort sort) throws IOException {
+    int numHits = Math.min(n, Math.max(1, searcher.getIndexReader().maxDoc()));
+    if (args.arbitraryScoreTieBreak) {
+      TopScoreDocCollector collector = TopScoreDocCollector.create(numHits, args.fastTotalHitsThreshold);
+      searcher.search(query, collector);
+      return collector.topDocs();
+    }
+    if (sort == BREAK_SCORE_TIES_BY_DOCID) {
+      return TopScoreDocidCollector.search(searcher, query, numHits, args.fastTotalHitsThreshold, false);
+    }
+    TopFieldCollector collector = TopFieldCollector.create(sort.rewrite(searcher), numHits, null,
+        args.fastTotalHitsThreshold);
+    searcher.search(query, collector);
+    TopDocs rs = collector.topDocs();
+    TopFieldCollector.populateScores(rs.scoreDocs, searcher, query);
+    return rs;
   }
 
   public static SearchArgs parseSearchArgsOrFail(String[] args) throws CmdLineException {
@@ -56,6 +56,10 @@ public class SearchMsmarco {
     @Option(name = "-b", metaVar = "[value]", usage = "BM25 b parameter")
     public float b = 0.68f;
 
+    @Option(name = "-fast", usage = "retrieve with dynamic pruning (block-max WAND); ties for the last hits may " +
+        "not be broken by docid")
+    public boolean fast = false;
+
     // See our MS MARCO documentation to understand how these parameter values were tuned.
     @Option(name = "-rm3", usage = "use RM3 query expansion model")
     public boolean rm3 = false;
@@ -87,6 +91,11 @@ public class SearchMsmarco {
     searcher.setBM25Similarity(retrieveArgs.k1, retrieveArgs.b);
     System.out.println("Initializing BM25, setting k1=" + retrieveArgs.k1 + " and b=" + retrieveArgs.b + "");
 
+    if (retrieveArgs.fast) {
+      searcher.setFastRetrieval(true);
+      System.out.println("Retrieving with dynamic pruning");
+    }
+
     if (retrieveArgs.rm3) {
       searcher.setRM3Reranker(retrieveArgs.fbTerms, retrieveArgs.fbDocs, retrieveArgs.originalQueryWeight);
       System.out.println("Initializing RM3, setting fbTerms=" + retrieveArgs.fbTerms + ", fbDocs=" + retrieveArgs.fbDocs
@@ -65,7 +65,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Class that exposes basic search functionality, designed specifically to provide the bridge between Java and Python
@@ -78,12 +80,15 @@ public class SimpleSearcher implements Closeable {
       new Sort(SortField.FIELD_SCORE,
           new SortField(TweetGenerator.StatusField.ID_LONG.name, SortField.Type.LONG, true));
   private static final Logger LOG = LogManager.getLogger(SimpleSearcher.class);
+  private static final Set<String> RAW_FIELDS = Collections.singleton(LuceneDocumentGenerator.FIELD_RAW);
   private final IndexReader reader;
   private Similarity similarity;
   private Analyzer analyzer;
   private RerankerCascade cascade;
   private boolean searchtweets;
   private boolean isRerank;
+  private boolean fast;
+  private int fastTotalHitsThreshold;
 
   private IndexSearcher searcher = null;
 
@@ -113,6 +118,7 @@ public class SimpleSearcher implements Closeable {
     this.analyzer = new EnglishAnalyzer();
     this.searchtweets = false;
     this.isRerank = false;
+    this.fast = false;
     setDefaultReranker();
   }
 
@@ -121,6 +127,28 @@ public class SimpleSearcher implements Closeable {
      this.analyzer = flag? new TweetAnalyzer(true) : new EnglishAnalyzer();
   }
 
+  /**
+   * Sets whether the initial ranking is retrieved with dynamic pruning (block-max WAND), from the first hits
+   * on: the scores at each rank are those of an exhaustive search, but documents tied for the last hits may
+   * not be broken by docid. Tweets are always searched exhaustively.
+   *
+   * @param flag whether to retrieve with dynamic pruning
+   */
+  public void setFastRetrieval(boolean flag) {
+    setFastRetrieval(flag, 0);
+  }
+
+  /**
+   * Sets whether the initial ranking is retrieved with dynamic pruning (block-max WAND).
+   *
+   * @param flag whether to retrieve with dynamic pruning
+   * @param totalHitsThreshold number of hits counted exactly before documents may be skipped
+   */
+  public void setFastRetrieval(boolean flag, int totalHitsThreshold) {
+    this.fast = flag;
+    this.fastTotalHitsThreshold = totalHitsThreshold;
+  }
+
   public void setRM3Reranker() {
     setRM3Reranker(10, 10, 0.5f, false);
   }
@@ -201,6 +229,8 @@ public class SimpleSearcher implements Closeable {
     searchArgs.arbitraryScoreTieBreak = false;
     searchArgs.hits = k;
     searchArgs.searchtweets = searchtweets;
+    searchArgs.fast = fast;
+    searchArgs.fastTotalHitsThreshold = fastTotalHitsThreshold;
 
     TopDocs rs = new TopDocs(new TotalHits(0, TotalHits.Relation.EQUAL_TO), new ScoreDoc[]{});
     RerankerContext context;
@@ -221,7 +251,12 @@ public class SimpleSearcher implements Closeable {
         context = new RerankerContext<>(searcher, null, query, null, queryString, queryTokens, null, searchArgs);
       }
     } else {
-      rs = searcher.search(query, isRerank ? searchArgs.rerankcutoff : k, BREAK_SCORE_TIES_BY_DOCID, true);
+      if (fast) {
+        rs = TopScoreDocidCollector.search(searcher, query, isRerank ? searchArgs.rerankcutoff : k,
+            fastTotalHitsThreshold, false);
+      } else {
+        rs = TopScoreDocidCollector.search(searcher, query, isRerank ? searchArgs.rerankcutoff : k);
+      }
         context = new RerankerContext<>(searcher, null, query, null, queryString, queryTokens, null, searchArgs);
     }
 
@@ -229,9 +264,8 @@ public class SimpleSearcher implements Closeable {
 
     Result[] results = new Result[hits.ids.length];
     for (int i = 0; i < hits.ids.length; i++) {
-      Document doc = hits.documents[i];
-      String docid = doc.getField(LuceneDocumentGenerator.FIELD_ID).stringValue();
-      IndexableField field = doc.getField(LuceneDocumentGenerator.FIELD_RAW);
+      String docid = hits.docid(i);
+      IndexableField field = hits.document(i, RAW_FIELDS).getField(LuceneDocumentGenerator.FIELD_RAW);
       String content = field == null ? null : field.stringValue();
 
       results[i] = new Result(docid, hits.ids[i], hits.scores[i], content);
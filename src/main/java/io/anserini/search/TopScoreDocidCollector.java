@@ -0,0 +1,267 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.anserini.search;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.packed.PackedInts;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_ID;
+
+/**
+ * Collects the top hits sorted by score, with ties broken by docid, exactly as a search sorted by
+ * {@link SearchCollection#BREAK_SCORE_TIES_BY_DOCID} does, without comparing the docids as strings. The
+ * sorted doc values of the docids are mapped, once per reader, to global ordinals, which follow the order
+ * of the docids, so that a tie is broken by comparing two numbers. Only the hits that are competitive have
+ * their ordinals looked up, and, as with {@link org.apache.lucene.search.TopScoreDocCollector}, the scorer
+ * is told the lowest competitive score once enough hits are counted, so that it may skip documents.
+ *
+ * <p>A collector that need not break ties exactly tells the scorer that a hit must score more than the last
+ * one kept, rather than as much. Block-max WAND then skips every document that can at best tie with the last
+ * hit, at the cost of breaking a tie for the last places by the order in which documents are scored: the
+ * scores at each rank are still those of an exact search, but the docids tied at the lowest of them may
+ * differ. Combined with a small threshold of hits to count, this is the fast mode of
+ * {@link SearchArgs#fast}.</p>
+ */
+public final class TopScoreDocidCollector extends TopDocsCollector<ScoreDoc> {
+  /**
+   * Hits counted exactly before the scorer may skip documents, as in IndexSearcher.
+   */
+  public static final int DEFAULT_TOTAL_HITS_THRESHOLD = 1000;
+
+  // Global ordinals of the docids of multi-segment readers, by reader, until the reader is closed.
+  private static final Map<IndexReader.CacheKey, OrdinalMap> ORDINAL_MAPS = new ConcurrentHashMap<>();
+
+  private final int numHits;
+  private final int totalHitsThreshold;
+  private final boolean exactTies;
+  private final OrdinalMap ordinalMap;
+
+  private static final class Hit extends ScoreDoc {
+    // global ordinal of the docid, or -1 if the document has none, as a missing value sorts first
+    long rank;
+
+    Hit(int doc, float score, long rank) {
+      super(doc, score);
+      this.rank = rank;
+    }
+  }
+
+  private static final class HitQueue extends PriorityQueue<ScoreDoc> {
+    HitQueue(int size) {
+      super(size);
+    }
+
+    @Override
+    protected boolean lessThan(ScoreDoc a, ScoreDoc b) {
+      return isWorse(a.score, ((Hit) a).rank, a.doc, (Hit) b);
+    }
+  }
+
+  /**
+   * Creates a collector of the top hits of a reader whose docids are in the sorted doc values of
+   * {@link io.anserini.index.generator.LuceneDocumentGenerator#FIELD_ID}.
+   *
+   * @param reader reader to be searched
+   * @param numHits number of hits to collect
+   * @throws IOException if error encountered reading the doc values
+   */
+  public TopScoreDocidCollector(IndexReader reader, int numHits) throws IOException {
+    this(reader, numHits, DEFAULT_TOTAL_HITS_THRESHOLD, true);
+  }
+
+  /**
+   * Creates a collector of the top hits of a reader whose docids are in the sorted doc values of
+   * {@link io.anserini.index.generator.LuceneDocumentGenerator#FIELD_ID}.
+   *
+   * @param reader reader to be searched
+   * @param numHits number of hits to collect
+   * @param totalHitsThreshold number of hits to count exactly before the scorer may skip documents
+   * @param exactTies whether documents tied with the last hit kept must still be scored, so that ties are
+   * broken by docid exactly
+   * @throws IOException if error encountered reading the doc values
+   */
+  public TopScoreDocidCollector(IndexReader reader, int numHits, int totalHitsThreshold, boolean exactTies)
+      throws IOException {
+    super(new HitQueue(numHits));
+    if (totalHitsThreshold < 0) {
+      throw new IllegalArgumentException("Total hits threshold must be non-negative");
+    }
+    this.numHits = numHits;
+    this.totalHitsThreshold = totalHitsThreshold;
+    this.exactTies = exactTies;
+    this.ordinalMap = ordinalMap(reader);
+  }
+
+  /**
+   * Searches the top hits of a query, sorted by score with ties broken by docid.
+   *
+   * @param searcher searcher
+   * @param query query
+   * @param n number of hits
+   * @return top hits, with their scores
+   * @throws IOException if error encountered during search
+   */
+  public static TopDocs search(IndexSearcher searcher, Query query, int n) throws IOException {
+    return search(searcher, query, n, DEFAULT_TOTAL_HITS_THRESHOLD, true);
+  }
+
+  /**
+   * Searches the top hits of a query, sorted by score with ties broken by docid.
+   *
+   * @param searcher searcher
+   * @param query query
+   * @param n number of hits
+   * @param totalHitsThreshold number of hits to count exactly before the scorer may skip documents
+   * @param exactTies whether ties for the last hits are broken by docid exactly
+   * @return top hits, with their scores
+   * @throws IOException if error encountered during search
+   */
+  public static TopDocs search(IndexSearcher searcher, Query query, int n, int totalHitsThreshold,
+      boolean exactTies) throws IOException {
+    TopScoreDocidCollector collector = new TopScoreDocidCollector(searcher.getIndexReader(),
+        Math.min(n, Math.max(1, searcher.getIndexReader().maxDoc())), totalHitsThreshold, exactTies);
+    searcher.search(query, collector);
+    return collector.topDocs();
+  }
+
+  @Override
+  public ScoreMode scoreMode() {
+    return ScoreMode.TOP_SCORES;
+  }
+
+  @Override
+  public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+    final int docBase = context.docBase;
+    final SortedDocValues docids = DocValues.getSorted(context.reader(), FIELD_ID);
+    final LongValues toGlobal = ordinalMap == null ? LongValues.IDENTITY : ordinalMap.getGlobalOrds(context.ord);
+
+    return new LeafCollector() {
+      private Scorable scorer;
+
+      @Override
+      public void setScorer(Scorable scorer) throws IOException {
+        this.scorer = scorer;
+        updateMinCompetitiveScore();
+      }
+
+      @Override
+      public void collect(int doc) throws IOException {
+        float score = scorer.score();
+        totalHits++;
+        if (pq.size() < numHits) {
+          pq.add(new Hit(docBase + doc, score, rank(doc)));
+          updateMinCompetitiveScore();
+          return;
+        }
+        Hit bottom = (Hit) pq.top();
+        if (Float.compare(score, bottom.score) < 0) {
+          return;
+        }
+        // Only a hit scoring as much as the last one kept needs its docid.
+        long rank = rank(doc);
+        if (isWorse(score, rank, docBase + doc, bottom)) {
+          return;
+        }
+        bottom.doc = docBase + doc;
+        bottom.score = score;
+        bottom.rank = rank;
+        pq.updateTop();
+        updateMinCompetitiveScore();
+      }
+
+      // Documents are collected in order, as the doc values are read.
+      private long rank(int doc) throws IOException {
+        return docids.advanceExact(doc) ? toGlobal.get(docids.ordValue()) : -1;
+      }
+
+      // Documents scoring less than the last hit kept cannot be competitive; those scoring as much may be,
+      // depending on their docids, unless ties need not be broken exactly.
+      private void updateMinCompetitiveScore() throws IOException {
+        if (scorer != null && pq.size() == numHits && totalHits > totalHitsThreshold) {
+          float bottom = pq.top().score;
+          scorer.setMinCompetitiveScore(exactTies ? bottom : Math.nextUp(bottom));
+          totalHitsRelation = TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO;
+        }
+      }
+    };
+  }
+
+  // Whether a hit comes after another: it scores less, or as much with a docid that is greater, or the same
+  // docid in a later document.
+  private static boolean isWorse(float score, long rank, int doc, Hit other) {
+    int c = Float.compare(score, other.score);
+    if (c != 0) {
+      return c < 0;
+    }
+    if (rank != other.rank) {
+      return rank > other.rank;
+    }
+    return doc > other.doc;
+  }
+
+  // Returns the map from segment to global ordinals of the docids of a reader, or null if the ordinals of its
+  // only segment are already global.
+  private static OrdinalMap ordinalMap(IndexReader reader) throws IOException {
+    if (reader.leaves().size() <= 1) {
+      return null;
+    }
+    IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+    if (cacheHelper == null) {
+      return buildOrdinalMap(reader, null);
+    }
+    OrdinalMap map = ORDINAL_MAPS.get(cacheHelper.getKey());
+    if (map == null) {
+      synchronized (ORDINAL_MAPS) {
+        map = ORDINAL_MAPS.get(cacheHelper.getKey());
+        if (map == null) {
+          map = buildOrdinalMap(reader, cacheHelper.getKey());
+          ORDINAL_MAPS.put(cacheHelper.getKey(), map);
+          cacheHelper.addClosedListener(ORDINAL_MAPS::remove);
+        }
+      }
+    }
+    return map;
+  }
+
+  private static OrdinalMap buildOrdinalMap(IndexReader reader, IndexReader.CacheKey key) throws IOException {
+    SortedDocValues[] values = new SortedDocValues[reader.leaves().size()];
+    for (LeafReaderContext context : reader.leaves()) {
+      values[context.ord] = DocValues.getSorted(context.reader(), FIELD_ID);
+    }
+    return OrdinalMap.build(key, values, PackedInts.DEFAULT);
+  }
+}
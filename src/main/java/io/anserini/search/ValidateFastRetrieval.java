@@ -0,0 +1,230 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.anserini.search;
+
+import org.apache.commons.io.FileUtils;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.kohsuke.args4j.OptionHandlerFilter;
+import org.kohsuke.args4j.ParserProperties;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Validates the fast retrieval mode of {@link SimpleSearcher} (dynamic pruning with block-max WAND) against
+ * exhaustive retrieval on a set of queries, such as those of the MS MARCO passage ranking task. Each query is
+ * searched in both modes, and the tool reports how many rankings are identical, the overlap of the hits, and
+ * the latency of each mode. The scores at each rank must be the same in both modes, since pruning only skips
+ * documents that cannot enter the top hits, or that can at best tie with the last of them; any difference
+ * in scores is reported as an error.
+ */
+public class ValidateFastRetrieval {
+  public static class Args {
+    // required arguments
+    @Option(name = "-qid_queries", metaVar = "[file]", required = true, usage="query id - query mapping file")
+    public String qid_queries = "";
+
+    @Option(name = "-index", metaVar = "[path]", required = true, usage = "index path")
+    public String index = "";
+
+    // optional arguments
+    @Option(name = "-output", metaVar = "[file]", usage = "file to write the hits of rankings that differ to")
+    public String output = null;
+
+    @Option(name = "-hits", metaVar = "[number]", usage = "number of hits to retrieve")
+    public int hits = 10;
+
+    @Option(name = "-totalHitsThreshold", metaVar = "[number]", usage = "number of hits counted exactly " +
+        "before documents may be skipped in fast mode")
+    public int totalHitsThreshold = 0;
+
+    @Option(name = "-warmup", metaVar = "[number]", usage = "number of queries searched in both modes before timing")
+    public int warmup = 100;
+
+    @Option(name = "-k1", metaVar = "[value]", usage = "BM25 k1 parameter")
+    public float k1 = 0.82f;
+
+    @Option(name = "-b", metaVar = "[value]", usage = "BM25 b parameter")
+    public float b = 0.68f;
+
+    @Option(name = "-qld", usage = "use query likelihood Dirichlet scoring model instead of BM25")
+    public boolean qld = false;
+
+    @Option(name = "-mu", metaVar = "[value]", usage = "Dirichlet smoothing parameter")
+    public float mu = 1000.0f;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Args validateArgs = new Args();
+    CmdLineParser parser = new CmdLineParser(validateArgs, ParserProperties.defaults().withUsageWidth(90));
+
+    try {
+      parser.parseArgument(args);
+    } catch (CmdLineException e) {
+      System.err.println(e.getMessage());
+      parser.printUsage(System.err);
+      System.err.println("Example: ValidateFastRetrieval " + parser.printExample(OptionHandlerFilter.REQUIRED));
+      return;
+    }
+
+    SimpleSearcher searcher = new SimpleSearcher(validateArgs.index);
+    if (validateArgs.qld) {
+      searcher.setLMDirichletSimilarity(validateArgs.mu);
+      System.out.println("Initializing QLD, setting mu=" + validateArgs.mu);
+    } else {
+      searcher.setBM25Similarity(validateArgs.k1, validateArgs.b);
+      System.out.println("Initializing BM25, setting k1=" + validateArgs.k1 + " and b=" + validateArgs.b);
+    }
+
+    List<String> lines = FileUtils.readLines(new File(validateArgs.qid_queries), "utf-8");
+    for (int i = 0; i < Math.min(validateArgs.warmup, lines.size()); i++) {
+      String query = lines.get(i).trim().split("\t")[1];
+      search(searcher, validateArgs, query, false);
+      search(searcher, validateArgs, query, true);
+    }
+
+    long[] exactTimes = new long[lines.size()];
+    long[] fastTimes = new long[lines.size()];
+    int identical = 0;
+    int scoreMismatches = 0;
+    double overlap = 0;
+    PrintWriter out = validateArgs.output == null ? null :
+        new PrintWriter(Files.newBufferedWriter(Paths.get(validateArgs.output), StandardCharsets.UTF_8));
+
+    for (int lineNumber = 0; lineNumber < lines.size(); ++lineNumber) {
+      String[] split = lines.get(lineNumber).trim().split("\t");
+      String qid = split[0];
+      String query = split[1];
+
+      // Alternate which mode goes first, so that neither benefits more from the caches warmed by the other.
+      SimpleSearcher.Result[] exact;
+      SimpleSearcher.Result[] fast;
+      long start = System.nanoTime();
+      if (lineNumber % 2 == 0) {
+        exact = search(searcher, validateArgs, query, false);
+        long middle = System.nanoTime();
+        fast = search(searcher, validateArgs, query, true);
+        exactTimes[lineNumber] = middle - start;
+        fastTimes[lineNumber] = System.nanoTime() - middle;
+      } else {
+        fast = search(searcher, validateArgs, query, true);
+        long middle = System.nanoTime();
+        exact = search(searcher, validateArgs, query, false);
+        fastTimes[lineNumber] = middle - start;
+        exactTimes[lineNumber] = System.nanoTime() - middle;
+      }
+
+      boolean sameDocids = exact.length == fast.length;
+      boolean sameScores = exact.length == fast.length;
+      Set<String> exactDocids = new HashSet<>();
+      for (int rank = 0; rank < exact.length; rank++) {
+        exactDocids.add(exact[rank].docid);
+        if (rank < fast.length) {
+          sameDocids &= exact[rank].docid.equals(fast[rank].docid);
+          sameScores &= exact[rank].score == fast[rank].score;
+        }
+      }
+      int common = 0;
+      for (SimpleSearcher.Result hit : fast) {
+        if (exactDocids.contains(hit.docid)) {
+          common++;
+        }
+      }
+      overlap += exact.length == 0 ? 1.0 : (double) common / exact.length;
+
+      if (sameDocids && sameScores) {
+        identical++;
+      } else {
+        if (!sameScores) {
+          scoreMismatches++;
+          System.out.println("Scores differ for query " + qid + ": " + query);
+        }
+        if (out != null) {
+          for (int rank = 0; rank < Math.max(exact.length, fast.length); rank++) {
+            out.println(qid + "\t" + (rank + 1) + "\t" +
+                (rank < exact.length ? exact[rank].docid + "\t" + exact[rank].score : "-\t-") + "\t" +
+                (rank < fast.length ? fast[rank].docid + "\t" + fast[rank].score : "-\t-"));
+          }
+        }
+      }
+
+      if (lineNumber % 1000 == 0) {
+        System.out.println("Validating query " + lineNumber);
+      }
+    }
+    if (out != null) {
+      out.close();
+    }
+    searcher.close();
+
+    int n = lines.size();
+    System.out.println("Queries: " + n + ", top " + validateArgs.hits + " hits");
+    System.out.println("Identical rankings: " + identical);
+    System.out.println("Rankings that differ only in docids tied for the last hits: " +
+        (n - identical - scoreMismatches));
+    System.out.println("Rankings with different scores: " + scoreMismatches);
+    System.out.format("Mean overlap of the hits: %.4f\n", n == 0 ? 1.0 : overlap / n);
+    report("Exhaustive", exactTimes);
+    report("Fast", fastTimes);
+    if (n > 0) {
+      System.out.format("Speedup (mean latency): %.2fx\n", mean(exactTimes) / mean(fastTimes));
+    }
+    if (scoreMismatches > 0) {
+      System.exit(1);
+    }
+  }
+
+  private static SimpleSearcher.Result[] search(SimpleSearcher searcher, Args args, String query, boolean fast)
+      throws Exception {
+    searcher.setFastRetrieval(fast, args.totalHitsThreshold);
+    return searcher.search(query, args.hits);
+  }
+
+  private static void report(String mode, long[] times) {
+    if (times.length == 0) {
+      return;
+    }
+    long[] sorted = times.clone();
+    Arrays.sort(sorted);
+    System.out.format("%s latency (ms): mean %.3f, p50 %.3f, p90 %.3f, p99 %.3f\n", mode,
+        mean(times) / 1e6, percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.9) / 1e6,
+        percentile(sorted, 0.99) / 1e6);
+  }
+
+  private static double mean(long[] times) {
+    double sum = 0;
+    for (long time : times) {
+      sum += time;
+    }
+    return sum / times.length;
+  }
+
+  private static double percentile(long[] sorted, double p) {
+    int index = (int) Math.ceil(p * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.OfflineSorter;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.NoOutputs;
+import org.apache.lucene.util.fst.Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An immutable set of docids, such as a whitelist, stored as a finite state transducer (FST). Docids
+ * of a collection share long prefixes (and often suffixes), which the FST stores only once, so the set
+ * takes a small fraction of the memory of a {@code HashSet<String>}. Lookups are thread-safe, so a
+ * single instance is shared by all threads of a run.
+ */
+public final class DocidSet {
+  private final FST<Object> fst;
+  private final long size;
+
+  private DocidSet(FST<Object> fst, long size) {
+    this.fst = fst;
+    this.size = size;
+  }
+
+  /**
+   * Loads a file of docids, one per line, in any order. The docids are sorted on disk (in a temporary
+   * directory) rather than in memory, so loading a large file does not need more heap than the set itself.
+   *
+   * @param file file of docids
+   * @return set of the docids in the file
+   * @throws IOException if the file cannot be read
+   */
+  public static DocidSet load(Path file) throws IOException {
+    Path tmp = Files.createTempDirectory("docids");
+    try (Directory dir = FSDirectory.open(tmp)) {
+      String unsorted;
+      try (IndexOutput out = dir.createTempOutput("docids", "unsorted", IOContext.DEFAULT);
+           BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        OfflineSorter.ByteSequencesWriter writer = new OfflineSorter.ByteSequencesWriter(out);
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (!line.isEmpty()) {
+            writer.write(new BytesRef(line));
+          }
+        }
+        CodecUtil.writeFooter(out);
+        unsorted = out.getName();
+      }
+      String sorted = new OfflineSorter(dir, "docids").sort(unsorted);
+
+      Builder<Object> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, NoOutputs.getSingleton());
+      IntsRefBuilder scratch = new IntsRefBuilder();
+      BytesRefBuilder previous = null;
+      long size = 0;
+      try (ChecksumIndexInput in = dir.openChecksumInput(sorted, IOContext.READONCE)) {
+        OfflineSorter.ByteSequencesReader reader = new OfflineSorter.ByteSequencesReader(in, sorted);
+        BytesRef docid;
+        while ((docid = reader.next()) != null) {
+          if (previous == null) {
+            previous = new BytesRefBuilder();
+          } else if (previous.get().bytesEquals(docid)) {
+            continue;
+          }
+          builder.add(Util.toIntsRef(docid, scratch), NoOutputs.getSingleton().getNoOutput());
+          previous.copyBytes(docid);
+          size++;
+        }
+        CodecUtil.checkFooter(in);
+      }
+      return new DocidSet(builder.finish(), size);
+    } finally {
+      FileUtils.deleteDirectory(tmp.toFile());
+    }
+  }
+
+  public boolean contains(String docid) {
+    try {
+      return fst != null && Util.get(fst, new BytesRef(docid)) != null;
+    } catch (IOException e) {
+      // The FST is on heap, so reading it cannot fail.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Returns the memory used by the set, in bytes.
+   *
+   * @return memory used by the set
+   */
+  public long ramBytesUsed() {
+    return fst == null ? 0 : fst.ramBytesUsed();
+  }
+}
@@ -41,18 +41,23 @@ public class FeatureVector {
   }
 
   public FeatureVector pruneToSize(int k) {
+    this.features = topFeatures(k).features;
+    return this;
+  }
+
+  // Returns the k features of highest weight, leaving this vector unchanged.
+  public FeatureVector topFeatures(int k) {
     List<KeyValuePair> pairs = getOrderedFeatures();
-    Object2FloatOpenHashMap<String> pruned = new Object2FloatOpenHashMap<String>();
-    
+    FeatureVector top = new FeatureVector();
+
     for (KeyValuePair pair : pairs) {
-      pruned.put((String) pair.getKey(), pair.getValue());
-      if (pruned.size() >= k) {
+      top.features.put((String) pair.getKey(), pair.getValue());
+      if (top.features.size() >= k) {
         break;
       }
     }
 
-    this.features = pruned;
-    return this;
+    return top;
   }
 
   public FeatureVector scaleToUnitL2Norm() {
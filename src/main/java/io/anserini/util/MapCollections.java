@@ -17,6 +17,8 @@
 package io.anserini.util;
 
 import io.anserini.collection.FileSegment;
+import io.anserini.collection.FileSplit;
+import io.anserini.collection.ReadAheadInputStream;
 import io.anserini.collection.DocumentCollection;
 import io.anserini.collection.SourceDocument;
 import io.anserini.util.mapper.DocumentMapper;
@@ -30,9 +32,12 @@ import org.kohsuke.args4j.OptionHandlerFilter;
 import org.kohsuke.args4j.ParserProperties;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Iterator;
 import java.util.concurrent.Executors;
@@ -67,6 +72,16 @@ public final class MapCollections {
     @Option(name = "-output", metaVar = "[Path]", usage = "output path")
     public String output;
 
+    @Option(name = "-split.size", metaVar = "[MB]",
+        usage = "cut uncompressed files of splittable collections into parts of about this size that are read " +
+            "in parallel; 0 to read every file whole")
+    public int splitSize = 256;
+
+    @Option(name = "-decompress.readAhead", metaVar = "[MB]",
+        usage = "decompress each compressed file on a separate thread, up to this far ahead of its parser; " +
+            "0 to decompress on the parsing thread")
+    public int readAhead = 4;
+
     @Option(name = "-whitelist", usage = "file containing docids, one per line; only specified docids will be indexed.")
     public String whitelist = null;
 
@@ -86,22 +101,22 @@ public final class MapCollections {
   }
 
   private final class MapThread extends Thread {
+    final private FileSplit split;
     final private Path inputFile;
     final private DocumentCollection collection;
 
-    private MapThread(DocumentCollection collection, Path inputFile) {
+    private MapThread(DocumentCollection collection, FileSplit split) {
       this.collection = collection;
-      this.inputFile = inputFile;
+      this.split = split;
+      this.inputFile = split.getPath();
 
       setName(inputFile.getFileName().toString());
     }
 
     @Override
     public void run() {
-      try {
-        @SuppressWarnings("unchecked")
-        FileSegment<SourceDocument> segment = (FileSegment) collection.createFileSegment(inputFile);
-
+      try (@SuppressWarnings("unchecked")
+           FileSegment<SourceDocument> segment = (FileSegment) collection.createFileSegment(split)) {
         // We're calling these records because the documents may not in indexable.
         AtomicInteger records = new AtomicInteger();
         segment.iterator().forEachRemaining(d -> {
@@ -109,7 +124,6 @@ public final class MapCollections {
           records.incrementAndGet();
         });
 
-        segment.close();
         LOG.info(inputFile.getParent().getFileName().toString() + File.separator +
                 inputFile.getFileName().toString() + ": " + records.incrementAndGet() + " records processed.");
       } catch (Exception e) {
@@ -123,7 +137,7 @@ public final class MapCollections {
   private final Class collectionClass;
   private final Class mapperClass;
   private final Class contextClass;
-  private final DocumentCollection collection;
+  private final DocumentCollection<?> collection;
   private final DocumentMapper mapper;
   private final DocumentMapperContext context;
 
@@ -136,6 +150,8 @@ public final class MapCollections {
     LOG.info("Mapper: " + args.mapperClass);
     LOG.info("Context: " + args.contextClass);
     LOG.info("Threads: " + args.threads);
+    LOG.info("Split size (MB): " + args.splitSize);
+    LOG.info("Decompression read-ahead (MB): " + args.readAhead);
     LOG.info("Output: " + args.output);
     LOG.info("Whitelist: " + args.whitelist);
 
@@ -149,8 +165,9 @@ public final class MapCollections {
     this.mapperClass = Class.forName("io.anserini.util.mapper." + args.mapperClass);
     this.contextClass = Class.forName("io.anserini.util.mapper." + args.contextClass);
 
-    collection = (DocumentCollection) collectionClass.newInstance();
+    collection = (DocumentCollection<?>) collectionClass.newInstance();
     collection.setCollectionPath(collectionPath);
+    collection.setReadAheadChunks(args.readAhead * (1 << 20) / ReadAheadInputStream.CHUNK_SIZE);
 
     context = (DocumentMapperContext) contextClass.newInstance();
     mapper = (DocumentMapper) mapperClass.getDeclaredConstructor(Args.class).newInstance(args);
@@ -163,12 +180,22 @@ public final class MapCollections {
 
     int numThreads = args.threads;
     final ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(numThreads);
-    final List segmentPaths = collection.discover(collection.getCollectionPath());
+    final List<Path> segmentPaths = collection.discover(collection.getCollectionPath());
+
+    final List<FileSplit> splits = new ArrayList<>();
+    for (Path segmentPath : segmentPaths) {
+      try {
+        splits.addAll(collection.split(segmentPath, args.splitSize * 1024L * 1024L));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
 
-    final int segmentCnt = segmentPaths.size();
-    LOG.info(segmentCnt + " files found in " + collectionPath.toString());
+    final int segmentCnt = splits.size();
+    LOG.info(segmentPaths.size() + " files found in " + collectionPath.toString() + ", read as " +
+        segmentCnt + " splits");
     for (int i = 0; i < segmentCnt; i++) {
-      executor.execute(new MapCollections.MapThread(collection, (Path) segmentPaths.get(i)));
+      executor.execute(new MapCollections.MapThread(collection, splits.get(i)));
     }
 
     executor.shutdown();
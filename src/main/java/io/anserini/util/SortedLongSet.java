@@ -0,0 +1,172 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.util;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tools.bzip2.CBZip2InputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable set of longs (e.g., the ids of deleted tweets) kept as a sorted array in a memory-mapped
+ * file, and searched with binary search. The set lives outside the heap, is shared by all threads, and
+ * costs nothing to open once the sorted file exists, so that generators created per thread do not each
+ * decompress and hash the same list.
+ */
+public final class SortedLongSet {
+  private static final Logger LOG = LogManager.getLogger(SortedLongSet.class);
+
+  /**
+   * Suffix of the sorted binary file created next to a list of ids by {@link #open(Path)}.
+   */
+  public static final String SORTED_SUFFIX = ".sorted";
+
+  private static final Map<Path, SortedLongSet> OPEN = new HashMap<>();
+
+  private final LongBuffer values;
+
+  private SortedLongSet(LongBuffer values) {
+    this.values = values;
+  }
+
+  /**
+   * Returns the set of ids listed in a file, one per line (only the first tab-separated column is
+   * read), optionally bz2-compressed. The first time a file is opened, its ids are sorted into a binary
+   * file next to it (or in the temporary directory if that is not writable), which later calls and later
+   * runs map directly. Within a JVM, each file is only opened once.
+   *
+   * @param ids file of ids
+   * @return set of the ids in the file
+   * @throws IOException if the file cannot be read, or the sorted file cannot be written
+   */
+  public static synchronized SortedLongSet open(Path ids) throws IOException {
+    Path key = ids.toAbsolutePath().normalize();
+    SortedLongSet set = OPEN.get(key);
+    if (set == null) {
+      set = map(sorted(key));
+      OPEN.put(key, set);
+    }
+    return set;
+  }
+
+  public boolean contains(long value) {
+    int low = 0;
+    int high = values.limit() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long v = values.get(mid);
+      if (v < value) {
+        low = mid + 1;
+      } else if (v > value) {
+        high = mid - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int size() {
+    return values.limit();
+  }
+
+  private static Path sorted(Path ids) throws IOException {
+    Path sorted = ids.resolveSibling(ids.getFileName() + SORTED_SUFFIX);
+    if (isFresh(sorted, ids)) {
+      return sorted;
+    }
+    if (!Files.isWritable(ids.getParent())) {
+      sorted = Files.createTempFile(ids.getFileName().toString(), SORTED_SUFFIX);
+      sorted.toFile().deleteOnExit();
+    }
+
+    LOG.info("Sorting ids from " + ids + " into " + sorted);
+    long[] values = read(ids);
+    Path tmp = sorted.resolveSibling(sorted.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+      for (int i = 0; i < values.length; i++) {
+        if (i == 0 || values[i] != values[i - 1]) {
+          out.writeLong(values[i]);
+        }
+      }
+    }
+    Files.move(tmp, sorted, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return sorted;
+  }
+
+  private static boolean isFresh(Path sorted, Path ids) throws IOException {
+    return Files.exists(sorted) &&
+        Files.getLastModifiedTime(sorted).compareTo(Files.getLastModifiedTime(ids)) >= 0;
+  }
+
+  private static long[] read(Path ids) throws IOException {
+    LongArrayList values = new LongArrayList();
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(ids), 1 << 16)) {
+      InputStream stream = in;
+      in.mark(2);
+      int b = in.read();
+      int z = in.read();
+      if (b == 'B' && z == 'Z') {
+        // bz2, without the "B", "Z" bytes from commandline tools
+        stream = new CBZip2InputStream(in);
+      } else {
+        in.reset();
+      }
+      BufferedReader br = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+      String s;
+      while ((s = br.readLine()) != null) {
+        int tab = s.indexOf('\t');
+        values.add(Long.parseLong(tab >= 0 ? s.substring(0, tab) : s));
+      }
+    }
+    long[] array = values.toLongArray();
+    Arrays.sort(array);
+    return array;
+  }
+
+  private static SortedLongSet map(Path sorted) throws IOException {
+    try (FileChannel channel = FileChannel.open(sorted, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(sorted + " is too large to be mapped");
+      }
+      // The mapping stays valid after the channel is closed.
+      LongBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+          .order(ByteOrder.BIG_ENDIAN).asLongBuffer();
+      LOG.info("Mapped " + values.limit() + " ids from " + sorted);
+      return new SortedLongSet(values);
+    }
+  }
+}
@@ -18,31 +18,17 @@ package io.anserini.util.mapper;
 
 import io.anserini.collection.SourceDocument;
 import io.anserini.util.MapCollections;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.File;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-
 public class CountDocumentMapper extends DocumentMapper {
   private static final Logger LOG = LogManager.getLogger(CountDocumentMapper.class);
 
   private CountDocumentMapperContext counters;
-  private final Set whitelistDocids;
 
   public CountDocumentMapper(MapCollections.Args args) throws Exception {
     super(args);
-
-    if (args.whitelist != null) {
-      List<String> lines = FileUtils.readLines(new File(args.whitelist), "utf-8");
-      this.whitelistDocids = new HashSet<>(lines);
-    } else {
-      this.whitelistDocids = null;
-    }
   }
 
   @Override
@@ -57,7 +43,12 @@ public class CountDocumentMapper extends DocumentMapper {
       return;
     }
 
-    if (whitelistDocids != null && !whitelistDocids.contains(doc.id())) {
+    if (whitelist != null && !whitelist.contains(doc.id())) {
+      ((CountDocumentMapperContext) context).skipped.incrementAndGet();
+      return;
+    }
+
+    if (deletedTweetIds != null && deletedTweetIds.contains(Long.parseLong(doc.id()))) {
       ((CountDocumentMapperContext) context).skipped.incrementAndGet();
       return;
     }
@@ -17,13 +17,32 @@
 package io.anserini.util.mapper;
 
 import io.anserini.collection.SourceDocument;
+import io.anserini.util.DocidSet;
 import io.anserini.util.MapCollections;
+import io.anserini.util.SortedLongSet;
+
+import java.io.IOException;
+import java.nio.file.Paths;
 
 public abstract class DocumentMapper {
   protected MapCollections.Args args;
 
-  public DocumentMapper(MapCollections.Args args) {
+  /**
+   * Docids given by {@code -whitelist}, or {@code null} if all documents are to be processed. Loaded once
+   * and shared by all threads.
+   */
+  protected final DocidSet whitelist;
+
+  /**
+   * Ids of deleted tweets given by {@code -tweet.deletedIdsFile}, or {@code null} if none were given.
+   */
+  protected final SortedLongSet deletedTweetIds;
+
+  public DocumentMapper(MapCollections.Args args) throws IOException {
     this.args = args;
+    this.whitelist = args.whitelist != null ? DocidSet.load(Paths.get(args.whitelist)) : null;
+    this.deletedTweetIds = !args.tweetDeletedIdsFile.isEmpty() ?
+        SortedLongSet.open(Paths.get(args.tweetDeletedIdsFile)) : null;
   }
 
   public abstract void setContext(DocumentMapperContext context);
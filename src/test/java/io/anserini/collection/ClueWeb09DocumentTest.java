@@ -19,6 +19,8 @@ package io.anserini.collection;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -122,4 +124,21 @@ public class ClueWeb09DocumentTest extends DocumentTest {
     });
     assertEquals(2, cnt.get());
   }
+
+  // Content held in a direct buffer, as when sliced from a memory-mapped file, is decoded where it is.
+  @Test
+  public void testBufferContent() {
+    String record = "HTTP/1.1 200 OK\nContent-Type: text/html\nContent-Length: 27\n" +
+        "<html>caf\u00e9 \u2603</html>\n";
+    byte[] bytes = ("prefix" + record).getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes);
+    buffer.position("prefix".length());
+
+    ClueWeb09Collection.Document doc = new ClueWeb09Collection.Document();
+    doc.setContent(buffer.slice());
+    assertEquals(record, doc.getContentUTF8());
+    assertEquals("<html>caf\u00e9 \u2603</html>\n", doc.getContent());
+    assertArrayEquals(record.getBytes(StandardCharsets.UTF_8), doc.getByteContent());
+  }
 }
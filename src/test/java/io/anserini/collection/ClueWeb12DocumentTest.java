@@ -19,9 +19,15 @@ package io.anserini.collection;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 public class ClueWeb12DocumentTest extends DocumentTest {
 
@@ -120,4 +126,36 @@ public class ClueWeb12DocumentTest extends DocumentTest {
     });
     assertEquals(2, cnt.get());
   }
+
+  // Compressed files are read through a buffer, and uncompressed files are memory-mapped; records
+  // straddling the end of the buffer must be read the same way in both.
+  @Test
+  public void testFiles() throws Exception {
+    StringBuilder warc = new StringBuilder();
+    int records = 2000;
+    for (int i = 0; i < records; i++) {
+      warc.append(rawDocs.get(i % 2));
+    }
+    byte[] bytes = warc.toString().getBytes(StandardCharsets.UTF_8);
+    Path dir = createTempDir();
+    Path plain = dir.resolve("00.warc");
+    Files.write(plain, bytes);
+    Path compressed = dir.resolve("00.warc.gz");
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+      out.write(bytes);
+    }
+
+    ClueWeb12Collection collection = new ClueWeb12Collection();
+    for (Path path : Arrays.asList(plain, compressed)) {
+      FileSegment<ClueWeb12Collection.Document> segment = collection.createFileSegment(path);
+      int cnt = 0;
+      for (ClueWeb12Collection.Document d : segment) {
+        assertEquals(expected.get(cnt % 2).get("id"), d.id());
+        assertEquals(expected.get(cnt % 2).get("content"), d.content());
+        cnt++;
+      }
+      segment.close();
+      assertEquals(records, cnt);
+    }
+  }
 }
@@ -0,0 +1,216 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.collection;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+// Walked directories must only contain the files created there.
+@LuceneTestCase.SuppressFileSystems("ExtrasFS")
+public class FileSplitTest extends DocumentTest {
+
+  // Reads every split of the file and returns the "id|contents" of all documents, in order.
+  private static <T extends SourceDocument> List<String> readSplits(DocumentCollection<T> collection,
+                                                                    List<FileSplit> splits) throws IOException {
+    List<String> docs = new ArrayList<>();
+    for (FileSplit split : splits) {
+      FileSegment<T> segment = collection.createFileSegment(split);
+      for (T doc : segment) {
+        docs.add(doc.id() + "|" + doc.content());
+      }
+      assertFalse(segment.getErrorStatus());
+      assertEquals(0, segment.getSkippedCount());
+      segment.close();
+    }
+    return docs;
+  }
+
+  private static void assertContiguous(Path path, List<FileSplit> splits, long size) {
+    long start = 0;
+    for (FileSplit split : splits) {
+      assertEquals(path, split.getPath());
+      assertEquals(start, split.getStart());
+      assertTrue(split.getEnd() > split.getStart());
+      assertEquals(split.getEnd() - split.getStart(), split.getLength());
+      start = split.getEnd();
+    }
+    assertEquals(size, start);
+  }
+
+  @Test
+  public void testTrec() throws Exception {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      builder.append("<DOC>\n")
+          .append("<DOCNO> DOC-").append(i).append(" </DOCNO>\n")
+          .append("<TEXT>\n")
+          .append("document number ").append(i).append(", mentioning <DOC> mid-line, na\u00efve caf\u00e9\n")
+          .append("</TEXT>\n")
+          .append("</DOC>\n");
+    }
+    Path path = createFile(builder.toString());
+    long size = path.toFile().length();
+
+    TrecCollection collection = new TrecCollection();
+    List<String> whole = readSplits(collection, collection.split(path, 0));
+    assertEquals(50, whole.size());
+    // The whole file is decoded as UTF-8, like its splits, whatever the platform charset.
+    assertTrue(whole.get(0).contains("na\u00efve caf\u00e9"));
+
+    List<FileSplit> splits = collection.split(path, 300);
+    assertTrue(splits.size() > 1);
+    assertContiguous(path, splits, size);
+    assertEquals(whole, readSplits(collection, splits));
+
+    // A split size larger than the file yields the whole file.
+    splits = collection.split(path, size);
+    assertEquals(1, splits.size());
+    assertTrue(splits.get(0).isWholeFile());
+    assertEquals(size, splits.get(0).getLength());
+  }
+
+  @Test
+  public void testTrecCompressedNotSplit() throws Exception {
+    Path path = createTempDir().resolve("docs.gz");
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+      for (int i = 0; i < 20; i++) {
+        out.write(("<DOC>\n<DOCNO> DOC-" + i + " </DOCNO>\n<TEXT>\ndocument " + i + "\n</TEXT>\n</DOC>\n")
+            .getBytes("utf-8"));
+      }
+    }
+
+    TrecCollection collection = new TrecCollection();
+    assertNull(collection.getRecordDelimiter(path));
+    List<FileSplit> splits = collection.split(path, 10);
+    assertEquals(1, splits.size());
+    assertTrue(splits.get(0).isWholeFile());
+    assertEquals(20, readSplits(collection, splits).size());
+
+    for (String name : new String[] {"a.gz", "a.bz2", "a.zst", "a.z", "a.Z", "a.0z", "a.12Z"}) {
+      assertTrue(name, FileSegment.isCompressed(createTempDir().resolve(name)));
+    }
+    for (String name : new String[] {"a.txt", "a.json", "a.zip", "a.tgz.part"}) {
+      assertFalse(name, FileSegment.isCompressed(createTempDir().resolve(name)));
+    }
+  }
+
+  @Test
+  public void testJsonLines() throws Exception {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      builder.append("{\"id\": \"doc").append(i).append("\", \"contents\": \"contents of document ")
+          .append(i).append(" {with braces}\"}\n");
+    }
+    Path path = createFile(builder.toString());
+
+    JsonCollection collection = new JsonCollection();
+    List<String> whole = readSplits(collection, collection.split(path, 0));
+    assertEquals(50, whole.size());
+
+    List<FileSplit> splits = collection.split(path, 200);
+    assertTrue(splits.size() > 1);
+    assertContiguous(path, splits, path.toFile().length());
+    assertEquals(whole, readSplits(collection, splits));
+  }
+
+  @Test
+  public void testJsonArrayNotSplit() throws Exception {
+    Path path = createFile("[\n" +
+        "  {\n" +
+        "    \"id\": \"doc1\",\n" +
+        "    \"contents\": \"this is the contents 1.\"\n" +
+        "  },\n" +
+        "  {\n" +
+        "    \"id\": \"doc2\",\n" +
+        "    \"contents\": \"this is the contents 2.\"\n" +
+        "  }\n" +
+        "]");
+
+    JsonCollection collection = new JsonCollection();
+    assertNull(collection.getRecordDelimiter(path));
+    List<FileSplit> splits = collection.split(path, 10);
+    assertEquals(1, splits.size());
+    assertTrue(splits.get(0).isWholeFile());
+  }
+
+  @Test
+  public void testNoSplitSupport() throws Exception {
+    Path path = createFile("<html><body>\n<p>a page that is read whole</p>\n</body></html>\n");
+    long size = path.toFile().length();
+
+    HtmlCollection collection = new HtmlCollection();
+    assertFalse(collection.supportsSplits());
+    List<FileSplit> splits = collection.split(path, 10);
+    assertEquals(1, splits.size());
+    assertTrue(splits.get(0).isWholeFile());
+
+    // A range covering the whole file falls back to a whole-file segment; any other range is rejected.
+    List<String> docs = new ArrayList<>();
+    FileSegment<HtmlCollection.Document> segment = collection.createFileSegment(path, 0, size);
+    for (HtmlCollection.Document doc : segment) {
+      docs.add(doc.content());
+    }
+    segment.close();
+    assertEquals(1, docs.size());
+    assertTrue(docs.get(0).contains("read whole"));
+    expectThrows(IllegalArgumentException.class, () -> collection.createFileSegment(path, 0, size / 2));
+  }
+
+  @Test
+  public void testStreamingDiscovery() throws Exception {
+    Path root = createTempDir();
+    Path first = Files.createDirectory(root.resolve("a"));
+    Path second = Files.createDirectory(root.resolve("b"));
+    Files.write(first.resolve("1.txt"), "one".getBytes("utf-8"));
+    Files.write(second.resolve("2.txt"), "two".getBytes("utf-8"));
+
+    // Each file is handed over while the walk is still running: a file added to the directory that has
+    // not been visited yet, when the first file arrives, is found as well.
+    HtmlCollection collection = new HtmlCollection();
+    List<Path> found = new ArrayList<>();
+    collection.discover(root, path -> {
+      if (found.isEmpty()) {
+        Path other = path.getParent().equals(first) ? second : first;
+        try {
+          Files.write(other.resolve("3.txt"), "three".getBytes("utf-8"));
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      found.add(path);
+    });
+    assertEquals(3, found.size());
+    assertTrue(found.contains(first.resolve("3.txt")) || found.contains(second.resolve("3.txt")));
+
+    // Collecting the files returns the same files, in the order in which they are walked.
+    List<Path> collected = collection.discover(root);
+    assertEquals(3, collected.size());
+    List<Path> sorted = new ArrayList<>(found);
+    Collections.sort(sorted);
+    Collections.sort(collected);
+    assertEquals(sorted, collected);
+  }
+}
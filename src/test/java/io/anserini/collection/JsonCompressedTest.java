@@ -0,0 +1,118 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.collection;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+// Compressed JSON Lines and arrays, which are parsed as a stream of tokens.
+public class JsonCompressedTest extends LuceneTestCase {
+  private static final String LINES =
+      "{\"id\": \"doc1\", \"contents\": \"this is the contents 1.\", \"nested\": {\"a\": [1, 2]}, \"n\": 42}\n" +
+      "{\"id\": \"doc2\", \"contents\": \"this is the contents 2.\", \"flag\": true, \"missing\": null}\n" +
+      "{\"id\": \"doc3\", \"contents\": \"this is the contents 3.\"}\n";
+
+  private static final String ARRAY =
+      "[{\"id\": \"doc1\", \"contents\": \"this is the contents 1.\", \"nested\": {\"a\": [1, 2]}, \"n\": 42},\n" +
+      " {\"id\": \"doc2\", \"contents\": \"this is the contents 2.\", \"flag\": true, \"missing\": null},\n" +
+      " {\"id\": \"doc3\", \"contents\": \"this is the contents 3.\"}]";
+
+  private static Path write(Path dir, String name, String json) throws IOException {
+    Path path = dir.resolve(name);
+    try (OutputStream out = Files.newOutputStream(path)) {
+      OutputStream compressed;
+      if (name.endsWith(".gz")) {
+        compressed = new GZIPOutputStream(out);
+      } else if (name.endsWith(".bz2")) {
+        compressed = new BZip2CompressorOutputStream(out);
+      } else {
+        compressed = new ZstdOutputStream(out);
+      }
+      compressed.write(json.getBytes(StandardCharsets.UTF_8));
+      compressed.close();
+    }
+    return path;
+  }
+
+  private static List<JsonCollection.Document> read(Path path) throws IOException {
+    List<JsonCollection.Document> documents = new ArrayList<>();
+    FileSegment<JsonCollection.Document> segment = new JsonCollection().createFileSegment(path);
+    segment.iterator().forEachRemaining(documents::add);
+    assertFalse(segment.getErrorStatus());
+    segment.close();
+    return documents;
+  }
+
+  private static void check(List<JsonCollection.Document> documents) {
+    assertEquals(3, documents.size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals("doc" + (i + 1), documents.get(i).id());
+      assertEquals("this is the contents " + (i + 1) + ".", documents.get(i).content());
+    }
+    assertEquals("", documents.get(0).fields().get("nested"));
+    assertEquals("42", documents.get(0).fields().get("n"));
+    assertEquals(2, documents.get(0).fields().size());
+    assertEquals("true", documents.get(1).fields().get("flag"));
+    assertEquals("null", documents.get(1).fields().get("missing"));
+    assertEquals(Collections.emptyMap(), documents.get(2).fields());
+  }
+
+  @Test
+  public void testCompressedLines() throws IOException {
+    Path dir = createTempDir();
+    for (String name : new String[] {"docs.jsonl.gz", "docs.jsonl.bz2", "docs.jsonl.zst"}) {
+      Path path = write(dir, name, LINES);
+      check(read(path));
+      // Compressed files are read whole.
+      assertEquals(1, new JsonCollection().split(path, 16).size());
+    }
+  }
+
+  @Test
+  public void testCompressedArray() throws IOException {
+    Path dir = createTempDir();
+    for (String name : new String[] {"docs.json.gz", "docs.json.bz2", "docs.json.zst"}) {
+      check(read(write(dir, name, ARRAY)));
+    }
+  }
+
+  @Test
+  public void testDiscovery() throws IOException {
+    Path dir = createTempDir();
+    write(dir, "a.jsonl.gz", LINES);
+    write(dir, "b.json.zst", ARRAY);
+    Files.write(dir.resolve("c.txt.gz"), new byte[0]);
+    JsonCollection collection = new JsonCollection();
+    List<Path> paths = new ArrayList<>(collection.discover(dir));
+    Collections.sort(paths);
+    assertEquals(2, paths.size());
+    assertEquals("a.jsonl.gz", paths.get(0).getFileName().toString());
+    assertEquals("b.json.zst", paths.get(1).getFileName().toString());
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.collection;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ParsedCollectionTest extends LuceneTestCase {
+
+  private static List<ParsedCollection.Document> read(ParsedCollection collection, FileSplit split) throws Exception {
+    List<ParsedCollection.Document> documents = new ArrayList<>();
+    FileSegment<ParsedCollection.Document> segment = collection.createFileSegment(split);
+    try {
+      for (ParsedCollection.Document document : segment) {
+        documents.add(document);
+      }
+      assertFalse(segment.getErrorStatus());
+    } finally {
+      segment.close();
+    }
+    return documents;
+  }
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    Path dir = createTempDir();
+    Path file = dir.resolve("part-00000" + ParsedCollection.SUFFIX);
+    int count = atLeast(500);
+    try (ParsedCorpusWriter writer = new ParsedCorpusWriter(file, 1024)) {
+      for (int i = 0; i < count; i++) {
+        Map<String, String> fields = new HashMap<>();
+        if (i % 3 == 0) {
+          fields.put("title", "title " + i);
+        }
+        writer.add("doc" + i, "contents of document " + i + " \u00e9\u4e2d " + TestUtil.randomUnicodeString(random()), fields);
+      }
+    }
+    assertFalse(Files.exists(dir.resolve("part-00000" + ParsedCollection.SUFFIX + ".tmp")));
+
+    ParsedCollection collection = new ParsedCollection();
+    List<ParsedCollection.Document> whole = read(collection, FileSplit.of(file));
+    assertEquals(count, whole.size());
+    for (int i = 0; i < count; i++) {
+      ParsedCollection.Document document = whole.get(i);
+      assertEquals("doc" + i, document.id());
+      assertTrue(document.content().startsWith("contents of document " + i + " \u00e9\u4e2d "));
+      assertEquals(i % 3 == 0 ? Collections.singletonMap("title", "title " + i) : Collections.emptyMap(),
+          document.fields());
+    }
+
+    // Splits begin on block boundaries, and together hold every document once, in order.
+    List<FileSplit> splits = collection.split(file, 4096);
+    assertTrue(splits.size() > 1);
+    List<String> ids = new ArrayList<>();
+    for (FileSplit split : splits) {
+      for (ParsedCollection.Document document : read(collection, split)) {
+        ids.add(document.id());
+      }
+    }
+    assertEquals(count, ids.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals("doc" + i, ids.get(i));
+    }
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    Path file = createTempDir().resolve("empty" + ParsedCollection.SUFFIX);
+    new ParsedCorpusWriter(file).close();
+    assertTrue(read(new ParsedCollection(), FileSplit.of(file)).isEmpty());
+  }
+
+  @Test
+  public void testAbort() throws Exception {
+    Path file = createTempDir().resolve("aborted" + ParsedCollection.SUFFIX);
+    ParsedCorpusWriter writer = new ParsedCorpusWriter(file);
+    writer.add("doc", "contents", Collections.emptyMap());
+    writer.abort();
+    assertFalse(Files.exists(file));
+    assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.collection;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class ReadAheadInputStreamTest extends LuceneTestCase {
+
+  private static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    random().nextBytes(bytes);
+    return bytes;
+  }
+
+  @Test
+  public void testReadAll() throws Exception {
+    byte[] bytes = randomBytes(3 * ReadAheadInputStream.CHUNK_SIZE + 12345);
+    try (InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(bytes), 2)) {
+      assertEquals(bytes[0] & 0xff, in.read());
+      byte[] rest = IOUtils.toByteArray(in);
+      assertArrayEquals(Arrays.copyOfRange(bytes, 1, bytes.length), rest);
+      assertEquals(-1, in.read());
+    }
+  }
+
+  // The number of chunks is a setting of each collection, not of the process.
+  @Test
+  public void testChunksPerCollection() throws Exception {
+    InputStream plain = new ByteArrayInputStream(randomBytes(10));
+    assertSame(plain, ReadAheadInputStream.wrap(plain, 0));
+    try (InputStream in = ReadAheadInputStream.wrap(plain, 1)) {
+      assertTrue(in instanceof ReadAheadInputStream);
+    }
+
+    JsonCollection disabled = new JsonCollection();
+    disabled.setReadAheadChunks(0);
+    JsonCollection other = new JsonCollection();
+    assertEquals(0, disabled.getReadAheadChunks());
+    assertEquals(ReadAheadInputStream.DEFAULT_CHUNKS, other.getReadAheadChunks());
+    expectThrows(IllegalArgumentException.class, () -> other.setReadAheadChunks(-1));
+  }
+
+  // Every member of a multi-member gzip file must be read.
+  @Test
+  public void testMultiMemberGzip() throws Exception {
+    ByteArrayOutputStream gz = new ByteArrayOutputStream();
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (int i = 0; i < 5; i++) {
+      byte[] member = randomBytes(atLeast(100000));
+      try (GZIPOutputStream out = new GZIPOutputStream(gz) {
+        @Override
+        public void close() throws IOException {
+          finish();
+        }
+      }) {
+        out.write(member);
+      }
+      expected.write(member);
+    }
+
+    try (InputStream in = new ReadAheadInputStream(new GZIPInputStream(new ByteArrayInputStream(gz.toByteArray())), 1)) {
+      assertArrayEquals(expected.toByteArray(), IOUtils.toByteArray(in));
+    }
+  }
+
+  @Test
+  public void testError() throws Exception {
+    InputStream failing = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new IOException("corrupt");
+      }
+    };
+    try (InputStream in = new ReadAheadInputStream(failing, 2)) {
+      IOException e = expectThrows(IOException.class, in::read);
+      assertEquals("corrupt", e.getCause().getMessage());
+    }
+  }
+
+  // Closing a stream before its end must stop the thread reading it ahead.
+  @Test
+  public void testCloseEarly() throws Exception {
+    InputStream endless = new InputStream() {
+      @Override
+      public int read() {
+        return 0;
+      }
+    };
+    InputStream in = new ReadAheadInputStream(endless, 2);
+    assertEquals(0, in.read());
+    in.close();
+  }
+}
@@ -65,12 +65,14 @@ public class TrecDocumentTest extends DocumentTest {
   public void test() throws Exception {
     TrecCollection collection = new TrecCollection();
     for (int i = 0; i < rawFiles.size(); i++) {
-      Iterator<TrecCollection.Document> iter = collection.createFileSegment(rawFiles.get(i)).iterator();
+      FileSegment<TrecCollection.Document> segment = collection.createFileSegment(rawFiles.get(i));
+      Iterator<TrecCollection.Document> iter = segment.iterator();
       while (iter.hasNext()) {
         TrecCollection.Document parsed = iter.next();
         assertEquals(parsed.id(), expected.get(i).get("id"));
         assertEquals(parsed.content(), expected.get(i).get("content"));
       }
+      segment.close();
     }
   }
 
@@ -80,10 +82,12 @@ public class TrecDocumentTest extends DocumentTest {
   public void testStreamIteration() {
     TrecCollection collection = new TrecCollection();
     try {
-      Iterator<TrecCollection.Document> iter = collection.createFileSegment(rawFiles.get(0)).iterator();
+      FileSegment<TrecCollection.Document> segment = collection.createFileSegment(rawFiles.get(0));
+      Iterator<TrecCollection.Document> iter = segment.iterator();
       AtomicInteger cnt = new AtomicInteger();
       iter.forEachRemaining(d -> cnt.incrementAndGet());
       assertEquals(1, cnt.get());
+      segment.close();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
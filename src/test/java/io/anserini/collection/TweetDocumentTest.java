@@ -20,6 +20,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -87,6 +88,38 @@ public class TweetDocumentTest extends DocumentTest {
     assertEquals(false, segment.getErrorStatus());
   }
 
+  @Test
+  public void testOptionalFields() throws Exception {
+    Path path = createFile(
+        "{\"created_at\":\"Thu Feb 28 08:00:00 +0000 2013\",\"id_str\":\"1\",\"text\":\"a retweet\"," +
+        "\"user\":{\"screen_name\":\"a\",\"followers_count\":3,\"friends_count\":4,\"statuses_count\":5," +
+        "\"name\":null},\"in_reply_to_status_id\":77,\"in_reply_to_user_id\":null,\"lang\":\"en\"," +
+        "\"coordinates\":{\"type\":\"Point\",\"coordinates\":[-75.5,40.25]},\"retweet_count\":\"100+\"," +
+        "\"retweeted_status\":{\"id\":99,\"text\":\"x\",\"user\":{\"id\":42,\"screen_name\":\"b\"}," +
+        "\"entities\":{\"urls\":[{\"indices\":[1,2]}]}}}\n" +
+        // missing the required user
+        "{\"created_at\":\"Thu Feb 28 08:00:00 +0000 2013\",\"id_str\":\"2\",\"text\":\"no user\"}\n");
+
+    FileSegment<TweetCollection.Document> segment = new TweetCollection().createFileSegment(path);
+    Iterator<TweetCollection.Document> iter = segment.iterator();
+    assertTrue(iter.hasNext());
+    TweetCollection.Document parsed = iter.next();
+    assertEquals("1", parsed.id());
+    assertEquals(5, parsed.getStatusesCount());
+    assertFalse(parsed.getName().isPresent());
+    assertEquals(77L, parsed.getInReplyToStatusId().getAsLong());
+    assertFalse(parsed.getInReplyToUserId().isPresent());
+    assertEquals("en", parsed.getLang().get());
+    assertEquals(-75.5, parsed.getLongitude().getAsDouble(), 0.0);
+    assertEquals(40.25, parsed.getlatitude().getAsDouble(), 0.0);
+    assertEquals(99L, parsed.getRetweetedStatusId().getAsLong());
+    assertEquals(42L, parsed.getRetweetedUserId().getAsLong());
+    assertEquals(100L, parsed.getRetweetCount().getAsLong());
+    assertFalse(iter.hasNext());
+    assertEquals(1, segment.getSkippedCount());
+    assertFalse(segment.getErrorStatus());
+  }
+
   // Tests if the iterator is behaving properly. If it is, we shouldn't have any issues running into
   // NoSuchElementExceptions.
   @Test
@@ -0,0 +1,206 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.http.HttpHost;
+import org.apache.lucene.util.LuceneTestCase;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class BulkSenderTest extends LuceneTestCase {
+  private static final Pattern ID = Pattern.compile("\"_id\":\"([^\"]+)\"");
+
+  @Test
+  public void testBatches() throws Exception {
+    List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    BulkSender<Integer> sender = new BulkSender<>((batch, retry) -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      Thread.sleep(10);
+      batches.add(new ArrayList<>(batch));
+      inFlight.decrementAndGet();
+      return 0;
+    }, 10, 100, 2, 0, 0, null);
+
+    // Batches of up to 10 documents, or 100 bytes.
+    for (int i = 0; i < 95; i++) {
+      sender.add(i, i < 50 ? 1 : 30);
+    }
+    sender.close();
+
+    assertTrue(maxInFlight.get() <= 2);
+    assertEquals(95, sender.sentDocuments());
+    assertEquals(50 + 45 * 30, sender.sentBytes());
+    assertEquals(0, sender.failedDocuments());
+    assertEquals(5 + 15, batches.size());
+    Set<Integer> sent = new HashSet<>();
+    for (List<Integer> batch : batches) {
+      assertTrue(batch.size() <= 10);
+      if (batch.get(0) >= 50) {
+        assertTrue(batch.size() <= 3);
+      }
+      sent.addAll(batch);
+    }
+    assertEquals(95, sent.size());
+  }
+
+  @Test
+  public void testRetries() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    BulkSender<Integer> sender = new BulkSender<>((batch, retry) -> {
+      if (attempts.incrementAndGet() <= 2) {
+        throw new IOException("connection reset");
+      }
+      return 0;
+    }, 5, 1000, 1, 2, 1, null);
+    for (int i = 0; i < 5; i++) {
+      sender.add(i, 1);
+    }
+    sender.add(5, 1);
+    sender.close();
+
+    // The first batch succeeds on its last retry, the second one on its first attempt.
+    assertEquals(4, sender.requests());
+    assertEquals(6, sender.sentDocuments());
+    assertEquals(10, sender.retriedDocuments());
+    assertEquals(0, sender.failedDocuments());
+
+    BulkSender<Integer> failing = new BulkSender<>((batch, retry) -> {
+      throw new IOException("connection refused");
+    }, 5, 1000, 1, 1, 1, null);
+    failing.add(0, 1);
+    failing.close();
+    assertEquals(2, failing.requests());
+    assertEquals(0, failing.sentDocuments());
+    assertEquals(1, failing.failedDocuments());
+  }
+
+  // Elasticsearch takes every other document only on the second attempt, and rejects documents with
+  // "bad" ids for good.
+  @Test
+  public void testElasticsearch() throws Exception {
+    Set<String> indexed = Collections.synchronizedSet(new HashSet<>());
+    Set<String> rejected = Collections.synchronizedSet(new HashSet<>());
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/_bulk", exchange -> {
+      StringBuilder items = new StringBuilder();
+      boolean errors = false;
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+        String action;
+        while ((action = reader.readLine()) != null && !action.isEmpty()) {
+          reader.readLine();
+          Matcher matcher = ID.matcher(action);
+          assertTrue(action, matcher.find());
+          String id = matcher.group(1);
+          int status;
+          String error = null;
+          if (id.startsWith("bad")) {
+            status = 400;
+            error = "mapper_parsing_exception";
+          } else if (Integer.parseInt(id) % 2 == 1 && rejected.add(id)) {
+            status = 429;
+            error = "es_rejected_execution_exception";
+          } else {
+            status = 201;
+            indexed.add(id);
+          }
+          errors |= error != null;
+          items.append(items.length() == 0 ? "" : ",").append("{\"index\":{\"_index\":\"test\",\"_type\":\"_doc\",")
+              .append("\"_id\":\"").append(id).append("\",\"status\":").append(status);
+          if (error == null) {
+            items.append(",\"_version\":1,\"result\":\"created\",\"_seq_no\":0,\"_primary_term\":1,")
+                .append("\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}}}");
+          } else {
+            items.append(",\"error\":{\"type\":\"").append(error).append("\",\"reason\":\"").append(error)
+                .append("\"}}}");
+          }
+        }
+      }
+      byte[] response = ("{\"took\":1,\"errors\":" + errors + ",\"items\":[" + items + "]}")
+          .getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, response.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(response);
+      }
+    });
+    server.start();
+
+    int port = server.getAddress().getPort();
+    ObjectPool<RestHighLevelClient> pool = new GenericObjectPool<>(new BasePooledObjectFactory<RestHighLevelClient>() {
+      @Override
+      public RestHighLevelClient create() {
+        return new RestHighLevelClient(RestClient.builder(new HttpHost("localhost", port, "http")));
+      }
+
+      @Override
+      public PooledObject<RestHighLevelClient> wrap(RestHighLevelClient client) {
+        return new DefaultPooledObject<>(client);
+      }
+
+      @Override
+      public void destroyObject(PooledObject<RestHighLevelClient> pooled) throws Exception {
+        pooled.getObject().close();
+      }
+    });
+    try {
+      BulkSender<IndexRequest> sender = new BulkSender<>(new BulkSender.ElasticsearchTransport(pool),
+          10, 1 << 20, 3, 2, 1, null);
+      for (int i = 0; i < 50; i++) {
+        IndexRequest request = new IndexRequest("test").id(Integer.toString(i)).source("contents", "text " + i);
+        sender.add(request, request.source().length());
+      }
+      IndexRequest bad = new IndexRequest("test").id("bad").source("contents", "text");
+      sender.add(bad, bad.source().length());
+      sender.close();
+
+      assertEquals(50, indexed.size());
+      assertEquals(50, sender.sentDocuments());
+      assertEquals(25, sender.retriedDocuments());
+      assertEquals(1, sender.failedDocuments());
+    } finally {
+      pool.close();
+      server.stop(0);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.anserini.index;
+
+import io.anserini.collection.FileSplit;
+import io.anserini.index.IndexCollection.ScheduledSplit;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ScheduledSplitTest extends LuceneTestCase {
+
+  // Queues splits of the given sizes in discovery order and returns the sizes in the order they are taken.
+  private static List<Long> schedule(boolean walkOrder, long... sizes) {
+    PriorityBlockingQueue<ScheduledSplit> queue = new PriorityBlockingQueue<>();
+    List<ScheduledSplit> splits = new ArrayList<>();
+    for (int i = 0; i < sizes.length; i++) {
+      Path path = Paths.get("file" + i);
+      ScheduledSplit split = new ScheduledSplit(() -> {}, new FileSplit(path, 0, sizes[i]), i,
+          walkOrder, new AtomicLong());
+      splits.add(split);
+      queue.add(split);
+    }
+    List<Long> order = new ArrayList<>();
+    ScheduledSplit next;
+    while ((next = queue.poll()) != null) {
+      order.add(sizes[splits.indexOf(next)]);
+    }
+    return order;
+  }
+
+  @Test
+  public void testLargestFirst() {
+    assertEquals(Arrays.asList(50L, 40L, 30L, 20L, 10L), schedule(false, 10, 50, 20, 40, 30));
+  }
+
+  @Test
+  public void testTiesInDiscoveryOrder() {
+    PriorityBlockingQueue<ScheduledSplit> queue = new PriorityBlockingQueue<>();
+    List<String> order = new ArrayList<>();
+    String[] names = {"a", "b", "c", "d"};
+    long[] sizes = {10, 20, 10, 20};
+    for (int i = 0; i < names.length; i++) {
+      String name = names[i];
+      queue.add(new ScheduledSplit(() -> order.add(name), new FileSplit(Paths.get(name), 0, sizes[i]), i,
+          false, new AtomicLong()));
+    }
+    ScheduledSplit next;
+    while ((next = queue.poll()) != null) {
+      next.run();
+    }
+    assertEquals(Arrays.asList("b", "d", "a", "c"), order);
+  }
+
+  @Test
+  public void testWalkOrder() {
+    assertEquals(Arrays.asList(10L, 50L, 20L, 40L, 30L), schedule(true, 10, 50, 20, 40, 30));
+  }
+
+  @Test
+  public void testBytesRead() {
+    AtomicLong bytesRead = new AtomicLong();
+    new ScheduledSplit(() -> {}, new FileSplit(Paths.get("a"), 0, 100), 0, false, bytesRead).run();
+    expectThrows(IllegalStateException.class, () -> new ScheduledSplit(() -> {
+      throw new IllegalStateException();
+    }, new FileSplit(Paths.get("b"), 100, 150), 1, false, bytesRead).run());
+    // Splits count as read even when reading them failed.
+    assertEquals(150, bytesRead.get());
+  }
+}
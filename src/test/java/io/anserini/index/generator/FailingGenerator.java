@@ -0,0 +1,38 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.anserini.index.generator;
+
+import io.anserini.collection.SourceDocument;
+import io.anserini.index.IndexCollection;
+import org.apache.lucene.document.Document;
+
+/**
+ * Generator that dies with an {@link Error}, as one would when running out of memory, on its first
+ * document. Used to test that indexing fails rather than waits for a pipeline stage that is gone.
+ */
+public class FailingGenerator<T extends SourceDocument> extends LuceneDocumentGenerator<T> {
+
+  public FailingGenerator(IndexCollection.Args args, IndexCollection.Counters counters) {
+    super(args, counters);
+  }
+
+  @Override
+  public Document createDocument(T src) {
+    throw new OutOfMemoryError("Simulated failure generating " + src.id());
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index.generator;
+
+import io.anserini.collection.MultifieldSourceDocument;
+import io.anserini.index.IndexCollection;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class LuceneDocumentGeneratorTest extends LuceneTestCase {
+
+  private static final class Doc implements MultifieldSourceDocument {
+    private final String id;
+    private final String content;
+    private final Map<String, String> fields;
+
+    Doc(String id, String content, Map<String, String> fields) {
+      this.id = id;
+      this.content = content;
+      this.fields = fields;
+    }
+
+    @Override
+    public String id() {
+      return id;
+    }
+
+    @Override
+    public String content() {
+      return content;
+    }
+
+    @Override
+    public boolean indexable() {
+      return true;
+    }
+
+    @Override
+    public Map<String, String> fields() {
+      return fields;
+    }
+  }
+
+  private static LuceneDocumentGenerator<Doc> generator() {
+    IndexCollection.Args args = new IndexCollection.Args();
+    args.storeRawDocs = true;
+    LuceneDocumentGenerator<Doc> generator = new LuceneDocumentGenerator<>();
+    generator.config(args);
+    return generator;
+  }
+
+  private static BytesRef sortedId(Document doc) {
+    for (IndexableField field : doc.getFields(LuceneDocumentGenerator.FIELD_ID)) {
+      if (field.fieldType().docValuesType() == DocValuesType.SORTED) {
+        return field.binaryValue();
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testNotReusedUntilRecycled() {
+    LuceneDocumentGenerator<Doc> generator = generator();
+    Document first = generator.createDocument(new Doc("d1", "first", Collections.emptyMap()));
+    Document second = generator.createDocument(new Doc("d2", "second", Collections.emptyMap()));
+
+    assertNotSame(first, second);
+    assertEquals("d1", first.get(LuceneDocumentGenerator.FIELD_ID));
+    assertEquals("first", first.get(LuceneDocumentGenerator.FIELD_BODY));
+    assertEquals(new BytesRef("d1"), sortedId(first));
+  }
+
+  @Test
+  public void testRecycled() {
+    LuceneDocumentGenerator<Doc> generator = generator();
+    Document doc = generator.createDocument(new Doc("d1", "first", Collections.singletonMap("title", "one")));
+    generator.recycle(doc);
+    // Documents created before recycling started are dropped rather than reused.
+    Document reusable = generator.createDocument(new Doc("document-2", "second",
+        Collections.singletonMap("title", "two")));
+    assertNotSame(doc, reusable);
+    assertEquals(5, reusable.getFields().size());
+    generator.recycle(reusable);
+
+    Document reused = generator.createDocument(new Doc("d3", "third", Collections.emptyMap()));
+    assertSame(reusable, reused);
+    assertEquals(4, reused.getFields().size());
+    assertEquals("d3", reused.get(LuceneDocumentGenerator.FIELD_ID));
+    assertEquals("third", reused.get(LuceneDocumentGenerator.FIELD_BODY));
+    assertEquals("third", reused.get(LuceneDocumentGenerator.FIELD_RAW));
+    assertNull(reused.get("title"));
+    assertEquals(new BytesRef("d3"), sortedId(reused));
+
+    // A document not yet recycled is left alone.
+    Document other = generator.createDocument(new Doc("d4", "fourth", Collections.singletonMap("title", "four")));
+    assertNotSame(reused, other);
+    assertEquals("d3", reused.get(LuceneDocumentGenerator.FIELD_ID));
+    assertEquals("four", other.get("title"));
+  }
+}
@@ -0,0 +1,87 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index.transform;
+
+import io.anserini.collection.ClueWeb09Collection;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+public class StreamingHtmlStringTransformTest extends LuceneTestCase {
+
+  // Fragments on which the text is exactly that of Jsoup.
+  private static final String[] FRAGMENTS = {
+      "<div>a</div>b",
+      "a<p>b</p>c",
+      "a<hr>b<br>c</br>d",
+      "a<span>b</span><foo>c</foo>d",
+      "<html><head><title>A &amp; B</title><style>p { color: red }</style></head><body><p>text</body></html>",
+      "a<script>if (x < y) { document.write('<p>') }</script>b",
+      "a<!-- <p>comment</p> -->b<!---->c",
+      "a<![CDATA[<b>]]>c",
+      "a&ampb a &amp b a&notit; a&AElig; a&lt;b&gt;",
+      "x&#65;&#x42;&#;y&#128512;z&#xD800;",
+      "a<3b",
+      "a<b c='>' d=\">\" e>f",
+      "<textarea><b>x</b></textarea>",
+      "a  b\n\tc\r\n d ",
+      "<pre>a  b\n c</pre> d  e",
+  };
+
+  @Test
+  public void testFragments() {
+    StreamingHtmlStringTransform streaming = new StreamingHtmlStringTransform();
+    JsoupStringTransform jsoup = new JsoupStringTransform();
+    for (String fragment : FRAGMENTS) {
+      assertEquals(fragment, jsoup.apply(fragment), streaming.apply(fragment));
+    }
+  }
+
+  @Test
+  public void testClueWeb09() throws Exception {
+    StreamingHtmlStringTransform streaming = new StreamingHtmlStringTransform();
+    JsoupStringTransform jsoup = new JsoupStringTransform();
+    int pages = 0;
+    for (ClueWeb09Collection.Document doc : new ClueWeb09Collection()
+        .createFileSegment(Paths.get("src/test/resources/sample_docs/clueweb09/clueweb09.warc"))) {
+      if (!doc.indexable()) {
+        continue;
+      }
+      // Whitespace may differ between some elements, but not the words.
+      assertEquals(doc.id(), words(jsoup.apply(doc.content())), words(streaming.apply(doc.content())));
+      pages++;
+    }
+    assertTrue(pages > 0);
+  }
+
+  @Test
+  public void testMaxLength() {
+    StreamingHtmlStringTransform streaming = new StreamingHtmlStringTransform(5);
+    assertEquals("abc d", streaming.apply("<p>abc</p><p>defgh</p>"));
+    assertEquals("abcd", streaming.apply("abcd&#128512;"));
+    assertEquals("ab", new StreamingHtmlStringTransform(3).apply("ab&#128512;"));
+    // The buffer is reused across documents.
+    assertEquals("x", streaming.apply("<b>x</b>"));
+  }
+
+  private static List<String> words(String text) {
+    return Arrays.asList(text.split("\\s+"));
+  }
+}
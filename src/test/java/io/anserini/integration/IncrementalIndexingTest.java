@@ -0,0 +1,89 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.integration;
+
+import io.anserini.index.CollectionManifest;
+import io.anserini.index.IndexCollection;
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestRuleLimitSysouts;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Input directories must only contain the files copied there.
+@LuceneTestCase.SuppressFileSystems("ExtrasFS")
+@TestRuleLimitSysouts.Limit(bytes=60000)
+public class IncrementalIndexingTest extends IndexingTestCase {
+
+  private static void index(Path input, Path index, boolean incremental) throws Exception {
+    IndexCollection.Args args = indexArgs(input, index);
+    args.incremental = incremental;
+    new IndexCollection(args).run();
+  }
+
+  private static int docFreq(Path index, String docid) throws Exception {
+    return read(index, reader -> reader.docFreq(new Term(LuceneDocumentGenerator.FIELD_ID, docid)));
+  }
+
+  @Test
+  public void testIncremental() throws Exception {
+    Path input = createTempDir();
+    Path index = createTempDir();
+
+    Files.copy(SAMPLE_DOCS.resolve("trec1"), input.resolve("trec1"));
+    index(input, index, true);
+    assertEquals(2, numDocs(index));
+    assertEquals(1, CollectionManifest.read(index.resolve(CollectionManifest.FILE_NAME)).size());
+
+    // A new file is added; trec1 is unchanged and not indexed again.
+    Files.copy(SAMPLE_DOCS.resolve("trec2"), input.resolve("trec2"));
+    index(input, index, true);
+    assertEquals(3, numDocs(index));
+    assertEquals(1, docFreq(index, "TREC_DOC_1"));
+    assertEquals(2, CollectionManifest.read(index.resolve(CollectionManifest.FILE_NAME)).size());
+
+    // trec1 loses its second document.
+    List<String> lines = Files.readAllLines(input.resolve("trec1"), StandardCharsets.UTF_8);
+    Files.write(input.resolve("trec1"), lines.subList(0, 12), StandardCharsets.UTF_8);
+    index(input, index, true);
+    assertEquals(2, numDocs(index));
+    assertEquals(1, docFreq(index, "TREC_DOC_1"));
+    assertEquals(0, docFreq(index, "DOC222"));
+
+    // trec2 is deleted.
+    Files.delete(input.resolve("trec2"));
+    index(input, index, true);
+    assertEquals(1, numDocs(index));
+    assertEquals(0, docFreq(index, "WSJ_1"));
+    assertEquals(1, CollectionManifest.read(index.resolve(CollectionManifest.FILE_NAME)).size());
+  }
+
+  @Test
+  public void testRequiresManifest() throws Exception {
+    Path input = createTempDir();
+    Path index = createTempDir();
+    Files.copy(SAMPLE_DOCS.resolve("trec1"), input.resolve("trec1"));
+    index(input, index, false);
+
+    expectThrows(IllegalArgumentException.class, () -> index(input, index, true));
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.anserini.index.IndexCollection;
+import io.anserini.index.IndexingMetrics;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestRuleLimitSysouts;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@TestRuleLimitSysouts.Limit(bytes=60000)
+public class IndexingMetricsTest extends LuceneTestCase {
+
+  @Test
+  public void testReport() throws Exception {
+    Path metrics = createTempDir().resolve("metrics.jsonl");
+    IndexCollection.Args args = new IndexCollection.Args();
+    args.collectionClass = "TrecCollection";
+    args.generatorClass = "JsoupGenerator";
+    args.threads = 2;
+    args.input = "src/test/resources/sample_docs/trec";
+    args.index = createTempDir().toString();
+    args.metricsFile = metrics.toString();
+    new IndexCollection(args).run();
+
+    // With the default interval, only the final report is written.
+    List<String> lines = Files.readAllLines(metrics, StandardCharsets.UTF_8);
+    assertEquals(1, lines.size());
+    JsonNode report = new ObjectMapper().readTree(lines.get(0));
+    assertEquals(3, report.get("documents").asLong());
+    assertTrue(report.get("bytes").asLong() > 0);
+    assertEquals(0, report.get("queuedSplits").asLong());
+    for (String stage : new String[] {"read", "transform", "index", "flush"}) {
+      assertTrue(stage, report.get("stages").has(stage));
+    }
+    assertEquals(3, report.get("stages").get("index").get("count").asLong());
+
+    assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(IndexingMetrics.OBJECT_NAME)));
+  }
+}
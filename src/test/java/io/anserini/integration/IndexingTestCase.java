@@ -0,0 +1,75 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.integration;
+
+import io.anserini.index.IndexCollection;
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Indexes the sample TREC documents with IndexCollection and checks the indexes it builds.
+// Subclasses only set the options under test.
+public abstract class IndexingTestCase extends LuceneTestCase {
+  protected static final Path SAMPLE_DOCS = Paths.get("src/test/resources/sample_docs/trec");
+
+  protected interface IndexCheck<T> {
+    T apply(DirectoryReader reader) throws IOException;
+  }
+
+  protected static IndexCollection.Args indexArgs(Path input, Path index) {
+    IndexCollection.Args args = new IndexCollection.Args();
+    args.collectionClass = "TrecCollection";
+    args.generatorClass = "JsoupGenerator";
+    args.threads = 2;
+    args.input = input.toString();
+    args.index = index.toString();
+    return args;
+  }
+
+  protected static IndexCollection.Args indexArgs(Path index) {
+    return indexArgs(SAMPLE_DOCS, index);
+  }
+
+  // Opens the index at the given path only for the duration of the check.
+  protected static <T> T read(Path index, IndexCheck<T> check) throws IOException {
+    try (Directory dir = FSDirectory.open(index); DirectoryReader reader = DirectoryReader.open(dir)) {
+      return check.apply(reader);
+    }
+  }
+
+  protected static int numDocs(Path index) throws IOException {
+    return read(index, DirectoryReader::numDocs);
+  }
+
+  protected static Set<String> docids(Path index) throws IOException {
+    return read(index, reader -> {
+      Set<String> docids = new TreeSet<>();
+      for (int i = 0; i < reader.maxDoc(); i++) {
+        docids.add(reader.document(i).get(LuceneDocumentGenerator.FIELD_ID));
+      }
+      return docids;
+    });
+  }
+}
@@ -17,10 +17,19 @@
 package io.anserini.integration;
 
 import io.anserini.eval.Eval;
+import io.anserini.search.SearchCollection;
+import org.apache.lucene.util.TestRuleLimitSysouts;
 import org.junit.After;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+@TestRuleLimitSysouts.Limit(bytes=40000)
 public class MultiThreadingSearchTest extends EndToEndTest {
 
   @Override
@@ -44,6 +53,128 @@ public class MultiThreadingSearchTest extends EndToEndTest {
     super.setSearchArgs();
     searchArgs.bm25 = true;
     searchArgs.b = new String[] {"0.2", "0.8"};
+    searchArgs.threads = 4;
+  }
+
+  @Override
+  protected <K> void testSearching() {
+    super.testSearching();
+    try {
+      testTopicOrder();
+      testRerankerGrid();
+      testRankLibModel();
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail();
+    }
+  }
+
+  // Many topics searched by several threads are written in the same order, with the same results, as
+  // when searched by a single thread, or with a single similarity.
+  private void testTopicOrder() throws Exception {
+    Path dir = createTempDir();
+    Path topics = writeTopics(dir);
+
+    searchArgs.topics = new String[] {topics.toString()};
+    List<byte[]> runs = new ArrayList<>();
+    for (int threads : new int[] {1, 4}) {
+      searchArgs.threads = threads;
+      searchArgs.output = dir.resolve("run" + threads).toString();
+      SearchCollection searcher = new SearchCollection(searchArgs);
+      searcher.runTopics();
+      searcher.close();
+      for (String b : searchArgs.b) {
+        runs.add(Files.readAllBytes(dir.resolve("run" + threads + "_k1=" + searchArgs.k1[0] + ",b=" + b)));
+      }
+    }
+    for (int i = 0; i < searchArgs.b.length; i++) {
+      assertTrue(runs.get(i).length > 0);
+      assertArrayEquals(runs.get(i), runs.get(i + searchArgs.b.length));
+    }
+
+    // The parameters searched in a single pass give the same runs as when searched one at a time.
+    String[] b = searchArgs.b;
+    for (int i = 0; i < b.length; i++) {
+      searchArgs.b = new String[] {b[i]};
+      searchArgs.output = dir.resolve("single" + i).toString();
+      SearchCollection searcher = new SearchCollection(searchArgs);
+      searcher.runTopics();
+      searcher.close();
+      assertArrayEquals(runs.get(i), Files.readAllBytes(dir.resolve("single" + i)));
+    }
+    setSearchArgs();
+  }
+
+  // The configurations of a grid of RM3 parameters, which share their first stage, give the same runs as
+  // when searched one at a time.
+  private void testRerankerGrid() throws Exception {
+    Path dir = createTempDir();
+    searchArgs.topics = new String[] {writeTopics(dir).toString()};
+    searchArgs.b = new String[] {"0.8"};
+    searchArgs.rm3 = true;
+    searchArgs.rm3_fbDocs = new String[] {"1", "3"};
+    searchArgs.rm3_fbTerms = new String[] {"10"};
+    searchArgs.output = dir.resolve("grid").toString();
+    SearchCollection searcher = new SearchCollection(searchArgs);
+    searcher.runTopics();
+    searcher.close();
+
+    String[] fbDocs = searchArgs.rm3_fbDocs;
+    for (String fbDocsValue : fbDocs) {
+      searchArgs.rm3_fbDocs = new String[] {fbDocsValue};
+      searchArgs.output = dir.resolve("single").toString();
+      searcher = new SearchCollection(searchArgs);
+      searcher.runTopics();
+      searcher.close();
+      byte[] single = Files.readAllBytes(dir.resolve("single"));
+      assertTrue(single.length > 0);
+      assertArrayEquals(single, Files.readAllBytes(dir.resolve("grid_k1=" + searchArgs.k1[0] + ",b=0.8,rm3.fbTerms:" +
+          searchArgs.rm3_fbTerms[0] + ",rm3.fbDocs:" + fbDocsValue + ",rm3.originalQueryWeight:" +
+          searchArgs.rm3_originalQueryWeight[0])));
+    }
+    searchArgs.rm3 = false;
+    setSearchArgs();
+  }
+
+  // Reranking with a learning to rank model, whose feature extractors share state, gives the same run with
+  // several threads as with a single thread.
+  private void testRankLibModel() throws Exception {
+    Path dir = createTempDir();
+    searchArgs.topics = new String[] {writeTopics(dir).toString()};
+    searchArgs.b = new String[] {"0.8"};
+    // A linear model (intercept 0) over the unigram, ordered pairs and BM25 features of the default extractors.
+    Path model = dir.resolve("model");
+    Files.write(model, Arrays.asList("## Linear Regression", "0:0.0 1:0.5 5:1.0 6:1.0 7:1.0 12:0.25"),
+        StandardCharsets.UTF_8);
+    searchArgs.model = model.toString();
+    searchArgs.experimentalArgs.put("-collection", "gov2");
+    List<byte[]> runs = new ArrayList<>();
+    for (int threads : new int[] {1, 4}) {
+      searchArgs.threads = threads;
+      searchArgs.output = dir.resolve("run" + threads).toString();
+      SearchCollection searcher = new SearchCollection(searchArgs);
+      searcher.runTopics();
+      searcher.close();
+      runs.add(Files.readAllBytes(dir.resolve("run" + threads)));
+    }
+    assertTrue(runs.get(0).length > 0);
+    assertArrayEquals(runs.get(0), runs.get(1));
+    searchArgs.model = "";
+    searchArgs.experimentalArgs.clear();
+    setSearchArgs();
+  }
+
+  private static Path writeTopics(Path dir) throws Exception {
+    String[] queries = {"simple text", "head", "text", "simple enough", "very simple text", "enough text",
+        "head text", "not sure", "simple"};
+    Path topics = dir.resolve("topics");
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 60; i++) {
+      lines.add("<top>\n<num> Number: " + (100 + i) + "\n<title> " + queries[i % queries.length] +
+          "\n<desc> Description:\n<narr> Narrative:\n</top>\n");
+    }
+    Files.write(topics, lines, StandardCharsets.UTF_8);
+    return topics;
   }
   
   protected void testEval() throws Exception {
@@ -0,0 +1,75 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.integration;
+
+import io.anserini.collection.ParsedCollection;
+import io.anserini.index.IndexCollection;
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.util.TestRuleLimitSysouts;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+@TestRuleLimitSysouts.Limit(bytes=60000)
+public class ParsedReindexingTest extends IndexingTestCase {
+
+  private static IndexCollection.Args args(Path input, Path index) {
+    IndexCollection.Args args = indexArgs(input, index);
+    args.storeTransformedDocs = true;
+    return args;
+  }
+
+  private static Map<String, String> contents(Path index) throws Exception {
+    return read(index, reader -> {
+      Map<String, String> contents = new HashMap<>();
+      for (int i = 0; i < reader.maxDoc(); i++) {
+        Document doc = reader.document(i);
+        contents.put(doc.get(LuceneDocumentGenerator.FIELD_ID), doc.get(LuceneDocumentGenerator.FIELD_BODY));
+      }
+      return contents;
+    });
+  }
+
+  @Test
+  public void testReindexParsedOutput() throws Exception {
+    Path parsed = createTempDir();
+    Path original = createTempDir();
+    IndexCollection.Args args = args(SAMPLE_DOCS, original);
+    args.parsedOutput = parsed.toString();
+    new IndexCollection(args).run();
+
+    // One file per generator thread.
+    try (Stream<Path> files = Files.list(parsed)) {
+      assertEquals(2, files.filter(p -> p.toString().endsWith(ParsedCollection.SUFFIX)).count());
+    }
+
+    Path reindexed = createTempDir();
+    args = args(parsed, reindexed);
+    args.collectionClass = "ParsedCollection";
+    args.generatorClass = "LuceneDocumentGenerator";
+    new IndexCollection(args).run();
+
+    Map<String, String> expected = contents(original);
+    assertEquals(3, expected.size());
+    assertEquals(expected, contents(reindexed));
+  }
+}
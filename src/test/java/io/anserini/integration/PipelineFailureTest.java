@@ -0,0 +1,55 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.anserini.integration;
+
+import io.anserini.index.IndexCollection;
+import org.apache.lucene.util.TestRuleLimitSysouts;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@TestRuleLimitSysouts.Limit(bytes=40000)
+public class PipelineFailureTest extends IndexingTestCase {
+
+  // A generator thread that dies leaves the readers blocked on a full queue; the run must fail, not hang.
+  @Test
+  public void testGeneratorError() throws Exception {
+    IndexCollection.Args args = indexArgs(createTempDir());
+    args.generatorClass = "FailingGenerator";
+    args.generatorThreads = 1;
+    args.queueSize = 1;
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> run = executor.submit(() -> {
+        new IndexCollection(args).run();
+        return null;
+      });
+      Throwable e = expectThrows(ExecutionException.class,
+          () -> run.get(1, TimeUnit.MINUTES)).getCause();
+      assertTrue(e instanceof OutOfMemoryError);
+      assertTrue(e.getMessage().startsWith("Simulated failure"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.integration;
+
+import io.anserini.index.IndexCollection;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestRuleLimitSysouts;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+// Input directories must only contain the files copied there.
+@LuceneTestCase.SuppressFileSystems("ExtrasFS")
+@TestRuleLimitSysouts.Limit(bytes=40000)
+public class ResumeIndexingTest extends IndexingTestCase {
+
+  private static IndexCollection.Args args(Path input, Path index, boolean resume) {
+    IndexCollection.Args args = indexArgs(input, index);
+    args.resume = resume;
+    return args;
+  }
+
+  private static String indexedSplits(Path index) throws Exception {
+    return read(index, reader -> reader.getIndexCommit().getUserData().get(IndexCollection.INDEXED_SPLITS_KEY));
+  }
+
+  @Test
+  public void testResume() throws Exception {
+    Path input = createTempDir();
+    Path index = createTempDir();
+
+    // First run sees only one of the two files, as if it had died before reaching the other.
+    Files.copy(SAMPLE_DOCS.resolve("trec1"), input.resolve("trec1"));
+    new IndexCollection(args(input, index, false)).run();
+    assertEquals("trec1", indexedSplits(index));
+    assertEquals(2, numDocs(index));
+
+    // The resumed run only reads the new file.
+    Files.copy(SAMPLE_DOCS.resolve("trec2"), input.resolve("trec2"));
+    new IndexCollection(args(input, index, true)).run();
+    assertEquals("trec1\ntrec2", indexedSplits(index));
+    assertEquals(3, numDocs(index));
+  }
+
+  @Test
+  public void testResumeReplacesPartiallyIndexedSplit() throws Exception {
+    Path input = createTempDir();
+    Path index = createTempDir();
+    Files.copy(SAMPLE_DOCS.resolve("trec1"), input.resolve("trec1"));
+    Files.copy(SAMPLE_DOCS.resolve("trec2"), input.resolve("trec2"));
+    new IndexCollection(args(input, index, false)).run();
+
+    // Pretend the documents of trec2 were committed before the checkpoint recorded the file.
+    try (Directory dir = FSDirectory.open(index);
+         IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+      writer.setLiveCommitData(Collections.singletonMap(IndexCollection.INDEXED_SPLITS_KEY, "trec1").entrySet());
+      writer.commit();
+    }
+
+    // trec2 is read again, and its documents replace the ones already in the index.
+    new IndexCollection(args(input, index, true)).run();
+    assertEquals("trec1\ntrec2", indexedSplits(index));
+    assertEquals(3, numDocs(index));
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.integration;
+
+import io.anserini.index.IndexCollection;
+import org.apache.lucene.util.TestRuleLimitSysouts;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+
+@TestRuleLimitSysouts.Limit(bytes=60000)
+public class ShardIndexingTest extends IndexingTestCase {
+  private static final int SHARDS = 3;
+
+  private static void index(Path index, int shardCurrent) throws Exception {
+    IndexCollection.Args args = indexArgs(index);
+    args.storeRawDocs = true;
+    args.shardCount = SHARDS;
+    args.shardCurrent = shardCurrent;
+    new IndexCollection(args).run();
+  }
+
+  // Building all shards in one pass must give the same shards as building them one at a time.
+  @Test
+  public void testOnePass() throws Exception {
+    Path onePass = createTempDir();
+    index(onePass, -1);
+
+    Set<String> all = new TreeSet<>();
+    for (int i = 0; i < SHARDS; i++) {
+      Path shard = createTempDir();
+      index(shard, i);
+      Set<String> expected = docids(shard);
+      assertEquals(expected, docids(onePass.resolve("shard" + i)));
+      all.addAll(expected);
+    }
+    assertEquals(3, all.size());
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.integration;
+
+import io.anserini.index.IndexCollection;
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.TestRuleLimitSysouts;
+import org.junit.Test;
+
+import java.nio.file.Path;
+
+@TestRuleLimitSysouts.Limit(bytes=60000)
+public class VariantIndexingTest extends IndexingTestCase {
+
+  @Test
+  public void testVariants() throws Exception {
+    Path index = createTempDir();
+    IndexCollection.Args args = indexArgs(index);
+    args.variants = new String[] {"porter.pos+docvectors+rawdocs", "krovetz", "none.pos+keepstopwords"};
+    new IndexCollection(args).run();
+
+    // The same variant built on its own.
+    Path single = createTempDir();
+    args = indexArgs(single);
+    args.storePositions = true;
+    args.storeDocvectors = true;
+    args.storeRawDocs = true;
+    new IndexCollection(args).run();
+
+    try (Directory porterDir = FSDirectory.open(index.resolve("porter.pos+docvectors+rawdocs"));
+         Directory krovetzDir = FSDirectory.open(index.resolve("krovetz"));
+         Directory noneDir = FSDirectory.open(index.resolve("none.pos+keepstopwords"));
+         Directory singleDir = FSDirectory.open(single);
+         IndexReader porter = DirectoryReader.open(porterDir);
+         IndexReader krovetz = DirectoryReader.open(krovetzDir);
+         IndexReader none = DirectoryReader.open(noneDir);
+         IndexReader expected = DirectoryReader.open(singleDir)) {
+      for (IndexReader reader : new IndexReader[] {porter, krovetz, none}) {
+        assertEquals(3, reader.numDocs());
+      }
+
+      String body = LuceneDocumentGenerator.FIELD_BODY;
+      assertEquals(2, porter.docFreq(new Term(body, "simpl")));
+      assertEquals(0, porter.docFreq(new Term(body, "simple")));
+      assertEquals(2, krovetz.docFreq(new Term(body, "simple")));
+      assertEquals(0, krovetz.docFreq(new Term(body, "is")));
+      assertEquals(1, none.docFreq(new Term(body, "is")));
+
+      Terms porterTerms = MultiTerms.getTerms(porter, body);
+      Terms expectedTerms = MultiTerms.getTerms(expected, body);
+      assertEquals(expectedTerms.getSumDocFreq(), porterTerms.getSumDocFreq());
+      assertEquals(expectedTerms.getSumTotalTermFreq(), porterTerms.getSumTotalTermFreq());
+      assertTrue(porterTerms.hasPositions());
+      assertFalse(MultiTerms.getTerms(krovetz, body).hasPositions());
+      assertTrue(MultiTerms.getTerms(none, body).hasPositions());
+
+      for (int i = 0; i < 3; i++) {
+        assertNotNull(porter.getTermVector(i, body));
+        assertNotNull(porter.document(i).get(LuceneDocumentGenerator.FIELD_RAW));
+        assertNull(krovetz.getTermVector(i, body));
+        assertNull(krovetz.document(i).get(LuceneDocumentGenerator.FIELD_RAW));
+        assertNull(none.document(i).get(LuceneDocumentGenerator.FIELD_RAW));
+      }
+      assertEquals(IndexOptions.DOCS_AND_FREQS, krovetz.leaves().get(0).reader().getFieldInfos().fieldInfo(body)
+          .getIndexOptions());
+    }
+  }
+
+  @Test
+  public void testTweetsRejected() {
+    IndexCollection.Args args = indexArgs(createTempDir());
+    args.collectionClass = "TweetCollection";
+    args.generatorClass = "TweetGenerator";
+    args.input = "src/test/resources/sample_docs/tweets";
+    args.variants = new String[] {"porter", "krovetz"};
+    expectThrows(IllegalArgumentException.class, () -> new IndexCollection(args));
+  }
+}
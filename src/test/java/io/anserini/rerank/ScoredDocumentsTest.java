@@ -0,0 +1,101 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.rerank;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_ID;
+import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_RAW;
+
+public class ScoredDocumentsTest extends LuceneTestCase {
+
+  @Test
+  public void testLazyLoading() throws Exception {
+    try (Directory dir = newDirectory()) {
+      // Three segments; the ids of the last one have no doc values, as in older indexes.
+      try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new WhitespaceAnalyzer())
+          .setMergePolicy(NoMergePolicy.INSTANCE))) {
+        for (int i = 0; i < 30; i++) {
+          Document doc = new Document();
+          String id = String.format("doc%02d", i);
+          doc.add(new StringField(FIELD_ID, id, Field.Store.YES));
+          if (i < 20) {
+            doc.add(new SortedDocValuesField(FIELD_ID, new BytesRef(id)));
+          }
+          doc.add(new StoredField(FIELD_RAW, "raw " + i));
+          writer.addDocument(doc);
+          if (i % 10 == 9) {
+            writer.commit();
+          }
+        }
+      }
+
+      try (DirectoryReader reader = DirectoryReader.open(dir)) {
+        assertEquals(3, reader.leaves().size());
+        IndexSearcher searcher = newSearcher(reader);
+        // Hits in an order other than that of their ids, with a duplicate.
+        int[] ids = {25, 3, 17, 11, 0, 29, 3};
+        float[] scores = {7, 6, 5, 4, 3, 2, 1};
+        ScoredDocuments docs = new ScoredDocuments(searcher, ids, scores);
+        assertEquals(7, docs.size());
+        for (int i = 0; i < ids.length; i++) {
+          assertEquals(String.format("doc%02d", ids[i]), docs.docid(i));
+        }
+
+        Document id = docs.document(1, Collections.singleton(FIELD_ID));
+        assertEquals("doc03", id.get(FIELD_ID));
+        assertNull(id.get(FIELD_RAW));
+        assertEquals("raw 3", docs.document(1).get(FIELD_RAW));
+        assertSame(docs.document(1), docs.document(1, Collections.singleton(FIELD_ID)));
+
+        ScoredDocuments selected = docs.select(new int[] {5, 1}, new float[] {2, 1});
+        assertArrayEquals(new int[] {29, 3}, selected.ids);
+        assertEquals("doc29", selected.docid(0));
+        assertEquals("raw 3", selected.document(1).get(FIELD_RAW));
+
+        ScoredDocuments copy = docs.copy();
+        copy.scores[0] = 0;
+        assertEquals(7, docs.scores[0], 0f);
+        assertArrayEquals(ids, copy.ids);
+        assertSame(docs.document(1), copy.document(1));
+
+        ScoredDocuments all = ScoredDocuments.fromTopDocs(searcher.search(new MatchAllDocsQuery(), 30), searcher);
+        assertEquals(30, all.size());
+        for (int i = 0; i < all.size(); i++) {
+          assertEquals(reader.document(all.ids[i]).get(FIELD_ID), all.docid(i));
+        }
+      }
+    }
+  }
+}
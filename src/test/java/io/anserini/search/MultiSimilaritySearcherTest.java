@@ -0,0 +1,139 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.anserini.search;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.LMDirichletSimilarity;
+import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_BODY;
+import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_ID;
+
+public class MultiSimilaritySearcherTest extends LuceneTestCase {
+  private static final String[] WORDS = {"a", "b", "c", "d", "e", "f", "g", "h"};
+
+  @Test
+  public void testSameResultsAsIndexSearcher() throws Exception {
+    try (Directory dir = newDirectory()) {
+      try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new WhitespaceAnalyzer())
+          .setMergePolicy(NoMergePolicy.INSTANCE))) {
+        for (int i = 0; i < 300; i++) {
+          StringBuilder body = new StringBuilder();
+          int length = 1 + random().nextInt(12);
+          for (int j = 0; j < length; j++) {
+            body.append(WORDS[random().nextInt(WORDS.length)]).append(' ');
+          }
+          Document doc = new Document();
+          String id = String.format("doc%03d", i);
+          doc.add(new StringField(FIELD_ID, id, Field.Store.YES));
+          doc.add(new SortedDocValuesField(FIELD_ID, new BytesRef(id)));
+          doc.add(new TextField(FIELD_BODY, body.toString(), Field.Store.NO));
+          doc.add(new LongPoint("time", i));
+          writer.addDocument(doc);
+          if (i % 70 == 69) {
+            writer.commit();
+          }
+        }
+        for (int i = 0; i < 300; i += 13) {
+          writer.deleteDocuments(new Term(FIELD_ID, String.format("doc%03d", i)));
+        }
+      }
+
+      List<Similarity> similarities = Arrays.asList(new BM25Similarity(0.9f, 0.4f),
+          new BM25Similarity(1.2f, 0.75f), new LMDirichletSimilarity(1000f), new LMJelinekMercerSimilarity(0.1f));
+      List<Query> queries = new ArrayList<>();
+      queries.add(bag("a", "b", "c"));
+      queries.add(bag("a", "a", "d"));
+      queries.add(bag("e"));
+      queries.add(bag("missing", "f"));
+      queries.add(new BooleanQuery.Builder()
+          .add(new BoostQuery(new TermQuery(new Term(FIELD_BODY, "g")), 2.5f), BooleanClause.Occur.SHOULD)
+          .add(new TermQuery(new Term(FIELD_BODY, "h")), BooleanClause.Occur.SHOULD).build());
+      queries.add(new BooleanQuery.Builder()
+          .add(LongPoint.newRangeQuery("time", 50, 220), BooleanClause.Occur.FILTER)
+          .add(bag("b", "h"), BooleanClause.Occur.MUST).build());
+      queries.add(new BooleanQuery.Builder()
+          .add(new TermQuery(new Term(FIELD_BODY, "c")), BooleanClause.Occur.MUST_NOT)
+          .add(bag("a", "d", "e"), BooleanClause.Occur.MUST).build());
+
+      try (DirectoryReader reader = DirectoryReader.open(dir)) {
+        assertTrue(reader.leaves().size() > 1);
+        MultiSimilaritySearcher multiSearcher = new MultiSimilaritySearcher(reader, similarities);
+        for (Query query : queries) {
+          for (Sort sort : new Sort[] {SearchCollection.BREAK_SCORE_TIES_BY_DOCID, null}) {
+            TopDocs[] results = multiSearcher.search(query, 20, sort);
+            assertEquals(similarities.size(), results.length);
+            for (int s = 0; s < similarities.size(); s++) {
+              IndexSearcher searcher = new IndexSearcher(reader);
+              searcher.setSimilarity(similarities.get(s));
+              TopDocs expected = sort == null ? searcher.search(query, 20) : searcher.search(query, 20, sort, true);
+              String message = query + " with " + similarities.get(s);
+              assertTrue(message, expected.scoreDocs.length > 0);
+              assertEquals(message, expected.scoreDocs.length, results[s].scoreDocs.length);
+              for (int i = 0; i < expected.scoreDocs.length; i++) {
+                assertEquals(message, expected.scoreDocs[i].doc, results[s].scoreDocs[i].doc);
+                assertEquals(message, expected.scoreDocs[i].score, results[s].scoreDocs[i].score, 0f);
+              }
+            }
+          }
+        }
+
+        // Queries other than bags of words are left to IndexSearcher.
+        assertNull(multiSearcher.search(new PhraseQuery(FIELD_BODY, "a", "b"), 20, null));
+      }
+    }
+  }
+
+  private static Query bag(String... terms) {
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    for (String term : terms) {
+      builder.add(new TermQuery(new Term(FIELD_BODY, term)), BooleanClause.Occur.SHOULD);
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.anserini.search;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_BODY;
+import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_ID;
+
+public class TopScoreDocidCollectorTest extends LuceneTestCase {
+  private static final String[] WORDS = {"a", "b", "c", "d", "e"};
+
+  @Test
+  public void testSameOrderAsDocidSort() throws Exception {
+    try (Directory dir = newDirectory()) {
+      try (DirectoryReader reader = buildIndex(dir)) {
+        IndexSearcher searcher = new IndexSearcher(reader);
+        for (Query query : queries()) {
+          for (int n : new int[] {1, 10, 100, 5000}) {
+            TopDocs expected = searcher.search(query, n, SearchCollection.BREAK_SCORE_TIES_BY_DOCID, true);
+            TopDocs actual = TopScoreDocidCollector.search(searcher, query, n);
+            String message = query + " top " + n;
+            assertEquals(message, expected.scoreDocs.length, actual.scoreDocs.length);
+            for (int i = 0; i < expected.scoreDocs.length; i++) {
+              assertEquals(message, expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+              assertEquals(message, expected.scoreDocs[i].score, actual.scoreDocs[i].score, 0f);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFastSameScores() throws Exception {
+    try (Directory dir = newDirectory()) {
+      try (DirectoryReader reader = buildIndex(dir)) {
+        IndexSearcher searcher = new IndexSearcher(reader);
+        for (Query query : queries()) {
+          for (int n : new int[] {1, 10, 100}) {
+            TopDocs expected = searcher.search(query, n, SearchCollection.BREAK_SCORE_TIES_BY_DOCID, true);
+            TopDocs actual = TopScoreDocidCollector.search(searcher, query, n, 0, false);
+            String message = query + " top " + n;
+            assertEquals(message, expected.scoreDocs.length, actual.scoreDocs.length);
+            float last = expected.scoreDocs[expected.scoreDocs.length - 1].score;
+            for (int i = 0; i < expected.scoreDocs.length; i++) {
+              assertEquals(message, expected.scoreDocs[i].score, actual.scoreDocs[i].score, 0f);
+              // Only the hits tied with the last one may be other documents.
+              if (expected.scoreDocs[i].score > last) {
+                assertEquals(message, expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static DirectoryReader buildIndex(Directory dir) throws Exception {
+    try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new WhitespaceAnalyzer())
+        .setMergePolicy(NoMergePolicy.INSTANCE))) {
+      for (int i = 0; i < 3000; i++) {
+        StringBuilder body = new StringBuilder();
+        int length = 1 + random().nextInt(4);
+        for (int j = 0; j < length; j++) {
+          body.append(WORDS[random().nextInt(WORDS.length)]).append(' ');
+        }
+        Document doc = new Document();
+        // Docids in an order other than that of the documents, some shared, some missing.
+        String id = "doc" + random().nextInt(2500);
+        doc.add(new StringField(FIELD_ID, id, Field.Store.YES));
+        if (i % 97 != 0) {
+          doc.add(new SortedDocValuesField(FIELD_ID, new BytesRef(id)));
+        }
+        doc.add(new TextField(FIELD_BODY, body.toString(), Field.Store.NO));
+        writer.addDocument(doc);
+        if (i % 700 == 699) {
+          writer.commit();
+        }
+      }
+    }
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertTrue(reader.leaves().size() > 1);
+    return reader;
+  }
+
+  private static Query[] queries() {
+    BooleanQuery.Builder disjunction = new BooleanQuery.Builder();
+    disjunction.add(new TermQuery(new Term(FIELD_BODY, "a")), BooleanClause.Occur.SHOULD);
+    disjunction.add(new TermQuery(new Term(FIELD_BODY, "c")), BooleanClause.Occur.SHOULD);
+    return new Query[] {new TermQuery(new Term(FIELD_BODY, "b")), disjunction.build(), new MatchAllDocsQuery()};
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.util;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class DocidSetTest extends LuceneTestCase {
+
+  @Test
+  public void testContains() throws Exception {
+    Path file = createTempFile();
+    Files.write(file, Arrays.asList("clueweb12-0000tw-05-12114", "AP-0001", "", "AP-0001", "WSJ_1", "docé"),
+        StandardCharsets.UTF_8);
+
+    DocidSet set = DocidSet.load(file);
+    assertEquals(4, set.size());
+    assertTrue(set.contains("AP-0001"));
+    assertTrue(set.contains("WSJ_1"));
+    assertTrue(set.contains("docé"));
+    assertTrue(set.contains("clueweb12-0000tw-05-12114"));
+    assertFalse(set.contains("AP-000"));
+    assertFalse(set.contains("AP-00011"));
+    assertFalse(set.contains("WSJ_2"));
+    assertFalse(set.contains(""));
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    Path file = createTempFile();
+    DocidSet set = DocidSet.load(file);
+    assertEquals(0, set.size());
+    assertFalse(set.contains("AP-0001"));
+  }
+
+  @Test
+  public void testRandom() throws Exception {
+    List<String> docids = new ArrayList<>();
+    Set<String> expected = new HashSet<>();
+    for (int i = 0; i < 10000; i++) {
+      String docid = "doc-" + random().nextInt(20000);
+      docids.add(docid);
+      expected.add(docid);
+    }
+    Collections.shuffle(docids, random());
+    Path file = createTempFile();
+    Files.write(file, docids, StandardCharsets.UTF_8);
+
+    DocidSet set = DocidSet.load(file);
+    assertEquals(expected.size(), set.size());
+    for (int i = 0; i < 20000; i++) {
+      assertEquals(expected.contains("doc-" + i), set.contains("doc-" + i));
+    }
+  }
+}
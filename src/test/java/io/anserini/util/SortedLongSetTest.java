@@ -0,0 +1,69 @@
+/**
+ * Anserini: A Lucene toolkit for replicable information retrieval research
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.util;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.tools.bzip2.CBZip2OutputStream;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class SortedLongSetTest extends LuceneTestCase {
+
+  @Test
+  public void testPlain() throws Exception {
+    Path ids = createTempDir().resolve("deletes.txt");
+    Files.write(ids, Arrays.asList("298893215617798144", "5", "298893215617798144\t12345", "-7", "42"),
+        StandardCharsets.UTF_8);
+
+    SortedLongSet set = SortedLongSet.open(ids);
+    assertEquals(4, set.size());
+    assertTrue(set.contains(298893215617798144L));
+    assertTrue(set.contains(5L));
+    assertTrue(set.contains(-7L));
+    assertTrue(set.contains(42L));
+    assertFalse(set.contains(12345L));
+    assertFalse(set.contains(0L));
+    assertFalse(set.contains(Long.MAX_VALUE));
+
+    assertTrue(Files.exists(ids.resolveSibling("deletes.txt" + SortedLongSet.SORTED_SUFFIX)));
+    assertSame(set, SortedLongSet.open(ids));
+  }
+
+  @Test
+  public void testBzip2() throws Exception {
+    Path ids = createTempDir().resolve("deletes.txt.bz2");
+    try (OutputStream out = Files.newOutputStream(ids)) {
+      out.write(new byte[] {'B', 'Z'});
+      try (CBZip2OutputStream bz = new CBZip2OutputStream(out)) {
+        for (long i = 0; i < 1000; i++) {
+          bz.write((i * 3 + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+      }
+    }
+
+    SortedLongSet set = SortedLongSet.open(ids);
+    assertEquals(1000, set.size());
+    for (long i = 0; i < 3000; i++) {
+      assertEquals(i % 3 == 0, set.contains(i));
+    }
+  }
+}